@@ -1,30 +1,59 @@
 package vg.zeta.app.inventory;
 
-import com.facebook.react.ReactPackage;
+import androidx.annotation.Nullable;
+
+import com.facebook.react.TurboReactPackage;
 import com.facebook.react.bridge.NativeModule;
 import com.facebook.react.bridge.ReactApplicationContext;
-import com.facebook.react.uimanager.ViewManager;
+import com.facebook.react.module.model.ReactModuleInfo;
+import com.facebook.react.module.model.ReactModuleInfoProvider;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.HashMap;
+import java.util.Map;
 
-public class AppPackage implements ReactPackage {
+/**
+ * Registers the RFID modules, as TurboModules when the New Architecture is
+ * enabled and as bridge modules otherwise.
+ */
+public class AppPackage extends TurboReactPackage {
 
+  @Nullable
   @Override
-  public List<ViewManager> createViewManagers(ReactApplicationContext reactContext) {
-    return Collections.emptyList();
+  public NativeModule getModule(String name, ReactApplicationContext reactContext) {
+    switch (name) {
+      case RFIDWithUHFUARTModule.NAME:
+        return new RFIDWithUHFUARTModule(reactContext);
+      case RFIDWithUHFBLEModule.NAME:
+        return new RFIDWithUHFBLEModule(reactContext);
+      default:
+        return null;
+    }
   }
 
   @Override
-  public List<NativeModule> createNativeModules(
-          ReactApplicationContext reactContext) {
-    List<NativeModule> modules = new ArrayList<>();
-
-    modules.add(new RFIDWithUHFUARTModule(reactContext));
-    modules.add(new RFIDWithUHFBLEModule(reactContext));
-
-    return modules;
+  public ReactModuleInfoProvider getReactModuleInfoProvider() {
+    return () -> {
+      boolean isTurboModule = BuildConfig.IS_NEW_ARCHITECTURE_ENABLED;
+      Map<String, ReactModuleInfo> moduleInfos = new HashMap<>();
+      moduleInfos.put(RFIDWithUHFUARTModule.NAME, new ReactModuleInfo(
+              RFIDWithUHFUARTModule.NAME,
+              RFIDWithUHFUARTModule.class.getName(),
+              false, // canOverrideExistingModule
+              false, // needsEagerInit
+              false, // hasConstants
+              false, // isCxxModule
+              isTurboModule
+      ));
+      moduleInfos.put(RFIDWithUHFBLEModule.NAME, new ReactModuleInfo(
+              RFIDWithUHFBLEModule.NAME,
+              RFIDWithUHFBLEModule.class.getName(),
+              false, // canOverrideExistingModule
+              false, // needsEagerInit
+              false, // hasConstants
+              false, // isCxxModule
+              isTurboModule
+      ));
+      return moduleInfos;
+    };
   }
 }
-
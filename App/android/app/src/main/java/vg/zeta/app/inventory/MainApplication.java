@@ -9,6 +9,8 @@ import com.facebook.react.defaults.DefaultNewArchitectureEntryPoint;
 import com.facebook.react.defaults.DefaultReactNativeHost;
 import com.facebook.soloader.SoLoader;
 import java.util.List;
+import vg.zeta.app.inventory.rfid.ReaderWarmUp;
+import vg.zeta.app.inventory.rfid.ScanTracer;
 
 public class MainApplication extends Application implements ReactApplication {
 
@@ -60,5 +62,8 @@ public class MainApplication extends Application implements ReactApplication {
       DefaultNewArchitectureEntryPoint.load();
     }
     ReactNativeFlipper.initializeFlipper(this, getReactNativeHost().getReactInstanceManager());
+    ScanTracer.install(new SystraceScanTracer());
+    // Powers up the built-in reader in the background, if turned on from JS
+    ReaderWarmUp.startIfEnabled(this);
   }
 }
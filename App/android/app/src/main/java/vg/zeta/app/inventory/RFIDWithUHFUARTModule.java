@@ -1,182 +1,281 @@
 package vg.zeta.app.inventory;
 
-import static android.content.Context.AUDIO_SERVICE;
-
-import android.media.AudioManager;
-import android.media.SoundPool;
-import android.os.AsyncTask;
-import android.os.Message;
 import android.text.TextUtils;
+import android.util.Base64;
 
 import com.facebook.react.bridge.Arguments;
 import com.facebook.react.bridge.Promise;
 import com.facebook.react.bridge.ReactApplicationContext;
-import com.facebook.react.bridge.ReactContextBaseJavaModule;
 import com.facebook.react.bridge.ReactMethod;
 import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
 import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
 import com.facebook.react.modules.core.DeviceEventManagerModule;
 import com.rscja.deviceapi.RFIDWithUHFUART;
-import com.rscja.deviceapi.entity.UHFTAGInfo;
 import com.rscja.deviceapi.interfaces.IUHF;
 import com.rscja.deviceapi.interfaces.IUHFLocationCallback;
 
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Set;
-
-public class RFIDWithUHFUARTModule extends ReactContextBaseJavaModule {
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import vg.zeta.app.inventory.rfid.BulkEncoder;
+import vg.zeta.app.inventory.rfid.CachingReaderBackend;
+import vg.zeta.app.inventory.rfid.CheckSession;
+import vg.zeta.app.inventory.rfid.DeviceReaderBackend;
+import vg.zeta.app.inventory.rfid.EncodeJob;
+import vg.zeta.app.inventory.rfid.FeedbackScheduler;
+import vg.zeta.app.inventory.rfid.LocateConfig;
+import vg.zeta.app.inventory.rfid.LocateTracker;
+import vg.zeta.app.inventory.rfid.PromiseCallback;
+import vg.zeta.app.inventory.rfid.ReactEncodeEventEmitter;
+import vg.zeta.app.inventory.rfid.ReactScanEventEmitter;
+import vg.zeta.app.inventory.rfid.ReadRecording;
+import vg.zeta.app.inventory.rfid.ReaderCommandExecutor;
+import vg.zeta.app.inventory.rfid.ReaderException;
+import vg.zeta.app.inventory.rfid.RecordingReaderBackend;
+import vg.zeta.app.inventory.rfid.ReplayReaderBackend;
+import vg.zeta.app.inventory.rfid.ReaderWarmUp;
+import vg.zeta.app.inventory.rfid.ScanBatchBuffer;
+import vg.zeta.app.inventory.rfid.ScanBatchEncoder;
+import vg.zeta.app.inventory.rfid.ScanConfig;
+import vg.zeta.app.inventory.rfid.ScanEngine;
+import vg.zeta.app.inventory.rfid.ScanJournal;
+import vg.zeta.app.inventory.rfid.ScanJournals;
+import vg.zeta.app.inventory.rfid.ScanLatency;
+import vg.zeta.app.inventory.rfid.ScanStats;
+import vg.zeta.app.inventory.rfid.SimulatedReaders;
+import vg.zeta.app.inventory.rfid.SoundFeedback;
+import vg.zeta.app.inventory.rfid.UHFReaderBackend;
+import vg.zeta.app.inventory.specs.NativeRFIDWithUHFUARTModuleSpec;
+
+public class RFIDWithUHFUARTModule extends NativeRFIDWithUHFUARTModuleSpec {
+
+  public static final String NAME = "RFIDWithUHFUARTModule";
 
   ReactApplicationContext context;
   public RFIDWithUHFUART uhfReader;
-  public Set<String> scannedTags = new HashSet<String>();
-  public Set<String> soundOnlyForEpcsSet = new HashSet<String>();
-
-  private int scanRate = 10;
-  private int scanEventRate = 100;
-  private boolean scanIsLocate;
+  /** Set through setSimulatedReader, used instead of uhfReader when not null. */
+  private volatile UHFReaderBackend simulatedReader;
+  private DeviceReaderBackend deviceReader;
+  private CachingReaderBackend readerCache;
+  private final ScanEngine scanEngine = new ScanEngine();
+  private final BulkEncoder bulkEncoder = new BulkEncoder();
+  /** Event windows waiting for pullScanData, with delivery: 'pull'. */
+  private final ScanBatchBuffer scanBatchBuffer = new ScanBatchBuffer();
+  /** What the running scan reads from, see scanReader(). Only touched by commands. */
+  private UHFReaderBackend scanSource;
+  private ReadRecording.Writer readRecorder;
+  private volatile ScanJournal scanJournal;
+  /** Everything that talks to the reader goes through here, one command at a time. */
+  private final ReaderCommandExecutor commands = new ReaderCommandExecutor("RFIDWithUHFUARTCommands");
+  /** Bumped by stopScan and stopLocate, a start they overtook in the queue is then dropped. */
+  private final AtomicInteger scanStops = new AtomicInteger();
+  private final AtomicInteger locateStops = new AtomicInteger();
 
   private static final String TAG = "RFIDWithUHFUARTModule";
+  /** Status polls give up sooner than commands. */
+  private static final long TELEMETRY_TIMEOUT = 3000;
+  /** How long stopping a recorded scan waits for the scan thread to finish. */
+  private static final long READ_RECORDER_DRAIN = 1000;
+  /** How long init waits for a running warm-up, within the command timeout. */
+  private static final long WARM_UP_WAIT = 8000;
 
   RFIDWithUHFUARTModule(ReactApplicationContext context) {
     super(context);
     this.context = context;
+    scanEngine.setCommandExecutor(commands);
+    ReaderWarmUp.get().setListener(this::emitWarmUp);
   }
 
   @Override
   public String getName() {
-    return "RFIDWithUHFUARTModule";
+    return NAME;
+  }
+
+  /** The reader that operations should go through, behind the config cache. */
+  private CachingReaderBackend reader() {
+    UHFReaderBackend backend = simulatedReader;
+    if (backend == null) {
+      if (deviceReader == null || deviceReader.getDevice() != uhfReader) {
+        deviceReader = new DeviceReaderBackend(uhfReader);
+      }
+      backend = deviceReader;
+    }
+    if (readerCache == null || readerCache.getDelegate() != backend) {
+      readerCache = new CachingReaderBackend(backend);
+    }
+    return readerCache;
+  }
+
+  /** For when the reader may have lost or changed its settings behind our back. */
+  private void invalidateReaderCache() {
+    if (readerCache != null) readerCache.invalidate();
+  }
+
+  @ReactMethod
+  public void setSimulatedReader(ReadableMap options, Promise promise) {
+    final Map<String, Object> settings = options == null ? null : options.toHashMap();
+    // Ends any scan on the old backend first, like stopScan
+    scanStops.incrementAndGet();
+    scanEngine.stop();
+    commands.submit("setSimulatedReader", ReaderCommandExecutor.PRIORITY_HIGH, () -> {
+      UHFReaderBackend backend = settings == null ? null : SimulatedReaders.create(settings);
+      UHFReaderBackend source = scanSource;
+      scanSource = null;
+      if (source != null) {
+        closeReadRecorder();
+        source.stopInventory();
+        scanEngine.restoreReader(source);
+      }
+      simulatedReader = backend;
+      invalidateReaderCache();
+      return true;
+    }, new PromiseCallback(promise));
   }
 
   @ReactMethod
   public void init(Promise promise) {
-    InitTask initTask = new InitTask();
-    initTask.setPromise(promise);
-    try {
-      if (uhfReader == null) uhfReader = RFIDWithUHFUART.getInstance();
+    commands.submit("init", ReaderCommandExecutor.PRIORITY_NORMAL, () -> {
+      // Already powered up if the warm-up ran
+      RFIDWithUHFUART warmedUp = ReaderWarmUp.get().takeReader(WARM_UP_WAIT);
       initSound();
-      initTask.execute();
-    } catch (Exception e) {
-      promise.reject(e.getMessage(), new Throwable(e.getMessage()));
-    }
+      if (warmedUp != null) uhfReader = warmedUp;
+      if (uhfReader == null) uhfReader = RFIDWithUHFUART.getInstance();
+      invalidateReaderCache();
+      if (warmedUp == null && !uhfReader.init()) throw new ReaderException("UHF reader init failed");
+      return true;
+    }, new PromiseCallback(promise));
   }
 
-  public void prepareOperation() {}
-  public void prepareStartScan() {}
-
-  public class InitTask extends AsyncTask<String, Integer, Boolean> {
-    private Promise promise;
+  /**
+   * Starts powering up the reader and loading the sounds in the background
+   * unless that has already been done, and resolves with the warm-up status
+   * right away. The progress comes as uhfWarmUp events.
+   */
+  @ReactMethod
+  public void warmUp(Promise promise) {
+    ReaderWarmUp warmUp = ReaderWarmUp.get();
+    warmUp.start(context.getApplicationContext());
+    promise.resolve(warmUpStatusMap(warmUp.getStatus()));
+  }
 
-    protected void setPromise(Promise p){
-      this.promise = p;
-    }
+  @ReactMethod
+  public void getWarmUpStatus(Promise promise) {
+    promise.resolve(warmUpStatusMap(ReaderWarmUp.get().getStatus()));
+  }
 
-    @Override
-    protected void onPreExecute() {
-      super.onPreExecute();
-    }
+  /** Whether the next app starts warm up the reader, off by default. */
+  @ReactMethod
+  public void setWarmUpOnStart(boolean enabled, Promise promise) {
+    ReaderWarmUp.setEnabledOnStart(context, enabled);
+    promise.resolve(true);
+  }
 
-    @Override
-    protected Boolean doInBackground(String... params) {
-      try {
-        // uhfReader.free();
-        return uhfReader.init();
-      } catch (Exception e) {
-        promise.reject(e.getMessage(), new Throwable(e.getMessage()));
-      }
-      return false;
-    }
+  private static WritableMap warmUpStatusMap(ReaderWarmUp.Status status) {
+    WritableMap payload = Arguments.createMap();
+    payload.putString("state", status.state);
+    payload.putString("step", status.step);
+    payload.putInt("stepsDone", status.stepsDone);
+    payload.putInt("stepCount", status.stepCount);
+    payload.putString("error", status.error);
+    payload.putDouble("duration", status.duration);
+    return payload;
+  }
 
-    @Override
-    protected void onPostExecute(Boolean result) {
-      super.onPostExecute(result);
-      try {
-        if (result) {
-          // uhfReader.setPower(28);
-          // uhfReader.setEPCMode();
-          promise.resolve(true);
-        } else {
-          promise.reject("UHF reader init failed", new Throwable("UHF reader init failed"));
-        }
-      } catch (Exception e) {
-        promise.reject(e.getMessage(), new Throwable(e.getMessage()));
-      }
-    }
+  private void emitWarmUp(ReaderWarmUp.Status status) {
+    // The warm-up may report before JS is up, getWarmUpStatus covers that
+    if (!context.hasActiveReactInstance()) return;
+    context
+            .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
+            .emit("uhfWarmUp", warmUpStatusMap(status));
   }
 
+  public void prepareOperation() {}
+  public void prepareStartScan() {}
+
   @ReactMethod
   public void free(Promise promise) {
-    try {
+    // Encode jobs queued after this report themselves cancelled without using the reader
+    bulkEncoder.cancel();
+    commands.submit("free", ReaderCommandExecutor.PRIORITY_NORMAL, () -> {
       if (uhfReader == null) uhfReader = RFIDWithUHFUART.getInstance();
       prepareOperation();
-      boolean result = uhfReader.free();
-      if (result) {
-        promise.resolve(true);
-      } else {
-        promise.reject(new Throwable("UHF reader free failed"));
-      }
+      boolean result = reader().free();
+      invalidateReaderCache();
       releaseSoundPool();
-    } catch (Exception e) {
-      promise.reject(e.getMessage(), e);
-    }
+      closeScanJournal();
+      scanSource = null;
+      closeReadRecorder();
+      if (!result) throw new ReaderException("UHF reader free failed");
+      return true;
+    }, new PromiseCallback(promise));
   }
 
   @ReactMethod
   public void isPowerOn(Promise promise) {
-    try {
+    commands.submit("isPowerOn", ReaderCommandExecutor.PRIORITY_LOW, TELEMETRY_TIMEOUT, () -> {
       if (uhfReader == null) uhfReader = RFIDWithUHFUART.getInstance();
       prepareOperation();
-      promise.resolve(uhfReader.isPowerOn());
-    } catch (Exception e) {
-      promise.reject(e.getMessage(), e);
-    }
+      return uhfReader.isPowerOn();
+    }, new PromiseCallback(promise));
   }
 
   @ReactMethod
   public void isWorking(Promise promise) {
-    try {
+    commands.submit("isWorking", ReaderCommandExecutor.PRIORITY_LOW, TELEMETRY_TIMEOUT, () -> {
       prepareOperation();
-      promise.resolve(uhfReader.isWorking());
-    } catch (Exception e) {
-      promise.reject(e.getMessage(), e);
-    }
+      return reader().isWorking();
+    }, new PromiseCallback(promise));
   }
 
   @ReactMethod
   public void getFrequencyMode(Promise promise) {
-    try {
+    commands.submit("getFrequencyMode", ReaderCommandExecutor.PRIORITY_NORMAL, () -> {
       prepareOperation();
-      int result = uhfReader.getFrequencyMode();
-      promise.resolve(result);
-    } catch (Exception e) {
-      promise.reject(e.getMessage(), e);
-    }
+      return reader().getFrequencyMode();
+    }, new PromiseCallback(promise));
   }
 
   @ReactMethod
   public void setFrequencyMode(int mode, Promise promise) {
-    try {
+    commands.submit("setFrequencyMode", ReaderCommandExecutor.PRIORITY_NORMAL, () -> {
       prepareOperation();
-      boolean result = uhfReader.setFrequencyMode(mode);
-      if (result) {
-        promise.resolve(true);
-      } else {
-        promise.reject(new Throwable("setFrequencyMode returned false"));
-      }
-    } catch (Exception e) {
-      promise.reject(e.getMessage(), e);
-    }
+      if (!reader().setFrequencyMode(mode)) throw new ReaderException("setFrequencyMode returned false");
+      return true;
+    }, new PromiseCallback(promise));
+  }
+
+  /** Queue depth and latencies of the reader commands. */
+  @ReactMethod
+  public void getCommandStats(Promise promise) {
+    ReaderCommandExecutor.Stats stats = commands.getStats();
+    WritableMap payload = Arguments.createMap();
+    payload.putInt("queued", stats.queued);
+    payload.putInt("maxQueued", stats.maxQueued);
+    payload.putDouble("completed", stats.completed);
+    payload.putDouble("failed", stats.failed);
+    payload.putDouble("timedOut", stats.timedOut);
+    payload.putString("running", stats.running);
+    payload.putDouble("runningFor", stats.runningFor);
+    payload.putDouble("meanWait", stats.meanWait);
+    payload.putDouble("maxWait", stats.maxWait);
+    payload.putDouble("meanRun", stats.meanRun);
+    payload.putDouble("maxRun", stats.maxRun);
+    promise.resolve(payload);
   }
 
   @ReactMethod
   public void setPower(int p, Promise promise) {
-    try {
-      boolean result = uhfReader.setPower(p);
-      if (!result) promise.reject(new Throwable("setPower returned false"));
-    } catch (Exception e) {
-      promise.reject(e);
-    }
+    commands.submit("setPower", ReaderCommandExecutor.PRIORITY_NORMAL, () -> {
+      checkNotEncoding("set the power");
+      if (!reader().setPower(p)) throw new ReaderException("setPower returned false");
+      return true;
+    }, new PromiseCallback(promise));
   }
 
   @ReactMethod
@@ -194,139 +293,297 @@ public class RFIDWithUHFUARTModule extends ReactContextBaseJavaModule {
           boolean enableReaderSound,
           ReadableArray scannedEpcs,
           ReadableArray soundOnlyForEpcs,
+          ReadableMap options,
           Promise promise
   ) {
-    scanRate = rate;
-    scanEventRate = eventRate;
-    scanIsLocate = isLocate;
-    if (scannedEpcs.size() > 0) {
-      scannedTags = new HashSet(scannedEpcs.toArrayList());
-    }
-    if (soundOnlyForEpcs.size() > 0) {
-      soundOnlyForEpcsSet = new HashSet(soundOnlyForEpcs.toArrayList());
-    } else {
-      soundOnlyForEpcsSet = new HashSet();
-    }
+    final ScanConfig config = new ScanConfig();
+    final ScanEngine.Listener listener;
     try {
-      prepareStartScan();
-      this.playSoundFlag = playSound;
-      if (!uhfReader.setPower(power)) {
-        promise.reject(new Throwable("setPower returned false"));
-        return;
-      }
+      config.power = power;
+      config.enableFilter = enableFilter;
+      config.filterBank = filterBank;
+      config.filterPtr = filterPtr;
+      config.filterLen = filterLen;
+      config.filterData = filterData;
+      config.scanRate = rate;
+      config.eventRate = eventRate;
+      config.isLocate = isLocate;
+      config.playSound = playSound;
+      config.scannedEpcs = scannedEpcs.toArrayList();
+      config.soundOnlyForEpcs = soundOnlyForEpcs.toArrayList();
+      config.applyOptions(options.toHashMap());
+
+      ScanBatchBuffer pullBuffer = config.pullDelivery ? scanBatchBuffer : null;
+      ScanEngine.Listener emitter = new ReactScanEventEmitter(getReactApplicationContext(), config.packedEvents, pullBuffer) {
+        @Override
+        public void onFeedback(int sound) {
+          requestFeedback(sound);
+        }
 
-      if (enableFilter) {
-        if (!(uhfReader.setFilter(filterBank, filterPtr, filterLen, filterData))) {
-          promise.reject(new Throwable("setFilter returned false"));
-          return;
+        @Override
+        public void onLocateFeedback(float proximity) {
+          requestFeedback(ScanEngine.SOUND_SEEN_TAG, LocateTracker.beepRate(proximity));
         }
+      };
+      closeScanJournal();
+      if (config.journalName != null) {
+        scanJournal = scanJournals().open(config.journalName);
+        listener = scanJournal.recorder(emitter);
       } else {
-        String filterDataStr = "";
-        if (!(uhfReader.setFilter(RFIDWithUHFUART.Bank_EPC, 0, 0, filterDataStr) &&
-                uhfReader.setFilter(RFIDWithUHFUART.Bank_TID, 0, 0, filterDataStr) &&
-                uhfReader.setFilter(RFIDWithUHFUART.Bank_USER, 0, 0, filterDataStr)
-        )) {
-          promise.reject(new Throwable("setFilter returned false"));
-          return;
-        }
+        listener = emitter;
       }
+    } catch (Exception e) {
+      promise.reject(e);
+      return;
+    }
 
-      boolean started = uhfReader.startInventoryTag();
-      if (!started) {
-        promise.reject(new Throwable("startInventoryTag returned false"));
+    final int stops = scanStops.get();
+    commands.submit("startScan", ReaderCommandExecutor.PRIORITY_NORMAL, () -> {
+      if (scanStops.get() != stops) throw new ReaderException("Scan stopped before it started");
+      checkNotEncoding("scan");
+      prepareStartScan();
+      this.playSoundFlag = playSound;
+      scanBatchBuffer.reset(config.queueCapacity);
+      scanEngine.start(scanReader(config), config, listener);
+      FeedbackScheduler scheduler = feedbackScheduler;
+      if (scheduler != null) scheduler.setStats(scanEngine.getStats());
+      return true;
+    }, new PromiseCallback(promise));
+  }
+
+  @ReactMethod(isBlockingSynchronousMethod = true)
+  public String pullScanData() {
+    byte[] data = scanBatchBuffer.drain();
+    if (data == null) return "";
+    // Everything emitted so far is with JS now
+    scanEngine.acknowledgeAll();
+    return Base64.encodeToString(data, Base64.NO_WRAP);
+  }
+
+  @ReactMethod
+  public void acknowledgeScanData(int count) {
+    scanEngine.acknowledge(count);
+  }
+
+  @ReactMethod
+  public void getScanQueueStats(Promise promise) {
+    try {
+      ScanEngine.QueueStats stats = scanEngine.getQueueStats();
+      if (stats == null) {
+        promise.resolve(null);
         return;
       }
-
-      keepScanTagFlag = true;
-      new ScanTagThread().start();
+      WritableMap payload = Arguments.createMap();
+      payload.putInt("capacity", stats.capacity);
+      payload.putInt("queued", stats.queued);
+      payload.putInt("inFlight", stats.inFlight);
+      payload.putDouble("dropped", stats.dropped);
+      payload.putDouble("coalesced", stats.coalesced);
+      payload.putDouble("blocked", stats.blocked);
+      payload.putDouble("pullDropped", scanBatchBuffer.getDroppedCount());
+      promise.resolve(payload);
     } catch (Exception e) {
       promise.reject(e);
     }
+  }
 
-    promise.resolve(true);
+  /** Counters of the current or last scan session, null if there was none. */
+  @ReactMethod
+  public void getScanStats(Promise promise) {
+    ScanStats stats = scanEngine.getStats();
+    promise.resolve(stats == null ? null : ReactScanEventEmitter.statsToMap(stats.snapshot(System.currentTimeMillis())));
   }
 
+  /**
+   * Latencies JS measured for traced event windows, as pairs of total and
+   * bridge milliseconds.
+   */
+  @ReactMethod
+  public void recordScanLatency(ReadableArray samples) {
+    ScanLatency latency = scanEngine.getLatency();
+    for (int i = 0; i + 1 < samples.size(); i += 2) {
+      latency.total.record(Math.round(samples.getDouble(i) * 1000));
+      latency.bridge.record(Math.round(samples.getDouble(i + 1) * 1000));
+    }
+  }
 
-  public boolean keepScanTagFlag = false;
-
-  class ScanTagThread extends Thread {
-    public void run() {
-      UHFTAGInfo tagData;
-      Message msg;
-      WritableArray arr = Arguments.createArray();
-      long lastEventEmittedAt = 0;
-      while (keepScanTagFlag) {
-        tagData = uhfReader.readTagFromBuffer();
-        if (tagData != null) {
-          WritableMap payload = Arguments.createMap();
-          payload.putString("tid", tagData.getTid());
-          payload.putString("epc", tagData.getEPC());
-          payload.putString("rssi", tagData.getRssi());
-
-          arr.pushMap(payload);
-
-          String epc = tagData.getEPC();
-
-          if (playSoundFlag && (soundOnlyForEpcsSet.size() <= 0 || soundOnlyForEpcsSet.contains(epc))) {
-            if (scanIsLocate) {
-              playSound(2);
-            } else {
-              if (scannedTags.contains(epc)) {
-                playSound(2);
-              } else {
-                playSound(1);
-              }
-            }
-          }
+  @ReactMethod
+  public void getScanLatency(boolean includeBuckets, Promise promise) {
+    promise.resolve(ReactScanEventEmitter.latencyToMap(scanEngine.getLatency(), includeBuckets));
+  }
 
-          if (!scanIsLocate) scannedTags.add(epc);
+  private ScanJournals scanJournals() {
+    return ScanJournals.shared(new File(context.getFilesDir(), "scan-journals"));
+  }
 
-          try {
-            Thread.sleep(scanRate);
-          } catch (InterruptedException e) {
-            e.printStackTrace();
-          }
-        }
+  /** Closes the journal of the last scan of this module, the other module may have its own open. */
+  private void closeScanJournal() throws IOException {
+    ScanJournal journal = scanJournal;
+    scanJournal = null;
+    if (journal != null) scanJournals().close(journal);
+  }
 
-        long currentTime = System.currentTimeMillis();
+  @ReactMethod
+  public void getScanJournalInfo(String name, Promise promise) {
+    try {
+      ScanJournal.Info info = scanJournals().getInfo(name);
+      if (info == null) {
+        promise.resolve(null);
+        return;
+      }
+      WritableMap payload = Arguments.createMap();
+      payload.putInt("recordCount", info.recordCount);
+      payload.putDouble("createdAt", info.createdAt);
+      promise.resolve(payload);
+    } catch (Exception e) {
+      promise.reject(e);
+    }
+  }
 
-        if (currentTime - lastEventEmittedAt > scanEventRate) {
-          getReactApplicationContext()
-                  .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
-                  .emit("uhfScanData", arr);
-          arr = Arguments.createArray();
-          lastEventEmittedAt = currentTime;
-        }
+  @ReactMethod
+  public void readScanJournal(String name, int offset, int limit, Promise promise) {
+    try {
+      ScanBatchEncoder encoder = new ScanBatchEncoder();
+      if (scanJournals().read(name, offset, limit, encoder) < 0) {
+        promise.resolve(null);
+        return;
       }
+      promise.resolve(Base64.encodeToString(encoder.getBuffer(), 0, encoder.getLength(), Base64.NO_WRAP));
+    } catch (Exception e) {
+      promise.reject(e);
+    }
+  }
 
-      if (arr.size() > 0) {
-        getReactApplicationContext()
-                .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
-                .emit("uhfScanData", arr);
+  @ReactMethod
+  public void listScanJournals(Promise promise) {
+    try {
+      WritableArray names = Arguments.createArray();
+      for (String name : scanJournals().list()) {
+        names.pushString(name);
       }
+      promise.resolve(names);
+    } catch (Exception e) {
+      promise.reject(e);
     }
   }
 
   @ReactMethod
-  public void stopScan(Promise promise) {
+  public void deleteScanJournal(String name, Promise promise) {
     try {
-      keepScanTagFlag = false;
+      promise.resolve(scanJournals().delete(name));
+    } catch (Exception e) {
+      promise.reject(e);
+    }
+  }
 
-      if (!uhfReader.stopInventory()) {
-        promise.reject(new Throwable("stopInventory returned false"));
-        return;
+  /**
+   * What a scan reads from: the reader, or a recording with the replay
+   * option, with what comes out of it recorded with the record option.
+   */
+  private UHFReaderBackend scanReader(ScanConfig config) throws Exception {
+    closeReadRecorder();
+    UHFReaderBackend source;
+    if (config.replayName != null) {
+      File file = ReadRecording.fileFor(readRecordings(), config.replayName);
+      if (!file.isFile()) throw new ReaderException("No read recording named " + config.replayName);
+      double speed = config.replaySpeed > 0 ? config.replaySpeed : Double.POSITIVE_INFINITY;
+      source = ReplayReaderBackend.fromFile(file, speed, config.replayLoop);
+    } else {
+      source = reader();
+    }
+    if (config.recordName != null) {
+      readRecorder = ReadRecording.Writer.create(ReadRecording.fileFor(readRecordings(), config.recordName));
+      source = new RecordingReaderBackend(source, readRecorder);
+    }
+    scanSource = source;
+    return source;
+  }
+
+  private void closeReadRecorder() throws Exception {
+    ReadRecording.Writer recorder = readRecorder;
+    if (recorder == null) return;
+    readRecorder = null;
+    // Let the scan thread record what it already took from the reader
+    scanEngine.stop();
+    scanEngine.join(READ_RECORDER_DRAIN);
+    recorder.close();
+  }
+
+  private File readRecordings() {
+    return new File(context.getFilesDir(), "reader-recordings");
+  }
+
+  @ReactMethod
+  public void listReadRecordings(Promise promise) {
+    try {
+      WritableArray names = Arguments.createArray();
+      for (String name : ReadRecording.list(readRecordings())) {
+        names.pushString(name);
       }
+      promise.resolve(names);
+    } catch (Exception e) {
+      promise.reject(e);
+    }
+  }
+
+  @ReactMethod
+  public void deleteReadRecording(String name, Promise promise) {
+    try {
+      promise.resolve(ReadRecording.fileFor(readRecordings(), name).delete());
     } catch (Exception e) {
       promise.reject(e);
     }
+  }
 
+  @ReactMethod
+  public void startCheckSession(ReadableArray epcs, ReadableArray itemIds, Promise promise) {
+    try {
+      scanEngine.setCheckSession(CheckSession.of(epcs.toArrayList(), itemIds.toArrayList()));
+      promise.resolve(true);
+    } catch (Exception e) {
+      promise.reject(e);
+    }
+  }
+
+  @ReactMethod
+  public void endCheckSession(Promise promise) {
+    scanEngine.setCheckSession(null);
     promise.resolve(true);
   }
 
+  @ReactMethod
+  public void getCheckSessionState(Promise promise) {
+    CheckSession session = scanEngine.getCheckSession();
+    if (session == null) {
+      promise.resolve(null);
+      return;
+    }
+    WritableMap payload = Arguments.createMap();
+    payload.putInt("expectedCount", session.getExpectedCount());
+    payload.putInt("foundCount", session.getFoundCount());
+    payload.putInt("unexpectedCount", session.getUnexpectedCount());
+    promise.resolve(payload);
+  }
+
+  @ReactMethod
+  public void stopScan(Promise promise) {
+    scanStops.incrementAndGet();
+    scanEngine.stop();
+    commands.submit("stopScan", ReaderCommandExecutor.PRIORITY_HIGH, () -> {
+      UHFReaderBackend source = scanSource != null ? scanSource : reader();
+      scanSource = null;
+      closeReadRecorder();
+      if (!source.stopInventory()) throw new ReaderException("stopInventory returned false");
+      // Back to the Gen2 settings from before autoTune
+      scanEngine.restoreReader(source);
+      return true;
+    }, new PromiseCallback(promise));
+  }
+
   @ReactMethod
   public void clearScannedTags(Promise promise) {
     try {
-      scannedTags.clear();
+      scanEngine.getScannedTags().clear();
     } catch (Exception e) {
       promise.reject(e);
     }
@@ -336,49 +593,52 @@ public class RFIDWithUHFUARTModule extends ReactContextBaseJavaModule {
 
   @ReactMethod
   public void startLocate(String epc, int power, boolean playSound, Promise promise) {
-    try {
+    final int stops = locateStops.get();
+    commands.submit("startLocate", ReaderCommandExecutor.PRIORITY_NORMAL, () -> {
+      if (locateStops.get() != stops) throw new ReaderException("Locate stopped before it started");
+      checkNotEncoding("locate");
       prepareOperation();
       this.playSoundFlag = playSound;
-      if (!uhfReader.setPower(power)) {
-        promise.reject(new Throwable("setPower returned false"));
-        return;
-      }
+      if (!reader().setPower(power)) throw new ReaderException("setPower returned false");
 
+      // The SDK sets its own filter for the EPC
+      reader().invalidateFilters();
       boolean result = uhfReader.startLocation(context, epc, IUHF.Bank_EPC,32, new IUHFLocationCallback() {
+        private int lastValue = -1;
+        private long lastEmittedAt;
+
         @Override
         public void getLocationValue(int value) {
-          getReactApplicationContext()
-                  .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
-                  .emit("uhfLocateValue", value);
+          // Repeats of the same value are held back to one per frame
+          long now = System.currentTimeMillis();
+          if (value != lastValue || now - lastEmittedAt >= LocateConfig.DEFAULT_FRAME_INTERVAL) {
+            lastValue = value;
+            lastEmittedAt = now;
+            getReactApplicationContext()
+                    .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
+                    .emit("uhfLocateValue", value);
+          }
           if (playSoundFlag) {
-            playSound(2);
+            requestFeedback(ScanEngine.SOUND_SEEN_TAG, LocateTracker.beepRate(value / 100f));
           }
         }
       });
 
-      if (!result) {
-        promise.reject("startLocation returned false", new Throwable("startLocation returned false"));
-      } else {
-        promise.resolve(true);
-      }
-    } catch (Exception e) {
-      promise.reject(e);
-    }
+      if (!result) throw new ReaderException("startLocation returned false");
+      return true;
+    }, new PromiseCallback(promise));
   }
 
   @ReactMethod
   public void stopLocate(Promise promise) {
-    try {
+    locateStops.incrementAndGet();
+    commands.submit("stopLocate", ReaderCommandExecutor.PRIORITY_HIGH, () -> {
       prepareOperation();
       boolean result = uhfReader.stopLocation();
-      if (!result) {
-        promise.reject("stopLocation returned false", new Throwable("stopLocation returned false"));
-      } else {
-        promise.resolve(true);
-      }
-    } catch (Exception e) {
-      promise.reject(e);
-    }
+      reader().invalidateFilters();
+      if (!result) throw new ReaderException("stopLocation returned false");
+      return true;
+    }, new PromiseCallback(promise));
   }
 
   @ReactMethod
@@ -396,17 +656,15 @@ public class RFIDWithUHFUARTModule extends ReactContextBaseJavaModule {
           boolean playSound,
           Promise promise
   ) {
-    try {
+    commands.submit("read", ReaderCommandExecutor.PRIORITY_NORMAL, () -> {
       prepareOperation();
+      checkNotEncoding("read");
       this.playSoundFlag = playSound;
-      if (!uhfReader.setPower(power)) {
-        promise.reject(new Throwable("setPower returned false"));
-        return;
-      }
+      if (!reader().setPower(power)) throw new ReaderException("setPower returned false");
 
       String data;
       if (enableFilter) {
-        data = uhfReader.readData(pwd,
+        data = reader().readData(pwd,
                 filterBank,
                 filterPtr,
                 filterLen,
@@ -416,25 +674,15 @@ public class RFIDWithUHFUARTModule extends ReactContextBaseJavaModule {
                 cnt
         );
       } else {
-        data = uhfReader.readData(pwd, bank, ptr, cnt);
+        data = reader().readData(pwd, bank, ptr, cnt);
       }
 
-      if (!TextUtils.isEmpty(data)) {
-        promise.resolve(data);
-
-        if (this.playSoundFlag) {
-          playSound(1);
-        }
-      } else {
-        promise.reject("fail", new Throwable("fail"));
-
-        if (this.playSoundFlag) {
-          playSound(3);
-        }
+      if (this.playSoundFlag) {
+        playSound(TextUtils.isEmpty(data) ? 3 : 1);
       }
-    } catch (Exception e) {
-      promise.reject(e);
-    }
+      if (TextUtils.isEmpty(data)) throw new ReaderException("fail");
+      return data;
+    }, new PromiseCallback(promise));
   }
 
   @ReactMethod
@@ -453,18 +701,16 @@ public class RFIDWithUHFUARTModule extends ReactContextBaseJavaModule {
           boolean playSound,
           Promise promise
   ) {
-    try {
+    commands.submit("write", ReaderCommandExecutor.PRIORITY_NORMAL, () -> {
       prepareOperation();
+      checkNotEncoding("write");
       this.playSoundFlag = playSound;
-      if (!uhfReader.setPower(power)) {
-        promise.reject(new Throwable("setPower returned false"));
-        return;
-      }
+      if (!reader().setPower(power)) throw new ReaderException("setPower returned false");
 
       boolean result;
 
       if (enableFilter) {
-        result = uhfReader.writeData(pwd,
+        result = reader().writeData(pwd,
                 filterBank,
                 filterPtr,
                 filterLen,
@@ -475,25 +721,15 @@ public class RFIDWithUHFUARTModule extends ReactContextBaseJavaModule {
                 data
         );
       } else {
-        result = uhfReader.writeData(pwd, bank, ptr, cnt, data);
+        result = reader().writeData(pwd, bank, ptr, cnt, data);
       }
 
-      if (result) {
-        promise.resolve(data);
-
-        if (this.playSoundFlag) {
-          playSound(1);
-        }
-      } else {
-        promise.reject(new Throwable("writeData returned false"));
-
-        if (this.playSoundFlag) {
-          playSound(3);
-        }
+      if (this.playSoundFlag) {
+        playSound(result ? 1 : 3);
       }
-    } catch (Exception e) {
-      promise.reject(e);
-    }
+      if (!result) throw new ReaderException("writeData returned false");
+      return data;
+    }, new PromiseCallback(promise));
   }
 
   @ReactMethod
@@ -509,18 +745,16 @@ public class RFIDWithUHFUARTModule extends ReactContextBaseJavaModule {
           boolean playSound,
           Promise promise
   ) {
-    try {
+    commands.submit("lock", ReaderCommandExecutor.PRIORITY_NORMAL, () -> {
       prepareOperation();
+      checkNotEncoding("lock");
       this.playSoundFlag = playSound;
-      if (!uhfReader.setPower(power)) {
-        promise.reject(new Throwable("setPower returned false"));
-        return;
-      }
+      if (!reader().setPower(power)) throw new ReaderException("setPower returned false");
 
       boolean result;
 
       if (enableFilter) {
-        result = uhfReader.lockMem(pwd,
+        result = reader().lockMem(pwd,
                 filterBank,
                 filterPtr,
                 filterLen,
@@ -528,80 +762,122 @@ public class RFIDWithUHFUARTModule extends ReactContextBaseJavaModule {
                 code
         );
       } else {
-        result = uhfReader.lockMem(pwd, code);
+        result = reader().lockMem(pwd, code);
       }
 
-      if (result) {
-        promise.resolve(true);
-
-        if (this.playSoundFlag) {
-          playSound(1);
-        }
-      } else {
-        promise.reject(new Throwable("lockMem returned false"));
+      if (this.playSoundFlag) {
+        playSound(result ? 1 : 3);
+      }
+      if (!result) throw new ReaderException("lockMem returned false");
+      return true;
+    }, new PromiseCallback(promise));
+  }
 
-        if (this.playSoundFlag) {
-          playSound(3);
+  /**
+   * Writes, verifies, sets the password of and locks each job's tag, one
+   * reader command per job. Progress goes out as uhfEncodeProgress events,
+   * the promise resolves with the number of succeeded, failed and cancelled
+   * jobs once all are done. Scans and tag operations fail until then.
+   */
+  @ReactMethod
+  public void encodeTags(ReadableArray jobs, ReadableMap options, boolean playSound, Promise promise) {
+    final List<EncodeJob> encodeJobs = new ArrayList<>();
+    final BulkEncoder.Options encodeOptions;
+    try {
+      for (Object job : jobs.toArrayList()) {
+        if (!(job instanceof Map)) {
+          promise.reject(new Throwable("Each job must be an object"));
+          return;
         }
+        @SuppressWarnings("unchecked")
+        Map<String, Object> jobMap = (Map<String, Object>) job;
+        encodeJobs.add(EncodeJob.fromMap(jobMap));
       }
+      encodeOptions = BulkEncoder.Options.fromMap(options.toHashMap());
     } catch (Exception e) {
       promise.reject(e);
+      return;
     }
+
+    commands.submit("encodeTags", ReaderCommandExecutor.PRIORITY_NORMAL, () -> {
+      prepareOperation();
+      if (scanEngine.isRunning()) throw new ReaderException("Cannot encode tags while scanning");
+      bulkEncoder.start(commands, reader(), encodeJobs, encodeOptions,
+              new ReactEncodeEventEmitter(getReactApplicationContext(), promise) {
+                @Override
+                public void onFeedback(int sound) {
+                  if (playSound) requestFeedback(sound);
+                }
+              });
+      return true;
+    }, new PromiseCallback(promise) {
+      @Override
+      public void onResult(Object result) {
+        // Only the jobs are queued, the emitter settles the promise after the last one ran
+      }
+    });
+  }
+
+  @ReactMethod
+  public void cancelEncodeTags(Promise promise) {
+    bulkEncoder.cancel();
+    promise.resolve(true);
+  }
+
+  /** For commands that would use the reader in between two encodeTags jobs. */
+  private void checkNotEncoding(String action) throws ReaderException {
+    if (bulkEncoder.isRunning()) throw new ReaderException("Cannot " + action + " while encoding tags");
   }
 
   private boolean playSoundFlag;
-  HashMap<Integer, Integer> soundMap = new HashMap<Integer, Integer>();
-  private SoundPool soundPool1;
-  private SoundPool soundPool2;
-  private float volumeRatio;
-  private AudioManager am;
+  /** Null until init (or after free). Volatile as the scan thread plays through it. */
+  private volatile SoundFeedback soundFeedback;
+  private volatile FeedbackScheduler feedbackScheduler;
+  private int feedbackMinimumDelay;
 
   private void initSound() {
-    // soundPool = new SoundPool(10, AudioManager.STREAM_MUSIC, 5);
-    soundPool1 = new SoundPool.Builder()
-            .setMaxStreams(4)
-            .build();
-    soundPool2 = new SoundPool.Builder()
-            .setMaxStreams(4)
-            .build();
-    soundMap.put(1, soundPool1.load(context, R.raw.beep, 1));
-    soundMap.put(2, soundPool2.load(context, R.raw.beep_slight, 1));
-    soundMap.put(3, soundPool1.load(context, R.raw.serror, 1));
-    am = (AudioManager) context.getSystemService(AUDIO_SERVICE);
+    if (soundFeedback != null) return;
+    SoundFeedback warmedUp = ReaderWarmUp.get().takeSounds();
+    soundFeedback = warmedUp != null ? warmedUp : new SoundFeedback(context);
+    FeedbackScheduler scheduler = new FeedbackScheduler(soundFeedback);
+    scheduler.setMinimumDelay(feedbackMinimumDelay);
+    feedbackScheduler = scheduler;
   }
 
   private void releaseSoundPool() {
-    if (soundPool1 != null) {
-      soundPool1.release();
-      soundPool1 = null;
+    if (feedbackScheduler != null) {
+      feedbackScheduler.shutdown();
+      feedbackScheduler = null;
     }
-    if (soundPool2 != null) {
-      soundPool2.release();
-      soundPool2 = null;
+    if (soundFeedback != null) {
+      soundFeedback.release();
+      soundFeedback = null;
     }
   }
 
+  /** Hands the sound to the feedback thread, for callers that must not wait on audio. */
+  private void requestFeedback(int sound) {
+    requestFeedback(sound, 1f);
+  }
+
+  private void requestFeedback(int sound, float rate) {
+    FeedbackScheduler scheduler = feedbackScheduler;
+    if (scheduler != null) scheduler.request(sound, rate);
+  }
+
+  @ReactMethod
+  public void setFeedbackMinimumDelay(int delay) {
+    feedbackMinimumDelay = delay;
+    FeedbackScheduler scheduler = feedbackScheduler;
+    if (scheduler != null) scheduler.setMinimumDelay(delay);
+  }
+
   @ReactMethod
   public void playSound(int id) {
-    float audioMaxVolume = am.getStreamMaxVolume(AudioManager.STREAM_MUSIC);
-    float audioCurrentVolume = am.getStreamVolume(AudioManager.STREAM_MUSIC);
-    volumeRatio = audioCurrentVolume / audioMaxVolume;
+    SoundFeedback feedback = soundFeedback;
+    if (feedback == null) return;
     try {
-      SoundPool soundPool;
-
-      if (id == 2) {
-        soundPool = soundPool2;
-      } else {
-        soundPool = soundPool1;
-      }
-
-      soundPool.play(soundMap.get(id),
-              volumeRatio, // Left channel volume
-              volumeRatio, // right channel volume
-              1, // priority, 0 is highest
-              0, // loop count, 0 = no loop, -1 = loop forever
-              1 // playback speed
-      );
+      feedback.play(id);
     } catch (Exception e) {
       e.printStackTrace();
     }
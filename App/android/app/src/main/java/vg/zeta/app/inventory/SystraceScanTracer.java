@@ -0,0 +1,28 @@
+package vg.zeta.app.inventory;
+
+import android.os.SystemClock;
+import android.os.Trace;
+
+import vg.zeta.app.inventory.rfid.ScanTracer;
+
+/**
+ * Puts the scan stages into system traces (Perfetto, systrace), where they
+ * cost next to nothing unless a trace is being recorded.
+ */
+class SystraceScanTracer extends ScanTracer {
+
+  @Override
+  public long nanoTime() {
+    return SystemClock.elapsedRealtimeNanos();
+  }
+
+  @Override
+  public void beginSection(String name) {
+    Trace.beginSection(name);
+  }
+
+  @Override
+  public void endSection() {
+    Trace.endSection();
+  }
+}
@@ -0,0 +1,54 @@
+package vg.zeta.app.inventory.rfid;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/** Bounds of the power and Gen2 settings AutoTuner may pick from, the autoTune option of startScan. */
+public class AutoTuneConfig {
+
+  public int minPower = 15;
+  public int maxPower = 30;
+  public int powerStep = 3;
+  /** Bounds of the starting Q, the reader adapts Q from there if its Q algorithm is dynamic. */
+  public int minQ = 0;
+  public int maxQ = 15;
+  /** Sessions it may switch between, empty to leave the session alone. */
+  public List<Integer> sessions = new ArrayList<>();
+  /** Milliseconds each setting is measured for before deciding whether to keep it. */
+  public int interval = 2000;
+  /** How much better (0.05 = 5%) a setting has to do to be kept, lower power only has to do as well. */
+  public double minImprovement = 0.05;
+
+  public AutoTuneConfig() {
+    sessions.add(0);
+    sessions.add(1);
+  }
+
+  public static AutoTuneConfig fromMap(Map<String, Object> options) {
+    AutoTuneConfig config = new AutoTuneConfig();
+    config.minPower = ScanConfig.getInt(options, "minPower", config.minPower);
+    config.maxPower = Math.max(config.minPower, ScanConfig.getInt(options, "maxPower", config.maxPower));
+    config.powerStep = Math.max(1, ScanConfig.getInt(options, "powerStep", config.powerStep));
+    config.minQ = clampQ(ScanConfig.getInt(options, "minQ", config.minQ));
+    config.maxQ = Math.max(config.minQ, clampQ(ScanConfig.getInt(options, "maxQ", config.maxQ)));
+    Object sessions = options.get("sessions");
+    if (sessions instanceof List) {
+      config.sessions.clear();
+      for (Object session : (List<?>) sessions) {
+        if (!(session instanceof Number)) continue;
+        int value = ((Number) session).intValue();
+        if (value >= 0 && value <= 3 && !config.sessions.contains(value)) config.sessions.add(value);
+      }
+      Collections.sort(config.sessions);
+    }
+    config.interval = Math.max(100, ScanConfig.getInt(options, "interval", config.interval));
+    config.minImprovement = Math.max(0, ScanConfig.getDouble(options, "minImprovement", config.minImprovement));
+    return config;
+  }
+
+  private static int clampQ(int q) {
+    return Math.max(0, Math.min(15, q));
+  }
+}
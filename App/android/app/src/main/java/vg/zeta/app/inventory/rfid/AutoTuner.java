@@ -0,0 +1,200 @@
+package vg.zeta.app.inventory.rfid;
+
+/**
+ * Looks for the power, starting Q and session that read the most tags per
+ * second while a scan runs, within the bounds of an {@link AutoTuneConfig}.
+ *
+ * It perturbs and observes: each window of config.interval measures the
+ * current settings, the next one a single setting a step away (power, then
+ * Q, then session). A step that reads more is kept and the search goes on
+ * in that direction, one that does not is reverted and the direction of
+ * that setting flips. Lower power is kept as long as it reads as much, so
+ * sparse areas do not get full power for nothing. The first Q tried is the
+ * one whose frame fits the tags seen in a window (2^Q slots for as many
+ * tags), and while nothing is read at all a higher Q is kept, a stack too
+ * dense for the frame collides on every slot.
+ *
+ * A window scores new EPCs per second, plus a tenth of the distinct EPCs
+ * per second, so settings still compare once nothing new is left in range.
+ *
+ * Not thread-safe, driven by the scan thread. Deciding is all it does, the
+ * engine applies the settings to the reader.
+ */
+public class AutoTuner {
+
+  static final double DISTINCT_WEIGHT = 0.1;
+
+  private static final int POWER = 0;
+  private static final int Q = 1;
+  private static final int SESSION = 2;
+  private static final int SETTING_COUNT = 3;
+
+  /** Power in dBm, Q and session -1 if the reader cannot change them. */
+  public static class Settings {
+    public final int power;
+    public final int q;
+    public final int session;
+
+    Settings(int power, int q, int session) {
+      this.power = power;
+      this.q = q;
+      this.session = session;
+    }
+
+    /** The Gen2 settings of the reader with these applied. */
+    public Gen2Settings applyTo(Gen2Settings gen2) {
+      Gen2Settings settings = gen2.copy();
+      if (q >= 0) {
+        settings.startQ = q;
+        settings.minQ = Math.min(settings.minQ, q);
+        settings.maxQ = Math.max(settings.maxQ, q);
+      }
+      if (session >= 0) settings.session = session;
+      return settings;
+    }
+  }
+
+  private final AutoTuneConfig config;
+  private Settings current;
+  // The settings being tried, null while measuring the current ones
+  private Settings candidate;
+  private int candidateSetting;
+  private double baseline;
+  private final int[] directions = {-1, 1, 1};
+  private int nextSetting;
+  private boolean qSeeded;
+
+  private final EpcSet windowEpcs = new EpcSet();
+  private int lastDistinct;
+  private double lastScore;
+  private long changes;
+
+  /** gen2 is what the reader has now, null if its Q and session cannot be changed. */
+  public AutoTuner(AutoTuneConfig config, int power, Gen2Settings gen2) {
+    this.config = config;
+    int q = -1;
+    int session = -1;
+    if (gen2 != null) {
+      q = clamp(gen2.startQ, config.minQ, config.maxQ);
+      session = gen2.session;
+      if (!config.sessions.isEmpty() && !config.sessions.contains(session)) session = config.sessions.get(0);
+    }
+    current = new Settings(clamp(power, config.minPower, config.maxPower), q, session);
+  }
+
+  /** The settings in use, including while one is being tried. */
+  public Settings getSettings() {
+    return candidate != null ? candidate : current;
+  }
+
+  public long getChangeCount() {
+    return changes;
+  }
+
+  /** Score of the last window, see the class comment. */
+  public double getLastScore() {
+    return lastScore;
+  }
+
+  public void onRead(String epc) {
+    windowEpcs.add(epc);
+  }
+
+  /**
+   * Ends a window of durationMillis in which newEpcs EPCs were read for the
+   * first time. Returns the settings to switch to, null to keep the ones in
+   * use.
+   */
+  public Settings onWindow(long newEpcs, long durationMillis) {
+    if (durationMillis <= 0) return null;
+    lastDistinct = windowEpcs.size();
+    windowEpcs.clear();
+    double score = (newEpcs + DISTINCT_WEIGHT * lastDistinct) * 1000.0 / durationMillis;
+    lastScore = score;
+
+    if (candidate != null) {
+      boolean better = score > baseline * (1 + config.minImprovement) || (baseline == 0 && score > 0);
+      boolean cheaper = baseline > 0 && candidate.power < current.power
+              && score >= baseline * (1 - config.minImprovement);
+      // Nothing read either way: in front of tags that is collisions, which a larger frame breaks up
+      boolean largerFrame = baseline == 0 && score == 0 && candidateSetting == Q && candidate.q > current.q;
+      if (!better && !cheaper && !largerFrame) {
+        // Back to what worked, measured afresh since tags come and go
+        directions[candidateSetting] = -directions[candidateSetting];
+        candidate = null;
+        return current;
+      }
+      current = candidate;
+      candidate = null;
+      changes++;
+    }
+    baseline = score;
+    return propose();
+  }
+
+  /** The settings onWindow returned could not be applied, the reader is back on the current ones. */
+  public void onApplyFailed() {
+    if (candidate == null) return;
+    directions[candidateSetting] = -directions[candidateSetting];
+    candidate = null;
+  }
+
+  private Settings propose() {
+    for (int i = 0; i < SETTING_COUNT; i++) {
+      int setting = (nextSetting + i) % SETTING_COUNT;
+      Settings next = step(setting);
+      if (next != null) {
+        nextSetting = (setting + 1) % SETTING_COUNT;
+        candidate = next;
+        candidateSetting = setting;
+        return next;
+      }
+    }
+    return null;
+  }
+
+  private Settings step(int setting) {
+    switch (setting) {
+      case POWER: {
+        int power = stepWithin(current.power, POWER, config.powerStep, config.minPower, config.maxPower);
+        return power != current.power ? new Settings(power, current.q, current.session) : null;
+      }
+
+      case Q: {
+        if (current.q < 0) return null;
+        int q = current.q;
+        if (!qSeeded && lastDistinct > 0) {
+          qSeeded = true;
+          q = clamp(32 - Integer.numberOfLeadingZeros(lastDistinct - 1), config.minQ, config.maxQ);
+        }
+        if (q == current.q) q = stepWithin(current.q, Q, 1, config.minQ, config.maxQ);
+        return q != current.q ? new Settings(current.power, q, current.session) : null;
+      }
+
+      case SESSION: {
+        if (current.session < 0 || config.sessions.size() < 2) return null;
+        int index = config.sessions.indexOf(current.session);
+        index = stepWithin(index, SESSION, 1, 0, config.sessions.size() - 1);
+        int session = config.sessions.get(index);
+        return session != current.session ? new Settings(current.power, current.q, session) : null;
+      }
+
+      default:
+        return null;
+    }
+  }
+
+  /** A step in the direction of the setting, or the other way at a bound. */
+  private int stepWithin(int value, int setting, int step, int min, int max) {
+    int next = clamp(value + directions[setting] * step, min, max);
+    if (next == value) {
+      directions[setting] = -directions[setting];
+      next = clamp(value + directions[setting] * step, min, max);
+    }
+    return next;
+  }
+
+  private static int clamp(int value, int min, int max) {
+    return Math.max(min, Math.min(max, value));
+  }
+}
@@ -0,0 +1,38 @@
+package vg.zeta.app.inventory.rfid;
+
+import com.rscja.deviceapi.RFIDWithUHFBLE;
+import com.rscja.deviceapi.entity.UHFTAGInfo;
+
+import java.util.List;
+
+/**
+ * Adapts {@link RFIDWithUHFBLE}. Batch reads use readTagFromBufferList(),
+ * which hands over the whole buffer in one call.
+ */
+public class BLEReaderBackend extends DeviceReaderBackend implements UHFReaderBackend.Beeper {
+
+  public BLEReaderBackend(RFIDWithUHFBLE device) {
+    super(device);
+  }
+
+  @Override
+  public boolean setBeep(boolean enabled) {
+    return ((RFIDWithUHFBLE) device).setBeep(enabled);
+  }
+
+  @Override
+  public int readTagsFromBuffer(List<TagRead> out, int maxCount) {
+    RFIDWithUHFBLE ble = (RFIDWithUHFBLE) device;
+    int count = 0;
+    while (count < maxCount) {
+      List<UHFTAGInfo> tags = ble.readTagFromBufferList();
+      if (tags == null || tags.isEmpty()) break;
+      for (UHFTAGInfo info : tags) {
+        if (info == null) continue;
+        out.add(toTagRead(info));
+        count++;
+      }
+    }
+    return count;
+  }
+}
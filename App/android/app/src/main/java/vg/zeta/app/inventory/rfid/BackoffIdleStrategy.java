@@ -0,0 +1,84 @@
+package vg.zeta.app.inventory.rfid;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Decides how the scan loop waits when the reader has nothing for it.
+ *
+ * Busy-spins for a few passes (tags usually come in bursts), then yields, then
+ * parks with an exponentially growing timeout that is capped at
+ * {@code maxParkNanos}. Any pass that did work resets it back to spinning.
+ * Not thread-safe, meant to be owned by the scan thread.
+ */
+public class BackoffIdleStrategy {
+
+  private static final int STATE_SPINNING = 0;
+  private static final int STATE_YIELDING = 1;
+  private static final int STATE_PARKING = 2;
+
+  private final int maxSpins;
+  private final int maxYields;
+  private final long minParkNanos;
+  private final long maxParkNanos;
+
+  private int state = STATE_SPINNING;
+  private int spins;
+  private int yields;
+  private long parkNanos;
+
+  public BackoffIdleStrategy(int maxSpins, int maxYields, long minParkNanos, long maxParkNanos) {
+    this.maxSpins = maxSpins;
+    this.maxYields = maxYields;
+    this.minParkNanos = Math.max(1, Math.min(minParkNanos, maxParkNanos));
+    this.maxParkNanos = Math.max(1, maxParkNanos);
+    this.parkNanos = this.minParkNanos;
+  }
+
+  /** Creates the strategy used by the scan loop, parking for at most {@code maxBackoffMillis}. */
+  public static BackoffIdleStrategy forScanLoop(int maxBackoffMillis) {
+    return new BackoffIdleStrategy(
+            20,
+            10,
+            50_000, // 50 microseconds
+            Math.max(1, maxBackoffMillis) * 1_000_000L
+    );
+  }
+
+  /**
+   * To be called once per pass of the loop with the amount of work (e.g. tags
+   * read) the pass did.
+   */
+  public void idle(int workCount) {
+    if (workCount > 0) {
+      reset();
+      return;
+    }
+
+    switch (state) {
+      case STATE_SPINNING:
+        if (++spins > maxSpins) state = STATE_YIELDING;
+        break;
+
+      case STATE_YIELDING:
+        if (++yields > maxYields) {
+          state = STATE_PARKING;
+        } else {
+          Thread.yield();
+        }
+        break;
+
+      case STATE_PARKING:
+      default:
+        LockSupport.parkNanos(parkNanos);
+        parkNanos = Math.min(parkNanos << 1, maxParkNanos);
+        break;
+    }
+  }
+
+  public void reset() {
+    state = STATE_SPINNING;
+    spins = 0;
+    yields = 0;
+    parkNanos = minParkNanos;
+  }
+}
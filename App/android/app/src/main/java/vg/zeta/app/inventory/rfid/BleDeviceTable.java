@@ -0,0 +1,160 @@
+package vg.zeta.app.inventory.rfid;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The BLE devices seen during a device scan, keyed by address, with a
+ * smoothed RSSI. Advertisements come in many times a second per device,
+ * {@link #collect} only hands out what changed since it was last called:
+ * devices that are new, were renamed or moved by at least rssiDelta, and
+ * devices not seen for expireAfter.
+ *
+ * Thread-safe, advertisements and collecting usually happen on different
+ * threads.
+ */
+public class BleDeviceTable {
+
+  public static class Options {
+    /** Time between two collects, in milliseconds. */
+    public int eventRate = 500;
+    /** How long the scan runs unless stopped before, 0 for no limit. */
+    public long scanPeriod;
+    /** Devices not seen for this long are expired, 0 to keep them. */
+    public long expireAfter = 10000;
+    /** Smallest change of the smoothed RSSI that is reported. */
+    public float rssiDelta = 3;
+    /** Weight of a new advertisement in the smoothed RSSI. */
+    public float rssiAlpha = 0.3f;
+    /** Only devices with a name starting with one of these (ignoring case) if not empty. */
+    public final List<String> namePrefixes = new ArrayList<>();
+
+    public static Options fromMap(Map<String, Object> map) {
+      Options options = new Options();
+      options.eventRate = Math.max(0, ScanConfig.getInt(map, "eventRate", options.eventRate));
+      options.scanPeriod = Math.max(0, ScanConfig.getInt(map, "scanPeriod", (int) options.scanPeriod));
+      options.expireAfter = Math.max(0, ScanConfig.getInt(map, "expireAfter", (int) options.expireAfter));
+      options.rssiDelta = (float) Math.max(0, ScanConfig.getDouble(map, "rssiDelta", options.rssiDelta));
+      options.rssiAlpha = (float) ScanConfig.getDouble(map, "rssiAlpha", options.rssiAlpha);
+      Object prefixes = map.get("namePrefixes");
+      if (prefixes instanceof List) {
+        for (Object prefix : (List<?>) prefixes) {
+          if (prefix instanceof String && !((String) prefix).isEmpty()) {
+            options.namePrefixes.add(((String) prefix).toUpperCase(Locale.ROOT));
+          }
+        }
+      }
+      return options;
+    }
+  }
+
+  /** A device as it was when collected. */
+  public static class Update {
+    public final String address;
+    public final String name;
+    /** Smoothed. */
+    public final float rssi;
+    public final int rawRssi;
+    public final long lastSeenAt;
+    /** Not seen for expireAfter, and forgotten. */
+    public final boolean expired;
+
+    Update(Device device, boolean expired) {
+      this.address = device.address;
+      this.name = device.name;
+      this.rssi = device.rssi.getValue();
+      this.rawRssi = device.rawRssi;
+      this.lastSeenAt = device.lastSeenAt;
+      this.expired = expired;
+    }
+  }
+
+  private static class Device {
+    final String address;
+    String name;
+    final RssiFilter rssi;
+    int rawRssi;
+    long lastSeenAt;
+    // Smoothed RSSI when last collected, NaN if never
+    float reportedRssi = Float.NaN;
+    String reportedName;
+
+    Device(String address, float rssiAlpha) {
+      this.address = address;
+      this.rssi = new RssiFilter.Ema(rssiAlpha);
+    }
+  }
+
+  private final Options options;
+  // Guarded by this
+  private final Map<String, Device> devices = new HashMap<>();
+
+  public BleDeviceTable(Options options) {
+    this.options = options;
+  }
+
+  public Options getOptions() {
+    return options;
+  }
+
+  /** Feeds one advertisement, false if the name filter leaves it out. */
+  public synchronized boolean add(String address, String name, int rssi, long now) {
+    if (address == null || !matches(name)) return false;
+    Device device = devices.get(address);
+    if (device == null) {
+      device = new Device(address, options.rssiAlpha);
+      devices.put(address, device);
+    }
+    // Not every advertisement carries the name
+    if (name != null && !name.isEmpty()) device.name = name;
+    device.rawRssi = rssi;
+    device.rssi.update(rssi, now);
+    device.lastSeenAt = now;
+    return true;
+  }
+
+  private boolean matches(String name) {
+    if (options.namePrefixes.isEmpty()) return true;
+    if (name == null) return false;
+    String upperName = name.toUpperCase(Locale.ROOT);
+    for (String prefix : options.namePrefixes) {
+      if (upperName.startsWith(prefix)) return true;
+    }
+    return false;
+  }
+
+  /**
+   * Appends the devices added or changed since the last call to out, and
+   * the expired ones (which are then forgotten). Returns how many.
+   */
+  public synchronized int collect(long now, List<Update> out) {
+    int count = 0;
+    Iterator<Device> iterator = devices.values().iterator();
+    while (iterator.hasNext()) {
+      Device device = iterator.next();
+      if (options.expireAfter > 0 && now - device.lastSeenAt >= options.expireAfter) {
+        iterator.remove();
+        // Never reported, nobody needs to hear it is gone
+        if (Float.isNaN(device.reportedRssi)) continue;
+        out.add(new Update(device, true));
+        count++;
+        continue;
+      }
+
+      float rssi = device.rssi.getValue();
+      boolean isNew = Float.isNaN(device.reportedRssi);
+      boolean renamed = device.name != null && !device.name.equals(device.reportedName);
+      if (isNew || renamed || Math.abs(rssi - device.reportedRssi) >= options.rssiDelta) {
+        device.reportedRssi = rssi;
+        device.reportedName = device.name;
+        out.add(new Update(device, false));
+        count++;
+      }
+    }
+    return count;
+  }
+}
@@ -0,0 +1,251 @@
+package vg.zeta.app.inventory.rfid;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes a list of tags: sets the power once, then runs write, verify,
+ * password and lock for each {@link EncodeJob}, retrying failed steps with
+ * more power, and reports every step to a {@link Listener}. Saves the
+ * bridge and reader round-trips of doing the same from JS one operation at
+ * a time.
+ *
+ * Each job is one command on the module's {@link ReaderCommandExecutor},
+ * queued once the previous job is done. Other commands (telemetry, stop)
+ * can so run between two jobs but never in the middle of one, and the
+ * module rejects commands that would use the reader themselves while
+ * {@link #isRunning}.
+ *
+ * Like {@link ScanEngine}, it has no Android or React Native dependencies.
+ */
+public class BulkEncoder {
+
+  public static final String STEP_WRITE = "write";
+  public static final String STEP_VERIFY = "verify";
+  public static final String STEP_PASSWORD = "password";
+  public static final String STEP_LOCK = "lock";
+
+  public static final String STATUS_STARTED = "started";
+  public static final String STATUS_RETRYING = "retrying";
+  public static final String STATUS_SUCCEEDED = "succeeded";
+  public static final String STATUS_FAILED = "failed";
+  public static final String STATUS_CANCELLED = "cancelled";
+
+  public static class Options {
+    public int power = 20;
+    /**
+     * Power is raised by powerStep after each failed attempt, up to this.
+     * Same as power by default, as more power may reach other tags.
+     */
+    public int maxPower = 20;
+    public int powerStep = 2;
+    /** Attempts per step, at least 1. */
+    public int maxAttempts = 3;
+    /** Read the EPC back after writing it. */
+    public boolean verify = true;
+
+    public static Options fromMap(Map<String, Object> map) {
+      Options options = new Options();
+      options.power = ScanConfig.getInt(map, "power", options.power);
+      options.maxPower = Math.max(options.power, ScanConfig.getInt(map, "maxPower", options.power));
+      options.powerStep = Math.max(0, ScanConfig.getInt(map, "powerStep", options.powerStep));
+      options.maxAttempts = Math.max(1, ScanConfig.getInt(map, "maxAttempts", options.maxAttempts));
+      options.verify = ScanConfig.getBoolean(map, "verify", options.verify);
+      return options;
+    }
+  }
+
+  /** What happened to one step of one job. */
+  public static class Progress {
+    public int index;
+    /** Null for the outcome of the job as a whole. */
+    public String step;
+    public String status;
+    public int attempt;
+    public int power;
+    public String error;
+  }
+
+  public static class Summary {
+    public int succeeded;
+    public int failed;
+    public int cancelled;
+  }
+
+  public interface Listener {
+    /** Called on the executor thread. */
+    void onProgress(Progress progress);
+
+    /** Called on the executor thread once all jobs are done or cancelled. */
+    void onFinished(Summary summary);
+
+    /** Called on the executor thread if a job command failed, instead of onFinished. */
+    void onError(ReaderException e);
+  }
+
+  private volatile boolean running;
+  private volatile boolean cancelled;
+
+  /** True from start until the listener is told the run is over. */
+  public boolean isRunning() {
+    return running;
+  }
+
+  /** Queues the first job, fails if a previous run is still going. */
+  public synchronized void start(ReaderCommandExecutor commands, UHFReaderBackend reader, List<EncodeJob> jobs,
+                                 Options options, Listener listener) throws ReaderException {
+    if (running) throw new ReaderException("Already encoding");
+    cancelled = false;
+    running = true;
+    submitJob(commands, new Run(reader, jobs, options, listener), 0);
+  }
+
+  /** Jobs not started yet are reported as cancelled, the current one finishes. */
+  public void cancel() {
+    cancelled = true;
+  }
+
+  private void submitJob(final ReaderCommandExecutor commands, final Run run, final int index) {
+    // No timeout, a job is bounded by its attempts and nothing is queued behind it yet
+    commands.submit("encodeTag", ReaderCommandExecutor.PRIORITY_NORMAL, 0, () -> {
+      if (index >= run.jobs.size()) return false;
+      if (cancelled) {
+        // Without touching the reader, free() may have run in between
+        for (int i = index; i < run.jobs.size(); i++) {
+          run.report(i, null, STATUS_CANCELLED, 0, null);
+          run.summary.cancelled++;
+        }
+        return false;
+      }
+      if (index == 0 && !run.setPower(run.options.power)) {
+        throw new ReaderException("setPower returned false");
+      }
+      run.encode(index);
+      return index + 1 < run.jobs.size();
+    }, new ReaderCommandExecutor.Callback<Boolean>() {
+      @Override
+      public void onResult(Boolean more) {
+        if (more) {
+          submitJob(commands, run, index + 1);
+        } else {
+          running = false;
+          run.listener.onFinished(run.summary);
+        }
+      }
+
+      @Override
+      public void onError(Exception e) {
+        running = false;
+        run.listener.onError(e instanceof ReaderException ? (ReaderException) e : new ReaderException(e.getMessage()));
+      }
+    });
+  }
+
+  /** State of one run, only touched by the job commands. */
+  private static class Run {
+    private final UHFReaderBackend reader;
+    private final List<EncodeJob> jobs;
+    private final Options options;
+    private final Listener listener;
+    private final Summary summary = new Summary();
+    private int power = -1;
+
+    Run(UHFReaderBackend reader, List<EncodeJob> jobs, Options options, Listener listener) {
+      this.reader = reader;
+      this.jobs = jobs;
+      this.options = options;
+      this.listener = listener;
+    }
+
+    boolean setPower(int value) {
+      if (value == power) return true;
+      if (!reader.setPower(value)) return false;
+      power = value;
+      return true;
+    }
+
+    void encode(int index) {
+      boolean ok = encode(index, jobs.get(index));
+      if (ok) {
+        summary.succeeded++;
+      } else {
+        summary.failed++;
+      }
+      report(index, null, ok ? STATUS_SUCCEEDED : STATUS_FAILED, 0, null);
+    }
+
+    private boolean encode(int index, final EncodeJob job) {
+      // Each job starts from the configured power, a hard tag does not make the next one louder
+      setPower(options.power);
+
+      final String data = job.getEpcBankData();
+      final int words = job.getEpcWords() + 1;
+      final int newFilterLen = job.epc.length() * 4;
+
+      boolean ok = step(index, STEP_WRITE, () -> {
+        boolean written = job.filterData != null
+                ? reader.writeData(job.accessPassword, job.filterBank, job.filterPtr, job.filterLen, job.filterData,
+                        UHFReaderBackend.BANK_EPC, 1, words, data)
+                : reader.writeData(job.accessPassword, UHFReaderBackend.BANK_EPC, 1, words, data);
+        // The write may have gone through without the reader hearing back
+        return written || data.equalsIgnoreCase(readEpcBank(job, words, newFilterLen));
+      });
+      if (ok && options.verify) {
+        ok = step(index, STEP_VERIFY, () -> data.equalsIgnoreCase(readEpcBank(job, words, newFilterLen)));
+      }
+      if (ok && job.newAccessPassword != null) {
+        ok = step(index, STEP_PASSWORD, () -> reader.writeData(job.accessPassword,
+                UHFReaderBackend.BANK_EPC, 32, newFilterLen, job.epc,
+                UHFReaderBackend.BANK_RESERVED, 0, 4, job.newAccessPassword + job.newAccessPassword));
+      }
+      if (ok && job.lockCode != null) {
+        final String password = job.newAccessPassword != null ? job.newAccessPassword : job.accessPassword;
+        ok = step(index, STEP_LOCK, () -> reader.lockMem(password,
+                UHFReaderBackend.BANK_EPC, 32, newFilterLen, job.epc, job.lockCode));
+      }
+      return ok;
+    }
+
+    private String readEpcBank(EncodeJob job, int words, int newFilterLen) {
+      return reader.readData(job.accessPassword,
+              UHFReaderBackend.BANK_EPC, 32, newFilterLen, job.epc,
+              UHFReaderBackend.BANK_EPC, 1, words);
+    }
+
+    private interface Operation {
+      boolean run();
+    }
+
+    private boolean step(int index, String step, Operation operation) {
+      report(index, step, STATUS_STARTED, 1, null);
+      for (int attempt = 1; ; attempt++) {
+        String error = null;
+        try {
+          if (operation.run()) {
+            report(index, step, STATUS_SUCCEEDED, attempt, null);
+            return true;
+          }
+        } catch (RuntimeException e) {
+          error = e.getMessage();
+        }
+        if (attempt >= options.maxAttempts) {
+          report(index, step, STATUS_FAILED, attempt, error != null ? error : step + " failed");
+          return false;
+        }
+        setPower(Math.min(options.maxPower, power + options.powerStep));
+        report(index, step, STATUS_RETRYING, attempt + 1, error);
+      }
+    }
+
+    void report(int index, String step, String status, int attempt, String error) {
+      Progress progress = new Progress();
+      progress.index = index;
+      progress.step = step;
+      progress.status = status;
+      progress.attempt = attempt;
+      progress.power = power;
+      progress.error = error;
+      listener.onProgress(progress);
+    }
+  }
+}
@@ -0,0 +1,254 @@
+package vg.zeta.app.inventory.rfid;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Remembers what power, filters, frequency mode, beep, Gen2 and inventory
+ * settings were last set on the reader, and only sends the commands that change something. Over BLE
+ * each of them is a round-trip of tens of milliseconds, and most operations
+ * set the same power and clear the same filters as the one before.
+ *
+ * The reader can forget its settings without us knowing (free, reconnect),
+ * so the module calls {@link #invalidate} whenever that may have happened.
+ * A failed command also drops what is cached for it. Everything else is
+ * passed through as is.
+ */
+public class CachingReaderBackend
+        implements UHFReaderBackend, UHFReaderBackend.Beeper, UHFReaderBackend.Gen2, UHFReaderBackend.InventoryModes {
+
+  private static final int UNKNOWN = Integer.MIN_VALUE;
+  private static final int BANK_COUNT = 4;
+
+  private final UHFReaderBackend delegate;
+
+  // Guarded by this
+  private int power = UNKNOWN;
+  private int frequencyMode = UNKNOWN;
+  private final String[] filters = new String[BANK_COUNT];
+  private int beep = UNKNOWN;
+  private Gen2Settings gen2;
+  private int inventoryMode = UNKNOWN;
+  private int fastId = UNKNOWN;
+  private int tagFocus = UNKNOWN;
+  private long skippedCount;
+
+  public CachingReaderBackend(UHFReaderBackend delegate) {
+    this.delegate = delegate;
+  }
+
+  public UHFReaderBackend getDelegate() {
+    return delegate;
+  }
+
+  /** Forgets everything, the next commands go out as they are. */
+  public synchronized void invalidate() {
+    power = UNKNOWN;
+    frequencyMode = UNKNOWN;
+    beep = UNKNOWN;
+    gen2 = null;
+    inventoryMode = UNKNOWN;
+    fastId = UNKNOWN;
+    tagFocus = UNKNOWN;
+    for (int i = 0; i < BANK_COUNT; i++) filters[i] = null;
+  }
+
+  /** Forgets the filters only, for operations that may set their own. */
+  public synchronized void invalidateFilters() {
+    for (int i = 0; i < BANK_COUNT; i++) filters[i] = null;
+  }
+
+  /** Number of commands that were not sent since nothing would have changed. */
+  public synchronized long getSkippedCount() {
+    return skippedCount;
+  }
+
+  @Override
+  public boolean free() {
+    invalidate();
+    return delegate.free();
+  }
+
+  @Override
+  public boolean isWorking() {
+    return delegate.isWorking();
+  }
+
+  @Override
+  public synchronized int getPower() {
+    if (power != UNKNOWN) return power;
+    int value = delegate.getPower();
+    // The vendor API returns -1 on failure
+    if (value >= 0) power = value;
+    return value;
+  }
+
+  @Override
+  public synchronized boolean setPower(int value) {
+    if (value == power) {
+      skippedCount++;
+      return true;
+    }
+    boolean ok = delegate.setPower(value);
+    power = ok ? value : UNKNOWN;
+    return ok;
+  }
+
+  @Override
+  public synchronized int getFrequencyMode() {
+    if (frequencyMode != UNKNOWN) return frequencyMode;
+    int value = delegate.getFrequencyMode();
+    if (value >= 0) frequencyMode = value;
+    return value;
+  }
+
+  @Override
+  public synchronized boolean setFrequencyMode(int mode) {
+    if (mode == frequencyMode) {
+      skippedCount++;
+      return true;
+    }
+    boolean ok = delegate.setFrequencyMode(mode);
+    frequencyMode = ok ? mode : UNKNOWN;
+    return ok;
+  }
+
+  @Override
+  public synchronized boolean setFilter(int bank, int ptr, int len, String data) {
+    if (bank < 0 || bank >= BANK_COUNT) return delegate.setFilter(bank, ptr, len, data);
+    // All empty filters clear the bank, whatever their ptr
+    String key = len == 0 ? "" : ptr + ":" + len + ":" + data;
+    if (key.equals(filters[bank])) {
+      skippedCount++;
+      return true;
+    }
+    boolean ok = delegate.setFilter(bank, ptr, len, data);
+    filters[bank] = ok ? key : null;
+    return ok;
+  }
+
+  @Override
+  public synchronized boolean setBeep(boolean enabled) {
+    if (!(delegate instanceof Beeper)) return false;
+    int value = enabled ? 1 : 0;
+    if (value == beep) {
+      skippedCount++;
+      return true;
+    }
+    boolean ok = ((Beeper) delegate).setBeep(enabled);
+    beep = ok ? value : UNKNOWN;
+    return ok;
+  }
+
+  /** A copy, callers may change it. */
+  @Override
+  public synchronized Gen2Settings getGen2() {
+    if (gen2 == null && delegate instanceof Gen2) gen2 = ((Gen2) delegate).getGen2();
+    return gen2 != null ? gen2.copy() : null;
+  }
+
+  @Override
+  public synchronized boolean setGen2(Gen2Settings settings) {
+    if (!(delegate instanceof Gen2)) return false;
+    if (gen2 != null && Arrays.equals(gen2.toValues(), settings.toValues())) {
+      skippedCount++;
+      return true;
+    }
+    boolean ok = ((Gen2) delegate).setGen2(settings);
+    gen2 = ok ? settings.copy() : null;
+    return ok;
+  }
+
+  @Override
+  public boolean setsGen2WhileInventorying() {
+    return delegate instanceof Gen2 && ((Gen2) delegate).setsGen2WhileInventorying();
+  }
+
+  @Override
+  public synchronized boolean setInventoryMode(int mode) {
+    if (!(delegate instanceof InventoryModes)) return false;
+    if (mode == inventoryMode) {
+      skippedCount++;
+      return true;
+    }
+    boolean ok = ((InventoryModes) delegate).setInventoryMode(mode);
+    inventoryMode = ok ? mode : UNKNOWN;
+    return ok;
+  }
+
+  @Override
+  public synchronized boolean setFastId(boolean enabled) {
+    if (!(delegate instanceof InventoryModes)) return false;
+    int value = enabled ? 1 : 0;
+    if (value == fastId) {
+      skippedCount++;
+      return true;
+    }
+    boolean ok = ((InventoryModes) delegate).setFastId(enabled);
+    fastId = ok ? value : UNKNOWN;
+    return ok;
+  }
+
+  @Override
+  public synchronized boolean setTagFocus(boolean enabled) {
+    if (!(delegate instanceof InventoryModes)) return false;
+    int value = enabled ? 1 : 0;
+    if (value == tagFocus) {
+      skippedCount++;
+      return true;
+    }
+    boolean ok = ((InventoryModes) delegate).setTagFocus(enabled);
+    tagFocus = ok ? value : UNKNOWN;
+    return ok;
+  }
+
+  @Override
+  public boolean startInventoryTag() {
+    return delegate.startInventoryTag();
+  }
+
+  @Override
+  public boolean stopInventory() {
+    return delegate.stopInventory();
+  }
+
+  @Override
+  public TagRead readTagFromBuffer() {
+    return delegate.readTagFromBuffer();
+  }
+
+  @Override
+  public int readTagsFromBuffer(List<TagRead> out, int maxCount) {
+    return delegate.readTagsFromBuffer(out, maxCount);
+  }
+
+  @Override
+  public String readData(String accessPwd, int bank, int ptr, int cnt) {
+    return delegate.readData(accessPwd, bank, ptr, cnt);
+  }
+
+  @Override
+  public String readData(String accessPwd, int filterBank, int filterPtr, int filterCnt, String filterData, int bank, int ptr, int cnt) {
+    return delegate.readData(accessPwd, filterBank, filterPtr, filterCnt, filterData, bank, ptr, cnt);
+  }
+
+  @Override
+  public boolean writeData(String accessPwd, int bank, int ptr, int cnt, String data) {
+    return delegate.writeData(accessPwd, bank, ptr, cnt, data);
+  }
+
+  @Override
+  public boolean writeData(String accessPwd, int filterBank, int filterPtr, int filterCnt, String filterData, int bank, int ptr, int cnt, String data) {
+    return delegate.writeData(accessPwd, filterBank, filterPtr, filterCnt, filterData, bank, ptr, cnt, data);
+  }
+
+  @Override
+  public boolean lockMem(String accessPwd, String lockCode) {
+    return delegate.lockMem(accessPwd, lockCode);
+  }
+
+  @Override
+  public boolean lockMem(String accessPwd, int filterBank, int filterPtr, int filterCnt, String filterData, String lockCode) {
+    return delegate.lockMem(accessPwd, filterBank, filterPtr, filterCnt, filterData, lockCode);
+  }
+}
@@ -0,0 +1,131 @@
+package vg.zeta.app.inventory.rfid;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The expected EPCs of an inventory check, matched on the scan thread so that
+ * JS only hears about state changes: an expected EPC found for the first
+ * time, an unexpected EPC seen for the first time, and the progress counters
+ * (see {@link #takeDelta}).
+ *
+ * Filled with {@link #expect} before being handed to
+ * {@link ScanEngine#setCheckSession}, read-only apart from the matching state
+ * after that. A session outlives scans, so stopping and starting the scan
+ * within a check does not report the same EPCs again. Matching is
+ * synchronized because a scan thread that is exiting may still be matching
+ * when the next one starts.
+ */
+public class CheckSession {
+
+  public static final int MATCH_SEEN = 0;
+  public static final int MATCH_FOUND = 1;
+  public static final int MATCH_UNEXPECTED = 2;
+
+  public static class Change {
+    public final String epc;
+    /** Null for unexpected EPCs. */
+    public final String itemId;
+    public final String rssi;
+
+    Change(String epc, String itemId, String rssi) {
+      this.epc = epc;
+      this.itemId = itemId;
+      this.rssi = rssi;
+    }
+  }
+
+  /** What changed since the previous delta, with the counters as of now. */
+  public static class Delta {
+    public final ArrayList<Change> found = new ArrayList<>();
+    public final ArrayList<Change> unexpected = new ArrayList<>();
+    public int expectedCount;
+    public int foundCount;
+    public int unexpectedCount;
+
+    public boolean isEmpty() {
+      return found.isEmpty() && unexpected.isEmpty();
+    }
+  }
+
+  private final EpcSet expectedEpcs;
+  // Keyed by upper-case EPC, only looked up once per found EPC
+  private final HashMap<String, String> itemIds;
+  private final EpcSet seenEpcs = new EpcSet();
+
+  private Delta pending = new Delta();
+  private int foundCount;
+  private int unexpectedCount;
+
+  public CheckSession(int expectedSize) {
+    expectedEpcs = new EpcSet(expectedSize);
+    itemIds = new HashMap<>(Math.max(16, (int) (expectedSize / 0.75f) + 1));
+  }
+
+  /** Builds a session from the parallel arrays passed to startCheckSession. */
+  public static CheckSession of(List<?> epcs, List<?> itemIds) {
+    CheckSession session = new CheckSession(epcs.size());
+    for (int i = 0; i < epcs.size(); i++) {
+      Object epc = epcs.get(i);
+      Object itemId = i < itemIds.size() ? itemIds.get(i) : null;
+      if (epc instanceof String) {
+        session.expect((String) epc, itemId instanceof String ? (String) itemId : null);
+      }
+    }
+    return session;
+  }
+
+  public void expect(String epc, String itemId) {
+    expectedEpcs.add(epc);
+    itemIds.put(epc.toUpperCase(Locale.ROOT), itemId);
+  }
+
+  /** Expected EPCs, for the sound rules of the scan thread. Do not modify. */
+  public EpcSet getExpectedEpcs() {
+    return expectedEpcs;
+  }
+
+  /**
+   * Records a read and returns {@link #MATCH_FOUND} or
+   * {@link #MATCH_UNEXPECTED} the first time the EPC is seen,
+   * {@link #MATCH_SEEN} after that. Does not allocate for EPCs already seen.
+   */
+  public synchronized int match(String epc, String rssi) {
+    if (!seenEpcs.add(epc)) return MATCH_SEEN;
+
+    if (expectedEpcs.contains(epc)) {
+      foundCount++;
+      pending.found.add(new Change(epc, itemIds.get(epc.toUpperCase(Locale.ROOT)), rssi));
+      return MATCH_FOUND;
+    }
+
+    unexpectedCount++;
+    pending.unexpected.add(new Change(epc, null, rssi));
+    return MATCH_UNEXPECTED;
+  }
+
+  /** Returns the changes since the last call, or null if there are none. */
+  public synchronized Delta takeDelta() {
+    if (pending.isEmpty()) return null;
+    Delta delta = pending;
+    pending = new Delta();
+    delta.expectedCount = expectedEpcs.size();
+    delta.foundCount = foundCount;
+    delta.unexpectedCount = unexpectedCount;
+    return delta;
+  }
+
+  public int getExpectedCount() {
+    return expectedEpcs.size();
+  }
+
+  public synchronized int getFoundCount() {
+    return foundCount;
+  }
+
+  public synchronized int getUnexpectedCount() {
+    return unexpectedCount;
+  }
+}
@@ -0,0 +1,173 @@
+package vg.zeta.app.inventory.rfid;
+
+import java.util.Random;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps a BLE reader connected: remembers the device last asked for and,
+ * when the link drops, reconnects right away and then with a jittered
+ * exponential backoff until it is back or {@link #stop} is called. An
+ * attempt that hears nothing back within connectTimeout counts as failed.
+ *
+ * The module feeds it the connection callbacks and does the actual
+ * connecting through a {@link Link}.
+ */
+public class ConnectionSupervisor {
+
+  public interface Link {
+    /** Starts connecting, the outcome comes back through onConnected or onDisconnected. */
+    void connect(String address);
+
+    void disconnect();
+  }
+
+  /** Delay before the first retry, in milliseconds. Later ones double up to maxBackoff. */
+  public long initialBackoff = 250;
+  public long maxBackoff = 8000;
+  public long connectTimeout = 10000;
+  /**
+   * Disconnects reported this soon after an attempt started are taken for
+   * the echo of the disconnect that comes before connecting, and ignored.
+   */
+  public long echoWindow = 300;
+
+  private final Link link;
+  private final Random random = new Random();
+  private final ScheduledThreadPoolExecutor timers = new ScheduledThreadPoolExecutor(1, runnable -> {
+    Thread thread = new Thread(runnable, "ConnectionSupervisor");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  // Guarded by this
+  private String address;
+  private String connectedAddress;
+  private boolean autoReconnect = true;
+  private boolean supervising;
+  private int attempt;
+  private long attemptStartedAt;
+  // A retry (rather than an attempt's timeout) is scheduled, due at retryAt
+  private boolean retryPending;
+  private long retryAt;
+  private ScheduledFuture<?> pending;
+
+  public ConnectionSupervisor(Link link) {
+    this.link = link;
+    timers.setRemoveOnCancelPolicy(true);
+  }
+
+  /** The device to keep connected, null if none. */
+  public synchronized String getAddress() {
+    return address;
+  }
+
+  /** Failed attempts since the link was last up. */
+  public synchronized int getAttempt() {
+    return attempt;
+  }
+
+  public synchronized boolean isConnected(String address) {
+    return address != null && address.equals(connectedAddress);
+  }
+
+  /** Whether a dropped link is brought back by itself, true by default. */
+  public synchronized void setAutoReconnect(boolean enabled) {
+    autoReconnect = enabled;
+    if (!enabled) cancelPending();
+  }
+
+  /**
+   * Connects to the device and keeps it connected. Does nothing if it
+   * already is and the link is up, drops the link to another device first.
+   */
+  public synchronized void connect(String address, boolean linkUp) {
+    supervising = true;
+    if (!linkUp) connectedAddress = null;
+    if (isConnected(address)) return;
+    this.address = address;
+    attempt = 0;
+    cancelPending();
+    if (connectedAddress != null) {
+      connectedAddress = null;
+      link.disconnect();
+    }
+    attemptNow();
+  }
+
+  /** Stops reconnecting, for when the link is dropped on purpose. */
+  public synchronized void stop() {
+    supervising = false;
+    cancelPending();
+  }
+
+  public synchronized void onConnected(String address) {
+    cancelPending();
+    connectedAddress = address;
+    attempt = 0;
+  }
+
+  /**
+   * Called when the link is down or an attempt failed. Returns the delay
+   * before the next attempt in milliseconds, -1 if there will be none.
+   */
+  public synchronized long onDisconnected() {
+    connectedAddress = null;
+    if (!supervising || !autoReconnect || address == null) return -1;
+    long now = System.currentTimeMillis();
+    if (retryPending) return Math.max(0, retryAt - now);
+    if (now - attemptStartedAt < echoWindow) return 0;
+
+    cancelPending();
+    long delay = nextBackoff();
+    attempt++;
+    retryPending = true;
+    retryAt = now + delay;
+    pending = timers.schedule(this::attemptScheduled, delay, TimeUnit.MILLISECONDS);
+    return delay;
+  }
+
+  /**
+   * Right after a drop the reader is usually still in range, so the first
+   * retry only waits up to initialBackoff. Then the delay doubles, the
+   * jitter keeps several phones from retrying in step.
+   */
+  private long nextBackoff() {
+    if (attempt == 0) return (long) (random.nextDouble() * initialBackoff);
+    long ceiling = Math.min(maxBackoff, initialBackoff << Math.min(attempt, 16));
+    return ceiling / 2 + (long) (random.nextDouble() * (ceiling / 2));
+  }
+
+  private synchronized void attemptScheduled() {
+    pending = null;
+    retryPending = false;
+    if (!supervising || address == null || connectedAddress != null) return;
+    attemptNow();
+  }
+
+  private void attemptNow() {
+    final String target = address;
+    attemptStartedAt = System.currentTimeMillis();
+    link.connect(target);
+    if (connectTimeout > 0) {
+      pending = timers.schedule(() -> {
+        synchronized (ConnectionSupervisor.this) {
+          pending = null;
+          if (!supervising || !target.equals(address) || connectedAddress != null) return;
+          // Nothing came back, give up on this attempt
+          onDisconnected();
+        }
+        link.disconnect();
+      }, connectTimeout, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  private void cancelPending() {
+    retryPending = false;
+    if (pending != null) {
+      pending.cancel(false);
+      pending = null;
+    }
+  }
+}
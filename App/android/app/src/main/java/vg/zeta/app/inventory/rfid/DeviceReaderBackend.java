@@ -0,0 +1,153 @@
+package vg.zeta.app.inventory.rfid;
+
+import com.rscja.deviceapi.entity.UHFTAGInfo;
+import com.rscja.deviceapi.interfaces.IUHF;
+
+import java.util.List;
+
+/** Adapts a vendor reader from DeviceAPI.aar (e.g. RFIDWithUHFUART) to {@link UHFReaderBackend}. */
+public class DeviceReaderBackend implements UHFReaderBackend, UHFReaderBackend.Gen2, UHFReaderBackend.InventoryModes {
+
+  protected final IUHF device;
+
+  public DeviceReaderBackend(IUHF device) {
+    this.device = device;
+  }
+
+  public IUHF getDevice() {
+    return device;
+  }
+
+  @Override
+  public boolean free() {
+    return device.free();
+  }
+
+  @Override
+  public boolean isWorking() {
+    return device.isWorking();
+  }
+
+  @Override
+  public int getPower() {
+    return device.getPower();
+  }
+
+  @Override
+  public boolean setPower(int power) {
+    return device.setPower(power);
+  }
+
+  @Override
+  public int getFrequencyMode() {
+    return device.getFrequencyMode();
+  }
+
+  @Override
+  public boolean setFrequencyMode(int mode) {
+    return device.setFrequencyMode(mode);
+  }
+
+  @Override
+  public boolean setFilter(int bank, int ptr, int len, String data) {
+    return device.setFilter(bank, ptr, len, data);
+  }
+
+  @Override
+  public Gen2Settings getGen2() {
+    char[] values = device.getGen2();
+    if (values == null) return null;
+    int[] settings = new int[values.length];
+    for (int i = 0; i < values.length; i++) settings[i] = values[i];
+    return Gen2Settings.of(settings);
+  }
+
+  @Override
+  public boolean setGen2(Gen2Settings settings) {
+    int[] v = settings.toValues();
+    return device.setGen2(v[0], v[1], v[2], v[3], v[4], v[5], v[6], v[7], v[8], v[9], v[10], v[11], v[12], v[13]);
+  }
+
+  @Override
+  public boolean setsGen2WhileInventorying() {
+    // The module only takes Gen2 settings while idle
+    return false;
+  }
+
+  @Override
+  public boolean setInventoryMode(int mode) {
+    return mode == InventoryConfig.MODE_EPC_TID ? device.setEPCAndTIDMode() : device.setEPCMode();
+  }
+
+  @Override
+  public boolean setFastId(boolean enabled) {
+    return device.setFastID(enabled);
+  }
+
+  @Override
+  public boolean setTagFocus(boolean enabled) {
+    return device.setTagFocus(enabled);
+  }
+
+  @Override
+  public boolean startInventoryTag() {
+    return device.startInventoryTag();
+  }
+
+  @Override
+  public boolean stopInventory() {
+    return device.stopInventory();
+  }
+
+  @Override
+  public TagRead readTagFromBuffer() {
+    return toTagRead(device.readTagFromBuffer());
+  }
+
+  @Override
+  public int readTagsFromBuffer(List<TagRead> out, int maxCount) {
+    int count = 0;
+    while (count < maxCount) {
+      TagRead read = readTagFromBuffer();
+      if (read == null) break;
+      out.add(read);
+      count++;
+    }
+    return count;
+  }
+
+  @Override
+  public String readData(String accessPwd, int bank, int ptr, int cnt) {
+    return device.readData(accessPwd, bank, ptr, cnt);
+  }
+
+  @Override
+  public String readData(String accessPwd, int filterBank, int filterPtr, int filterCnt, String filterData, int bank, int ptr, int cnt) {
+    return device.readData(accessPwd, filterBank, filterPtr, filterCnt, filterData, bank, ptr, cnt);
+  }
+
+  @Override
+  public boolean writeData(String accessPwd, int bank, int ptr, int cnt, String data) {
+    return device.writeData(accessPwd, bank, ptr, cnt, data);
+  }
+
+  @Override
+  public boolean writeData(String accessPwd, int filterBank, int filterPtr, int filterCnt, String filterData, int bank, int ptr, int cnt, String data) {
+    return device.writeData(accessPwd, filterBank, filterPtr, filterCnt, filterData, bank, ptr, cnt, data);
+  }
+
+  @Override
+  public boolean lockMem(String accessPwd, String lockCode) {
+    return device.lockMem(accessPwd, lockCode);
+  }
+
+  @Override
+  public boolean lockMem(String accessPwd, int filterBank, int filterPtr, int filterCnt, String filterData, String lockCode) {
+    return device.lockMem(accessPwd, filterBank, filterPtr, filterCnt, filterData, lockCode);
+  }
+
+  protected static TagRead toTagRead(UHFTAGInfo info) {
+    if (info == null) return null;
+    return new TagRead(info.getEPC(), info.getTid(), info.getRssi());
+  }
+}
@@ -0,0 +1,57 @@
+package vg.zeta.app.inventory.rfid;
+
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * One tag to encode with a {@link BulkEncoder}: the EPC to write, and
+ * optionally an access password to set and a lock code to apply afterwards.
+ */
+public class EncodeJob {
+  /** Selects the tag to write to, none if filterData is null. */
+  public int filterBank = UHFReaderBackend.BANK_EPC;
+  public int filterPtr;
+  public int filterLen;
+  public String filterData;
+
+  /** EPC hex, written after a PC word for its length. */
+  public String epc;
+  public String accessPassword = "00000000";
+  /** Written to the reserved bank (as kill and access password) if not null. */
+  public String newAccessPassword;
+  /** Passed to lockMem with the new (or current) access password if not null. */
+  public String lockCode;
+
+  public static EncodeJob fromMap(Map<String, Object> map) {
+    EncodeJob job = new EncodeJob();
+    job.epc = ScanConfig.getString(map, "epc", null);
+    if (job.epc == null || job.epc.isEmpty()) {
+      throw new IllegalArgumentException("epc is required");
+    }
+    job.epc = job.epc.toUpperCase(Locale.ROOT);
+    job.accessPassword = ScanConfig.getString(map, "accessPassword", job.accessPassword);
+    job.newAccessPassword = ScanConfig.getString(map, "newAccessPassword", null);
+    job.lockCode = ScanConfig.getString(map, "lockCode", null);
+    job.filterData = ScanConfig.getString(map, "filterData", null);
+    if (job.filterData != null) {
+      job.filterBank = ScanConfig.getInt(map, "filterBank", job.filterBank);
+      job.filterPtr = ScanConfig.getInt(map, "filterPtr", job.filterPtr);
+      job.filterLen = ScanConfig.getInt(map, "filterLen", job.filterData.length() * 4);
+    }
+    return job;
+  }
+
+  /** Number of words the EPC takes. */
+  public int getEpcWords() {
+    return (epc.length() + 3) / 4;
+  }
+
+  /** The PC word and the EPC, as written from word 1 of the EPC bank. */
+  public String getEpcBankData() {
+    StringBuilder sb = new StringBuilder(4 + getEpcWords() * 4);
+    sb.append(String.format(Locale.ROOT, "%04X", getEpcWords() << 11));
+    sb.append(epc);
+    while (sb.length() < 4 + getEpcWords() * 4) sb.append('0');
+    return sb.toString();
+  }
+}
@@ -0,0 +1,203 @@
+package vg.zeta.app.inventory.rfid;
+
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * A set of EPCs (as hex strings) that is cheap to query from the scan loop.
+ *
+ * EPCs of up to 128 bits are packed into two longs and stored in an
+ * open-addressing table, so lookups and inserts do not allocate. A slot
+ * takes 21 bytes and the table is kept between 30% and 60% full, so a tag
+ * costs 35 to 70 bytes however many have been seen, and clear() does not
+ * shrink the table.
+ * Hex is matched case-insensitively. Anything that does not fit (non-hex
+ * data, EPCs longer than 128 bits) falls back to a regular HashSet.
+ *
+ * Threading: {@link #add} and {@link #contains} must only be called from one
+ * thread (the scan thread). {@link #clear} may be called from any other
+ * thread at any time; it only bumps an epoch, and slots written under an
+ * older epoch are treated as empty from then on.
+ */
+public class EpcSet {
+
+  private static final int MAX_NIBBLES = 32;
+  private static final float LOAD_FACTOR = 0.6f;
+
+  private volatile int epoch = 1;
+
+  private long[] his;
+  private long[] los;
+  private byte[] lengths;
+  /** The epoch the slot was written in, 0 if it has never been used. */
+  private int[] epochs;
+  private int mask;
+
+  private int size;
+  private int sizeEpoch = 1;
+  private final HashSet<String> overflow = new HashSet<>();
+
+  // Scratch output of pack(), only touched by the writer thread
+  private long packedHi;
+  private long packedLo;
+  private int packedLength;
+
+  public EpcSet() {
+    this(1024);
+  }
+
+  public EpcSet(int expectedSize) {
+    int capacity = Integer.highestOneBit(Math.max(16, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+    allocate(capacity);
+  }
+
+  /** Returns true if the EPC was not in the set before. */
+  public boolean add(String epc) {
+    if (epc == null) return false;
+    int currentEpoch = syncEpoch();
+
+    if (!pack(epc)) {
+      if (overflow.add(epc)) {
+        size++;
+        return true;
+      }
+      return false;
+    }
+
+    int index = findSlot(packedHi, packedLo, packedLength, currentEpoch);
+    if (epochs[index] == currentEpoch) return false;
+
+    his[index] = packedHi;
+    los[index] = packedLo;
+    lengths[index] = (byte) packedLength;
+    epochs[index] = currentEpoch;
+    size++;
+
+    if (size > (mask + 1) * LOAD_FACTOR) resize(currentEpoch);
+    return true;
+  }
+
+  public void addAll(List<?> epcs) {
+    for (Object epc : epcs) {
+      if (epc instanceof String) add((String) epc);
+    }
+  }
+
+  public boolean contains(String epc) {
+    if (epc == null) return false;
+    int currentEpoch = syncEpoch();
+
+    if (!pack(epc)) return overflow.contains(epc);
+
+    int index = findSlot(packedHi, packedLo, packedLength, currentEpoch);
+    return epochs[index] == currentEpoch;
+  }
+
+  public int size() {
+    syncEpoch();
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size() <= 0;
+  }
+
+  /** Removes everything. Safe to call while the owning thread is adding. */
+  public void clear() {
+    int next = epoch + 1;
+    // 0 marks never-used slots
+    if (next == 0) next = 1;
+    epoch = next;
+  }
+
+  /** Picks up a clear() done by another thread, returns the current epoch. */
+  private int syncEpoch() {
+    int currentEpoch = epoch;
+    if (currentEpoch != sizeEpoch) {
+      sizeEpoch = currentEpoch;
+      size = 0;
+      overflow.clear();
+    }
+    return currentEpoch;
+  }
+
+  /**
+   * Returns the slot holding the given value, or the first slot that is free
+   * in the current epoch if it is not in the table.
+   */
+  private int findSlot(long hi, long lo, int length, int currentEpoch) {
+    int index = hash(hi, lo, length) & mask;
+    while (true) {
+      if (epochs[index] != currentEpoch) return index;
+      if (his[index] == hi && los[index] == lo && lengths[index] == length) return index;
+      index = (index + 1) & mask;
+    }
+  }
+
+  private void resize(int currentEpoch) {
+    long[] oldHis = his;
+    long[] oldLos = los;
+    byte[] oldLengths = lengths;
+    int[] oldEpochs = epochs;
+
+    allocate((mask + 1) << 1);
+
+    for (int i = 0; i < oldEpochs.length; i++) {
+      if (oldEpochs[i] != currentEpoch) continue;
+      int index = findSlot(oldHis[i], oldLos[i], oldLengths[i], currentEpoch);
+      his[index] = oldHis[i];
+      los[index] = oldLos[i];
+      lengths[index] = oldLengths[i];
+      epochs[index] = currentEpoch;
+    }
+  }
+
+  private void allocate(int capacity) {
+    his = new long[capacity];
+    los = new long[capacity];
+    lengths = new byte[capacity];
+    epochs = new int[capacity];
+    mask = capacity - 1;
+  }
+
+  /**
+   * Packs the hex string into packedHi/packedLo/packedLength. Returns false if
+   * it is not hex or is too long.
+   */
+  private boolean pack(String epc) {
+    int length = epc.length();
+    if (length > MAX_NIBBLES) return false;
+
+    long hi = 0;
+    long lo = 0;
+    for (int i = 0; i < length; i++) {
+      int nibble = hexValue(epc.charAt(i));
+      if (nibble < 0) return false;
+      if (i < 16) {
+        hi = (hi << 4) | nibble;
+      } else {
+        lo = (lo << 4) | nibble;
+      }
+    }
+
+    packedHi = hi;
+    packedLo = lo;
+    packedLength = length;
+    return true;
+  }
+
+  private static int hexValue(char c) {
+    if (c >= '0' && c <= '9') return c - '0';
+    if (c >= 'A' && c <= 'F') return c - 'A' + 10;
+    if (c >= 'a' && c <= 'f') return c - 'a' + 10;
+    return -1;
+  }
+
+  private static int hash(long hi, long lo, int length) {
+    long h = hi * 0x9E3779B97F4A7C15L + lo;
+    h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+    h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+    h ^= h >>> 33;
+    return (int) h ^ length;
+  }
+}
@@ -0,0 +1,123 @@
+package vg.zeta.app.inventory.rfid;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Plays feedback sounds on its own thread, so that the scan thread only has
+ * to hand a sound over and never waits on audio.
+ *
+ * Sounds are played at most once per minimum delay. Sounds requested in
+ * between are coalesced into one, keeping the one that matters most (error,
+ * then new tag, then seen tag).
+ */
+public class FeedbackScheduler {
+
+  public static final int SOUND_ERROR = 3;
+
+  public interface Player {
+    /** Called on the scheduler thread, rate is the playback speed (1 for normal pitch). */
+    void play(int sound, float rate);
+  }
+
+  private final Player player;
+  private final Thread thread;
+  // The sound waiting to be played, 0 if none
+  private final AtomicInteger pending = new AtomicInteger();
+  // Playback rate of the pending sound, the last request wins
+  private volatile float pendingRate = 1f;
+  private volatile long minimumDelayNanos;
+  private volatile boolean running = true;
+  // Where play times go, the stats of the current scan session
+  private volatile ScanStats stats;
+
+  public FeedbackScheduler(Player player) {
+    this.player = player;
+    this.thread = new Thread(this::run, "FeedbackScheduler");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /** Minimum time between two sounds, in milliseconds. */
+  public void setMinimumDelay(int millis) {
+    minimumDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, millis));
+  }
+
+  /** Asks for a sound to be played. Never blocks, cheap while one is pending. */
+  public void request(int sound) {
+    request(sound, 1f);
+  }
+
+  /** Same as {@link #request(int)}, played at the given rate (0.5 to 2, changes the pitch). */
+  public void request(int sound, float rate) {
+    if (sound == ScanEngine.SOUND_NONE) return;
+    pendingRate = rate;
+    int current;
+    do {
+      current = pending.get();
+      if (current != 0 && rank(sound) <= rank(current)) return;
+    } while (!pending.compareAndSet(current, sound));
+    if (current == 0) LockSupport.unpark(thread);
+  }
+
+  /** Records the time sounds take to play into these, null to stop. */
+  public void setStats(ScanStats stats) {
+    this.stats = stats;
+  }
+
+  /** Stops the thread, pending sounds are dropped. */
+  public void shutdown() {
+    running = false;
+    LockSupport.unpark(thread);
+  }
+
+  private void run() {
+    long lastPlayedAt = 0;
+    boolean played = false;
+    while (running) {
+      if (pending.get() == 0) {
+        LockSupport.park(this);
+        continue;
+      }
+
+      if (played) {
+        long wait = lastPlayedAt + minimumDelayNanos - System.nanoTime();
+        if (wait > 0) {
+          LockSupport.parkNanos(this, wait);
+          continue;
+        }
+      }
+
+      int sound = pending.getAndSet(0);
+      if (sound == 0) continue;
+      ScanTracer tracer = ScanTracer.get();
+      long startedAt = System.nanoTime();
+      tracer.beginSection(ScanTracer.STAGE_SOUND);
+      try {
+        player.play(sound, pendingRate);
+      } catch (RuntimeException e) {
+        e.printStackTrace();
+      } finally {
+        tracer.endSection();
+      }
+      lastPlayedAt = System.nanoTime();
+      ScanStats sessionStats = stats;
+      if (sessionStats != null) sessionStats.onSound(lastPlayedAt - startedAt);
+      played = true;
+    }
+  }
+
+  private static int rank(int sound) {
+    switch (sound) {
+      case SOUND_ERROR:
+        return 3;
+      case ScanEngine.SOUND_NEW_TAG:
+        return 2;
+      case ScanEngine.SOUND_SEEN_TAG:
+        return 1;
+      default:
+        return 0;
+    }
+  }
+}
@@ -0,0 +1,74 @@
+package vg.zeta.app.inventory.rfid;
+
+/**
+ * The EPC Gen2 inventory parameters of a reader, as the vendor setGen2 and
+ * getGen2 take and return them, in the same order. Names follow the fields
+ * of the Gen2 Select and Query commands they end up in.
+ */
+public class Gen2Settings {
+  public static final int VALUE_COUNT = 14;
+
+  public static final int TARGET_A = 0;
+  public static final int TARGET_B = 1;
+
+  /** Select: which flag it sets, what to do with it, and whether to truncate. */
+  public int selectTarget;
+  public int selectAction;
+  public int truncate;
+  /** 0 for a fixed Q (startQ), 1 to let the reader adapt it between minQ and maxQ. */
+  public int qAlgorithm;
+  public int startQ;
+  public int minQ;
+  public int maxQ;
+  /** Query: divide ratio, coding (M), pilot tone (TRext) and which tags take part (Sel). */
+  public int dr;
+  public int coding;
+  public int pilot;
+  public int sel;
+  /** S0 to S3, how long a read tag keeps quiet. */
+  public int session;
+  /** Query: tags answer while their session flag is A (0) or B (1). */
+  public int queryTarget;
+  public int linkFrequency;
+
+  /** Dynamic Q from 4, session S0, target A, as readers come. */
+  public static Gen2Settings defaults() {
+    Gen2Settings settings = new Gen2Settings();
+    settings.qAlgorithm = 1;
+    settings.startQ = 4;
+    settings.maxQ = 15;
+    return settings;
+  }
+
+  /** Null if there are fewer than {@link #VALUE_COUNT} values. */
+  public static Gen2Settings of(int[] values) {
+    if (values == null || values.length < VALUE_COUNT) return null;
+    Gen2Settings settings = new Gen2Settings();
+    settings.selectTarget = values[0];
+    settings.selectAction = values[1];
+    settings.truncate = values[2];
+    settings.qAlgorithm = values[3];
+    settings.startQ = values[4];
+    settings.minQ = values[5];
+    settings.maxQ = values[6];
+    settings.dr = values[7];
+    settings.coding = values[8];
+    settings.pilot = values[9];
+    settings.sel = values[10];
+    settings.session = values[11];
+    settings.queryTarget = values[12];
+    settings.linkFrequency = values[13];
+    return settings;
+  }
+
+  public int[] toValues() {
+    return new int[]{
+            selectTarget, selectAction, truncate, qAlgorithm, startQ, minQ, maxQ,
+            dr, coding, pilot, sel, session, queryTarget, linkFrequency
+    };
+  }
+
+  public Gen2Settings copy() {
+    return of(toValues());
+  }
+}
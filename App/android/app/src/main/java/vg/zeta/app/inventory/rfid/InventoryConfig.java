@@ -0,0 +1,118 @@
+package vg.zeta.app.inventory.rfid;
+
+import java.util.Map;
+
+/**
+ * How the reader inventories, the inventory option of startScan: the Gen2
+ * session and target, what it reports per tag, and the vendor fast
+ * inventory switches. What is left out stays as the reader has it, what
+ * is set stays set on the reader after the scan, like power does.
+ *
+ * For rooms full of tags: a session other than S0 keeps tags quiet for a
+ * while once read, so the ones not found yet get the slots, and target AB
+ * sweeps the tags back and forth between the A and B flags so none of them
+ * stays out for good.
+ */
+public class InventoryConfig {
+  public static final int UNSET = -1;
+
+  public static final int TARGET_A = 0;
+  public static final int TARGET_B = 1;
+  /** Switches between A and B every targetSwitchInterval. */
+  public static final int TARGET_AB = 2;
+
+  public static final int MODE_EPC = 0;
+  public static final int MODE_EPC_TID = 1;
+
+  public int session = UNSET;
+  public int target = UNSET;
+  public int mode = UNSET;
+  public int fastId = UNSET;
+  public int tagFocus = UNSET;
+  /** Milliseconds between two target flips with TARGET_AB. */
+  public int targetSwitchInterval = 1000;
+
+  /** Throws IllegalArgumentException for values the reader would not take. */
+  public static InventoryConfig fromMap(Map<String, Object> options) {
+    InventoryConfig config = new InventoryConfig();
+    config.session = parseSession(options.get("session"));
+    String target = ScanConfig.getString(options, "target", null);
+    if (target != null) {
+      switch (target) {
+        case "A":
+          config.target = TARGET_A;
+          break;
+        case "B":
+          config.target = TARGET_B;
+          break;
+        case "AB":
+          config.target = TARGET_AB;
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown inventory target: " + target);
+      }
+    }
+    String mode = ScanConfig.getString(options, "mode", null);
+    if (mode != null) {
+      switch (mode) {
+        case "epc":
+          config.mode = MODE_EPC;
+          break;
+        case "epcTid":
+          config.mode = MODE_EPC_TID;
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown inventory mode: " + mode);
+      }
+    }
+    if (options.get("fastId") instanceof Boolean) config.fastId = (Boolean) options.get("fastId") ? 1 : 0;
+    if (options.get("tagFocus") instanceof Boolean) config.tagFocus = (Boolean) options.get("tagFocus") ? 1 : 0;
+    int interval = ScanConfig.getInt(options, "targetSwitchInterval", config.targetSwitchInterval);
+    if (interval < 50) {
+      throw new IllegalArgumentException("targetSwitchInterval must be at least 50 ms, got " + interval);
+    }
+    config.targetSwitchInterval = interval;
+    return config;
+  }
+
+  /** 0 to 3, or "S0" to "S3". */
+  private static int parseSession(Object value) {
+    if (value == null) return UNSET;
+    int session = UNSET;
+    if (value instanceof Number && ((Number) value).doubleValue() == ((Number) value).intValue()) {
+      session = ((Number) value).intValue();
+    } else if (value instanceof String && ((String) value).matches("S[0-3]")) {
+      session = ((String) value).charAt(1) - '0';
+    }
+    if (session < 0 || session > 3) throw new IllegalArgumentException("Invalid inventory session: " + value);
+    return session;
+  }
+
+  /**
+   * Sets what is set on the reader, which must not be inventorying. Readers
+   * without Gen2 or inventory switches (the simulated ones) are left alone.
+   */
+  public void applyTo(UHFReaderBackend reader) throws ReaderException {
+    if ((session != UNSET || target != UNSET) && reader instanceof UHFReaderBackend.Gen2) {
+      UHFReaderBackend.Gen2 gen2Reader = (UHFReaderBackend.Gen2) reader;
+      Gen2Settings gen2 = gen2Reader.getGen2();
+      if (gen2 == null) throw new ReaderException("getGen2 returned nothing");
+      if (session != UNSET) gen2.session = session;
+      // AB starts out on A
+      if (target != UNSET) gen2.queryTarget = target == TARGET_B ? Gen2Settings.TARGET_B : Gen2Settings.TARGET_A;
+      if (!gen2Reader.setGen2(gen2)) throw new ReaderException("setGen2 returned false");
+    }
+
+    if (!(reader instanceof UHFReaderBackend.InventoryModes)) return;
+    UHFReaderBackend.InventoryModes modes = (UHFReaderBackend.InventoryModes) reader;
+    if (mode != UNSET && !modes.setInventoryMode(mode)) {
+      throw new ReaderException("setInventoryMode returned false");
+    }
+    if (fastId != UNSET && !modes.setFastId(fastId == 1)) {
+      throw new ReaderException("setFastId returned false");
+    }
+    if (tagFocus != UNSET && !modes.setTagFocus(tagFocus == 1)) {
+      throw new ReaderException("setTagFocus returned false");
+    }
+  }
+}
@@ -0,0 +1,101 @@
+package vg.zeta.app.inventory.rfid;
+
+/**
+ * Latencies in microseconds, HDR histogram style: each power of two is cut
+ * into 16 linear buckets, so any value is counted within 1/16 (about 6%)
+ * of what it was, from a microsecond up to days, in a fixed 960 buckets.
+ *
+ * Thread-safe. Recording is synchronized, it is done once per event
+ * window, not per read.
+ */
+public class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 4;
+  private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+  // Values below this have a bucket each
+  private static final int LINEAR_LIMIT = SUB_BUCKET_COUNT * 2;
+  private static final int BUCKET_COUNT = indexOf(Long.MAX_VALUE) + 1;
+
+  // Guarded by this
+  private final long[] counts = new long[BUCKET_COUNT];
+  private long count;
+  private long sum;
+  private long min = Long.MAX_VALUE;
+  private long max;
+
+  static int indexOf(long value) {
+    if (value < LINEAR_LIMIT) return (int) value;
+    int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+    int top = (int) (value >>> shift);
+    return (shift + 1) * SUB_BUCKET_COUNT + top - SUB_BUCKET_COUNT;
+  }
+
+  /** Largest value counted in the bucket. */
+  static long upperBoundOf(int index) {
+    if (index < LINEAR_LIMIT) return index;
+    int shift = index / SUB_BUCKET_COUNT - 1;
+    long top = SUB_BUCKET_COUNT + index % SUB_BUCKET_COUNT;
+    return ((top + 1) << shift) - 1;
+  }
+
+  public synchronized void record(long micros) {
+    if (micros < 0) micros = 0;
+    counts[indexOf(micros)]++;
+    count++;
+    sum += micros;
+    if (micros < min) min = micros;
+    if (micros > max) max = micros;
+  }
+
+  public synchronized void reset() {
+    for (int i = 0; i < BUCKET_COUNT; i++) counts[i] = 0;
+    count = 0;
+    sum = 0;
+    min = Long.MAX_VALUE;
+    max = 0;
+  }
+
+  public synchronized long getCount() {
+    return count;
+  }
+
+  public synchronized long getMin() {
+    return count > 0 ? min : 0;
+  }
+
+  public synchronized long getMax() {
+    return max;
+  }
+
+  public synchronized double getMean() {
+    return count > 0 ? (double) sum / count : 0;
+  }
+
+  /** The value percentile percent (0 to 100) of the values are at or below, 0 if none. */
+  public synchronized long getPercentile(double percentile) {
+    if (count == 0) return 0;
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+    long seen = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      seen += counts[i];
+      if (seen >= rank) return Math.min(upperBoundOf(i), max);
+    }
+    return max;
+  }
+
+  /** The buckets that counted anything, as upper bound and count pairs. */
+  public synchronized long[] dump() {
+    int used = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      if (counts[i] > 0) used++;
+    }
+    long[] pairs = new long[used * 2];
+    int position = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      if (counts[i] == 0) continue;
+      pairs[position++] = upperBoundOf(i);
+      pairs[position++] = counts[i];
+    }
+    return pairs;
+  }
+}
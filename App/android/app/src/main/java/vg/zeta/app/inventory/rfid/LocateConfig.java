@@ -0,0 +1,64 @@
+package vg.zeta.app.inventory.rfid;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/** Parameters of a native locate stream, the locate option of startScan. */
+public class LocateConfig {
+  public static final int DEFAULT_FRAME_INTERVAL = 33;
+
+  /** EPCs (or EPC prefixes) to locate. */
+  public List<String> epcs = new ArrayList<>();
+  /** Report every target seen so far, closest first, instead of only the ones that changed. */
+  public boolean ranked;
+
+  public String rssiFilter = RssiFilter.KALMAN;
+  /** Smoothing factor of the EMA filter, higher follows the raw RSSI more closely. */
+  public float emaAlpha = 0.3f;
+  /** Kalman filter, how much the true RSSI may drift, dB² per second. */
+  public float processNoise = 16f;
+  /** Kalman filter, variance of single readings, dB². */
+  public float measurementNoise = 12f;
+
+  /** Milliseconds between two locate updates. */
+  public int frameInterval = DEFAULT_FRAME_INTERVAL;
+  /** Milliseconds without reads after which a target is out of range. */
+  public int lostAfter = 1000;
+  /** How far back (ms) the trend looks. */
+  public int trendWindow = 1000;
+  /** dB the RSSI has to move over the trend window to be warmer or colder. */
+  public float trendThreshold = 1.5f;
+
+  /** RSSI mapped to proximity 1 and 0. */
+  public float rssiNear = -35f;
+  public float rssiFar = -75f;
+
+  /** Beep interval (ms) at proximity 1 and 0. */
+  public int beepIntervalNear = 80;
+  public int beepIntervalFar = 700;
+
+  public static LocateConfig fromMap(Map<String, Object> options) {
+    LocateConfig config = new LocateConfig();
+    Object epcs = options.get("epcs");
+    if (epcs instanceof List) {
+      for (Object epc : (List<?>) epcs) {
+        if (epc instanceof String && !((String) epc).isEmpty()) config.epcs.add((String) epc);
+      }
+    }
+    config.ranked = ScanConfig.getBoolean(options, "ranked", config.ranked);
+    config.rssiFilter = ScanConfig.getString(options, "rssiFilter", config.rssiFilter);
+    config.emaAlpha = (float) ScanConfig.getDouble(options, "emaAlpha", config.emaAlpha);
+    config.processNoise = (float) ScanConfig.getDouble(options, "processNoise", config.processNoise);
+    config.measurementNoise = (float) ScanConfig.getDouble(options, "measurementNoise", config.measurementNoise);
+    config.frameInterval = Math.max(1, ScanConfig.getInt(options, "frameInterval", config.frameInterval));
+    config.lostAfter = Math.max(1, ScanConfig.getInt(options, "lostAfter", config.lostAfter));
+    config.trendWindow = Math.max(config.frameInterval, ScanConfig.getInt(options, "trendWindow", config.trendWindow));
+    config.trendThreshold = (float) ScanConfig.getDouble(options, "trendThreshold", config.trendThreshold);
+    config.rssiNear = (float) ScanConfig.getDouble(options, "rssiNear", config.rssiNear);
+    config.rssiFar = (float) ScanConfig.getDouble(options, "rssiFar", config.rssiFar);
+    config.beepIntervalNear = Math.max(1, ScanConfig.getInt(options, "beepIntervalNear", config.beepIntervalNear));
+    config.beepIntervalFar = Math.max(1, ScanConfig.getInt(options, "beepIntervalFar", config.beepIntervalFar));
+    return config;
+  }
+}
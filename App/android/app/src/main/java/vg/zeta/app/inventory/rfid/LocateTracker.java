@@ -0,0 +1,243 @@
+package vg.zeta.app.inventory.rfid;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Follows the smoothed RSSI of the tags being located. Fed every read by the
+ * scan thread, and ticked at the frame interval to work out trends and
+ * which targets changed, so that JS only hears from it once per frame.
+ *
+ * Any number of targets can be followed from one unfiltered inventory:
+ * reads are matched with a HashMap lookup per distinct target length (one
+ * when targets are full EPCs), not by comparing against every target.
+ * Readers report EPCs in upper case, which is what the lookup expects.
+ */
+public class LocateTracker {
+
+  public static final int TREND_COLDER = -1;
+  public static final int TREND_STEADY = 0;
+  public static final int TREND_WARMER = 1;
+
+  public static class Target {
+    /** As given, matched as a case-insensitive prefix. */
+    public final String epc;
+    /** Position in LocateConfig.epcs. */
+    public final int index;
+    final RssiFilter filter;
+
+    /** The filtered RSSI, NaN before the first read. */
+    public float rssi = Float.NaN;
+    public float rawRssi = Float.NaN;
+    public float proximity;
+    public int trend = TREND_STEADY;
+    public long lastSeenAt;
+    public int readCount;
+    public boolean inRange;
+    /** Whether there is anything new to report since the previous frame. */
+    public boolean changed;
+
+    // The filtered RSSI averaged over the trend window, updated once per frame
+    private float baseline = Float.NaN;
+    private int readsSinceTick;
+
+    Target(String epc, int index, RssiFilter filter) {
+      this.epc = epc;
+      this.index = index;
+      this.filter = filter;
+    }
+  }
+
+  private final LocateConfig config;
+  private final Target[] targets;
+  // Targets by upper-case EPC, and the distinct lengths of those EPCs
+  private final HashMap<String, Target> targetsByEpc;
+  private final int[] targetLengths;
+  // Targets read at least once, in the order of the last ranking
+  private final Target[] ranking;
+  private int rankingSize;
+  private long lastTickAt;
+  private long lastBeepAt;
+
+  public LocateTracker(LocateConfig config) {
+    this.config = config;
+    List<String> epcs = config.epcs;
+    targets = new Target[epcs.size()];
+    targetsByEpc = new HashMap<>(Math.max(16, (int) (targets.length / 0.75f) + 1));
+    int[] lengths = new int[targets.length];
+    int lengthCount = 0;
+    for (int i = 0; i < targets.length; i++) {
+      Target target = new Target(epcs.get(i), i, RssiFilter.create(config));
+      targets[i] = target;
+      String key = target.epc.toUpperCase(Locale.ROOT);
+      if (targetsByEpc.containsKey(key)) continue;
+      targetsByEpc.put(key, target);
+      if (indexOf(lengths, lengthCount, key.length()) < 0) lengths[lengthCount++] = key.length();
+    }
+    // Longest first, so that the most specific target wins
+    targetLengths = Arrays.copyOf(lengths, lengthCount);
+    Arrays.sort(targetLengths);
+    for (int i = 0, j = lengthCount - 1; i < j; i++, j--) {
+      int length = targetLengths[i];
+      targetLengths[i] = targetLengths[j];
+      targetLengths[j] = length;
+    }
+    ranking = new Target[targets.length];
+  }
+
+  private static int indexOf(int[] values, int count, int value) {
+    for (int i = 0; i < count; i++) {
+      if (values[i] == value) return i;
+    }
+    return -1;
+  }
+
+  public LocateConfig getConfig() {
+    return config;
+  }
+
+  public int size() {
+    return targets.length;
+  }
+
+  public Target get(int index) {
+    return targets[index];
+  }
+
+  public long getLastTickAt() {
+    return lastTickAt;
+  }
+
+  /** Feeds a read, returns false if it is not of a target. */
+  public boolean add(String epc, String rssi, long now) {
+    Target target = find(epc);
+    if (target == null) return false;
+
+    float value = TagReadAggregator.parseRssi(rssi);
+    target.rawRssi = value;
+    target.rssi = target.filter.update(value, now);
+    target.lastSeenAt = now;
+    if (target.readCount++ == 0) ranking[rankingSize++] = target;
+    target.readsSinceTick++;
+    return true;
+  }
+
+  private Target find(String epc) {
+    int epcLength = epc.length();
+    for (int length : targetLengths) {
+      if (length > epcLength) continue;
+      Target target = targetsByEpc.get(length == epcLength ? epc : epc.substring(0, length));
+      if (target != null) return target;
+    }
+    return null;
+  }
+
+  /**
+   * Sorts the targets read so far, in range first, then by proximity and
+   * then by when they were last seen. Returns how many there are, see
+   * {@link #getRanked}.
+   */
+  public int rank() {
+    // Insertion sort, since the order rarely changes much between two frames
+    for (int i = 1; i < rankingSize; i++) {
+      Target target = ranking[i];
+      int j = i - 1;
+      while (j >= 0 && compareRank(target, ranking[j]) < 0) {
+        ranking[j + 1] = ranking[j];
+        j--;
+      }
+      ranking[j + 1] = target;
+    }
+    return rankingSize;
+  }
+
+  /** The target at the given position of the last {@link #rank}. */
+  public Target getRanked(int position) {
+    return ranking[position];
+  }
+
+  private static int compareRank(Target a, Target b) {
+    if (a.inRange != b.inRange) return a.inRange ? -1 : 1;
+    if (a.inRange && a.proximity != b.proximity) return a.proximity > b.proximity ? -1 : 1;
+    return Long.compare(b.lastSeenAt, a.lastSeenAt);
+  }
+
+  /**
+   * Works out range, proximity and trend of every target as of now and
+   * flags the ones that changed. Returns true if any did.
+   */
+  public boolean tick(long now) {
+    // Weight of this frame in the baseline, so that it spans about one trend window
+    float baselineAlpha = lastTickAt > 0
+            ? Math.min(1f, (now - lastTickAt) / (float) config.trendWindow)
+            : 1f;
+    lastTickAt = now;
+
+    boolean anyChanged = false;
+    for (Target target : targets) {
+      boolean inRange = target.readCount > 0 && now - target.lastSeenAt <= config.lostAfter;
+      boolean changed = target.readsSinceTick > 0 || inRange != target.inRange;
+      target.readsSinceTick = 0;
+      target.inRange = inRange;
+
+      if (!inRange) {
+        target.trend = TREND_STEADY;
+        target.proximity = 0;
+        target.baseline = Float.NaN;
+        if (target.readCount > 0) target.filter.reset();
+      } else if (changed) {
+        target.proximity = proximity(target.rssi);
+        if (Float.isNaN(target.baseline)) {
+          target.baseline = target.rssi;
+        } else {
+          target.baseline += baselineAlpha * (target.rssi - target.baseline);
+        }
+        float delta = target.rssi - target.baseline;
+        target.trend = delta >= config.trendThreshold
+                ? TREND_WARMER
+                : delta <= -config.trendThreshold ? TREND_COLDER : TREND_STEADY;
+      }
+
+      target.changed = changed;
+      anyChanged |= changed;
+    }
+    return anyChanged;
+  }
+
+  /** Maps an RSSI to 0 (rssiFar or weaker) .. 1 (rssiNear or stronger). */
+  public float proximity(float rssi) {
+    if (Float.isNaN(rssi)) return 0;
+    float range = config.rssiNear - config.rssiFar;
+    if (range <= 0) return rssi >= config.rssiNear ? 1 : 0;
+    return Math.max(0, Math.min(1, (rssi - config.rssiFar) / range));
+  }
+
+  /** The proximity of the closest target in range, -1 if none is. */
+  public float getBestProximity() {
+    float best = -1;
+    for (Target target : targets) {
+      if (target.inRange && target.proximity > best) best = target.proximity;
+    }
+    return best;
+  }
+
+  /** Playback rate of a locate beep, higher pitched the closer the target. */
+  public static float beepRate(float proximity) {
+    return 0.5f + 1.5f * Math.max(0, Math.min(1, proximity));
+  }
+
+  /**
+   * Returns the proximity to beep for if a beep is due, -1 otherwise. Beeps
+   * get more frequent the closer the closest target is.
+   */
+  public float nextBeep(long now) {
+    float proximity = getBestProximity();
+    if (proximity < 0) return -1;
+    long interval = Math.round(config.beepIntervalFar + (config.beepIntervalNear - config.beepIntervalFar) * proximity);
+    if (now - lastBeepAt < interval) return -1;
+    lastBeepAt = now;
+    return proximity;
+  }
+}
@@ -0,0 +1,31 @@
+package vg.zeta.app.inventory.rfid;
+
+import com.facebook.react.bridge.Promise;
+
+/**
+ * Settles a promise with the outcome of a {@link ReaderCommandExecutor}
+ * command. A {@link ReaderException} is rejected with its message only,
+ * as the modules did before.
+ */
+public class PromiseCallback implements ReaderCommandExecutor.Callback<Object> {
+
+  private final Promise promise;
+
+  public PromiseCallback(Promise promise) {
+    this.promise = promise;
+  }
+
+  @Override
+  public void onResult(Object result) {
+    promise.resolve(result);
+  }
+
+  @Override
+  public void onError(Exception e) {
+    if (e instanceof ReaderException) {
+      promise.reject(new Throwable(e.getMessage()));
+    } else {
+      promise.reject(e);
+    }
+  }
+}
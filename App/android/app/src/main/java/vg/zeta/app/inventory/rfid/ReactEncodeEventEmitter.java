@@ -0,0 +1,66 @@
+package vg.zeta.app.inventory.rfid;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.modules.core.DeviceEventManagerModule;
+
+/**
+ * Reports a {@link BulkEncoder} run to JS: every step as a
+ * "uhfEncodeProgress" event, and the summary through the promise of the
+ * encodeTags call. Sound feedback for finished jobs is left to the module.
+ */
+public abstract class ReactEncodeEventEmitter implements BulkEncoder.Listener {
+
+  private final ReactApplicationContext context;
+  private final Promise promise;
+
+  public ReactEncodeEventEmitter(ReactApplicationContext context, Promise promise) {
+    this.context = context;
+    this.promise = promise;
+  }
+
+  /** Called on the executor thread when a job succeeded (SOUND_NEW_TAG) or failed (SOUND_ERROR). */
+  public abstract void onFeedback(int sound);
+
+  @Override
+  public void onProgress(BulkEncoder.Progress progress) {
+    WritableMap payload = Arguments.createMap();
+    payload.putInt("index", progress.index);
+    if (progress.step != null) {
+      payload.putString("step", progress.step);
+    } else {
+      payload.putNull("step");
+    }
+    payload.putString("status", progress.status);
+    payload.putInt("attempt", progress.attempt);
+    payload.putInt("power", progress.power);
+    if (progress.error != null) payload.putString("error", progress.error);
+    context
+            .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
+            .emit("uhfEncodeProgress", payload);
+
+    if (progress.step == null) {
+      if (BulkEncoder.STATUS_SUCCEEDED.equals(progress.status)) {
+        onFeedback(ScanEngine.SOUND_NEW_TAG);
+      } else if (BulkEncoder.STATUS_FAILED.equals(progress.status)) {
+        onFeedback(FeedbackScheduler.SOUND_ERROR);
+      }
+    }
+  }
+
+  @Override
+  public void onFinished(BulkEncoder.Summary summary) {
+    WritableMap result = Arguments.createMap();
+    result.putInt("succeeded", summary.succeeded);
+    result.putInt("failed", summary.failed);
+    result.putInt("cancelled", summary.cancelled);
+    promise.resolve(result);
+  }
+
+  @Override
+  public void onError(ReaderException e) {
+    promise.reject(new Throwable(e.getMessage()));
+  }
+}
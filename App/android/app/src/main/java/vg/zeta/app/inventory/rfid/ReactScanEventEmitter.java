@@ -0,0 +1,286 @@
+package vg.zeta.app.inventory.rfid;
+
+import android.util.Base64;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.modules.core.DeviceEventManagerModule;
+
+import java.util.List;
+
+/**
+ * Delivers the event windows of a {@link ScanEngine} to JS as "uhfScanData"
+ * events, either as an array of maps or, in packed mode, as one base64 string
+ * per window (see {@link ScanBatchEncoder}). With a pull buffer, packed
+ * windows are appended to it instead of being emitted. Check session deltas
+ * go out as "uhfCheckSessionDelta" events, locate updates as
+ * "uhfLocateUpdate" (or "uhfLocateRanking" when ranked), scan stats as
+ * "uhfScanStats". Sound feedback is left to the module.
+ *
+ * With traceLatency an emitted window comes as { data, trace } instead,
+ * trace being the monotonic read and emit times of onTrace (fractional
+ * milliseconds) followed by the epoch time of the emit. Pulled windows are
+ * not traced.
+ */
+public abstract class ReactScanEventEmitter implements ScanEngine.Listener {
+
+  private final ReactApplicationContext context;
+  // Only set in packed mode
+  private final ScanBatchEncoder encoder;
+  private final ScanBatchBuffer pullBuffer;
+  // Set by onTrace for the window about to be emitted, null otherwise
+  private double[] trace;
+
+  public ReactScanEventEmitter(ReactApplicationContext context) {
+    this(context, false, null);
+  }
+
+  public ReactScanEventEmitter(ReactApplicationContext context, boolean packed) {
+    this(context, packed, null);
+  }
+
+  /** A non-null pullBuffer implies packed. */
+  public ReactScanEventEmitter(ReactApplicationContext context, boolean packed, ScanBatchBuffer pullBuffer) {
+    this.context = context;
+    this.encoder = packed || pullBuffer != null ? new ScanBatchEncoder() : null;
+    this.pullBuffer = pullBuffer;
+  }
+
+  @Override
+  public void onReads(List<TagRead> reads) {
+    if (encoder != null) {
+      encoder.encodeReads(reads, System.currentTimeMillis());
+      emitPacked();
+      return;
+    }
+
+    WritableArray arr = Arguments.createArray();
+    for (int i = 0; i < reads.size(); i++) {
+      TagRead tagData = reads.get(i);
+      WritableMap payload = Arguments.createMap();
+      payload.putString("tid", tagData.tid);
+      payload.putString("epc", tagData.epc);
+      payload.putString("rssi", tagData.rssi);
+
+      arr.pushMap(payload);
+    }
+    emit(arr);
+  }
+
+  @Override
+  public void onAggregatedReads(TagReadAggregator aggregator) {
+    if (encoder != null) {
+      encoder.encodeAggregated(aggregator, System.currentTimeMillis());
+      emitPacked();
+      return;
+    }
+
+    WritableArray arr = Arguments.createArray();
+    for (int i = 0; i < aggregator.size(); i++) {
+      TagReadAggregator.Record record = aggregator.get(i);
+      WritableMap payload = Arguments.createMap();
+      payload.putString("tid", record.tid);
+      payload.putString("epc", record.epc);
+      payload.putString("rssi", record.lastRssi);
+      payload.putInt("count", record.count);
+      payload.putDouble("firstSeenAt", record.firstSeenAt);
+      payload.putDouble("lastSeenAt", record.lastSeenAt);
+      if (record.rssiCount > 0) {
+        payload.putDouble("minRssi", record.minRssi);
+        payload.putDouble("maxRssi", record.maxRssi);
+        payload.putDouble("meanRssi", record.getMeanRssi());
+      }
+
+      arr.pushMap(payload);
+    }
+    emit(arr);
+  }
+
+  @Override
+  public void onCheckSessionDelta(CheckSession.Delta delta) {
+    WritableMap payload = Arguments.createMap();
+    payload.putArray("found", changesToArray(delta.found));
+    payload.putArray("unexpected", changesToArray(delta.unexpected));
+    payload.putInt("expectedCount", delta.expectedCount);
+    payload.putInt("foundCount", delta.foundCount);
+    payload.putInt("unexpectedCount", delta.unexpectedCount);
+    emit("uhfCheckSessionDelta", payload);
+  }
+
+  @Override
+  public void onLocateUpdate(LocateTracker tracker) {
+    if (tracker.getConfig().ranked) {
+      emitLocateRanking(tracker);
+      return;
+    }
+
+    WritableArray arr = Arguments.createArray();
+    for (int i = 0; i < tracker.size(); i++) {
+      LocateTracker.Target target = tracker.get(i);
+      if (!target.changed) continue;
+      WritableMap payload = Arguments.createMap();
+      payload.putString("epc", target.epc);
+      payload.putBoolean("inRange", target.inRange);
+      if (target.inRange) {
+        payload.putDouble("rssi", target.rssi);
+        payload.putDouble("rawRssi", target.rawRssi);
+      }
+      payload.putDouble("proximity", target.proximity);
+      payload.putInt("trend", target.trend);
+      payload.putDouble("lastSeenAt", target.lastSeenAt);
+      payload.putInt("readCount", target.readCount);
+      arr.pushMap(payload);
+    }
+    emit("uhfLocateUpdate", arr);
+  }
+
+  /**
+   * Every target read so far, closest first, as a flat array of five numbers
+   * per target: index in the EPC list, RSSI in 0.1 dBm (null out of range),
+   * proximity in percent, trend and milliseconds since last seen.
+   */
+  private void emitLocateRanking(LocateTracker tracker) {
+    int count = tracker.rank();
+    long now = tracker.getLastTickAt();
+    WritableArray arr = Arguments.createArray();
+    for (int i = 0; i < count; i++) {
+      LocateTracker.Target target = tracker.getRanked(i);
+      arr.pushInt(target.index);
+      if (target.inRange) {
+        arr.pushInt(Math.round(target.rssi * 10));
+      } else {
+        arr.pushNull();
+      }
+      arr.pushInt(Math.round(target.proximity * 100));
+      arr.pushInt(target.trend);
+      arr.pushInt((int) Math.min(Integer.MAX_VALUE, now - target.lastSeenAt));
+    }
+    emit("uhfLocateRanking", arr);
+  }
+
+  @Override
+  public void onTrace(long firstReadAt, long lastReadAt, long emittedAt) {
+    trace = new double[]{firstReadAt / 1e6, lastReadAt / 1e6, emittedAt / 1e6, System.currentTimeMillis()};
+  }
+
+  @Override
+  public void onStats(ScanStats.Snapshot stats) {
+    emit("uhfScanStats", statsToMap(stats));
+  }
+
+  /** Also what getScanStats resolves with. */
+  public static WritableMap statsToMap(ScanStats.Snapshot stats) {
+    WritableMap payload = Arguments.createMap();
+    payload.putBoolean("running", stats.running);
+    payload.putDouble("startedAt", stats.startedAt);
+    payload.putDouble("duration", stats.duration);
+    payload.putDouble("polls", stats.polls);
+    payload.putDouble("emptyPolls", stats.emptyPolls);
+    payload.putDouble("reads", stats.reads);
+    payload.putDouble("readsPerSecond", stats.readsPerSecond);
+    payload.putDouble("newEpcs", stats.newEpcs);
+    payload.putDouble("duplicates", stats.duplicates);
+    payload.putDouble("batches", stats.batches);
+    payload.putDouble("meanBatchSize", stats.meanBatchSize);
+    payload.putDouble("p95BatchSize", stats.p95BatchSize);
+    payload.putDouble("maxBatchSize", stats.maxBatchSize);
+    payload.putDouble("meanEmitTime", stats.meanEmitTime);
+    payload.putDouble("p95EmitTime", stats.p95EmitTime);
+    payload.putDouble("maxEmitTime", stats.maxEmitTime);
+    payload.putDouble("sounds", stats.sounds);
+    payload.putDouble("meanSoundTime", stats.meanSoundTime);
+    payload.putDouble("p95SoundTime", stats.p95SoundTime);
+    payload.putDouble("maxSoundTime", stats.maxSoundTime);
+    if (stats.autoTune) {
+      WritableMap tuning = Arguments.createMap();
+      tuning.putInt("power", stats.power);
+      tuning.putInt("q", stats.q);
+      tuning.putInt("session", stats.session);
+      tuning.putDouble("changes", stats.tuneChanges);
+      tuning.putDouble("score", stats.tuneScore);
+      payload.putMap("autoTune", tuning);
+    }
+    return payload;
+  }
+
+  /** What getScanLatency resolves with, in milliseconds. */
+  public static WritableMap latencyToMap(ScanLatency latency, boolean includeBuckets) {
+    WritableMap payload = Arguments.createMap();
+    payload.putMap("window", histogramToMap(latency.window, includeBuckets));
+    payload.putMap("bridge", histogramToMap(latency.bridge, includeBuckets));
+    payload.putMap("total", histogramToMap(latency.total, includeBuckets));
+    return payload;
+  }
+
+  private static WritableMap histogramToMap(LatencyHistogram histogram, boolean includeBuckets) {
+    WritableMap map = Arguments.createMap();
+    map.putDouble("count", histogram.getCount());
+    map.putDouble("min", histogram.getMin() / 1e3);
+    map.putDouble("mean", histogram.getMean() / 1e3);
+    map.putDouble("p50", histogram.getPercentile(50) / 1e3);
+    map.putDouble("p90", histogram.getPercentile(90) / 1e3);
+    map.putDouble("p99", histogram.getPercentile(99) / 1e3);
+    map.putDouble("max", histogram.getMax() / 1e3);
+    if (includeBuckets) {
+      // Upper bound and count of each bucket that counted anything
+      long[] pairs = histogram.dump();
+      WritableArray buckets = Arguments.createArray();
+      for (int i = 0; i < pairs.length; i += 2) {
+        buckets.pushDouble(pairs[i] / 1e3);
+        buckets.pushDouble(pairs[i + 1]);
+      }
+      map.putArray("buckets", buckets);
+    }
+    return map;
+  }
+
+  private static WritableArray changesToArray(List<CheckSession.Change> changes) {
+    WritableArray arr = Arguments.createArray();
+    for (int i = 0; i < changes.size(); i++) {
+      CheckSession.Change change = changes.get(i);
+      WritableMap map = Arguments.createMap();
+      map.putString("epc", change.epc);
+      if (change.itemId != null) map.putString("itemId", change.itemId);
+      map.putString("rssi", change.rssi);
+      arr.pushMap(map);
+    }
+    return arr;
+  }
+
+  private void emitPacked() {
+    if (pullBuffer != null) {
+      trace = null;
+      // Empty windows are only useful as events
+      if (encoder.getLength() > ScanBatchEncoder.HEADER_SIZE) pullBuffer.append(encoder);
+      return;
+    }
+    emit(Base64.encodeToString(encoder.getBuffer(), 0, encoder.getLength(), Base64.NO_WRAP));
+  }
+
+  private void emit(Object data) {
+    double[] windowTrace = trace;
+    if (windowTrace == null) {
+      emit("uhfScanData", data);
+      return;
+    }
+    trace = null;
+    WritableMap payload = Arguments.createMap();
+    if (data instanceof String) {
+      payload.putString("data", (String) data);
+    } else {
+      payload.putArray("data", (WritableArray) data);
+    }
+    WritableArray traceArray = Arguments.createArray();
+    for (double time : windowTrace) traceArray.pushDouble(time);
+    payload.putArray("trace", traceArray);
+    emit("uhfScanData", payload);
+  }
+
+  private void emit(String eventName, Object data) {
+    context
+            .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
+            .emit(eventName, data);
+  }
+}
@@ -0,0 +1,296 @@
+package vg.zeta.app.inventory.rfid;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Raw reads of a scan as they came out of the reader, for replaying them
+ * later through {@link ReplayReaderBackend} (startScan's replay option, or
+ * setSimulatedReader). Unlike a ScanJournal nothing is aggregated, and
+ * reads keep their timing.
+ *
+ * All numbers are little-endian.
+ *
+ * Header (16 bytes):
+ *   u32 magic ("ZRR1")
+ *   u16 version (1)
+ *   u16 reserved
+ *   i64 started at, epoch milliseconds
+ *
+ * Read:
+ *   var time since the previous read (the start for the first), in
+ *       microseconds of a monotonic clock, 7 bits per byte, low bits first
+ *   u8  EPC header, as in ScanBatchEncoder
+ *   ..  EPC
+ *   u8  TID header, same
+ *   ..  TID
+ *   i16 RSSI in 0.01 dBm, -32768 if unknown
+ *
+ * Reads are about 20 bytes, a 50k read session is about a megabyte.
+ */
+public class ReadRecording {
+
+  public static final String SUFFIX = ".reads";
+
+  static final int MAGIC = 0x3152525A; // "ZRR1"
+  static final int VERSION = 1;
+  static final int HEADER_SIZE = 16;
+
+  private static final int FLUSH_SIZE = 64 * 1024;
+  private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+  /** Appends reads to a new recording. Thread-safe. */
+  public static class Writer implements Closeable {
+    private final FileOutputStream out;
+    private final long startedAtNanos;
+    private byte[] buffer = new byte[FLUSH_SIZE + 512];
+    private int position;
+    private long lastReadAtMicros;
+    private long readCount;
+    private boolean closed;
+
+    private Writer(File file, long startedAtNanos) throws IOException {
+      this.out = new FileOutputStream(file);
+      this.startedAtNanos = startedAtNanos;
+      writeInt(MAGIC);
+      writeShort(VERSION);
+      writeShort(0);
+      writeLong(System.currentTimeMillis());
+    }
+
+    /** Creates (or overwrites) the file, times are from now on the {@link ScanTracer} clock. */
+    public static Writer create(File file) throws IOException {
+      File dir = file.getParentFile();
+      if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+        throw new IOException("Cannot create " + dir);
+      }
+      return new Writer(file, ScanTracer.get().nanoTime());
+    }
+
+    /** Appends the first count reads, all read at readAtNanos. Ignored once closed. */
+    public synchronized void append(List<TagRead> reads, int from, int count, long readAtNanos) throws IOException {
+      if (closed) return;
+      long readAtMicros = Math.max(lastReadAtMicros, (readAtNanos - startedAtNanos) / 1000);
+      for (int i = from; i < from + count; i++) {
+        TagRead read = reads.get(i);
+        writeVarLong(readAtMicros - lastReadAtMicros);
+        lastReadAtMicros = readAtMicros;
+        writeId(read.epc);
+        writeId(read.tid);
+        writeShort(ScanBatchEncoder.toCentiDbm(TagReadAggregator.parseRssi(read.rssi)));
+        readCount++;
+      }
+      if (position >= FLUSH_SIZE) flush();
+    }
+
+    public synchronized long getReadCount() {
+      return readCount;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+      if (closed) return;
+      closed = true;
+      try {
+        flush();
+      } finally {
+        out.close();
+      }
+    }
+
+    private void flush() throws IOException {
+      out.write(buffer, 0, position);
+      position = 0;
+    }
+
+    private void writeId(String id) {
+      ensureCapacity(1 + ScanBatchEncoder.MAX_ID_LENGTH);
+      int header = ScanBatchEncoder.packId(id, buffer, position + 1, ScanBatchEncoder.MAX_ID_LENGTH);
+      buffer[position] = (byte) header;
+      position += 1 + (header & ScanBatchEncoder.MAX_ID_LENGTH);
+    }
+
+    private void writeVarLong(long value) {
+      ensureCapacity(10);
+      while ((value & ~0x7FL) != 0) {
+        buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      buffer[position++] = (byte) value;
+    }
+
+    private void writeShort(int value) {
+      ensureCapacity(2);
+      buffer[position++] = (byte) value;
+      buffer[position++] = (byte) (value >>> 8);
+    }
+
+    private void writeInt(int value) {
+      writeShort(value);
+      writeShort(value >>> 16);
+    }
+
+    private void writeLong(long value) {
+      writeInt((int) value);
+      writeInt((int) (value >>> 32));
+    }
+
+    private void ensureCapacity(int extra) {
+      if (position + extra <= buffer.length) return;
+      byte[] newBuffer = new byte[Math.max(buffer.length * 2, position + extra)];
+      System.arraycopy(buffer, 0, newBuffer, 0, position);
+      buffer = newBuffer;
+    }
+  }
+
+  /** A recording read back, times in nanoseconds from its start. */
+  public static class Session {
+    public long startedAt;
+    public long[] offsetsNanos;
+    public TagRead[] reads;
+  }
+
+  /** Whether the file starts like a recording, rather than a text replay session. */
+  public static boolean isRecording(File file) throws IOException {
+    byte[] header = new byte[4];
+    InputStream in = new FileInputStream(file);
+    try {
+      return in.read(header) == 4 && getInt(header, 0) == MAGIC;
+    } finally {
+      in.close();
+    }
+  }
+
+  public static Session load(File file) throws IOException {
+    long length = file.length();
+    if (length > Integer.MAX_VALUE) throw new IOException(file + " is too large");
+    byte[] data = new byte[(int) length];
+    InputStream in = new FileInputStream(file);
+    try {
+      int read = 0;
+      while (read < data.length) {
+        int n = in.read(data, read, data.length - read);
+        if (n < 0) break;
+        read += n;
+      }
+    } finally {
+      in.close();
+    }
+
+    if (data.length < HEADER_SIZE || getInt(data, 0) != MAGIC) {
+      throw new IOException(file + " is not a read recording");
+    }
+    int version = (data[4] & 0xFF) | (data[5] & 0xFF) << 8;
+    if (version != VERSION) throw new IOException("Unsupported read recording version " + version);
+
+    Session session = new Session();
+    session.startedAt = (getInt(data, 8) & 0xFFFFFFFFL) | (long) getInt(data, 12) << 32;
+    ArrayList<TagRead> reads = new ArrayList<>();
+    long[] offsets = new long[1024];
+    long micros = 0;
+    int position = HEADER_SIZE;
+    StringBuilder builder = new StringBuilder();
+    // A read cut short by the app being killed is left out
+    while (position < data.length) {
+      long delta = 0;
+      int shift = 0;
+      int start = position;
+      while (position < data.length) {
+        byte b = data[position++];
+        delta |= (long) (b & 0x7F) << shift;
+        shift += 7;
+        if ((b & 0x80) == 0) break;
+      }
+      if (position + 1 > data.length) break;
+      int epcEnd = position + 1 + (data[position] & ScanBatchEncoder.MAX_ID_LENGTH);
+      if (epcEnd + 1 > data.length) break;
+      int tidEnd = epcEnd + 1 + (data[epcEnd] & ScanBatchEncoder.MAX_ID_LENGTH);
+      if (tidEnd + 2 > data.length || position == start) break;
+
+      String epc = unpackId(data, position, builder);
+      String tid = unpackId(data, epcEnd, builder);
+      short rssi = (short) ((data[tidEnd] & 0xFF) | (data[tidEnd + 1] & 0xFF) << 8);
+      position = tidEnd + 2;
+
+      micros += delta;
+      if (reads.size() == offsets.length) {
+        long[] grown = new long[offsets.length * 2];
+        System.arraycopy(offsets, 0, grown, 0, offsets.length);
+        offsets = grown;
+      }
+      offsets[reads.size()] = micros * 1000;
+      reads.add(new TagRead(epc, tid, formatRssi(rssi, builder)));
+    }
+
+    session.reads = reads.toArray(new TagRead[0]);
+    session.offsetsNanos = new long[session.reads.length];
+    System.arraycopy(offsets, 0, session.offsetsNanos, 0, session.reads.length);
+    return session;
+  }
+
+  private static String unpackId(byte[] data, int offset, StringBuilder builder) {
+    int header = data[offset] & 0xFF;
+    int length = header & ScanBatchEncoder.MAX_ID_LENGTH;
+    if (length == 0) return "";
+    builder.setLength(0);
+    for (int i = offset + 1; i <= offset + length; i++) {
+      if ((header & ScanBatchEncoder.TEXT_FLAG) != 0) {
+        builder.append((char) data[i]);
+      } else {
+        builder.append(HEX_DIGITS[(data[i] >> 4) & 0xF]).append(HEX_DIGITS[data[i] & 0xF]);
+      }
+    }
+    return builder.toString();
+  }
+
+  /** As the reader formats it, e.g. "-61.40", empty if unknown. */
+  static String formatRssi(short centiDbm, StringBuilder builder) {
+    if (centiDbm == ScanBatchEncoder.RSSI_UNKNOWN) return "";
+    builder.setLength(0);
+    int value = centiDbm;
+    if (value < 0) {
+      builder.append('-');
+      value = -value;
+    }
+    builder.append(value / 100).append('.');
+    int fraction = value % 100;
+    if (fraction < 10) builder.append('0');
+    return builder.append(fraction).toString();
+  }
+
+  private static int getInt(byte[] data, int offset) {
+    return (data[offset] & 0xFF) | (data[offset + 1] & 0xFF) << 8
+            | (data[offset + 2] & 0xFF) << 16 | (data[offset + 3] & 0xFF) << 24;
+  }
+
+  /** The file of the recording with that name in dir. */
+  public static File fileFor(File dir, String name) throws UnsupportedEncodingException {
+    return new File(dir, URLEncoder.encode(name, "UTF-8") + SUFFIX);
+  }
+
+  /** Names of the recordings in dir. */
+  public static List<String> list(File dir) {
+    ArrayList<String> names = new ArrayList<>();
+    File[] files = dir.listFiles();
+    if (files == null) return names;
+    for (File file : files) {
+      String fileName = file.getName();
+      if (!fileName.endsWith(SUFFIX)) continue;
+      try {
+        names.add(URLDecoder.decode(fileName.substring(0, fileName.length() - SUFFIX.length()), "UTF-8"));
+      } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+        // Not one of ours
+      }
+    }
+    return names;
+  }
+}
@@ -0,0 +1,252 @@
+package vg.zeta.app.inventory.rfid;
+
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs reader commands one at a time on its own thread, so that blocking
+ * vendor calls neither hold up the React Native modules thread nor
+ * interleave on the reader.
+ *
+ * Commands are taken by priority, then in the order they were submitted.
+ * Each one has a timeout from the time it is submitted: its callback then
+ * gets a {@link ReaderException}, and it is skipped if it has not started.
+ * A command that is already running cannot be aborted, the ones behind it
+ * wait for it to return.
+ */
+public class ReaderCommandExecutor {
+
+  /** Commands that stop something (stopScan, stopLocate), before anything else queued. */
+  public static final int PRIORITY_HIGH = 0;
+  public static final int PRIORITY_NORMAL = 1;
+  /** Telemetry (battery, temperature, status), after everything else queued. */
+  public static final int PRIORITY_LOW = 2;
+
+  public static final long DEFAULT_TIMEOUT = 10000;
+
+  public interface Command<T> {
+    /** Called on the executor thread, throws to fail the command. */
+    T run() throws Exception;
+  }
+
+  public interface Callback<T> {
+    /** Called on the executor thread. */
+    void onResult(T result);
+
+    /** Called on the executor thread, or the timeout thread if the command timed out. */
+    void onError(Exception e);
+  }
+
+  public static class Stats {
+    /** Commands waiting to run. */
+    public int queued;
+    public int maxQueued;
+    public long completed;
+    public long failed;
+    public long timedOut;
+    /** Name of the command running now, null if none. */
+    public String running;
+    /** How long the running command has been running, in milliseconds. */
+    public double runningFor;
+    /** Time between submitting and starting commands, in milliseconds. */
+    public double meanWait;
+    public double maxWait;
+    /** Time commands took to run, in milliseconds. */
+    public double meanRun;
+    public double maxRun;
+  }
+
+  private static final Callback<Object> LOG_ERRORS = new Callback<Object>() {
+    @Override
+    public void onResult(Object result) {
+    }
+
+    @Override
+    public void onError(Exception e) {
+      e.printStackTrace();
+    }
+  };
+
+  private final PriorityBlockingQueue<Task<?>> queue = new PriorityBlockingQueue<>();
+  private final ScheduledThreadPoolExecutor timeouts = new ScheduledThreadPoolExecutor(1, runnable -> {
+    Thread thread = new Thread(runnable, "ReaderCommandTimeouts");
+    thread.setDaemon(true);
+    return thread;
+  });
+  private final AtomicLong sequence = new AtomicLong();
+  private volatile Task<?> current;
+
+  // Guarded by this
+  private int maxQueued;
+  private long completed;
+  private long failed;
+  private long timedOut;
+  private long totalWaitNanos;
+  private long maxWaitNanos;
+  private long totalRunNanos;
+  private long maxRunNanos;
+
+  public ReaderCommandExecutor(String name) {
+    timeouts.setRemoveOnCancelPolicy(true);
+    Thread thread = new Thread(this::run, name);
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /** Queues a command nobody waits for, failures are only logged. */
+  public void execute(String name, int priority, Command<?> command) {
+    submit(name, priority, DEFAULT_TIMEOUT, command, LOG_ERRORS);
+  }
+
+  public <T> void submit(String name, int priority, Command<T> command, Callback<? super T> callback) {
+    submit(name, priority, DEFAULT_TIMEOUT, command, callback);
+  }
+
+  /** Queues the command, the callback gets its result or error exactly once. */
+  public <T> void submit(String name, int priority, long timeoutMillis, Command<T> command, Callback<? super T> callback) {
+    final Task<T> task = new Task<>(name, priority, sequence.incrementAndGet(), command, callback);
+    if (timeoutMillis > 0) {
+      task.timeout = timeouts.schedule(() -> {
+        if (task.fail(new ReaderException(name + " timed out after " + timeoutMillis + " ms"))) {
+          queue.remove(task);
+          synchronized (ReaderCommandExecutor.this) {
+            timedOut++;
+          }
+        }
+      }, timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+    queue.add(task);
+    synchronized (this) {
+      maxQueued = Math.max(maxQueued, queue.size());
+    }
+  }
+
+  public synchronized Stats getStats() {
+    Stats stats = new Stats();
+    stats.queued = queue.size();
+    stats.maxQueued = maxQueued;
+    stats.completed = completed;
+    stats.failed = failed;
+    stats.timedOut = timedOut;
+    Task<?> task = current;
+    if (task != null) {
+      stats.running = task.name;
+      stats.runningFor = millis(System.nanoTime() - task.startedAt);
+    }
+    long count = completed + failed;
+    if (count > 0) {
+      stats.meanWait = millis(totalWaitNanos) / count;
+      stats.meanRun = millis(totalRunNanos) / count;
+    }
+    stats.maxWait = millis(maxWaitNanos);
+    stats.maxRun = millis(maxRunNanos);
+    return stats;
+  }
+
+  private void run() {
+    while (true) {
+      Task<?> task;
+      try {
+        task = queue.take();
+      } catch (InterruptedException e) {
+        continue;
+      }
+      // Timed out while queued
+      if (task.isDone()) continue;
+
+      task.startedAt = System.nanoTime();
+      current = task;
+      boolean ok;
+      try {
+        ok = task.execute();
+      } catch (RuntimeException e) {
+        // Thrown by a callback, not held against the command
+        e.printStackTrace();
+        ok = true;
+      }
+      long finishedAt = System.nanoTime();
+      current = null;
+
+      synchronized (this) {
+        if (ok) {
+          completed++;
+        } else {
+          failed++;
+        }
+        long wait = task.startedAt - task.submittedAt;
+        long run = finishedAt - task.startedAt;
+        totalWaitNanos += wait;
+        totalRunNanos += run;
+        maxWaitNanos = Math.max(maxWaitNanos, wait);
+        maxRunNanos = Math.max(maxRunNanos, run);
+      }
+    }
+  }
+
+  private static double millis(long nanos) {
+    return nanos / 1e6;
+  }
+
+  private static class Task<T> implements Comparable<Task<?>> {
+    final String name;
+    final int priority;
+    final long sequence;
+    final long submittedAt = System.nanoTime();
+    final Command<T> command;
+    final Callback<? super T> callback;
+    final AtomicBoolean done = new AtomicBoolean();
+    volatile ScheduledFuture<?> timeout;
+    long startedAt;
+
+    Task(String name, int priority, long sequence, Command<T> command, Callback<? super T> callback) {
+      this.name = name;
+      this.priority = priority;
+      this.sequence = sequence;
+      this.command = command;
+      this.callback = callback;
+    }
+
+    boolean isDone() {
+      return done.get();
+    }
+
+    /** Runs the command, false if it failed. */
+    boolean execute() {
+      T result;
+      try {
+        result = command.run();
+      } catch (Exception e) {
+        fail(e);
+        return false;
+      }
+      if (done.compareAndSet(false, true)) {
+        cancelTimeout();
+        callback.onResult(result);
+      }
+      return true;
+    }
+
+    /** Fails the command unless it already completed, true if this call did. */
+    boolean fail(Exception e) {
+      if (!done.compareAndSet(false, true)) return false;
+      cancelTimeout();
+      callback.onError(e);
+      return true;
+    }
+
+    private void cancelTimeout() {
+      ScheduledFuture<?> future = timeout;
+      if (future != null) future.cancel(false);
+    }
+
+    @Override
+    public int compareTo(Task<?> other) {
+      if (priority != other.priority) return priority < other.priority ? -1 : 1;
+      return Long.compare(sequence, other.sequence);
+    }
+  }
+}
@@ -0,0 +1,10 @@
+package vg.zeta.app.inventory.rfid;
+
+/** A reader command that did not succeed, e.g. "setPower returned false". */
+public class ReaderException extends Exception {
+  private static final long serialVersionUID = 1L;
+
+  public ReaderException(String message) {
+    super(message);
+  }
+}
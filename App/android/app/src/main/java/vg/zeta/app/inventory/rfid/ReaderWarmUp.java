@@ -0,0 +1,209 @@
+package vg.zeta.app.inventory.rfid;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import com.rscja.deviceapi.RFIDWithUHFUART;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Powers up the built-in UART reader and loads the beeps in the background
+ * when the app starts, so that the first scan does not wait seconds for
+ * the module to come up. Opt-in, with {@link #setEnabledOnStart}, since it
+ * powers the reader even if the app is not used for scanning this time.
+ *
+ * There is one per process, started from MainApplication before React
+ * Native is up. The UART module takes the reader and sounds over on init,
+ * and forwards the progress to JS as uhfWarmUp events.
+ */
+public class ReaderWarmUp {
+
+  public static final String STATE_IDLE = "IDLE";
+  public static final String STATE_WARMING = "WARMING";
+  public static final String STATE_READY = "READY";
+  public static final String STATE_FAILED = "FAILED";
+
+  private static final String PREFERENCES = "RFIDWithUHF";
+  private static final String KEY_ON_START = "warmUpOnStart";
+  private static final int STEP_COUNT = 2;
+
+  public interface Listener {
+    /** Called on the warm-up thread, and with the current status when set. */
+    void onWarmUp(Status status);
+  }
+
+  public static class Status {
+    public String state;
+    /** The step running now (sounds, reader), null if none. */
+    public String step;
+    public int stepsDone;
+    public int stepCount = STEP_COUNT;
+    public String error;
+    /** Time the warm-up has taken so far, in milliseconds. */
+    public long duration;
+  }
+
+  private static ReaderWarmUp instance;
+
+  public static synchronized ReaderWarmUp get() {
+    if (instance == null) instance = new ReaderWarmUp();
+    return instance;
+  }
+
+  public static boolean isEnabledOnStart(Context context) {
+    return preferences(context).getBoolean(KEY_ON_START, false);
+  }
+
+  public static void setEnabledOnStart(Context context, boolean enabled) {
+    preferences(context).edit().putBoolean(KEY_ON_START, enabled).apply();
+  }
+
+  /** For Application.onCreate, starts the warm-up if it is enabled. */
+  public static void startIfEnabled(Context context) {
+    Context applicationContext = context.getApplicationContext();
+    if (isEnabledOnStart(applicationContext)) get().start(applicationContext);
+  }
+
+  private static SharedPreferences preferences(Context context) {
+    return context.getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE);
+  }
+
+  private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "ReaderWarmUp");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  // Guarded by this
+  private String state = STATE_IDLE;
+  private String step;
+  private int stepsDone;
+  private String error;
+  private long startedAt;
+  private long finishedAt;
+  private Future<?> future;
+  private Listener listener;
+  private RFIDWithUHFUART reader;
+  private SoundFeedback sounds;
+
+  private ReaderWarmUp() {
+  }
+
+  /** Starts warming up unless it already has been, the progress goes to the listener. */
+  public void start(Context context) {
+    synchronized (this) {
+      if (future != null) return;
+      state = STATE_WARMING;
+      startedAt = System.currentTimeMillis();
+      future = executor.submit(() -> run(context));
+    }
+    notifyListener();
+  }
+
+  private void run(Context context) {
+    try {
+      // Quick, and of use even if the reader does not come up
+      setStep("sounds");
+      SoundFeedback feedback = new SoundFeedback(context);
+      synchronized (this) {
+        sounds = feedback;
+        stepsDone++;
+      }
+
+      setStep("reader");
+      RFIDWithUHFUART uart = RFIDWithUHFUART.getInstance();
+      if (!uart.init()) throw new ReaderException("UHF reader init failed");
+      synchronized (this) {
+        reader = uart;
+        stepsDone++;
+      }
+      finish(STATE_READY, null);
+    } catch (Exception e) {
+      finish(STATE_FAILED, e.getMessage() != null ? e.getMessage() : e.toString());
+    }
+  }
+
+  private void setStep(String name) {
+    synchronized (this) {
+      step = name;
+    }
+    notifyListener();
+  }
+
+  private void finish(String finalState, String message) {
+    synchronized (this) {
+      state = finalState;
+      step = null;
+      error = message;
+      finishedAt = System.currentTimeMillis();
+    }
+    notifyListener();
+  }
+
+  public synchronized Status getStatus() {
+    Status status = new Status();
+    status.state = state;
+    status.step = step;
+    status.stepsDone = stepsDone;
+    status.error = error;
+    if (startedAt > 0) {
+      status.duration = (finishedAt > 0 ? finishedAt : System.currentTimeMillis()) - startedAt;
+    }
+    return status;
+  }
+
+  /** Replaces the listener, a reloaded module takes over from the old one. */
+  public void setListener(Listener listener) {
+    synchronized (this) {
+      this.listener = listener;
+    }
+    if (listener != null) notifyListener();
+  }
+
+  private void notifyListener() {
+    Listener current;
+    synchronized (this) {
+      current = listener;
+    }
+    if (current != null) current.onWarmUp(getStatus());
+  }
+
+  /**
+   * Waits up to timeoutMillis for a running warm-up, then hands over the
+   * reader it powered up, once. Null if it was not started, failed or was
+   * already taken. Throws if it is still running, initializing the reader
+   * a second time meanwhile would not end well.
+   */
+  public RFIDWithUHFUART takeReader(long timeoutMillis) throws InterruptedException, ReaderException {
+    Future<?> running;
+    synchronized (this) {
+      running = future;
+    }
+    if (running == null) return null;
+    try {
+      running.get(timeoutMillis, TimeUnit.MILLISECONDS);
+    } catch (TimeoutException e) {
+      throw new ReaderException("UHF reader warm-up still running");
+    } catch (ExecutionException e) {
+      return null;
+    }
+    synchronized (this) {
+      RFIDWithUHFUART taken = reader;
+      reader = null;
+      return taken;
+    }
+  }
+
+  /** The sounds loaded by the warm-up, once, null if there are none (yet). */
+  public synchronized SoundFeedback takeSounds() {
+    SoundFeedback taken = sounds;
+    sounds = null;
+    return taken;
+  }
+}
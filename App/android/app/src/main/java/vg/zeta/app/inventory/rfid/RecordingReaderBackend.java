@@ -0,0 +1,168 @@
+package vg.zeta.app.inventory.rfid;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Passes everything through to a reader, and appends whatever comes out of
+ * its buffer to a {@link ReadRecording}, timed when it came out.
+ *
+ * If the recording cannot be written (disk full) recording stops and the
+ * scan goes on.
+ */
+public class RecordingReaderBackend
+        implements UHFReaderBackend, UHFReaderBackend.Beeper, UHFReaderBackend.Gen2, UHFReaderBackend.InventoryModes {
+
+  private final UHFReaderBackend delegate;
+  private final ReadRecording.Writer recording;
+  private volatile IOException error;
+
+  public RecordingReaderBackend(UHFReaderBackend delegate, ReadRecording.Writer recording) {
+    this.delegate = delegate;
+    this.recording = recording;
+  }
+
+  public UHFReaderBackend getDelegate() {
+    return delegate;
+  }
+
+  /** Why recording stopped early, null if it did not. */
+  public IOException getError() {
+    return error;
+  }
+
+  private void record(List<TagRead> reads, int from, int count) {
+    if (count <= 0 || error != null) return;
+    try {
+      recording.append(reads, from, count, ScanTracer.get().nanoTime());
+    } catch (IOException e) {
+      error = e;
+    }
+  }
+
+  @Override
+  public boolean free() {
+    return delegate.free();
+  }
+
+  @Override
+  public boolean isWorking() {
+    return delegate.isWorking();
+  }
+
+  @Override
+  public int getPower() {
+    return delegate.getPower();
+  }
+
+  @Override
+  public boolean setPower(int power) {
+    return delegate.setPower(power);
+  }
+
+  @Override
+  public int getFrequencyMode() {
+    return delegate.getFrequencyMode();
+  }
+
+  @Override
+  public boolean setFrequencyMode(int mode) {
+    return delegate.setFrequencyMode(mode);
+  }
+
+  @Override
+  public boolean setFilter(int bank, int ptr, int len, String data) {
+    return delegate.setFilter(bank, ptr, len, data);
+  }
+
+  @Override
+  public boolean setBeep(boolean enabled) {
+    return delegate instanceof Beeper && ((Beeper) delegate).setBeep(enabled);
+  }
+
+  @Override
+  public Gen2Settings getGen2() {
+    return delegate instanceof Gen2 ? ((Gen2) delegate).getGen2() : null;
+  }
+
+  @Override
+  public boolean setGen2(Gen2Settings settings) {
+    return delegate instanceof Gen2 && ((Gen2) delegate).setGen2(settings);
+  }
+
+  @Override
+  public boolean setsGen2WhileInventorying() {
+    return delegate instanceof Gen2 && ((Gen2) delegate).setsGen2WhileInventorying();
+  }
+
+  @Override
+  public boolean setInventoryMode(int mode) {
+    return delegate instanceof InventoryModes && ((InventoryModes) delegate).setInventoryMode(mode);
+  }
+
+  @Override
+  public boolean setFastId(boolean enabled) {
+    return delegate instanceof InventoryModes && ((InventoryModes) delegate).setFastId(enabled);
+  }
+
+  @Override
+  public boolean setTagFocus(boolean enabled) {
+    return delegate instanceof InventoryModes && ((InventoryModes) delegate).setTagFocus(enabled);
+  }
+
+  @Override
+  public boolean startInventoryTag() {
+    return delegate.startInventoryTag();
+  }
+
+  @Override
+  public boolean stopInventory() {
+    return delegate.stopInventory();
+  }
+
+  @Override
+  public TagRead readTagFromBuffer() {
+    TagRead read = delegate.readTagFromBuffer();
+    if (read != null) record(Collections.singletonList(read), 0, 1);
+    return read;
+  }
+
+  @Override
+  public int readTagsFromBuffer(List<TagRead> out, int maxCount) {
+    int from = out.size();
+    int count = delegate.readTagsFromBuffer(out, maxCount);
+    record(out, from, out.size() - from);
+    return count;
+  }
+
+  @Override
+  public String readData(String accessPwd, int bank, int ptr, int cnt) {
+    return delegate.readData(accessPwd, bank, ptr, cnt);
+  }
+
+  @Override
+  public String readData(String accessPwd, int filterBank, int filterPtr, int filterCnt, String filterData, int bank, int ptr, int cnt) {
+    return delegate.readData(accessPwd, filterBank, filterPtr, filterCnt, filterData, bank, ptr, cnt);
+  }
+
+  @Override
+  public boolean writeData(String accessPwd, int bank, int ptr, int cnt, String data) {
+    return delegate.writeData(accessPwd, bank, ptr, cnt, data);
+  }
+
+  @Override
+  public boolean writeData(String accessPwd, int filterBank, int filterPtr, int filterCnt, String filterData, int bank, int ptr, int cnt, String data) {
+    return delegate.writeData(accessPwd, filterBank, filterPtr, filterCnt, filterData, bank, ptr, cnt, data);
+  }
+
+  @Override
+  public boolean lockMem(String accessPwd, String lockCode) {
+    return delegate.lockMem(accessPwd, lockCode);
+  }
+
+  @Override
+  public boolean lockMem(String accessPwd, int filterBank, int filterPtr, int filterCnt, String filterData, String lockCode) {
+    return delegate.lockMem(accessPwd, filterBank, filterPtr, filterCnt, filterData, lockCode);
+  }
+}
@@ -0,0 +1,272 @@
+package vg.zeta.app.inventory.rfid;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A reader that plays back a recorded session, at its original pace or
+ * faster, for reproducing field problems without hardware.
+ *
+ * Sessions are text, one read per line: {@code offsetMillis,epc,tid,rssi},
+ * where offsetMillis is relative to the start of the inventory. Blank lines
+ * and lines starting with # are ignored. {@link #fromFile} also takes the
+ * binary sessions of {@link ReadRecording}, which keep microsecond timing.
+ *
+ * A speed of Double.POSITIVE_INFINITY hands every read over as soon as the
+ * reader buffer is polled, for measuring the pipeline rather than the radio.
+ * Stopping the inventory pauses the session, starting it again (e.g. to
+ * retune) resumes where it was.
+ *
+ * Read, write and lock operations always fail.
+ */
+public class ReplayReaderBackend
+        implements UHFReaderBackend, UHFReaderBackend.Gen2, UHFReaderBackend.InventoryModes {
+
+  private final long[] offsetsNanos;
+  private final TagRead[] reads;
+  private final double speed;
+  private final boolean loop;
+
+  private int power = 30;
+  private int frequencyMode = 0;
+  // Kept for getGen2, they change nothing about the reads
+  private Gen2Settings gen2 = Gen2Settings.defaults();
+  private int inventoryMode = InventoryConfig.MODE_EPC;
+  private boolean fastId;
+  private boolean tagFocus;
+  private boolean inventoryRunning;
+  // When the session would have started had it never been paused, and when it was paused
+  private long inventoryStartedAtNanos;
+  private long inventoryStoppedAtNanos = -1;
+  private long position;
+
+  public ReplayReaderBackend(List<Long> offsetsMillis, List<TagRead> reads, double speed, boolean loop) {
+    if (offsetsMillis.size() != reads.size()) {
+      throw new IllegalArgumentException("offsetsMillis and reads must have the same size");
+    }
+    this.offsetsNanos = new long[offsetsMillis.size()];
+    for (int i = 0; i < offsetsNanos.length; i++) {
+      offsetsNanos[i] = offsetsMillis.get(i) * 1_000_000L;
+    }
+    this.reads = reads.toArray(new TagRead[0]);
+    this.speed = speed > 0 ? speed : 1;
+    this.loop = loop;
+  }
+
+  private ReplayReaderBackend(long[] offsetsNanos, TagRead[] reads, double speed, boolean loop) {
+    this.offsetsNanos = offsetsNanos;
+    this.reads = reads;
+    this.speed = speed > 0 ? speed : 1;
+    this.loop = loop;
+  }
+
+  /** Reads a text session, or a {@link ReadRecording}. */
+  public static ReplayReaderBackend fromFile(File file, double speed, boolean loop) throws IOException {
+    if (ReadRecording.isRecording(file)) {
+      ReadRecording.Session session = ReadRecording.load(file);
+      return new ReplayReaderBackend(session.offsetsNanos, session.reads, speed, loop);
+    }
+    InputStream in = new FileInputStream(file);
+    try {
+      return fromStream(in, speed, loop);
+    } finally {
+      in.close();
+    }
+  }
+
+  public static ReplayReaderBackend fromStream(InputStream in, double speed, boolean loop) throws IOException {
+    BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+    ArrayList<Long> offsets = new ArrayList<>();
+    ArrayList<TagRead> reads = new ArrayList<>();
+    String line;
+    int lineNumber = 0;
+    while ((line = reader.readLine()) != null) {
+      lineNumber++;
+      line = line.trim();
+      if (line.isEmpty() || line.startsWith("#")) continue;
+
+      String[] parts = line.split(",", -1);
+      if (parts.length < 2) {
+        throw new IOException("Invalid replay session, line " + lineNumber + ": " + line);
+      }
+      try {
+        offsets.add(Long.parseLong(parts[0].trim()));
+      } catch (NumberFormatException e) {
+        throw new IOException("Invalid offset on line " + lineNumber + ": " + parts[0]);
+      }
+      reads.add(new TagRead(
+              parts[1].trim(),
+              parts.length > 2 ? parts[2].trim() : "",
+              parts.length > 3 ? parts[3].trim() : ""
+      ));
+    }
+    return new ReplayReaderBackend(offsets, reads, speed, loop);
+  }
+
+  public int getReadCount() {
+    return reads.length;
+  }
+
+  /** True once every read has been played and the session does not loop. */
+  public synchronized boolean isFinished() {
+    return !loop && position >= reads.length;
+  }
+
+  @Override
+  public synchronized boolean free() {
+    return stopInventory();
+  }
+
+  @Override
+  public synchronized boolean isWorking() {
+    return inventoryRunning;
+  }
+
+  @Override
+  public synchronized int getPower() {
+    return power;
+  }
+
+  @Override
+  public synchronized boolean setPower(int power) {
+    this.power = power;
+    return true;
+  }
+
+  @Override
+  public synchronized int getFrequencyMode() {
+    return frequencyMode;
+  }
+
+  @Override
+  public synchronized boolean setFrequencyMode(int mode) {
+    frequencyMode = mode;
+    return true;
+  }
+
+  @Override
+  public synchronized Gen2Settings getGen2() {
+    return gen2.copy();
+  }
+
+  @Override
+  public synchronized boolean setGen2(Gen2Settings settings) {
+    gen2 = settings.copy();
+    return true;
+  }
+
+  @Override
+  public boolean setsGen2WhileInventorying() {
+    return true;
+  }
+
+  @Override
+  public synchronized boolean setInventoryMode(int mode) {
+    inventoryMode = mode;
+    return true;
+  }
+
+  @Override
+  public synchronized boolean setFastId(boolean enabled) {
+    fastId = enabled;
+    return true;
+  }
+
+  @Override
+  public synchronized boolean setTagFocus(boolean enabled) {
+    tagFocus = enabled;
+    return true;
+  }
+
+  @Override
+  public boolean setFilter(int bank, int ptr, int len, String data) {
+    return true;
+  }
+
+  @Override
+  public synchronized boolean startInventoryTag() {
+    if (inventoryRunning) return true;
+    long now = System.nanoTime();
+    if (inventoryStoppedAtNanos < 0) {
+      inventoryStartedAtNanos = now;
+    } else {
+      // The time spent stopped does not count towards the offsets
+      inventoryStartedAtNanos += now - inventoryStoppedAtNanos;
+    }
+    inventoryRunning = true;
+    return true;
+  }
+
+  @Override
+  public synchronized boolean stopInventory() {
+    if (inventoryRunning) {
+      inventoryRunning = false;
+      inventoryStoppedAtNanos = System.nanoTime();
+    }
+    return true;
+  }
+
+  @Override
+  public synchronized TagRead readTagFromBuffer() {
+    if (!isDue()) return null;
+    return reads[(int) (position++ % reads.length)];
+  }
+
+  @Override
+  public synchronized int readTagsFromBuffer(List<TagRead> out, int maxCount) {
+    int count = 0;
+    while (count < maxCount && isDue()) {
+      out.add(reads[(int) (position++ % reads.length)]);
+      count++;
+    }
+    return count;
+  }
+
+  private boolean isDue() {
+    if (!inventoryRunning || reads.length == 0) return false;
+    if (!loop && position >= reads.length) return false;
+
+    int index = (int) (position % reads.length);
+    long lap = position / reads.length;
+    long sessionLengthNanos = offsetsNanos[reads.length - 1] + 1;
+    long dueAt = lap * sessionLengthNanos + offsetsNanos[index];
+    long elapsed = (long) ((System.nanoTime() - inventoryStartedAtNanos) * speed);
+    return elapsed >= dueAt;
+  }
+
+  @Override
+  public String readData(String accessPwd, int bank, int ptr, int cnt) {
+    return null;
+  }
+
+  @Override
+  public String readData(String accessPwd, int filterBank, int filterPtr, int filterCnt, String filterData, int bank, int ptr, int cnt) {
+    return null;
+  }
+
+  @Override
+  public boolean writeData(String accessPwd, int bank, int ptr, int cnt, String data) {
+    return false;
+  }
+
+  @Override
+  public boolean writeData(String accessPwd, int filterBank, int filterPtr, int filterCnt, String filterData, int bank, int ptr, int cnt, String data) {
+    return false;
+  }
+
+  @Override
+  public boolean lockMem(String accessPwd, String lockCode) {
+    return false;
+  }
+
+  @Override
+  public boolean lockMem(String accessPwd, int filterBank, int filterPtr, int filterCnt, String filterData, String lockCode) {
+    return false;
+  }
+}
@@ -0,0 +1,96 @@
+package vg.zeta.app.inventory.rfid;
+
+/** Smooths the RSSI readings of one tag, see {@link #create}. */
+public abstract class RssiFilter {
+
+  public static final String EMA = "ema";
+  public static final String KALMAN = "kalman";
+
+  /** Feeds a reading taken at the given time, returns the filtered RSSI. */
+  public abstract float update(float rssi, long now);
+
+  /** The filtered RSSI, NaN before the first reading. */
+  public abstract float getValue();
+
+  public abstract void reset();
+
+  /** The filter configured by rssiFilter, Kalman unless it is "ema". */
+  public static RssiFilter create(LocateConfig config) {
+    if (EMA.equals(config.rssiFilter)) return new Ema(config.emaAlpha);
+    return new Kalman(config.processNoise, config.measurementNoise);
+  }
+
+  /** Exponential moving average, the same weight for every reading. */
+  public static class Ema extends RssiFilter {
+    private final float alpha;
+    private float value = Float.NaN;
+
+    public Ema(float alpha) {
+      this.alpha = Math.max(0.01f, Math.min(1f, alpha));
+    }
+
+    @Override
+    public float update(float rssi, long now) {
+      if (Float.isNaN(rssi)) return value;
+      value = Float.isNaN(value) ? rssi : value + alpha * (rssi - value);
+      return value;
+    }
+
+    @Override
+    public float getValue() {
+      return value;
+    }
+
+    @Override
+    public void reset() {
+      value = Float.NaN;
+    }
+  }
+
+  /**
+   * One-dimensional Kalman filter with a random-walk model. Uncertainty
+   * grows with the time between readings, so after a gap the filter catches
+   * up quickly and while reads are dense it smooths more.
+   */
+  public static class Kalman extends RssiFilter {
+    private final float processNoise;
+    private final float measurementNoise;
+    private float value = Float.NaN;
+    private float variance;
+    private long updatedAt;
+
+    public Kalman(float processNoise, float measurementNoise) {
+      this.processNoise = Math.max(0f, processNoise);
+      this.measurementNoise = Math.max(0.01f, measurementNoise);
+    }
+
+    @Override
+    public float update(float rssi, long now) {
+      if (Float.isNaN(rssi)) return value;
+      if (Float.isNaN(value)) {
+        value = rssi;
+        variance = measurementNoise;
+        updatedAt = now;
+        return value;
+      }
+
+      float elapsedSeconds = Math.max(0, now - updatedAt) / 1000f;
+      updatedAt = now;
+      variance += processNoise * elapsedSeconds;
+      float gain = variance / (variance + measurementNoise);
+      value += gain * (rssi - value);
+      variance *= 1 - gain;
+      return value;
+    }
+
+    @Override
+    public float getValue() {
+      return value;
+    }
+
+    @Override
+    public void reset() {
+      value = Float.NaN;
+    }
+  }
+}
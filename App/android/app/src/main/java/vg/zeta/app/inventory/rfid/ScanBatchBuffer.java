@@ -0,0 +1,91 @@
+package vg.zeta.app.inventory.rfid;
+
+import java.util.Arrays;
+
+/**
+ * Holds packed event windows until JS pulls them, for the "pull" delivery
+ * mode of startScan. Windows are appended back to back, each with its own
+ * header (see {@link ScanBatchEncoder}).
+ *
+ * Holds at most capacity records (the queueCapacity of the scan), whatever
+ * maxInFlight is. If JS does not pull for a while the oldest windows are
+ * dropped to make room for new ones, and counted.
+ *
+ * Written by the scan thread and drained by the JS thread.
+ */
+public class ScanBatchBuffer {
+
+  private byte[] buffer = new byte[16 * 1024];
+  private int length;
+  // End offset and record count of each window in the buffer, oldest first
+  private int[] windowEnds = new int[16];
+  private int[] windowRecords = new int[16];
+  private int windowCount;
+  private int recordCount;
+  // The queueCapacity default until the first reset
+  private int capacity = 10000;
+  private long droppedCount;
+
+  /** Empties the buffer for a new scan that may buffer up to capacity records. */
+  public synchronized void reset(int capacity) {
+    clear();
+    this.capacity = Math.max(1, capacity);
+    droppedCount = 0;
+  }
+
+  /** Appends the payload the encoder produced last, dropping the oldest windows if it does not fit. */
+  public synchronized void append(ScanBatchEncoder encoder) {
+    int records = encoder.getRecordCount();
+    while (windowCount > 0 && recordCount + records > capacity) {
+      dropOldestWindow();
+    }
+
+    int size = encoder.getLength();
+    if (length + size > buffer.length) {
+      buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + size));
+    }
+    System.arraycopy(encoder.getBuffer(), 0, buffer, length, size);
+    length += size;
+
+    if (windowCount == windowEnds.length) {
+      windowEnds = Arrays.copyOf(windowEnds, windowCount * 2);
+      windowRecords = Arrays.copyOf(windowRecords, windowCount * 2);
+    }
+    windowEnds[windowCount] = length;
+    windowRecords[windowCount] = records;
+    windowCount++;
+    recordCount += records;
+  }
+
+  /** Returns everything appended since the last call, or null if there is nothing. */
+  public synchronized byte[] drain() {
+    if (length == 0) return null;
+    byte[] data = Arrays.copyOf(buffer, length);
+    clear();
+    return data;
+  }
+
+  public synchronized void clear() {
+    length = 0;
+    windowCount = 0;
+    recordCount = 0;
+  }
+
+  /** Records dropped since the last reset because JS did not pull them in time. */
+  public synchronized long getDroppedCount() {
+    return droppedCount;
+  }
+
+  private void dropOldestWindow() {
+    int end = windowEnds[0];
+    System.arraycopy(buffer, end, buffer, 0, length - end);
+    length -= end;
+    recordCount -= windowRecords[0];
+    droppedCount += windowRecords[0];
+    windowCount--;
+    for (int i = 0; i < windowCount; i++) {
+      windowEnds[i] = windowEnds[i + 1] - end;
+      windowRecords[i] = windowRecords[i + 1];
+    }
+  }
+}
@@ -0,0 +1,229 @@
+package vg.zeta.app.inventory.rfid;
+
+import java.util.List;
+
+/**
+ * Packs an event window into a compact binary payload, the "packed" event
+ * format of startScan. Decoded by decodePackedScanData() in
+ * app/modules/packedScanData.ts, keep both in sync (packedScanData.test.ts
+ * holds payloads encoded here).
+ *
+ * All numbers are little-endian.
+ *
+ * Header (12 bytes):
+ *   u8  version (1)
+ *   u8  flags, bit 0 set if records are aggregated (one per EPC)
+ *   u16 record count
+ *   f64 base time, epoch milliseconds
+ *
+ * Record:
+ *   u8  EPC header, the length in bytes; with bit 7 set the EPC was not
+ *       even-length hex and follows as that many ASCII characters instead
+ *   ..  EPC
+ *   u8  TID header, same as the EPC one (0 if there is no TID)
+ *   ..  TID
+ *   i16 RSSI in 0.01 dBm (last RSSI when aggregated), -32768 if unknown
+ *
+ * Aggregated records go on with:
+ *   u32 read count
+ *   u32 first seen, milliseconds after the base time
+ *   u32 last seen, milliseconds after the base time
+ *   i16 min RSSI, i16 max RSSI, i16 mean RSSI, as above
+ *
+ * For raw reads the base time is when the window was emitted, for
+ * aggregated records it is the earliest firstSeenAt. A window of more than
+ * MAX_RECORDS records is split over several headers, back to back in the
+ * same payload like pulled windows. The buffer is reused, not thread-safe.
+ */
+public class ScanBatchEncoder {
+
+  public static final int VERSION = 1;
+  public static final int FLAG_AGGREGATED = 1;
+  public static final int HEADER_SIZE = 12;
+  public static final short RSSI_UNKNOWN = Short.MIN_VALUE;
+  /** Most records one header can count. */
+  public static final int MAX_RECORDS = 0xFFFF;
+
+  static final int TEXT_FLAG = 0x80;
+  static final int MAX_ID_LENGTH = 0x7F;
+
+  private byte[] buffer = new byte[4096];
+  private int position;
+  private int recordCount;
+
+  public byte[] getBuffer() {
+    return buffer;
+  }
+
+  /** Number of bytes of the last encoded payload. */
+  public int getLength() {
+    return position;
+  }
+
+  /** Number of records in the last encoded payload, over all its headers. */
+  public int getRecordCount() {
+    return recordCount;
+  }
+
+  /** Encodes raw reads, returns the payload length. */
+  public int encodeReads(List<TagRead> reads, long now) {
+    position = 0;
+    recordCount = 0;
+    int size = reads.size();
+    int from = 0;
+    do {
+      int count = Math.min(size - from, MAX_RECORDS);
+      appendHeader(0, count, now);
+      for (int i = from; i < from + count; i++) {
+        TagRead read = reads.get(i);
+        writeId(read.epc);
+        writeId(read.tid);
+        writeRssi(TagReadAggregator.parseRssi(read.rssi));
+      }
+      from += count;
+    } while (from < size);
+    return position;
+  }
+
+  /** Encodes the records of the current aggregator window, returns the payload length. */
+  public int encodeAggregated(TagReadAggregator aggregator, long now) {
+    position = 0;
+    recordCount = 0;
+    int size = aggregator.size();
+    int from = 0;
+    do {
+      int count = Math.min(size - from, MAX_RECORDS);
+      long baseTime = now;
+      for (int i = from; i < from + count; i++) {
+        baseTime = Math.min(baseTime, aggregator.get(i).firstSeenAt);
+      }
+
+      appendHeader(FLAG_AGGREGATED, count, baseTime);
+      for (int i = from; i < from + count; i++) {
+        TagReadAggregator.Record record = aggregator.get(i);
+        writeId(record.epc);
+        writeId(record.tid);
+        writeRssi(TagReadAggregator.parseRssi(record.lastRssi));
+        writeInt(record.count);
+        writeInt((int) Math.max(0, record.firstSeenAt - baseTime));
+        writeInt((int) Math.max(0, record.lastSeenAt - baseTime));
+        if (record.rssiCount > 0) {
+          writeRssi(record.minRssi);
+          writeRssi(record.maxRssi);
+          writeRssi((float) record.getMeanRssi());
+        } else {
+          writeShort(RSSI_UNKNOWN);
+          writeShort(RSSI_UNKNOWN);
+          writeShort(RSSI_UNKNOWN);
+        }
+      }
+      from += count;
+    } while (from < size);
+    return position;
+  }
+
+  /** Starts a new payload with a header of at most MAX_RECORDS records. */
+  void writeHeader(int flags, int count, long baseTime) {
+    position = 0;
+    recordCount = 0;
+    appendHeader(flags, count, baseTime);
+  }
+
+  private void appendHeader(int flags, int count, long baseTime) {
+    ensureCapacity(HEADER_SIZE);
+    buffer[position++] = (byte) VERSION;
+    buffer[position++] = (byte) flags;
+    writeShort(count);
+    recordCount += count;
+    long bits = Double.doubleToLongBits(baseTime);
+    for (int i = 0; i < 8; i++) {
+      buffer[position++] = (byte) (bits >>> (i * 8));
+    }
+  }
+
+  private void writeId(String id) {
+    ensureCapacity(1 + MAX_ID_LENGTH);
+    int header = packId(id, buffer, position + 1, MAX_ID_LENGTH);
+    buffer[position] = (byte) header;
+    position += 1 + (header & MAX_ID_LENGTH);
+  }
+
+  /** Writes an ID header and the ID bytes as they are, e.g. as stored by ScanJournal. */
+  void writeId(int header, byte[] src, int offset) {
+    int length = header & MAX_ID_LENGTH;
+    ensureCapacity(1 + length);
+    buffer[position++] = (byte) header;
+    System.arraycopy(src, offset, buffer, position, length);
+    position += length;
+  }
+
+  /**
+   * Packs the ID into dst (hex as bytes, anything else as ASCII), at most
+   * maxBytes of it. Returns the ID header: the number of bytes written, with
+   * TEXT_FLAG set for ASCII. 0 for null or empty IDs.
+   */
+  static int packId(String id, byte[] dst, int offset, int maxBytes) {
+    if (id == null || id.isEmpty()) return 0;
+
+    int length = id.length();
+    if (length % 2 == 0 && length / 2 <= maxBytes && isHex(id)) {
+      for (int i = 0; i < length; i += 2) {
+        dst[offset++] = (byte) ((hexValue(id.charAt(i)) << 4) | hexValue(id.charAt(i + 1)));
+      }
+      return length / 2;
+    }
+
+    length = Math.min(length, maxBytes);
+    for (int i = 0; i < length; i++) {
+      char c = id.charAt(i);
+      dst[offset++] = (byte) (c < 0x80 ? c : '?');
+    }
+    return TEXT_FLAG | length;
+  }
+
+  private void writeRssi(float rssi) {
+    writeShort(toCentiDbm(rssi));
+  }
+
+  /** RSSI as stored in records, {@link #RSSI_UNKNOWN} for NaN. */
+  static short toCentiDbm(float rssi) {
+    if (Float.isNaN(rssi)) return RSSI_UNKNOWN;
+    int centi = Math.round(rssi * 100);
+    return (short) Math.max(Short.MIN_VALUE + 1, Math.min(Short.MAX_VALUE, centi));
+  }
+
+  void writeShort(int value) {
+    ensureCapacity(2);
+    buffer[position++] = (byte) value;
+    buffer[position++] = (byte) (value >>> 8);
+  }
+
+  void writeInt(int value) {
+    ensureCapacity(4);
+    buffer[position++] = (byte) value;
+    buffer[position++] = (byte) (value >>> 8);
+    buffer[position++] = (byte) (value >>> 16);
+    buffer[position++] = (byte) (value >>> 24);
+  }
+
+  private void ensureCapacity(int extra) {
+    if (position + extra <= buffer.length) return;
+    byte[] newBuffer = new byte[Math.max(buffer.length * 2, position + extra)];
+    System.arraycopy(buffer, 0, newBuffer, 0, position);
+    buffer = newBuffer;
+  }
+
+  private static boolean isHex(String s) {
+    for (int i = 0; i < s.length(); i++) {
+      if (hexValue(s.charAt(i)) < 0) return false;
+    }
+    return true;
+  }
+
+  private static int hexValue(char c) {
+    if (c >= '0' && c <= '9') return c - '0';
+    if (c >= 'A' && c <= 'F') return c - 'A' + 10;
+    if (c >= 'a' && c <= 'f') return c - 'a' + 10;
+    return -1;
+  }
+}
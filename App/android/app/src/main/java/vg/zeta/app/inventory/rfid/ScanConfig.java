@@ -0,0 +1,144 @@
+package vg.zeta.app.inventory.rfid;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/** Parameters of a scan session, see the startScan React methods. */
+public class ScanConfig {
+  public int power = 30;
+
+  public boolean enableFilter;
+  public int filterBank = UHFReaderBackend.BANK_EPC;
+  public int filterPtr;
+  public int filterLen;
+  public String filterData = "";
+
+  /** Milliseconds to pause after each batch drained from the reader. */
+  public int scanRate = 10;
+  /** Milliseconds between two scan data events. */
+  public int eventRate = 100;
+  public boolean isLocate;
+  public boolean playSound;
+
+  public List<?> scannedEpcs = Collections.emptyList();
+  public List<?> soundOnlyForEpcs = Collections.emptyList();
+
+  public boolean aggregate;
+  /** Deliver each event window as one base64 payload, see ScanBatchEncoder. */
+  public boolean packedEvents;
+  /** Buffer event windows (packed) for JS to pull instead of emitting them. */
+  public boolean pullDelivery;
+  /**
+   * Set to false to not emit reads at all, e.g. when a check session already
+   * tells JS what it needs to know.
+   */
+  public boolean emitReads = true;
+  /** Name of the ScanJournal to append event windows to, null for none. */
+  public String journalName;
+  /** Locate mode: reads only feed a LocateTracker, which emits locate updates instead of event windows. */
+  public LocateConfig locate;
+  public int maxBatchSize = 100;
+  public int idleMaxBackoff = 10;
+
+  /** Reads held between the reader and the emitter, see ScanQueue. */
+  public int queueCapacity = 10000;
+  public int queuePolicy = ScanQueue.POLICY_DROP_OLDEST;
+  /** Event windows JS may have unacknowledged, 0 for no limit. */
+  public int maxInFlight = 0;
+  /** Milliseconds between two uhfScanStats events, 0 for none. */
+  public int statsInterval = 0;
+  /** Send read and emit times with each event window, see ScanLatency. */
+  public boolean traceLatency;
+  /** Name of the ReadRecording to write the raw reads to, null for none. */
+  public String recordName;
+  /** Name of the ReadRecording to read from instead of the reader, null for none. */
+  public String replayName;
+  /** Times the original pace for replayName, 0 for as fast as the pipeline goes. */
+  public double replaySpeed = 1;
+  public boolean replayLoop;
+  /** Power, Q and session picked while scanning within these bounds instead of a fixed power, null for off. */
+  public AutoTuneConfig autoTune;
+  /** Gen2 session and target, reported banks and fast inventory switches, null to leave the reader as it is. */
+  public InventoryConfig inventory;
+
+  /**
+   * Applies the options map passed as the last argument of startScan (i.e.
+   * ReadableMap#toHashMap()). Unknown keys are ignored, invalid combinations
+   * throw IllegalArgumentException.
+   */
+  public ScanConfig applyOptions(Map<String, Object> options) {
+    if (options == null) return this;
+    aggregate = getBoolean(options, "aggregate", aggregate);
+    packedEvents = "packed".equals(getString(options, "eventFormat", packedEvents ? "packed" : "maps"));
+    pullDelivery = "pull".equals(getString(options, "delivery", pullDelivery ? "pull" : "events"));
+    emitReads = getBoolean(options, "emitReads", emitReads);
+    journalName = getString(options, "journal", journalName);
+    Object locateOptions = options.get("locate");
+    if (locateOptions instanceof Map) {
+      @SuppressWarnings("unchecked")
+      Map<String, Object> locateMap = (Map<String, Object>) locateOptions;
+      locate = LocateConfig.fromMap(locateMap);
+    }
+    maxBatchSize = Math.max(1, getInt(options, "maxBatchSize", maxBatchSize));
+    idleMaxBackoff = Math.max(1, getInt(options, "idleMaxBackoff", idleMaxBackoff));
+    queueCapacity = Math.max(1, getInt(options, "queueCapacity", queueCapacity));
+    if (options.containsKey("queuePolicy")) {
+      queuePolicy = ScanQueue.parsePolicy(getString(options, "queuePolicy", null));
+    }
+    // Raw windows have no read counts, JS could not tell reads were merged
+    if (queuePolicy == ScanQueue.POLICY_COALESCE && !aggregate) {
+      throw new IllegalArgumentException("queuePolicy 'coalesce' requires aggregate: true");
+    }
+    maxInFlight = Math.max(0, getInt(options, "maxInFlight", maxInFlight));
+    statsInterval = Math.max(0, getInt(options, "statsInterval", statsInterval));
+    traceLatency = getBoolean(options, "traceLatency", traceLatency);
+    recordName = getString(options, "record", recordName);
+    replayName = getString(options, "replay", replayName);
+    replaySpeed = Math.max(0, getDouble(options, "replaySpeed", replaySpeed));
+    replayLoop = getBoolean(options, "replayLoop", replayLoop);
+    Object autoTuneOptions = options.get("autoTune");
+    if (autoTuneOptions instanceof Map) {
+      @SuppressWarnings("unchecked")
+      Map<String, Object> autoTuneMap = (Map<String, Object>) autoTuneOptions;
+      autoTune = AutoTuneConfig.fromMap(autoTuneMap);
+    } else if (Boolean.TRUE.equals(autoTuneOptions)) {
+      autoTune = new AutoTuneConfig();
+    }
+    Object inventoryOptions = options.get("inventory");
+    if (inventoryOptions instanceof Map) {
+      @SuppressWarnings("unchecked")
+      Map<String, Object> inventoryMap = (Map<String, Object>) inventoryOptions;
+      inventory = InventoryConfig.fromMap(inventoryMap);
+    }
+    // A session asked for is not the tuner's to change
+    if (autoTune != null && inventory != null && inventory.session != InventoryConfig.UNSET) {
+      autoTune.sessions.clear();
+    }
+    return this;
+  }
+
+  static boolean getBoolean(Map<String, Object> options, String key, boolean defaultValue) {
+    Object value = options.get(key);
+    if (value instanceof Boolean) return (Boolean) value;
+    return defaultValue;
+  }
+
+  static int getInt(Map<String, Object> options, String key, int defaultValue) {
+    Object value = options.get(key);
+    if (value instanceof Number) return ((Number) value).intValue();
+    return defaultValue;
+  }
+
+  static double getDouble(Map<String, Object> options, String key, double defaultValue) {
+    Object value = options.get(key);
+    if (value instanceof Number) return ((Number) value).doubleValue();
+    return defaultValue;
+  }
+
+  static String getString(Map<String, Object> options, String key, String defaultValue) {
+    Object value = options.get(key);
+    if (value instanceof String) return (String) value;
+    return defaultValue;
+  }
+}
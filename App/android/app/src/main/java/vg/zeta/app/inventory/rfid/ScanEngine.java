@@ -0,0 +1,613 @@
+package vg.zeta.app.inventory.rfid;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs an inventory on a {@link UHFReaderBackend}: drains the reader buffer on
+ * its own thread, keeps track of seen EPCs, decides on sound feedback and
+ * hands each event window to a {@link Listener}.
+ *
+ * Has no Android or React Native dependencies, so it can be driven by a
+ * simulated reader on a plain JVM.
+ */
+public class ScanEngine {
+
+  public static final int SOUND_NONE = 0;
+  public static final int SOUND_NEW_TAG = 1;
+  public static final int SOUND_SEEN_TAG = 2;
+
+  /** How long start waits for the previous scan thread to emit what it has and exit. */
+  static final long STOP_TIMEOUT = 1000;
+
+  public interface Listener {
+    /** Called on the scan thread at the end of each event window in raw mode. */
+    void onReads(List<TagRead> reads);
+
+    /** Called on the scan thread at the end of each event window in aggregate mode. */
+    void onAggregatedReads(TagReadAggregator aggregator);
+
+    /** Called on the scan thread for each read that should make a sound. */
+    void onFeedback(int sound);
+
+    /** Called on the scan thread, at most once per event window, when a check session has changes. */
+    void onCheckSessionDelta(CheckSession.Delta delta);
+
+    /** Called on the scan thread in locate mode, once per frame in which a target changed. */
+    void onLocateUpdate(LocateTracker tracker);
+
+    /** Called on the scan thread in locate mode when a beep is due, proximity 0 (far) to 1 (near). */
+    void onLocateFeedback(float proximity);
+
+    /** Called on the scan thread every statsInterval, and once more when the scan ends. */
+    void onStats(ScanStats.Snapshot stats);
+
+    /**
+     * Called on the scan thread with traceLatency, right before the event
+     * window it is about. Times are from {@link ScanTracer#nanoTime}: when
+     * the first and the last read of the window came out of the reader,
+     * and now.
+     */
+    void onTrace(long firstReadAt, long lastReadAt, long emittedAt);
+  }
+
+  /** Counters of the scan queue, see {@link #getQueueStats}. */
+  public static class QueueStats {
+    public int policy;
+    public int capacity;
+    public int queued;
+    public int inFlight;
+    public long dropped;
+    public long coalesced;
+    public long blocked;
+  }
+
+  private volatile EpcSet scannedTags = new EpcSet();
+  private volatile EpcSet soundOnlyForEpcsSet = new EpcSet();
+  private volatile CheckSession checkSession;
+  private volatile ScanTagThread thread;
+  private volatile ReaderCommandExecutor commands;
+  // What the reader had before an auto-tuned scan changed its Gen2 settings, guarded by this
+  private Gen2Settings gen2ToRestore;
+  private volatile ScanStats stats;
+  private final ScanLatency latency = new ScanLatency();
+  /** Event windows handed to the listener and not acknowledged yet, only counted with maxInFlight. */
+  private final AtomicInteger inFlight = new AtomicInteger();
+
+  /** EPCs seen in the current and previous sessions, until cleared. */
+  public EpcSet getScannedTags() {
+    return scannedTags;
+  }
+
+  public boolean isRunning() {
+    ScanTagThread t = thread;
+    return t != null && t.running;
+  }
+
+  /**
+   * Where the scan thread sends its reader calls during a scan (auto-tune,
+   * target AB), so that they run one at a time with the module's other
+   * commands. Without one they are made from the scan thread.
+   */
+  public void setCommandExecutor(ReaderCommandExecutor commands) {
+    this.commands = commands;
+  }
+
+  /**
+   * Configures the reader (power, filters), starts the inventory and the scan
+   * thread. Stops any previous scan thread first, and waits up to
+   * STOP_TIMEOUT for it to exit.
+   */
+  public synchronized void start(UHFReaderBackend reader, ScanConfig config, Listener listener) throws ReaderException {
+    stop();
+    try {
+      join(STOP_TIMEOUT);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    prepare(config);
+    inFlight.set(0);
+
+    // In case the last auto-tuned scan was not stopped through stopScan
+    restoreReader(reader);
+    if (config.inventory != null) config.inventory.applyTo(reader);
+
+    int power = config.power;
+    AutoTuner tuner = null;
+    if (config.autoTune != null && config.locate == null && !config.isLocate) {
+      UHFReaderBackend.Gen2 gen2Reader = reader instanceof UHFReaderBackend.Gen2 ? (UHFReaderBackend.Gen2) reader : null;
+      Gen2Settings gen2 = gen2Reader != null ? gen2Reader.getGen2() : null;
+      tuner = new AutoTuner(config.autoTune, config.power, gen2);
+      AutoTuner.Settings settings = tuner.getSettings();
+      power = settings.power;
+      if (gen2 != null) {
+        if (gen2ToRestore == null) gen2ToRestore = gen2;
+        if (!gen2Reader.setGen2(settings.applyTo(gen2))) {
+          throw new ReaderException("setGen2 returned false");
+        }
+      }
+    }
+
+    if (!reader.setPower(power)) {
+      throw new ReaderException("setPower returned false");
+    }
+
+    if (config.enableFilter) {
+      if (!reader.setFilter(config.filterBank, config.filterPtr, config.filterLen, config.filterData)) {
+        throw new ReaderException("setFilter returned false");
+      }
+    } else {
+      String filterDataStr = "";
+      if (!(reader.setFilter(UHFReaderBackend.BANK_EPC, 0, 0, filterDataStr) &&
+              reader.setFilter(UHFReaderBackend.BANK_TID, 0, 0, filterDataStr) &&
+              reader.setFilter(UHFReaderBackend.BANK_USER, 0, 0, filterDataStr)
+      )) {
+        throw new ReaderException("setFilter returned false");
+      }
+    }
+
+    if (!reader.startInventoryTag()) {
+      throw new ReaderException("startInventoryTag returned false");
+    }
+
+    thread = createScanTagThread(reader, config, listener);
+    if (tuner != null) thread.setTuner(tuner);
+    thread.start();
+  }
+
+  /**
+   * Puts back the Gen2 settings an auto-tuned scan changed, to be called
+   * once its inventory is stopped. Does nothing if there are none.
+   */
+  public synchronized boolean restoreReader(UHFReaderBackend reader) {
+    if (gen2ToRestore == null) return true;
+    if (!(reader instanceof UHFReaderBackend.Gen2) || !((UHFReaderBackend.Gen2) reader).setGen2(gen2ToRestore)) {
+      return false;
+    }
+    gen2ToRestore = null;
+    return true;
+  }
+
+  /** Sets up the EPC sets used by {@link #decideSound} for a new scan. */
+  void prepare(ScanConfig config) {
+    // EpcSet only supports a single writer: the scanned tags carry over only once the previous
+    // scan thread has exited, otherwise (and when JS passes its own) they go into a new set
+    ScanTagThread previous = thread;
+    boolean previousExited = previous == null || !previous.isAlive();
+    if (config.scannedEpcs.size() > 0 || !previousExited) {
+      EpcSet tags = new EpcSet(config.scannedEpcs.size());
+      tags.addAll(config.scannedEpcs);
+      scannedTags = tags;
+    }
+    EpcSet newSoundOnlyForEpcsSet = new EpcSet(config.soundOnlyForEpcs.size());
+    newSoundOnlyForEpcsSet.addAll(config.soundOnlyForEpcs);
+    soundOnlyForEpcsSet = newSoundOnlyForEpcsSet;
+  }
+
+  /** Creates the scan thread without touching the reader, benchmarks drive it directly. */
+  ScanTagThread createScanTagThread(UHFReaderBackend reader, ScanConfig config, Listener listener) {
+    ScanStats sessionStats = new ScanStats(System.currentTimeMillis());
+    stats = sessionStats;
+    if (config.traceLatency) latency.reset();
+    return new ScanTagThread(reader, config, listener, sessionStats);
+  }
+
+  /**
+   * Asks the scan thread to emit what it has and exit. Does not stop the
+   * inventory on the reader, that is up to the caller, with a command queued
+   * after this call (a reconfiguration still pending then leaves the
+   * inventory alone).
+   */
+  public void stop() {
+    ScanTagThread t = thread;
+    if (t != null) t.running = false;
+  }
+
+  /**
+   * Called when JS is done with event windows, lets the scan thread emit
+   * again once fewer than maxInFlight are outstanding.
+   */
+  public void acknowledge(int count) {
+    int current;
+    do {
+      current = inFlight.get();
+    } while (!inFlight.compareAndSet(current, Math.max(0, current - count)));
+  }
+
+  public void acknowledgeAll() {
+    inFlight.set(0);
+  }
+
+  /**
+   * Sets the check session that reads are matched against, or null to end
+   * it. Takes effect on a running scan too.
+   */
+  public void setCheckSession(CheckSession session) {
+    checkSession = session;
+  }
+
+  public CheckSession getCheckSession() {
+    return checkSession;
+  }
+
+  /** Latencies of the scans since the last one started with traceLatency. */
+  public ScanLatency getLatency() {
+    return latency;
+  }
+
+  /** Counters of the last started scan session, null if there was none. */
+  public ScanStats getStats() {
+    return stats;
+  }
+
+  /** Counters of the last started scan, null if there was none. */
+  public QueueStats getQueueStats() {
+    ScanTagThread t = thread;
+    if (t == null) return null;
+    QueueStats stats = new QueueStats();
+    stats.policy = t.queue.getPolicy();
+    stats.capacity = t.queue.capacity();
+    stats.queued = t.queue.size();
+    stats.inFlight = inFlight.get();
+    stats.dropped = t.queue.getDroppedCount();
+    stats.coalesced = t.queue.getCoalescedCount();
+    stats.blocked = t.queue.getBlockedCount();
+    return stats;
+  }
+
+  /** Waits for the last started scan thread to exit, mostly useful off-device. */
+  public void join(long millis) throws InterruptedException {
+    ScanTagThread t = thread;
+    if (t != null) t.join(millis);
+  }
+
+  /**
+   * Marks the EPC as seen and returns the sound it should make, following the
+   * startScan rules: no sound if sounds are disabled or the EPC is not one of
+   * soundOnlyForEpcs, otherwise a "new tag" sound for EPCs not seen before
+   * and a "seen tag" sound for the rest (always the latter when locating).
+   * During a check session its expected EPCs take the place of
+   * soundOnlyForEpcs.
+   */
+  public int decideSound(String epc, ScanConfig config) {
+    // Checks and marks the EPC as seen in one probe
+    boolean isNewTag = !config.isLocate && scannedTags.add(epc);
+    if (isNewTag) {
+      ScanStats sessionStats = stats;
+      if (sessionStats != null) sessionStats.onNewEpc();
+    }
+
+    if (!config.playSound) return SOUND_NONE;
+    CheckSession session = checkSession;
+    EpcSet soundOnlyFor = session != null ? session.getExpectedEpcs() : soundOnlyForEpcsSet;
+    if (!soundOnlyFor.isEmpty() && !soundOnlyFor.contains(epc)) return SOUND_NONE;
+
+    return isNewTag ? SOUND_NEW_TAG : SOUND_SEEN_TAG;
+  }
+
+  class ScanTagThread extends Thread {
+    volatile boolean running = true;
+
+    private final UHFReaderBackend reader;
+    private final ScanConfig config;
+    private final Listener listener;
+    private final ScanStats stats;
+    private final ScanTracer tracer = ScanTracer.get();
+    // With traceLatency, when the first and last read of the current window were drained, -1 if none
+    private long windowFirstReadAt = -1;
+    private long windowLastReadAt;
+
+    private final ArrayList<TagRead> batch = new ArrayList<>();
+    // Reads wait here until the next event window, bounded by queueCapacity
+    final ScanQueue queue;
+    private final ArrayList<TagRead> reads = new ArrayList<>();
+    // Only used in aggregate mode, where one record per EPC is emitted for each event window
+    private final TagReadAggregator aggregator;
+    private final ScanQueue.Consumer windowAppender;
+    // Spins, yields and then parks while the reader buffer is empty instead of pinning a core
+    private final BackoffIdleStrategy idleStrategy;
+    // Only used in locate mode, which replaces event windows with locate updates
+    private final LocateTracker locateTracker;
+    // Only with autoTune, and the start and new EPC count of its current window
+    private AutoTuner tuner;
+    private long tuneWindowStartedAt;
+    private long tuneWindowNewEpcs;
+    // Only with inventory target AB
+    private final boolean switchesTarget;
+    private long targetSwitchedAt;
+    // A reconfiguration sent to the command executor, and what it was for. Its
+    // outcome is set by the executor thread, null until then
+    private boolean reconfiguring;
+    private AutoTuner.Settings pendingTuning;
+    private boolean pendingTuneWindow;
+    private boolean pendingFlip;
+    private volatile Boolean reconfigured;
+
+    ScanTagThread(UHFReaderBackend reader, ScanConfig config, Listener listener, ScanStats stats) {
+      super("ScanTagThread");
+      this.reader = reader;
+      this.config = config;
+      this.listener = listener;
+      this.stats = stats;
+      this.queue = new ScanQueue(config.queueCapacity, config.queuePolicy);
+      this.aggregator = config.aggregate ? new TagReadAggregator() : null;
+      this.windowAppender = (read, readAt, count) -> {
+        if (aggregator != null) {
+          aggregator.add(read.epc, read.tid, read.rssi, readAt, count);
+        } else {
+          reads.add(read);
+        }
+      };
+      this.idleStrategy = BackoffIdleStrategy.forScanLoop(config.idleMaxBackoff);
+      this.locateTracker = config.locate != null ? new LocateTracker(config.locate) : null;
+      this.switchesTarget = config.inventory != null && config.inventory.target == InventoryConfig.TARGET_AB;
+    }
+
+    void setTuner(AutoTuner tuner) {
+      this.tuner = tuner;
+      stats.onTuned(tuner);
+    }
+
+    public void run() {
+      tuneWindowStartedAt = System.currentTimeMillis();
+      targetSwitchedAt = tuneWindowStartedAt;
+      long lastEventEmittedAt = 0;
+      long lastDeltaEmittedAt = 0;
+      long lastFrameAt = 0;
+      long lastStatsEmittedAt = System.currentTimeMillis();
+      while (running) {
+        int batchSize = drainBatch();
+
+        if (batchSize > 0 && config.scanRate > 0) {
+          try {
+            Thread.sleep(config.scanRate);
+          } catch (InterruptedException e) {
+            e.printStackTrace();
+          }
+        }
+        idleStrategy.idle(batchSize);
+
+        long currentTime = System.currentTimeMillis();
+
+        if (config.statsInterval > 0 && currentTime - lastStatsEmittedAt >= config.statsInterval) {
+          listener.onStats(stats.snapshot(currentTime));
+          lastStatsEmittedAt = currentTime;
+        }
+
+        if (reconfiguring) {
+          Boolean ok = reconfigured;
+          if (ok != null) onReconfigured(ok);
+        } else {
+          boolean tuneDue = tuner != null && currentTime - tuneWindowStartedAt >= config.autoTune.interval;
+          // Tags read under A are now B, sweep them back before they fall out of the session
+          boolean flipDue = switchesTarget && currentTime - targetSwitchedAt >= config.inventory.targetSwitchInterval;
+          if (tuneDue || flipDue) tune(currentTime, tuneDue, flipDue);
+        }
+
+        if (locateTracker != null) {
+          if (currentTime - lastFrameAt >= config.locate.frameInterval) {
+            tickLocate(currentTime);
+            lastFrameAt = currentTime;
+          }
+          continue;
+        }
+
+        // Not held back by maxInFlight, deltas are small and JS needs them to show progress
+        if (currentTime - lastDeltaEmittedAt > config.eventRate) {
+          emitCheckSessionDelta();
+          lastDeltaEmittedAt = currentTime;
+        }
+
+        // With maxInFlight, hold the window back (reads keep queueing) until JS catches up
+        if (currentTime - lastEventEmittedAt > config.eventRate &&
+                (config.maxInFlight <= 0 || inFlight.get() < config.maxInFlight)) {
+          emit();
+          lastEventEmittedAt = currentTime;
+        }
+      }
+
+      if (queue.size() > 0) {
+        emit();
+      }
+      emitCheckSessionDelta();
+
+      long stoppedAt = System.currentTimeMillis();
+      stats.onStopped(stoppedAt);
+      if (config.statsInterval > 0) listener.onStats(stats.snapshot(stoppedAt));
+    }
+
+    /**
+     * Drains whatever the reader has buffered (up to maxBatchSize), so that
+     * pacing happens once per batch rather than once per tag.
+     */
+    int drainBatch() {
+      int batchSize = 0;
+      while (batchSize < config.maxBatchSize && running) {
+        int maxCount = Math.min(config.maxBatchSize - batchSize, queue.remainingCapacity());
+        if (maxCount <= 0) break;
+        batch.clear();
+        tracer.beginSection(ScanTracer.STAGE_READ);
+        int count = reader.readTagsFromBuffer(batch, maxCount);
+        tracer.endSection();
+        stats.onPoll(count);
+        if (count <= 0) break;
+        long now = System.currentTimeMillis();
+        if (config.traceLatency) {
+          long readAt = tracer.nanoTime();
+          if (windowFirstReadAt < 0) windowFirstReadAt = readAt;
+          windowLastReadAt = readAt;
+        }
+        CheckSession session = checkSession;
+        tracer.beginSection(ScanTracer.STAGE_DEDUPE);
+        for (int i = 0; i < count; i++) {
+          handleTag(batch.get(i), now, session);
+        }
+        tracer.endSection();
+        batchSize += count;
+      }
+      batch.clear();
+      return batchSize;
+    }
+
+    private void handleTag(TagRead tagData, long now, CheckSession session) {
+      if (tagData.epc == null) return;
+
+      if (locateTracker != null) {
+        locateTracker.add(tagData.epc, tagData.rssi, now);
+        return;
+      }
+
+      // Reads during a reconfiguration belong to neither tuner window
+      if (tuner != null && !reconfiguring) tuner.onRead(tagData.epc);
+      if (config.emitReads) queue.offer(tagData, now);
+      if (session != null) session.match(tagData.epc, tagData.rssi);
+
+      int sound = decideSound(tagData.epc, config);
+      if (sound != SOUND_NONE) listener.onFeedback(sound);
+    }
+
+    void emit() {
+      // Nothing is queued, and empty windows are of no use to JS
+      if (!config.emitReads) return;
+      queue.drainTo(windowAppender);
+      boolean empty = aggregator != null ? aggregator.isEmpty() : reads.isEmpty();
+      if (config.maxInFlight > 0) {
+        // Empty windows would only cost JS an acknowledgement
+        if (empty) return;
+        inFlight.incrementAndGet();
+      }
+
+      tracer.beginSection(ScanTracer.STAGE_EMIT);
+      if (config.traceLatency && windowFirstReadAt >= 0) {
+        long emittedAt = tracer.nanoTime();
+        listener.onTrace(windowFirstReadAt, windowLastReadAt, emittedAt);
+        latency.window.record((emittedAt - windowFirstReadAt) / 1000);
+        windowFirstReadAt = -1;
+      }
+      long startedAt = System.nanoTime();
+      int size;
+      if (aggregator != null) {
+        size = aggregator.size();
+        listener.onAggregatedReads(aggregator);
+        aggregator.clear();
+      } else {
+        size = reads.size();
+        listener.onReads(reads);
+        reads.clear();
+      }
+      stats.onEmit(size, System.nanoTime() - startedAt);
+      tracer.endSection();
+    }
+
+    /**
+     * Ends the window of the tuner (if due) and switches the reader over to
+     * what it picks, flipping the Gen2 target too (if due). The scan goes on
+     * while the reader is reconfigured, see {@link #onReconfigured}.
+     */
+    void tune(long now, boolean endTuneWindow, boolean flipTarget) {
+      AutoTuner.Settings settings = null;
+      if (endTuneWindow) {
+        long newEpcs = stats.getNewEpcs();
+        settings = tuner.onWindow(newEpcs - tuneWindowNewEpcs, now - tuneWindowStartedAt);
+      }
+      pendingTuning = settings;
+      pendingTuneWindow = endTuneWindow;
+      pendingFlip = flipTarget;
+      if (settings == null && !flipTarget) {
+        onReconfigured(true);
+        return;
+      }
+
+      ReaderCommandExecutor executor = commands;
+      if (executor == null) {
+        onReconfigured(reconfigure(settings, flipTarget));
+        return;
+      }
+      final AutoTuner.Settings tuning = settings;
+      reconfiguring = true;
+      reconfigured = null;
+      executor.submit("reconfigureScan", ReaderCommandExecutor.PRIORITY_NORMAL,
+              () -> reconfigure(tuning, flipTarget), new ReaderCommandExecutor.Callback<Boolean>() {
+        @Override
+        public void onResult(Boolean ok) {
+          reconfigured = ok;
+        }
+
+        @Override
+        public void onError(Exception e) {
+          reconfigured = false;
+        }
+      });
+    }
+
+    /** Called on the scan thread once the reader has been reconfigured, or failed to. */
+    private void onReconfigured(boolean ok) {
+      reconfiguring = false;
+      if (pendingTuning != null && !ok) tuner.onApplyFailed();
+      // The switch is not part of the next window
+      long now = System.currentTimeMillis();
+      if (pendingTuneWindow) {
+        stats.onTuned(tuner);
+        tuneWindowStartedAt = now;
+        tuneWindowNewEpcs = stats.getNewEpcs();
+      }
+      if (pendingFlip) targetSwitchedAt = now;
+      pendingTuning = null;
+    }
+
+    /**
+     * Switches the reader over to the tuner's settings (if any) and flips
+     * the Gen2 target (if asked to). Most readers only take new settings
+     * between inventories, a target flip on a reader that takes them while
+     * inventorying is only a setGen2. Runs as a reader command when the
+     * engine has an executor. Leaves the reader alone once the scan is stopped, and does
+     * not restart the inventory if it was stopped meanwhile: stopScan stops
+     * the inventory in a command of its own, queued after stop().
+     */
+    private boolean reconfigure(AutoTuner.Settings tuning, boolean flipTarget) {
+      if (!running) return false;
+      tracer.beginSection(ScanTracer.STAGE_TUNE);
+      try {
+        boolean live = tuning == null && reader instanceof UHFReaderBackend.Gen2
+                && ((UHFReaderBackend.Gen2) reader).setsGen2WhileInventorying();
+        boolean ok = live || reader.stopInventory();
+        if (tuning != null) ok &= reader.setPower(tuning.power);
+        boolean gen2Changes = flipTarget || (tuning != null && (tuning.q >= 0 || tuning.session >= 0));
+        if (gen2Changes && reader instanceof UHFReaderBackend.Gen2) {
+          UHFReaderBackend.Gen2 gen2Reader = (UHFReaderBackend.Gen2) reader;
+          Gen2Settings gen2 = gen2Reader.getGen2();
+          if (gen2 != null) {
+            if (tuning != null) gen2 = tuning.applyTo(gen2);
+            if (flipTarget) {
+              gen2.queryTarget = gen2.queryTarget == Gen2Settings.TARGET_A ? Gen2Settings.TARGET_B : Gen2Settings.TARGET_A;
+            }
+            ok &= gen2Reader.setGen2(gen2);
+          } else {
+            ok = false;
+          }
+        }
+        if (live) return ok;
+        if (!running) return false;
+        // Whatever failed, the scan goes on
+        return reader.startInventoryTag() && ok;
+      } finally {
+        tracer.endSection();
+      }
+    }
+
+    void tickLocate(long now) {
+      if (locateTracker.tick(now)) listener.onLocateUpdate(locateTracker);
+      if (!config.playSound) return;
+      float proximity = locateTracker.nextBeep(now);
+      if (proximity >= 0) listener.onLocateFeedback(proximity);
+    }
+
+    void emitCheckSessionDelta() {
+      CheckSession session = checkSession;
+      if (session == null) return;
+      CheckSession.Delta delta = session.takeDelta();
+      if (delta != null) listener.onCheckSessionDelta(delta);
+    }
+  }
+}
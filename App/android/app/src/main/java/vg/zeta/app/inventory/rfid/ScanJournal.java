@@ -0,0 +1,470 @@
+package vg.zeta.app.inventory.rfid;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Journal of what a scan session has read, in a memory-mapped file, so that
+ * the session survives the app being killed and does not have to be kept on
+ * the JS heap. Read back in pages with {@link #read}.
+ *
+ * All numbers are little-endian.
+ *
+ * Header (32 bytes):
+ *   u32 magic ("ZSJ1")
+ *   u16 version (1)
+ *   u16 record size (64)
+ *   i64 created at, epoch milliseconds
+ *   u32 record count as of the last sync
+ *   ..  reserved
+ *
+ * Record (64 bytes), one per EPC, updated in place as the EPC is read again:
+ *   u8  marker, RECORD_MARKER once the record is complete
+ *   u8  EPC header, u8 TID header, as in ScanBatchEncoder
+ *   u8  reserved
+ *   u32 read count
+ *   i64 first seen, epoch milliseconds
+ *   u32 last seen, milliseconds after first seen
+ *   i16 last RSSI, i16 min RSSI, i16 max RSSI, i16 mean RSSI, in 0.01 dBm,
+ *       -32768 if unknown
+ *   ..  EPC, up to 22 bytes
+ *   ..  TID, up to 14 bytes
+ * IDs that do not fit are cut (and then stored as text).
+ *
+ * The file grows in zero-filled chunks, so on open the records written
+ * after the last sync are found again by their marker, and the EPC of each
+ * record is indexed in memory. Syncs run every {@link #SYNC_INTERVAL_MS} on
+ * a background thread, appending only copies bytes into the mapping. The
+ * file so grows with the number of distinct EPCs, not with the scan time.
+ */
+public class ScanJournal implements Closeable {
+
+  public static final int HEADER_SIZE = 32;
+  public static final int RECORD_SIZE = 64;
+  public static final long SYNC_INTERVAL_MS = 1000;
+
+  static final int MAGIC = 0x314A535A; // "ZSJ1"
+  static final int VERSION = 1;
+  static final byte RECORD_MARKER = (byte) 0xA5;
+
+  private static final int CREATED_AT_OFFSET = 8;
+  private static final int COUNT_OFFSET = 16;
+  private static final int EPC_OFFSET = 28;
+  private static final int EPC_MAX_BYTES = 22;
+  private static final int TID_OFFSET = 50;
+  private static final int TID_MAX_BYTES = 14;
+  private static final int CHUNK_RECORDS = 16384;
+
+  private static final ScheduledExecutorService syncExecutor =
+          Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ScanJournalSync");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  /** Basic facts about a journal, see {@link ScanJournals#getInfo}. */
+  public static class Info {
+    public int recordCount;
+    public long createdAt;
+  }
+
+  private final File file;
+  private final RandomAccessFile randomAccessFile;
+  private final FileChannel channel;
+  private final MappedByteBuffer header;
+  private final long createdAt;
+  private final ScheduledFuture<?> syncTask;
+  // Held while syncing or closing, so that appends only wait on the bookkeeping below
+  private final Object syncLock = new Object();
+
+  // Guarded by this
+  private final ArrayList<MappedByteBuffer> chunks = new ArrayList<>();
+  // Chunks written to since the last sync
+  private final BitSet dirtyChunks = new BitSet();
+  // Record index by packed EPC, see keyOf
+  private final HashMap<String, Integer> recordsByEpc = new HashMap<>();
+  private final byte[] scratch = new byte[RECORD_SIZE];
+  private final ByteBuffer scratchBuffer = ByteBuffer.wrap(scratch).order(ByteOrder.LITTLE_ENDIAN);
+  private boolean closed;
+  private boolean failed;
+  private volatile int recordCount;
+
+  private ScanJournal(File file) throws IOException {
+    this.file = file;
+    randomAccessFile = new RandomAccessFile(file, "rw");
+    channel = randomAccessFile.getChannel();
+    try {
+      boolean isNew = channel.size() < HEADER_SIZE;
+      header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+      header.order(ByteOrder.LITTLE_ENDIAN);
+      if (isNew) {
+        createdAt = System.currentTimeMillis();
+        header.putInt(0, MAGIC);
+        header.putShort(4, (short) VERSION);
+        header.putShort(6, (short) RECORD_SIZE);
+        header.putLong(CREATED_AT_OFFSET, createdAt);
+        header.putInt(COUNT_OFFSET, 0);
+        header.force();
+      } else {
+        if (header.getInt(0) != MAGIC || header.getShort(4) != VERSION || header.getShort(6) != RECORD_SIZE) {
+          throw new IOException("Not a scan journal: " + file);
+        }
+        createdAt = header.getLong(CREATED_AT_OFFSET);
+      }
+      recordCount = recover(header.getInt(COUNT_OFFSET));
+      indexRecords(recordCount);
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+    syncTask = syncExecutor.scheduleWithFixedDelay(this::sync, SYNC_INTERVAL_MS, SYNC_INTERVAL_MS, TimeUnit.MILLISECONDS);
+  }
+
+  /** Opens the journal, creating it if the file does not exist. */
+  public static ScanJournal open(File file) throws IOException {
+    return new ScanJournal(file);
+  }
+
+  public File getFile() {
+    return file;
+  }
+
+  public int getRecordCount() {
+    return recordCount;
+  }
+
+  public long getCreatedAt() {
+    return createdAt;
+  }
+
+  /** Returns the number of complete records, starting from the synced count. */
+  private int recover(int syncedCount) throws IOException {
+    int count = Math.max(0, syncedCount);
+    ByteBuffer page = ByteBuffer.allocate(RECORD_SIZE * 256);
+    long size = channel.size();
+    while (true) {
+      long position = HEADER_SIZE + (long) count * RECORD_SIZE;
+      if (position + RECORD_SIZE > size) return count;
+      page.clear();
+      readFully(page, position);
+      for (int i = 0; i + RECORD_SIZE <= page.position(); i += RECORD_SIZE) {
+        if (page.get(i) != RECORD_MARKER) return count;
+        count++;
+      }
+    }
+  }
+
+  private void indexRecords(int count) throws IOException {
+    ByteBuffer page = ByteBuffer.allocate(RECORD_SIZE * 256);
+    for (int first = 0; first < count; first += 256) {
+      page.clear();
+      page.limit(Math.min(256, count - first) * RECORD_SIZE);
+      readFully(page, HEADER_SIZE + (long) first * RECORD_SIZE);
+      byte[] bytes = page.array();
+      for (int i = 0; i + RECORD_SIZE <= page.position(); i += RECORD_SIZE) {
+        recordsByEpc.put(keyOf(bytes, i), first + i / RECORD_SIZE);
+      }
+    }
+  }
+
+  /** The EPC header and bytes of the record at base, as map key. */
+  private static String keyOf(byte[] record, int base) {
+    int header = record[base + 1] & 0xFF;
+    int length = header & ScanBatchEncoder.MAX_ID_LENGTH;
+    char[] key = new char[1 + length];
+    key[0] = (char) header;
+    for (int i = 0; i < length; i++) {
+      key[1 + i] = (char) (record[base + EPC_OFFSET + i] & 0xFF);
+    }
+    return new String(key);
+  }
+
+  /** Wraps the listener so that every event window is journaled before being passed on. */
+  public ScanEngine.Listener recorder(final ScanEngine.Listener listener) {
+    return new ScanEngine.Listener() {
+      @Override
+      public void onReads(List<TagRead> reads) {
+        append(reads, System.currentTimeMillis());
+        listener.onReads(reads);
+      }
+
+      @Override
+      public void onAggregatedReads(TagReadAggregator aggregator) {
+        append(aggregator);
+        listener.onAggregatedReads(aggregator);
+      }
+
+      @Override
+      public void onFeedback(int sound) {
+        listener.onFeedback(sound);
+      }
+
+      @Override
+      public void onCheckSessionDelta(CheckSession.Delta delta) {
+        append(delta, System.currentTimeMillis());
+        listener.onCheckSessionDelta(delta);
+      }
+
+      @Override
+      public void onLocateUpdate(LocateTracker tracker) {
+        listener.onLocateUpdate(tracker);
+      }
+
+      @Override
+      public void onLocateFeedback(float proximity) {
+        listener.onLocateFeedback(proximity);
+      }
+
+      @Override
+      public void onStats(ScanStats.Snapshot stats) {
+        listener.onStats(stats);
+      }
+
+      @Override
+      public void onTrace(long firstReadAt, long lastReadAt, long emittedAt) {
+        listener.onTrace(firstReadAt, lastReadAt, emittedAt);
+      }
+    };
+  }
+
+  public synchronized void append(TagReadAggregator aggregator) {
+    for (int i = 0; i < aggregator.size(); i++) {
+      TagReadAggregator.Record record = aggregator.get(i);
+      boolean hasRssi = record.rssiCount > 0;
+      appendRecord(record.epc, record.tid, TagReadAggregator.parseRssi(record.lastRssi),
+              record.count, record.firstSeenAt, record.lastSeenAt,
+              hasRssi ? record.minRssi : Float.NaN,
+              hasRssi ? record.maxRssi : Float.NaN,
+              hasRssi ? (float) record.getMeanRssi() : Float.NaN);
+    }
+  }
+
+  public synchronized void append(List<TagRead> reads, long now) {
+    for (int i = 0; i < reads.size(); i++) {
+      TagRead read = reads.get(i);
+      float rssi = TagReadAggregator.parseRssi(read.rssi);
+      appendRecord(read.epc, read.tid, rssi, 1, now, now, rssi, rssi, rssi);
+    }
+  }
+
+  /** Journals the EPCs a check session saw for the first time. */
+  public synchronized void append(CheckSession.Delta delta, long now) {
+    appendChanges(delta.found, now);
+    appendChanges(delta.unexpected, now);
+  }
+
+  private void appendChanges(List<CheckSession.Change> changes, long now) {
+    for (int i = 0; i < changes.size(); i++) {
+      CheckSession.Change change = changes.get(i);
+      float rssi = TagReadAggregator.parseRssi(change.rssi);
+      appendRecord(change.epc, null, rssi, 1, now, now, rssi, rssi, rssi);
+    }
+  }
+
+  private void appendRecord(String epc, String tid, float lastRssi, int count,
+                            long firstSeenAt, long lastSeenAt,
+                            float minRssi, float maxRssi, float meanRssi) {
+    if (closed || failed || epc == null) return;
+    Arrays.fill(scratch, (byte) 0);
+    scratch[1] = (byte) ScanBatchEncoder.packId(epc, scratch, EPC_OFFSET, EPC_MAX_BYTES);
+    String key = keyOf(scratch, 0);
+    Integer existing = recordsByEpc.get(key);
+    if (existing != null) {
+      updateRecord(existing, tid, lastRssi, count, lastSeenAt, minRssi, maxRssi, meanRssi);
+      return;
+    }
+
+    int index = recordCount;
+    MappedByteBuffer target = chunkFor(index);
+    if (target == null) return;
+    scratch[2] = (byte) ScanBatchEncoder.packId(tid, scratch, TID_OFFSET, TID_MAX_BYTES);
+    scratchBuffer.putInt(4, count);
+    scratchBuffer.putLong(8, firstSeenAt);
+    scratchBuffer.putInt(16, (int) Math.max(0, lastSeenAt - firstSeenAt));
+    scratchBuffer.putShort(20, ScanBatchEncoder.toCentiDbm(lastRssi));
+    scratchBuffer.putShort(22, ScanBatchEncoder.toCentiDbm(minRssi));
+    scratchBuffer.putShort(24, ScanBatchEncoder.toCentiDbm(maxRssi));
+    scratchBuffer.putShort(26, ScanBatchEncoder.toCentiDbm(meanRssi));
+
+    // The marker goes in last, so that a record is either complete or ignored on recovery
+    int offset = (index % CHUNK_RECORDS) * RECORD_SIZE;
+    target.position(offset + 1);
+    target.put(scratch, 1, RECORD_SIZE - 1);
+    target.put(offset, RECORD_MARKER);
+    recordsByEpc.put(key, index);
+    recordCount = index + 1;
+  }
+
+  /** Merges another sighting into the record of an EPC seen before. */
+  private void updateRecord(int index, String tid, float lastRssi, int count, long lastSeenAt,
+                            float minRssi, float maxRssi, float meanRssi) {
+    MappedByteBuffer target = chunkFor(index);
+    if (target == null) return;
+    int offset = (index % CHUNK_RECORDS) * RECORD_SIZE;
+
+    if (target.get(offset + 2) == 0 && tid != null) {
+      int tidHeader = ScanBatchEncoder.packId(tid, scratch, TID_OFFSET, TID_MAX_BYTES);
+      target.position(offset + TID_OFFSET);
+      target.put(scratch, TID_OFFSET, tidHeader & ScanBatchEncoder.MAX_ID_LENGTH);
+      target.put(offset + 2, (byte) tidHeader);
+    }
+    int previousCount = target.getInt(offset + 4);
+    target.putInt(offset + 4, (int) Math.min(Integer.MAX_VALUE, (long) previousCount + count));
+    long firstSeenAt = target.getLong(offset + 8);
+    long previousLastSeenAt = firstSeenAt + (target.getInt(offset + 16) & 0xFFFFFFFFL);
+    target.putInt(offset + 16, (int) Math.max(0, Math.max(previousLastSeenAt, lastSeenAt) - firstSeenAt));
+
+    short last = ScanBatchEncoder.toCentiDbm(lastRssi);
+    if (last != ScanBatchEncoder.RSSI_UNKNOWN) target.putShort(offset + 20, last);
+    short min = ScanBatchEncoder.toCentiDbm(minRssi);
+    short previousMin = target.getShort(offset + 22);
+    if (min != ScanBatchEncoder.RSSI_UNKNOWN && (previousMin == ScanBatchEncoder.RSSI_UNKNOWN || min < previousMin)) {
+      target.putShort(offset + 22, min);
+    }
+    short max = ScanBatchEncoder.toCentiDbm(maxRssi);
+    short previousMax = target.getShort(offset + 24);
+    if (max != ScanBatchEncoder.RSSI_UNKNOWN && (previousMax == ScanBatchEncoder.RSSI_UNKNOWN || max > previousMax)) {
+      target.putShort(offset + 24, max);
+    }
+    short mean = ScanBatchEncoder.toCentiDbm(meanRssi);
+    short previousMean = target.getShort(offset + 26);
+    if (mean != ScanBatchEncoder.RSSI_UNKNOWN) {
+      // Weighted by read count, close enough when some reads had no RSSI
+      if (previousMean != ScanBatchEncoder.RSSI_UNKNOWN && previousCount > 0) {
+        mean = (short) Math.round(((double) previousMean * previousCount + (double) mean * count)
+                / ((double) previousCount + count));
+      }
+      target.putShort(offset + 26, mean);
+    }
+  }
+
+  /** The mapping the record goes to, mapping its chunk (and growing the file) as needed. */
+  private MappedByteBuffer chunkFor(int index) {
+    int number = index / CHUNK_RECORDS;
+    // Flushed by the sync thread, so the scan thread does not wait on it
+    dirtyChunks.set(number);
+    MappedByteBuffer chunk = number < chunks.size() ? chunks.get(number) : null;
+    if (chunk != null) return chunk;
+    try {
+      chunk = channel.map(FileChannel.MapMode.READ_WRITE,
+              HEADER_SIZE + (long) number * CHUNK_RECORDS * RECORD_SIZE, (long) CHUNK_RECORDS * RECORD_SIZE);
+      chunk.order(ByteOrder.LITTLE_ENDIAN);
+      while (chunks.size() <= number) chunks.add(null);
+      chunks.set(number, chunk);
+      return chunk;
+    } catch (IOException e) {
+      // E.g. out of disk space, the scan goes on without the journal
+      e.printStackTrace();
+      failed = true;
+      return null;
+    }
+  }
+
+  /** Flushes what has been appended to disk and records the count in the header. */
+  public void sync() {
+    synchronized (syncLock) {
+      MappedByteBuffer[] dirty;
+      int count;
+      synchronized (this) {
+        if (closed) return;
+        dirty = takeDirtyChunks();
+        count = recordCount;
+      }
+      flush(dirty, count);
+    }
+  }
+
+  private MappedByteBuffer[] takeDirtyChunks() {
+    MappedByteBuffer[] dirty = new MappedByteBuffer[dirtyChunks.cardinality()];
+    int i = 0;
+    for (int number = dirtyChunks.nextSetBit(0); number >= 0; number = dirtyChunks.nextSetBit(number + 1)) {
+      dirty[i++] = number < chunks.size() ? chunks.get(number) : null;
+    }
+    dirtyChunks.clear();
+    return dirty;
+  }
+
+  private void flush(MappedByteBuffer[] dirty, int count) {
+    for (MappedByteBuffer buffer : dirty) {
+      if (buffer != null) buffer.force();
+    }
+    if (header.getInt(COUNT_OFFSET) != count) {
+      header.putInt(COUNT_OFFSET, count);
+      header.force();
+    }
+  }
+
+  /** Encodes up to limit records from offset as a packed aggregated payload, returns how many. */
+  public int read(int offset, int limit, ScanBatchEncoder encoder) throws IOException {
+    int count = Math.max(0, Math.min(Math.min(limit, ScanBatchEncoder.MAX_RECORDS), recordCount - offset));
+    ByteBuffer page = ByteBuffer.allocate(count * RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    if (count > 0) readFully(page, HEADER_SIZE + (long) offset * RECORD_SIZE);
+    byte[] bytes = page.array();
+
+    long baseTime = Long.MAX_VALUE;
+    for (int i = 0; i < count; i++) {
+      baseTime = Math.min(baseTime, page.getLong(i * RECORD_SIZE + 8));
+    }
+    if (count == 0) baseTime = System.currentTimeMillis();
+
+    encoder.writeHeader(ScanBatchEncoder.FLAG_AGGREGATED, count, baseTime);
+    for (int i = 0; i < count; i++) {
+      int base = i * RECORD_SIZE;
+      long firstSeenAt = page.getLong(base + 8);
+      int firstSeen = (int) (firstSeenAt - baseTime);
+      encoder.writeId(bytes[base + 1] & 0xFF, bytes, base + EPC_OFFSET);
+      encoder.writeId(bytes[base + 2] & 0xFF, bytes, base + TID_OFFSET);
+      encoder.writeShort(page.getShort(base + 20));
+      encoder.writeInt(page.getInt(base + 4));
+      encoder.writeInt(firstSeen);
+      encoder.writeInt(firstSeen + page.getInt(base + 16));
+      encoder.writeShort(page.getShort(base + 22));
+      encoder.writeShort(page.getShort(base + 24));
+      encoder.writeShort(page.getShort(base + 26));
+    }
+    return count;
+  }
+
+  private void readFully(ByteBuffer buffer, long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      int read = channel.read(buffer, position + buffer.position());
+      if (read < 0) break;
+    }
+  }
+
+  /** Syncs and closes the file, later appends are ignored. */
+  @Override
+  public void close() throws IOException {
+    syncTask.cancel(false);
+    synchronized (syncLock) {
+      MappedByteBuffer[] dirty;
+      int count;
+      synchronized (this) {
+        if (closed) return;
+        closed = true;
+        dirty = takeDirtyChunks();
+        chunks.clear();
+        recordsByEpc.clear();
+        count = recordCount;
+      }
+      flush(dirty, count);
+      channel.close();
+      randomAccessFile.close();
+    }
+  }
+}
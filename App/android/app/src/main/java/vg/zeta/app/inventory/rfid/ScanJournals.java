@@ -0,0 +1,137 @@
+package vg.zeta.app.inventory.rfid;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The scan journals of the modules, one file per session name in a
+ * directory. Keeps the journals of current scans open until their module
+ * closes them, others are only opened for as long as it takes to read them.
+ */
+public class ScanJournals {
+
+  private static final String SUFFIX = ".journal";
+
+  private final File dir;
+  private final HashMap<String, ScanJournal> active = new HashMap<>();
+  // How many times each active journal was opened and not closed yet
+  private final HashMap<String, Integer> openCounts = new HashMap<>();
+
+  public ScanJournals(File dir) {
+    this.dir = dir;
+  }
+
+  private static ScanJournals shared;
+
+  /** The instance the modules share, so that a file is never open twice. */
+  public static synchronized ScanJournals shared(File dir) {
+    if (shared == null) shared = new ScanJournals(dir);
+    return shared;
+  }
+
+  /**
+   * Opens the journal to append to, resuming it if it exists. It stays open
+   * until passed to {@link #close} as many times as it was opened, or deleted.
+   */
+  public synchronized ScanJournal open(String name) throws IOException {
+    ScanJournal journal = active.get(name);
+    if (journal != null) {
+      openCounts.put(name, openCounts.get(name) + 1);
+      return journal;
+    }
+    if (!dir.isDirectory() && !dir.mkdirs()) {
+      throw new IOException("Cannot create " + dir);
+    }
+    journal = ScanJournal.open(fileFor(name));
+    active.put(name, journal);
+    openCounts.put(name, 1);
+    return journal;
+  }
+
+  /** Null if there is no journal with that name. */
+  public synchronized ScanJournal.Info getInfo(String name) throws IOException {
+    ScanJournal journal = active.get(name);
+    boolean temporary = journal == null;
+    if (temporary) {
+      File file = fileFor(name);
+      if (!file.exists()) return null;
+      journal = ScanJournal.open(file);
+    }
+    try {
+      ScanJournal.Info info = new ScanJournal.Info();
+      info.recordCount = journal.getRecordCount();
+      info.createdAt = journal.getCreatedAt();
+      return info;
+    } finally {
+      if (temporary) journal.close();
+    }
+  }
+
+  /** See {@link ScanJournal#read}, returns -1 if there is no journal with that name. */
+  public synchronized int read(String name, int offset, int limit, ScanBatchEncoder encoder) throws IOException {
+    ScanJournal journal = active.get(name);
+    boolean temporary = journal == null;
+    if (temporary) {
+      File file = fileFor(name);
+      if (!file.exists()) return -1;
+      journal = ScanJournal.open(file);
+    }
+    try {
+      return journal.read(offset, limit, encoder);
+    } finally {
+      if (temporary) journal.close();
+    }
+  }
+
+  public synchronized List<String> list() {
+    ArrayList<String> names = new ArrayList<>();
+    File[] files = dir.listFiles();
+    if (files == null) return names;
+    for (File file : files) {
+      String fileName = file.getName();
+      if (!fileName.endsWith(SUFFIX)) continue;
+      try {
+        names.add(URLDecoder.decode(fileName.substring(0, fileName.length() - SUFFIX.length()), "UTF-8"));
+      } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+        // Not one of ours
+      }
+    }
+    return names;
+  }
+
+  /** Returns false if there was no journal with that name. */
+  public synchronized boolean delete(String name) throws IOException {
+    ScanJournal journal = active.remove(name);
+    openCounts.remove(name);
+    if (journal != null) journal.close();
+    return fileFor(name).delete();
+  }
+
+  /** Releases a journal returned by {@link #open}, closing it once nobody else has it open. */
+  public synchronized void close(ScanJournal journal) throws IOException {
+    for (Map.Entry<String, ScanJournal> entry : active.entrySet()) {
+      if (entry.getValue() != journal) continue;
+      String name = entry.getKey();
+      int count = openCounts.get(name) - 1;
+      if (count > 0) {
+        openCounts.put(name, count);
+      } else {
+        active.remove(name);
+        openCounts.remove(name);
+        journal.close();
+      }
+      return;
+    }
+  }
+
+  private File fileFor(String name) throws UnsupportedEncodingException {
+    return new File(dir, URLEncoder.encode(name, "UTF-8") + SUFFIX);
+  }
+}
@@ -0,0 +1,22 @@
+package vg.zeta.app.inventory.rfid;
+
+/**
+ * How long reads of a scan with traceLatency take to get to JS, in
+ * microseconds. The native part is measured by the scan thread, the rest
+ * is reported back by JS when the event window arrives.
+ */
+public class ScanLatency {
+
+  /** From the first read of an event window to the window being emitted. */
+  public final LatencyHistogram window = new LatencyHistogram();
+  /** From the window being emitted to the JS callback. */
+  public final LatencyHistogram bridge = new LatencyHistogram();
+  /** From the first read of a window to the JS callback. */
+  public final LatencyHistogram total = new LatencyHistogram();
+
+  public void reset() {
+    window.reset();
+    bridge.reset();
+    total.reset();
+  }
+}
@@ -0,0 +1,209 @@
+package vg.zeta.app.inventory.rfid;
+
+/**
+ * Bounded ring of reads between the reader and the event emitter, so that a
+ * stalled JS thread cannot make the scan thread pile up reads without limit.
+ *
+ * What happens when a read comes in while the ring is full depends on the
+ * policy:
+ * <ul>
+ *   <li>{@link #POLICY_DROP_OLDEST}: the oldest queued read is dropped.</li>
+ *   <li>{@link #POLICY_COALESCE}: if the EPC is already queued the read is
+ *   merged into that entry, otherwise the oldest queued read is dropped.
+ *   Only once the ring is full, and only for aggregated windows, whose
+ *   records carry the merged count (ScanConfig rejects it otherwise).</li>
+ *   <li>{@link #POLICY_BLOCK_READER}: nothing is dropped here, the scan thread
+ *   stops draining the reader (see {@link #remainingCapacity}) and leaves the
+ *   reads in the reader's own buffer.</li>
+ * </ul>
+ *
+ * Owned by the scan thread, only the counters may be read from other threads.
+ */
+public class ScanQueue {
+
+  public static final int POLICY_DROP_OLDEST = 0;
+  public static final int POLICY_COALESCE = 1;
+  public static final int POLICY_BLOCK_READER = 2;
+
+  public interface Consumer {
+    /** count is the number of reads merged into this one (1 if none). */
+    void accept(TagRead read, long readAt, int count);
+  }
+
+  private final int policy;
+  private final TagRead[] reads;
+  private final long[] readAts;
+  private final int[] counts;
+  private int head;
+  private int size;
+
+  // Only used with POLICY_COALESCE: open-addressing table from EPC to the
+  // ring slot of its newest queued read. The keys are the queued reads
+  // themselves, so indexing does not allocate, and drainTo() empties it by
+  // bumping indexEpoch. Slots written under an older epoch are free.
+  private final int[] indexSlots;
+  private final int[] indexEpochs;
+  private final int indexMask;
+  private int indexEpoch = 1;
+
+  private volatile long droppedCount;
+  private volatile long coalescedCount;
+  private volatile long blockedCount;
+
+  public ScanQueue(int capacity, int policy) {
+    capacity = Math.max(1, capacity);
+    this.policy = policy;
+    this.reads = new TagRead[capacity];
+    this.readAts = new long[capacity];
+    this.counts = new int[capacity];
+    if (policy == POLICY_COALESCE) {
+      // At most half full
+      int tableSize = Integer.highestOneBit(capacity * 2 - 1) << 1;
+      this.indexSlots = new int[tableSize];
+      this.indexEpochs = new int[tableSize];
+      this.indexMask = tableSize - 1;
+    } else {
+      this.indexSlots = null;
+      this.indexEpochs = null;
+      this.indexMask = 0;
+    }
+  }
+
+  /** Parses the queuePolicy option of startScan, defaults to drop-oldest. */
+  public static int parsePolicy(String policy) {
+    if ("coalesce".equals(policy)) return POLICY_COALESCE;
+    if ("block".equals(policy)) return POLICY_BLOCK_READER;
+    return POLICY_DROP_OLDEST;
+  }
+
+  public int getPolicy() {
+    return policy;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public int capacity() {
+    return reads.length;
+  }
+
+  /**
+   * How many reads the scan thread may take from the reader. Unlimited
+   * except with {@link #POLICY_BLOCK_READER}, counts a blocked pass when 0.
+   */
+  public int remainingCapacity() {
+    if (policy != POLICY_BLOCK_READER) return Integer.MAX_VALUE;
+    int remaining = reads.length - size;
+    if (remaining <= 0) blockedCount++;
+    return remaining;
+  }
+
+  public void offer(TagRead read, long readAt) {
+    if (size == reads.length) {
+      if (policy == POLICY_COALESCE && coalesce(read, readAt)) return;
+      dropOldest();
+    }
+
+    int index = (head + size) % reads.length;
+    reads[index] = read;
+    readAts[index] = readAt;
+    counts[index] = 1;
+    if (indexSlots != null) {
+      int slot = findIndexSlot(read.epc);
+      indexSlots[slot] = index;
+      indexEpochs[slot] = indexEpoch;
+    }
+    size++;
+  }
+
+  /** Hands every queued read to the consumer, oldest first, and empties the queue. */
+  public void drainTo(Consumer consumer) {
+    while (size > 0) {
+      int index = head;
+      TagRead read = reads[index];
+      reads[index] = null;
+      head = (head + 1) % reads.length;
+      size--;
+      consumer.accept(read, readAts[index], counts[index]);
+    }
+    if (indexSlots != null) {
+      // 0 marks never-used slots
+      indexEpoch = indexEpoch + 1 == 0 ? 1 : indexEpoch + 1;
+    }
+  }
+
+  public void clear() {
+    drainTo((read, readAt, count) -> {});
+  }
+
+  public long getDroppedCount() {
+    return droppedCount;
+  }
+
+  public long getCoalescedCount() {
+    return coalescedCount;
+  }
+
+  /** Number of scan loop passes that left reads in the reader because the queue was full. */
+  public long getBlockedCount() {
+    return blockedCount;
+  }
+
+  private boolean coalesce(TagRead read, long readAt) {
+    int slot = findIndexSlot(read.epc);
+    if (indexEpochs[slot] != indexEpoch) return false;
+    int index = indexSlots[slot];
+    reads[index] = read;
+    readAts[index] = readAt;
+    counts[index]++;
+    coalescedCount++;
+    return true;
+  }
+
+  private void dropOldest() {
+    if (indexSlots != null) {
+      // Only unindexed if no newer read of the EPC is queued
+      int slot = findIndexSlot(reads[head].epc);
+      if (indexEpochs[slot] == indexEpoch && indexSlots[slot] == head) unindex(slot);
+    }
+    droppedCount += counts[head];
+    reads[head] = null;
+    head = (head + 1) % reads.length;
+    size--;
+  }
+
+  /**
+   * Returns the index table slot holding the EPC, or the free slot where it
+   * would go if it is not queued.
+   */
+  private int findIndexSlot(String epc) {
+    int slot = hash(epc) & indexMask;
+    while (indexEpochs[slot] == indexEpoch) {
+      if (reads[indexSlots[slot]].epc.equals(epc)) return slot;
+      slot = (slot + 1) & indexMask;
+    }
+    return slot;
+  }
+
+  /** Frees the slot, moving back later entries of the probe run so lookups still find them. */
+  private void unindex(int slot) {
+    int hole = slot;
+    int next = (slot + 1) & indexMask;
+    while (indexEpochs[next] == indexEpoch) {
+      int home = hash(reads[indexSlots[next]].epc) & indexMask;
+      // Can move if the hole is between its home slot and where it is now
+      if (((next - home) & indexMask) >= ((next - hole) & indexMask)) {
+        indexSlots[hole] = indexSlots[next];
+        hole = next;
+      }
+      next = (next + 1) & indexMask;
+    }
+    indexEpochs[hole] = 0;
+  }
+
+  private static int hash(String epc) {
+    int h = epc.hashCode() * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+}
@@ -0,0 +1,206 @@
+package vg.zeta.app.inventory.rfid;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counters of one scan session, to tell whether a slow scan is down to the
+ * radio (few reads, many empty polls), the bridge (slow emits) or audio.
+ *
+ * Each counter has a single writer, the scan thread or the feedback thread,
+ * so recording is a plain volatile write with no lock or CAS (as ScanQueue
+ * does). Anyone may take a {@link #snapshot}. A new session gets a new
+ * instance rather than a reset, so a scan thread that has not exited yet
+ * cannot spill into the next session's numbers.
+ */
+public class ScanStats {
+
+  /**
+   * Counts values in power-of-two buckets, enough for percentiles within a
+   * factor of two. Single writer.
+   */
+  public static class Histogram {
+    private static final int BUCKET_COUNT = 64;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private volatile long count;
+    private volatile long sum;
+    private volatile long max;
+
+    void record(long value) {
+      if (value < 0) value = 0;
+      // Bucket 0 holds 0, bucket b holds 2^(b-1) to 2^b - 1
+      int bucket = 64 - Long.numberOfLeadingZeros(value);
+      buckets.lazySet(bucket, buckets.get(bucket) + 1);
+      count++;
+      sum += value;
+      if (value > max) max = value;
+    }
+
+    public long getCount() {
+      return count;
+    }
+
+    public long getMax() {
+      return max;
+    }
+
+    public double getMean() {
+      long n = count;
+      return n > 0 ? (double) sum / n : 0;
+    }
+
+    /** Upper bound of the bucket the quantile (0 to 1) falls in, capped at the max. */
+    public long getQuantile(double quantile) {
+      long n = count;
+      if (n == 0) return 0;
+      long rank = (long) Math.ceil(quantile * n);
+      long seen = 0;
+      for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+        seen += buckets.get(bucket);
+        if (seen >= rank) {
+          long upper = bucket == 0 ? 0 : (1L << bucket) - 1;
+          return Math.min(upper, max);
+        }
+      }
+      return max;
+    }
+  }
+
+  /** The counters at one point in time, times in milliseconds. */
+  public static class Snapshot {
+    public boolean running;
+    public long startedAt;
+    public long duration;
+    /** Calls into the reader buffer, and those that came back with nothing. */
+    public long polls;
+    public long emptyPolls;
+    public long reads;
+    public double readsPerSecond;
+    /** Reads of an EPC not seen before (in this or a previous session, until cleared). */
+    public long newEpcs;
+    public long duplicates;
+    /** Event windows handed to JS, with the number of records in each. */
+    public long batches;
+    public double meanBatchSize;
+    public long p95BatchSize;
+    public long maxBatchSize;
+    /** Time spent handing event windows over to JS. */
+    public double meanEmitTime;
+    public double p95EmitTime;
+    public double maxEmitTime;
+    public long sounds;
+    public double meanSoundTime;
+    public double p95SoundTime;
+    public double maxSoundTime;
+    /**
+     * With autoTune, the power, starting Q and session in use (Q and session
+     * -1 if the reader cannot change them), how many times the tuner kept a
+     * new setting, and the score of its last window (see AutoTuner).
+     */
+    public boolean autoTune;
+    public int power = -1;
+    public int q = -1;
+    public int session = -1;
+    public long tuneChanges;
+    public double tuneScore;
+  }
+
+  private final long startedAt;
+  private volatile long stoppedAt;
+
+  // Written by the scan thread
+  private volatile long polls;
+  private volatile long emptyPolls;
+  private volatile long reads;
+  private volatile long newEpcs;
+  private final Histogram batchSizes = new Histogram();
+  private final Histogram emitNanos = new Histogram();
+
+  // Written by the scan thread with autoTune, see onTuned
+  private volatile AutoTuner.Settings tunedSettings;
+  private volatile long tuneChanges;
+  private volatile double tuneScore;
+
+  // Written by the feedback thread
+  private final Histogram soundNanos = new Histogram();
+
+  public ScanStats(long startedAt) {
+    this.startedAt = startedAt;
+  }
+
+  void onPoll(int count) {
+    polls++;
+    if (count <= 0) {
+      emptyPolls++;
+    } else {
+      reads += count;
+    }
+  }
+
+  void onNewEpc() {
+    newEpcs++;
+  }
+
+  long getNewEpcs() {
+    return newEpcs;
+  }
+
+  void onTuned(AutoTuner tuner) {
+    tuneChanges = tuner.getChangeCount();
+    tuneScore = tuner.getLastScore();
+    tunedSettings = tuner.getSettings();
+  }
+
+  void onEmit(int batchSize, long nanos) {
+    batchSizes.record(batchSize);
+    emitNanos.record(nanos);
+  }
+
+  /** Called by the feedback thread with the time a sound took to play. */
+  void onSound(long nanos) {
+    soundNanos.record(nanos);
+  }
+
+  void onStopped(long now) {
+    stoppedAt = now;
+  }
+
+  public Snapshot snapshot(long now) {
+    Snapshot snapshot = new Snapshot();
+    long stopped = stoppedAt;
+    snapshot.running = stopped == 0;
+    snapshot.startedAt = startedAt;
+    snapshot.duration = Math.max(0, (stopped != 0 ? stopped : now) - startedAt);
+    snapshot.polls = polls;
+    snapshot.emptyPolls = emptyPolls;
+    snapshot.reads = reads;
+    if (snapshot.duration > 0) snapshot.readsPerSecond = snapshot.reads * 1000.0 / snapshot.duration;
+    snapshot.newEpcs = newEpcs;
+    snapshot.duplicates = Math.max(0, snapshot.reads - snapshot.newEpcs);
+    snapshot.batches = batchSizes.getCount();
+    snapshot.meanBatchSize = batchSizes.getMean();
+    snapshot.p95BatchSize = batchSizes.getQuantile(0.95);
+    snapshot.maxBatchSize = batchSizes.getMax();
+    snapshot.meanEmitTime = millis(emitNanos.getMean());
+    snapshot.p95EmitTime = millis(emitNanos.getQuantile(0.95));
+    snapshot.maxEmitTime = millis(emitNanos.getMax());
+    snapshot.sounds = soundNanos.getCount();
+    snapshot.meanSoundTime = millis(soundNanos.getMean());
+    snapshot.p95SoundTime = millis(soundNanos.getQuantile(0.95));
+    snapshot.maxSoundTime = millis(soundNanos.getMax());
+    AutoTuner.Settings settings = tunedSettings;
+    if (settings != null) {
+      snapshot.autoTune = true;
+      snapshot.power = settings.power;
+      snapshot.q = settings.q;
+      snapshot.session = settings.session;
+      snapshot.tuneChanges = tuneChanges;
+      snapshot.tuneScore = tuneScore;
+    }
+    return snapshot;
+  }
+
+  private static double millis(double nanos) {
+    return nanos / 1e6;
+  }
+}
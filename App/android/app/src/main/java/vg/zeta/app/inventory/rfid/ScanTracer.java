@@ -0,0 +1,51 @@
+package vg.zeta.app.inventory.rfid;
+
+/**
+ * Where the scan pipeline gets its monotonic clock and marks its stages
+ * (read, dedupe, emit, sound, tune), so they show up in a system trace. The
+ * default does nothing and uses System.nanoTime(), which keeps the engine
+ * runnable off-device. On a device the modules install one backed by
+ * android.os.Trace and SystemClock, see {@link #install}.
+ */
+public abstract class ScanTracer {
+
+  public static final String STAGE_READ = "uhf:read";
+  public static final String STAGE_DEDUPE = "uhf:dedupe";
+  public static final String STAGE_EMIT = "uhf:emit";
+  public static final String STAGE_SOUND = "uhf:sound";
+  public static final String STAGE_TUNE = "uhf:tune";
+
+  private static final ScanTracer NONE = new ScanTracer() {
+    @Override
+    public long nanoTime() {
+      return System.nanoTime();
+    }
+
+    @Override
+    public void beginSection(String name) {
+    }
+
+    @Override
+    public void endSection() {
+    }
+  };
+
+  private static volatile ScanTracer current = NONE;
+
+  /** Sets the tracer of the process, once at startup, sections must not straddle a change. */
+  public static void install(ScanTracer tracer) {
+    current = tracer != null ? tracer : NONE;
+  }
+
+  public static ScanTracer get() {
+    return current;
+  }
+
+  /** Monotonic time in nanoseconds, the timestamps of traced event windows. */
+  public abstract long nanoTime();
+
+  /** Sections nest, and are ended on the thread that began them. */
+  public abstract void beginSection(String name);
+
+  public abstract void endSection();
+}
@@ -0,0 +1,34 @@
+package vg.zeta.app.inventory.rfid;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+/** Creates simulated readers from the options passed to setSimulatedReader. */
+public class SimulatedReaders {
+
+  /**
+   * {@code type} is either "synthetic" (see {@link SyntheticReaderBackend.Options}
+   * for the other keys) or "replay" (with {@code path}, {@code speed} and
+   * {@code loop}).
+   */
+  public static UHFReaderBackend create(Map<String, Object> options) throws IOException {
+    String type = ScanConfig.getString(options, "type", "synthetic");
+    switch (type) {
+      case "synthetic":
+        return new SyntheticReaderBackend(SyntheticReaderBackend.Options.fromMap(options));
+
+      case "replay":
+        String path = ScanConfig.getString(options, "path", null);
+        if (path == null) throw new IllegalArgumentException("path is required for a replay reader");
+        return ReplayReaderBackend.fromFile(
+                new File(path),
+                ScanConfig.getDouble(options, "speed", 1),
+                ScanConfig.getBoolean(options, "loop", false)
+        );
+
+      default:
+        throw new IllegalArgumentException("Unknown simulated reader type: " + type);
+    }
+  }
+}
@@ -0,0 +1,97 @@
+package vg.zeta.app.inventory.rfid;
+
+import static android.content.Context.AUDIO_SERVICE;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.media.AudioManager;
+import android.media.SoundPool;
+
+import java.util.HashMap;
+
+import vg.zeta.app.inventory.R;
+
+/**
+ * The beeps of the RFID modules: 1 for success (or a new tag), 2 for a seen
+ * tag and 3 for errors. Can be played at a different rate, which is how
+ * locating changes the pitch.
+ *
+ * The volume ratio is cached and only refreshed when the volume changes, so
+ * that playing a sound does not query the AudioManager every time.
+ */
+public class SoundFeedback implements FeedbackScheduler.Player {
+
+  // Not public API, but sent by all Android versions we run on
+  private static final String VOLUME_CHANGED_ACTION = "android.media.VOLUME_CHANGED_ACTION";
+
+  private final Context context;
+  private final AudioManager am;
+  private final HashMap<Integer, Integer> soundMap = new HashMap<Integer, Integer>();
+  private SoundPool soundPool1;
+  private SoundPool soundPool2;
+  private volatile float volumeRatio;
+
+  private final BroadcastReceiver volumeReceiver = new BroadcastReceiver() {
+    @Override
+    public void onReceive(Context context, Intent intent) {
+      refreshVolume();
+    }
+  };
+
+  public SoundFeedback(Context context) {
+    this.context = context;
+    soundPool1 = new SoundPool.Builder()
+            .setMaxStreams(4)
+            .build();
+    soundPool2 = new SoundPool.Builder()
+            .setMaxStreams(4)
+            .build();
+    soundMap.put(1, soundPool1.load(context, R.raw.beep, 1));
+    soundMap.put(2, soundPool2.load(context, R.raw.beep_slight, 1));
+    soundMap.put(3, soundPool1.load(context, R.raw.serror, 1));
+    am = (AudioManager) context.getSystemService(AUDIO_SERVICE);
+    refreshVolume();
+    context.registerReceiver(volumeReceiver, new IntentFilter(VOLUME_CHANGED_ACTION));
+  }
+
+  private void refreshVolume() {
+    float audioMaxVolume = am.getStreamMaxVolume(AudioManager.STREAM_MUSIC);
+    float audioCurrentVolume = am.getStreamVolume(AudioManager.STREAM_MUSIC);
+    volumeRatio = audioCurrentVolume / audioMaxVolume;
+  }
+
+  public void play(int id) {
+    play(id, 1f);
+  }
+
+  @Override
+  public synchronized void play(int id, float rate) {
+    SoundPool soundPool = id == 2 ? soundPool2 : soundPool1;
+    Integer soundId = soundMap.get(id);
+    if (soundPool == null || soundId == null) return;
+
+    float volume = volumeRatio;
+    soundPool.play(soundId,
+            volume, // Left channel volume
+            volume, // right channel volume
+            1, // priority, 0 is highest
+            0, // loop count, 0 = no loop, -1 = loop forever
+            Math.max(0.5f, Math.min(2f, rate)) // playback speed
+    );
+  }
+
+  public synchronized void release() {
+    if (soundPool1 == null) return;
+    try {
+      context.unregisterReceiver(volumeReceiver);
+    } catch (IllegalArgumentException e) {
+      // Not registered
+    }
+    soundPool1.release();
+    soundPool1 = null;
+    soundPool2.release();
+    soundPool2 = null;
+  }
+}
@@ -0,0 +1,328 @@
+package vg.zeta.app.inventory.rfid;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * A reader that makes up a tag population and reads it at a configured rate,
+ * for load-testing the scan pipeline without hardware.
+ *
+ * Reads are generated lazily from the time elapsed since startInventoryTag(),
+ * so the buffer behaves like a real reader's: if nobody drains it, reads pile
+ * up (bounded by bufferCapacity, the rest are lost).
+ */
+public class SyntheticReaderBackend
+        implements UHFReaderBackend, UHFReaderBackend.Gen2, UHFReaderBackend.InventoryModes {
+
+  public static class Options {
+    public int tagCount = 300;
+    public double readsPerSecond = 400;
+    /** Mean and standard deviation of the per-tag RSSI in dBm. */
+    public double rssiMean = -60;
+    public double rssiStdDev = 8;
+    /** Jitter of each read around the tag's own RSSI. */
+    public double rssiJitter = 2;
+    /**
+     * Probability that a read is of a tag that has already been read, as long
+     * as there are still unread tags left in the population.
+     */
+    public double duplicateRatio = 0.9;
+    /** Maximum number of reads the simulated reader buffer holds. */
+    public int bufferCapacity = 4096;
+    public String epcPrefix = "E280";
+    /** EPC length in hex characters (24 for 96-bit EPCs). */
+    public int epcLength = 24;
+    public boolean withTid = false;
+    /** Probability of read/write/lock operations failing. */
+    public double operationFailureRate = 0;
+    public long seed = 42;
+
+    public static Options fromMap(java.util.Map<String, Object> map) {
+      Options options = new Options();
+      if (map == null) return options;
+      options.tagCount = Math.max(1, ScanConfig.getInt(map, "tagCount", options.tagCount));
+      options.readsPerSecond = ScanConfig.getDouble(map, "readsPerSecond", options.readsPerSecond);
+      options.rssiMean = ScanConfig.getDouble(map, "rssiMean", options.rssiMean);
+      options.rssiStdDev = ScanConfig.getDouble(map, "rssiStdDev", options.rssiStdDev);
+      options.rssiJitter = ScanConfig.getDouble(map, "rssiJitter", options.rssiJitter);
+      options.duplicateRatio = ScanConfig.getDouble(map, "duplicateRatio", options.duplicateRatio);
+      options.bufferCapacity = Math.max(1, ScanConfig.getInt(map, "bufferCapacity", options.bufferCapacity));
+      options.epcPrefix = ScanConfig.getString(map, "epcPrefix", options.epcPrefix);
+      options.epcLength = ScanConfig.getInt(map, "epcLength", options.epcLength);
+      options.withTid = ScanConfig.getBoolean(map, "withTid", options.withTid);
+      options.operationFailureRate = ScanConfig.getDouble(map, "operationFailureRate", options.operationFailureRate);
+      options.seed = (long) ScanConfig.getDouble(map, "seed", options.seed);
+      return options;
+    }
+  }
+
+  private static final int RSSI_MIN_TENTHS = -1000;
+  private static final int RSSI_MAX_TENTHS = 0;
+
+  private final Options options;
+  private final Random random;
+  private final String[] epcs;
+  private final String[] tids;
+  private final float[] tagRssi;
+  private final TagRead[][] readCache;
+  /** Pre-formatted RSSI strings in 0.1 dBm steps, so generating a read does not format numbers. */
+  private final String[] rssiStrings;
+
+  private final HashMap<String, String> memory = new HashMap<>();
+
+  private int power = 30;
+  private int frequencyMode = 0;
+  // Kept for getGen2, they change nothing about the reads
+  private Gen2Settings gen2 = Gen2Settings.defaults();
+  private int inventoryMode = InventoryConfig.MODE_EPC;
+  private boolean fastId;
+  private boolean tagFocus;
+  private boolean inventoryRunning;
+  private long inventoryStartedAtNanos;
+  private long generatedCount;
+  private long consumedCount;
+  private long droppedCount;
+  /** Tags [0, readTagCount) have been read at least once. */
+  private int readTagCount;
+
+  public SyntheticReaderBackend(Options options) {
+    this.options = options;
+    this.random = new Random(options.seed);
+
+    int count = options.tagCount;
+    epcs = new String[count];
+    tids = new String[count];
+    tagRssi = new float[count];
+    for (int i = 0; i < count; i++) {
+      epcs[i] = makeHexId(options.epcPrefix, i, options.epcLength);
+      tids[i] = options.withTid ? makeHexId("E2801170", i, 24) : "";
+      tagRssi[i] = (float) (options.rssiMean + random.nextGaussian() * options.rssiStdDev);
+    }
+
+    rssiStrings = new String[RSSI_MAX_TENTHS - RSSI_MIN_TENTHS + 1];
+    for (int i = 0; i < rssiStrings.length; i++) {
+      rssiStrings[i] = String.format(Locale.US, "%.2f", (RSSI_MIN_TENTHS + i) / 10.0);
+    }
+
+    // A small fixed set of reads per tag, so that generating reads does not allocate either
+    readCache = new TagRead[count][];
+    for (int i = 0; i < count; i++) {
+      readCache[i] = new TagRead[8];
+      for (int j = 0; j < readCache[i].length; j++) {
+        readCache[i][j] = new TagRead(epcs[i], tids[i], rssiString(tagRssi[i] + random.nextGaussian() * options.rssiJitter));
+      }
+    }
+  }
+
+  public Options getOptions() {
+    return options;
+  }
+
+  public synchronized long getDroppedCount() {
+    return droppedCount;
+  }
+
+  public String getEpc(int index) {
+    return epcs[index];
+  }
+
+  @Override
+  public synchronized boolean free() {
+    inventoryRunning = false;
+    return true;
+  }
+
+  @Override
+  public synchronized boolean isWorking() {
+    return inventoryRunning;
+  }
+
+  @Override
+  public synchronized int getPower() {
+    return power;
+  }
+
+  @Override
+  public synchronized boolean setPower(int power) {
+    if (power < 1 || power > 33) return false;
+    this.power = power;
+    return true;
+  }
+
+  @Override
+  public synchronized int getFrequencyMode() {
+    return frequencyMode;
+  }
+
+  @Override
+  public synchronized boolean setFrequencyMode(int mode) {
+    frequencyMode = mode;
+    return true;
+  }
+
+  @Override
+  public synchronized Gen2Settings getGen2() {
+    return gen2.copy();
+  }
+
+  @Override
+  public synchronized boolean setGen2(Gen2Settings settings) {
+    gen2 = settings.copy();
+    return true;
+  }
+
+  @Override
+  public boolean setsGen2WhileInventorying() {
+    return true;
+  }
+
+  @Override
+  public synchronized boolean setInventoryMode(int mode) {
+    inventoryMode = mode;
+    return true;
+  }
+
+  @Override
+  public synchronized boolean setFastId(boolean enabled) {
+    fastId = enabled;
+    return true;
+  }
+
+  @Override
+  public synchronized boolean setTagFocus(boolean enabled) {
+    tagFocus = enabled;
+    return true;
+  }
+
+  @Override
+  public boolean setFilter(int bank, int ptr, int len, String data) {
+    return true;
+  }
+
+  @Override
+  public synchronized boolean startInventoryTag() {
+    inventoryRunning = true;
+    inventoryStartedAtNanos = System.nanoTime();
+    generatedCount = 0;
+    consumedCount = 0;
+    return true;
+  }
+
+  @Override
+  public synchronized boolean stopInventory() {
+    inventoryRunning = false;
+    return true;
+  }
+
+  @Override
+  public synchronized TagRead readTagFromBuffer() {
+    if (available() <= 0) return null;
+    consumedCount++;
+    return nextRead();
+  }
+
+  @Override
+  public synchronized int readTagsFromBuffer(List<TagRead> out, int maxCount) {
+    int count = (int) Math.min(available(), maxCount);
+    for (int i = 0; i < count; i++) {
+      out.add(nextRead());
+    }
+    consumedCount += count;
+    return count;
+  }
+
+  /** Number of reads waiting in the simulated buffer. */
+  private long available() {
+    if (!inventoryRunning) return 0;
+    long elapsedNanos = System.nanoTime() - inventoryStartedAtNanos;
+    long total = (long) (elapsedNanos / 1e9 * options.readsPerSecond);
+    generatedCount = Math.max(generatedCount, total);
+    long buffered = generatedCount - consumedCount;
+    if (buffered > options.bufferCapacity) {
+      droppedCount += buffered - options.bufferCapacity;
+      consumedCount = generatedCount - options.bufferCapacity;
+      buffered = options.bufferCapacity;
+    }
+    return buffered;
+  }
+
+  private TagRead nextRead() {
+    int index;
+    if (readTagCount < epcs.length && (readTagCount == 0 || random.nextDouble() >= options.duplicateRatio)) {
+      index = readTagCount++;
+    } else {
+      index = random.nextInt(readTagCount);
+    }
+    TagRead[] reads = readCache[index];
+    return reads[random.nextInt(reads.length)];
+  }
+
+  @Override
+  public String readData(String accessPwd, int bank, int ptr, int cnt) {
+    return readData(accessPwd, 0, 0, 0, "", bank, ptr, cnt);
+  }
+
+  @Override
+  public synchronized String readData(String accessPwd, int filterBank, int filterPtr, int filterCnt, String filterData, int bank, int ptr, int cnt) {
+    if (shouldFail()) return null;
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < cnt; i++) {
+      String word = memory.get(memoryKey(filterData, bank, ptr + i));
+      sb.append(word != null ? word : "0000");
+    }
+    return sb.toString();
+  }
+
+  @Override
+  public boolean writeData(String accessPwd, int bank, int ptr, int cnt, String data) {
+    return writeData(accessPwd, 0, 0, 0, "", bank, ptr, cnt, data);
+  }
+
+  @Override
+  public synchronized boolean writeData(String accessPwd, int filterBank, int filterPtr, int filterCnt, String filterData, int bank, int ptr, int cnt, String data) {
+    if (shouldFail()) return false;
+    if (data == null || data.length() < cnt * 4) return false;
+    for (int i = 0; i < cnt; i++) {
+      memory.put(memoryKey(filterData, bank, ptr + i), data.substring(i * 4, i * 4 + 4));
+    }
+    return true;
+  }
+
+  @Override
+  public boolean lockMem(String accessPwd, String lockCode) {
+    return lockMem(accessPwd, 0, 0, 0, "", lockCode);
+  }
+
+  @Override
+  public synchronized boolean lockMem(String accessPwd, int filterBank, int filterPtr, int filterCnt, String filterData, String lockCode) {
+    return !shouldFail();
+  }
+
+  private boolean shouldFail() {
+    return options.operationFailureRate > 0 && random.nextDouble() < options.operationFailureRate;
+  }
+
+  private String rssiString(double rssi) {
+    int tenths = (int) Math.round(rssi * 10);
+    tenths = Math.max(RSSI_MIN_TENTHS, Math.min(RSSI_MAX_TENTHS, tenths));
+    return rssiStrings[tenths - RSSI_MIN_TENTHS];
+  }
+
+  private static String memoryKey(String filterData, int bank, int ptr) {
+    return (filterData == null ? "" : filterData) + "/" + bank + "/" + ptr;
+  }
+
+  private static String makeHexId(String prefix, int index, int length) {
+    StringBuilder sb = new StringBuilder(length);
+    sb.append(prefix);
+    String suffix = Integer.toHexString(index).toUpperCase(Locale.US);
+    for (int i = sb.length() + suffix.length(); i < length; i++) {
+      sb.append('0');
+    }
+    sb.append(suffix);
+    if (sb.length() > length) return sb.substring(sb.length() - length);
+    return sb.toString();
+  }
+}
@@ -0,0 +1,15 @@
+package vg.zeta.app.inventory.rfid;
+
+/** A single tag read as it comes out of a reader's buffer. */
+public class TagRead {
+  public final String epc;
+  public final String tid;
+  /** RSSI as formatted by the reader, e.g. "-61.40". */
+  public final String rssi;
+
+  public TagRead(String epc, String tid, String rssi) {
+    this.epc = epc;
+    this.tid = tid;
+    this.rssi = rssi;
+  }
+}
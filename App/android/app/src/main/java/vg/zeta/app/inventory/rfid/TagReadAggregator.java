@@ -0,0 +1,195 @@
+package vg.zeta.app.inventory.rfid;
+
+import java.util.ArrayList;
+
+/**
+ * Collapses the raw reads of an event window into one record per EPC.
+ *
+ * Records are pooled and reused across windows, and looked up through an
+ * open-addressing table of their positions that clear() empties by bumping
+ * an epoch, so a steady-state scan does not allocate anything here besides
+ * what the reader already gave us.
+ * Not thread-safe, meant to be owned by the scan thread.
+ */
+public class TagReadAggregator {
+
+  public static class Record {
+    public String epc;
+    public String tid;
+    public String lastRssi;
+    public int count;
+    public long firstSeenAt;
+    public long lastSeenAt;
+    public float minRssi;
+    public float maxRssi;
+    public double rssiSum;
+    /** Number of reads that carried a parsable RSSI value. */
+    public int rssiCount;
+
+    public double getMeanRssi() {
+      if (rssiCount <= 0) return Double.NaN;
+      return rssiSum / rssiCount;
+    }
+
+    void reset(String epc, long now) {
+      this.epc = epc;
+      this.tid = null;
+      this.lastRssi = null;
+      this.count = 0;
+      this.firstSeenAt = now;
+      this.lastSeenAt = now;
+      this.minRssi = Float.NaN;
+      this.maxRssi = Float.NaN;
+      this.rssiSum = 0;
+      this.rssiCount = 0;
+    }
+  }
+
+  private final ArrayList<Record> order = new ArrayList<>();
+  // Index in order of the record for each EPC, slots written under an older
+  // epoch are free. Grows to stay at most half full, never shrinks.
+  private int[] indexes = new int[64];
+  private int[] indexEpochs = new int[64];
+  private int indexEpoch = 1;
+  private final ArrayList<Record> pool = new ArrayList<>();
+  private int readCount = 0;
+
+  public void add(String epc, String tid, String rssi, long now) {
+    add(epc, tid, rssi, now, 1);
+  }
+
+  /**
+   * Adds reads that were already merged into one (e.g. by a coalescing
+   * {@link ScanQueue}): they all count, the RSSI is taken once.
+   */
+  public void add(String epc, String tid, String rssi, long now, int reads) {
+    if (epc == null) return;
+
+    Record record;
+    int slot = findSlot(epc);
+    if (indexEpochs[slot] == indexEpoch) {
+      record = order.get(indexes[slot]);
+    } else {
+      record = pool.isEmpty() ? new Record() : pool.remove(pool.size() - 1);
+      record.reset(epc, now);
+      indexes[slot] = order.size();
+      indexEpochs[slot] = indexEpoch;
+      order.add(record);
+      if (order.size() * 2 > indexes.length) growIndex();
+    }
+
+    record.count += reads;
+    record.lastSeenAt = now;
+    if (tid != null && !tid.isEmpty()) record.tid = tid;
+
+    float value = parseRssi(rssi);
+    if (!Float.isNaN(value)) {
+      record.lastRssi = rssi;
+      if (record.rssiCount == 0 || value < record.minRssi) record.minRssi = value;
+      if (record.rssiCount == 0 || value > record.maxRssi) record.maxRssi = value;
+      record.rssiSum += value;
+      record.rssiCount++;
+    }
+
+    readCount += reads;
+  }
+
+  /** Number of distinct EPCs in the current window. */
+  public int size() {
+    return order.size();
+  }
+
+  /** Number of raw reads that went into the current window. */
+  public int getReadCount() {
+    return readCount;
+  }
+
+  public boolean isEmpty() {
+    return order.isEmpty();
+  }
+
+  /** Records in the order their EPC was first seen in this window. */
+  public Record get(int index) {
+    return order.get(index);
+  }
+
+  /** Starts a new window, records handed out by {@link #get} must not be used afterwards. */
+  public void clear() {
+    pool.addAll(order);
+    order.clear();
+    // 0 marks never-used slots
+    indexEpoch = indexEpoch + 1 == 0 ? 1 : indexEpoch + 1;
+    readCount = 0;
+  }
+
+  /** Returns the slot indexing the EPC, or the free slot where it would go. */
+  private int findSlot(String epc) {
+    int mask = indexes.length - 1;
+    int slot = hash(epc) & mask;
+    while (indexEpochs[slot] == indexEpoch) {
+      if (order.get(indexes[slot]).epc.equals(epc)) return slot;
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private void growIndex() {
+    indexes = new int[indexes.length << 1];
+    indexEpochs = new int[indexes.length];
+    for (int i = 0; i < order.size(); i++) {
+      int slot = findSlot(order.get(i).epc);
+      indexes[slot] = i;
+      indexEpochs[slot] = indexEpoch;
+    }
+  }
+
+  private static int hash(String epc) {
+    int h = epc.hashCode() * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  /**
+   * Parses RSSI strings as reported by the reader (e.g. "-61.40") without
+   * going through Float.parseFloat. Returns NaN for anything unexpected.
+   */
+  public static float parseRssi(String s) {
+    if (s == null) return Float.NaN;
+    int length = s.length();
+    int i = 0;
+    boolean negative = false;
+    if (i < length && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+      negative = s.charAt(i) == '-';
+      i++;
+    }
+    if (i >= length) return Float.NaN;
+
+    int intPart = 0;
+    int fraction = 0;
+    int fractionScale = 1;
+    boolean seenDigit = false;
+    boolean inFraction = false;
+    for (; i < length; i++) {
+      char c = s.charAt(i);
+      if (c >= '0' && c <= '9') {
+        seenDigit = true;
+        if (inFraction) {
+          if (fractionScale < 10000) {
+            fraction = fraction * 10 + (c - '0');
+            fractionScale *= 10;
+          }
+        } else {
+          intPart = intPart * 10 + (c - '0');
+          if (intPart > 100000) return Float.NaN;
+        }
+      } else if (c == '.' && !inFraction) {
+        inFraction = true;
+      } else {
+        return Float.NaN;
+      }
+    }
+    if (!seenDigit) return Float.NaN;
+
+    float value = intPart + (float) fraction / fractionScale;
+    return negative ? -value : value;
+  }
+}
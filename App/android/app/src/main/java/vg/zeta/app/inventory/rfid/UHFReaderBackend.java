@@ -0,0 +1,115 @@
+package vg.zeta.app.inventory.rfid;
+
+import java.util.List;
+
+/**
+ * The subset of the UHF reader API that the scan, read, write and lock
+ * operations depend on.
+ *
+ * Implemented by adapters around the vendor readers from DeviceAPI.aar, and
+ * by simulated readers so the same code can run without a handheld.
+ * Methods mirror the vendor API, including returning false on failure.
+ */
+public interface UHFReaderBackend {
+  int BANK_RESERVED = 0;
+  int BANK_EPC = 1;
+  int BANK_TID = 2;
+  int BANK_USER = 3;
+
+  /** Implemented by readers with a buzzer of their own. */
+  interface Beeper {
+    boolean setBeep(boolean enabled);
+  }
+
+  /** Implemented by readers whose Gen2 inventory parameters can be changed. */
+  interface Gen2 {
+    /** Null if the reader did not say. */
+    Gen2Settings getGen2();
+
+    /** Not while an inventory is running, unless setsGen2WhileInventorying. */
+    boolean setGen2(Gen2Settings settings);
+
+    /** Whether setGen2 takes effect on a running inventory, without stopping it first. */
+    boolean setsGen2WhileInventorying();
+  }
+
+  /** Implemented by readers with the vendor inventory switches, none of them while an inventory is running. */
+  interface InventoryModes {
+    /** What is reported per tag, InventoryConfig.MODE_EPC or MODE_EPC_TID. */
+    boolean setInventoryMode(int mode);
+
+    /** TID read along with the EPC in the same reply (Impinj Monza FastID). */
+    boolean setFastId(boolean enabled);
+
+    /** Read tags stay quiet for the whole inventory (Impinj TagFocus). */
+    boolean setTagFocus(boolean enabled);
+  }
+
+  boolean free();
+
+  boolean isWorking();
+
+  int getPower();
+
+  boolean setPower(int power);
+
+  int getFrequencyMode();
+
+  boolean setFrequencyMode(int mode);
+
+  /** An empty data string with len 0 clears the filter of that bank. */
+  boolean setFilter(int bank, int ptr, int len, String data);
+
+  boolean startInventoryTag();
+
+  boolean stopInventory();
+
+  /** Returns null if nothing is buffered. */
+  TagRead readTagFromBuffer();
+
+  /**
+   * Appends what is currently buffered to out and returns the number of reads
+   * appended. Implementations stop at roughly maxCount, but may return a few
+   * more if the reader hands its buffer over as a whole.
+   */
+  int readTagsFromBuffer(List<TagRead> out, int maxCount);
+
+  /** Returns the data as a hex string, or null/empty on failure. */
+  String readData(String accessPwd, int bank, int ptr, int cnt);
+
+  String readData(
+          String accessPwd,
+          int filterBank,
+          int filterPtr,
+          int filterCnt,
+          String filterData,
+          int bank,
+          int ptr,
+          int cnt
+  );
+
+  boolean writeData(String accessPwd, int bank, int ptr, int cnt, String data);
+
+  boolean writeData(
+          String accessPwd,
+          int filterBank,
+          int filterPtr,
+          int filterCnt,
+          String filterData,
+          int bank,
+          int ptr,
+          int cnt,
+          String data
+  );
+
+  boolean lockMem(String accessPwd, String lockCode);
+
+  boolean lockMem(
+          String accessPwd,
+          int filterBank,
+          int filterPtr,
+          int filterCnt,
+          String filterData,
+          String lockCode
+  );
+}
@@ -0,0 +1,43 @@
+// React Native's default-app-setup OnLoad.cpp, with the app's own TurboModules
+// (RFIDWithUHFUARTModule, RFIDWithUHFBLEModule) resolved before the autolinked ones.
+
+#include <AppSpecs.h>
+#include <DefaultComponentsRegistry.h>
+#include <DefaultTurboModuleManagerDelegate.h>
+#include <fbjni/fbjni.h>
+#include <react/renderer/componentregistry/ComponentDescriptorProviderRegistry.h>
+#include <rncli.h>
+
+namespace facebook {
+namespace react {
+
+void registerComponents(
+    std::shared_ptr<ComponentDescriptorProviderRegistry const> registry) {
+  // By default we just use the components autolinked by RN CLI
+  rncli_registerProviders(registry);
+}
+
+std::shared_ptr<TurboModule> javaModuleProvider(
+    const std::string name,
+    const JavaTurboModule::InitParams &params) {
+  auto module = AppSpecs_ModuleProvider(name, params);
+  if (module != nullptr) {
+    return module;
+  }
+
+  // By default we just use the module providers autolinked by RN CLI
+  return rncli_ModuleProvider(name, params);
+}
+
+} // namespace react
+} // namespace facebook
+
+JNIEXPORT jint JNICALL JNI_OnLoad(JavaVM *vm, void *) {
+  return facebook::jni::initialize(vm, [] {
+    facebook::react::DefaultTurboModuleManagerDelegate::
+        moduleProvidersFromEntryPoint = &facebook::react::javaModuleProvider;
+    facebook::react::DefaultComponentsRegistry::
+        registerComponentDescriptorsFromEntryPoint =
+            &facebook::react::registerComponents;
+  });
+}
@@ -0,0 +1,155 @@
+package vg.zeta.app.inventory.specs;
+
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReactContextBaseJavaModule;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+
+/**
+ * Bridge (old architecture) stand-in for the class codegen generates from
+ * app/modules/specs/NativeRFIDWithUHFUARTModule.ts, keep the two in sync.
+ *
+ * Implementations still need their own @ReactMethod annotations, the bridge
+ * only looks at the concrete class.
+ */
+public abstract class NativeRFIDWithUHFUARTModuleSpec extends ReactContextBaseJavaModule {
+
+  public NativeRFIDWithUHFUARTModuleSpec(ReactApplicationContext reactContext) {
+    super(reactContext);
+  }
+
+  public abstract void init(Promise promise);
+
+  public abstract void free(Promise promise);
+
+  public abstract void warmUp(Promise promise);
+
+  public abstract void getWarmUpStatus(Promise promise);
+
+  public abstract void setWarmUpOnStart(boolean enabled, Promise promise);
+
+  public abstract void isPowerOn(Promise promise);
+
+  public abstract void isWorking(Promise promise);
+
+  public abstract void getFrequencyMode(Promise promise);
+
+  public abstract void setFrequencyMode(int mode, Promise promise);
+
+  public abstract void setPower(int power, Promise promise);
+
+  public abstract void setSimulatedReader(@Nullable ReadableMap options, Promise promise);
+
+  public abstract void startScan(
+          int power,
+          boolean enableFilter,
+          int filterBank,
+          int filterPtr,
+          int filterLen,
+          String filterData,
+          int scanRate,
+          int eventRate,
+          boolean isLocate,
+          boolean playSound,
+          boolean enableReaderSound,
+          ReadableArray scannedEpcs,
+          ReadableArray soundOnlyForEpcs,
+          ReadableMap options,
+          Promise promise
+  );
+
+  public abstract String pullScanData();
+
+  public abstract void acknowledgeScanData(int count);
+
+  public abstract void getScanQueueStats(Promise promise);
+
+  public abstract void getScanStats(Promise promise);
+
+  public abstract void recordScanLatency(ReadableArray samples);
+
+  public abstract void getScanLatency(boolean includeBuckets, Promise promise);
+
+  public abstract void getCommandStats(Promise promise);
+
+  public abstract void getScanJournalInfo(String name, Promise promise);
+
+  public abstract void readScanJournal(String name, int offset, int limit, Promise promise);
+
+  public abstract void listScanJournals(Promise promise);
+
+  public abstract void deleteScanJournal(String name, Promise promise);
+
+  public abstract void listReadRecordings(Promise promise);
+
+  public abstract void deleteReadRecording(String name, Promise promise);
+
+  public abstract void startCheckSession(ReadableArray epcs, ReadableArray itemIds, Promise promise);
+
+  public abstract void endCheckSession(Promise promise);
+
+  public abstract void getCheckSessionState(Promise promise);
+
+  public abstract void stopScan(Promise promise);
+
+  public abstract void clearScannedTags(Promise promise);
+
+  public abstract void startLocate(String epc, int power, boolean playSound, Promise promise);
+
+  public abstract void stopLocate(Promise promise);
+
+  public abstract void read(
+          int power,
+          int bank,
+          int ptr,
+          int cnt,
+          String pwd,
+          boolean enableFilter,
+          int filterBank,
+          int filterPtr,
+          int filterLen,
+          String filterData,
+          boolean playSound,
+          Promise promise
+  );
+
+  public abstract void write(
+          int power,
+          int bank,
+          int ptr,
+          int cnt,
+          String pwd,
+          String data,
+          boolean enableFilter,
+          int filterBank,
+          int filterPtr,
+          int filterLen,
+          String filterData,
+          boolean playSound,
+          Promise promise
+  );
+
+  public abstract void lock(
+          int power,
+          String pwd,
+          String code,
+          boolean enableFilter,
+          int filterBank,
+          int filterPtr,
+          int filterLen,
+          String filterData,
+          boolean playSound,
+          Promise promise
+  );
+
+  public abstract void encodeTags(ReadableArray jobs, ReadableMap options, boolean playSound, Promise promise);
+
+  public abstract void cancelEncodeTags(Promise promise);
+
+  public abstract void setFeedbackMinimumDelay(int delay);
+
+  public abstract void playSound(int id);
+}
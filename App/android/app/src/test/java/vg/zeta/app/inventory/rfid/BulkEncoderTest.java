@@ -0,0 +1,105 @@
+package vg.zeta.app.inventory.rfid;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class BulkEncoderTest {
+
+  private static final long TIMEOUT = 5000;
+
+  private final ReaderCommandExecutor commands = new ReaderCommandExecutor("BulkEncoderTest");
+  private final BulkEncoder encoder = new BulkEncoder();
+  private final SyntheticReaderBackend reader = new SyntheticReaderBackend(new SyntheticReaderBackend.Options());
+
+  @Test
+  public void letsOtherCommandsRunBetweenJobs() throws Exception {
+    final CountDownLatch release = new CountDownLatch(1);
+    commands.execute("busy", ReaderCommandExecutor.PRIORITY_NORMAL, () -> release.await(TIMEOUT, TimeUnit.MILLISECONDS));
+    RecordingListener listener = new RecordingListener();
+    encoder.start(commands, reader, jobs(3), new BulkEncoder.Options(), listener);
+    final AtomicInteger jobsDoneBefore = new AtomicInteger(-1);
+    commands.execute("probe", ReaderCommandExecutor.PRIORITY_NORMAL, () -> {
+      jobsDoneBefore.set(listener.jobsDone.get());
+      return null;
+    });
+    release.countDown();
+
+    BulkEncoder.Summary summary = listener.await();
+    assertEquals(1, jobsDoneBefore.get());
+    assertEquals(3, summary.succeeded + summary.failed);
+    assertFalse(encoder.isRunning());
+  }
+
+  @Test
+  public void reportsQueuedJobsCancelled() throws Exception {
+    final CountDownLatch release = new CountDownLatch(1);
+    commands.execute("busy", ReaderCommandExecutor.PRIORITY_NORMAL, () -> release.await(TIMEOUT, TimeUnit.MILLISECONDS));
+    RecordingListener listener = new RecordingListener();
+    encoder.start(commands, reader, jobs(3), new BulkEncoder.Options(), listener);
+    assertTrue(encoder.isRunning());
+    encoder.cancel();
+    release.countDown();
+
+    assertEquals(3, listener.await().cancelled);
+    assertFalse(encoder.isRunning());
+  }
+
+  @Test(expected = ReaderException.class)
+  public void rejectsASecondRun() throws Exception {
+    final CountDownLatch release = new CountDownLatch(1);
+    commands.execute("busy", ReaderCommandExecutor.PRIORITY_NORMAL, () -> release.await(TIMEOUT, TimeUnit.MILLISECONDS));
+    try {
+      encoder.start(commands, reader, jobs(1), new BulkEncoder.Options(), new RecordingListener());
+      encoder.start(commands, reader, jobs(1), new BulkEncoder.Options(), new RecordingListener());
+    } finally {
+      release.countDown();
+    }
+  }
+
+  private static List<EncodeJob> jobs(int count) {
+    List<EncodeJob> jobs = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      jobs.add(EncodeJob.fromMap(Collections.<String, Object>singletonMap("epc", "E2000000000000000000000" + i)));
+    }
+    return jobs;
+  }
+
+  private static class RecordingListener implements BulkEncoder.Listener {
+    final AtomicInteger jobsDone = new AtomicInteger();
+    final CountDownLatch finished = new CountDownLatch(1);
+    volatile BulkEncoder.Summary summary;
+
+    BulkEncoder.Summary await() throws InterruptedException {
+      assertTrue("Encoding did not finish", finished.await(TIMEOUT, TimeUnit.MILLISECONDS));
+      assertNotNull(summary);
+      return summary;
+    }
+
+    @Override
+    public void onProgress(BulkEncoder.Progress progress) {
+      if (progress.step == null) jobsDone.incrementAndGet();
+    }
+
+    @Override
+    public void onFinished(BulkEncoder.Summary summary) {
+      this.summary = summary;
+      finished.countDown();
+    }
+
+    @Override
+    public void onError(ReaderException e) {
+      finished.countDown();
+    }
+  }
+}
@@ -0,0 +1,31 @@
+package vg.zeta.app.inventory.rfid;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class ReplayReaderBackendTest {
+
+  @Test
+  public void resumesWhereItWasStopped() throws Exception {
+    ReplayReaderBackend reader = new ReplayReaderBackend(Arrays.asList(0L, 200L),
+            Arrays.asList(new TagRead("E20000000000000000000001", "", "-60.00"),
+                    new TagRead("E20000000000000000000002", "", "-60.00")), 1, false);
+    List<TagRead> out = new ArrayList<>();
+    reader.startInventoryTag();
+    assertEquals(1, reader.readTagsFromBuffer(out, 10));
+    reader.stopInventory();
+    Thread.sleep(300);
+
+    // Neither the first read again, nor the second one early
+    reader.startInventoryTag();
+    assertEquals(0, reader.readTagsFromBuffer(out, 10));
+    Thread.sleep(250);
+    assertEquals(1, reader.readTagsFromBuffer(out, 10));
+    assertEquals("E20000000000000000000002", out.get(1).epc);
+  }
+}
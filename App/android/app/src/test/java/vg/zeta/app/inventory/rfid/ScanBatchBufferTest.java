@@ -0,0 +1,62 @@
+package vg.zeta.app.inventory.rfid;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ScanBatchBufferTest {
+
+  private final ScanBatchEncoder encoder = new ScanBatchEncoder();
+
+  @Test
+  public void dropsTheOldestWindowsBeyondCapacity() {
+    ScanBatchBuffer buffer = new ScanBatchBuffer();
+    buffer.reset(10);
+    append(buffer, 0, 4);
+    append(buffer, 100, 4);
+    append(buffer, 200, 4);
+
+    byte[] data = buffer.drain();
+    assertEquals(4, buffer.getDroppedCount());
+    // The last two windows, back to back
+    assertEquals(2 * window(4), data.length);
+    assertEquals(100, firstId(data, 0));
+    assertEquals(200, firstId(data, window(4)));
+    assertNull(buffer.drain());
+  }
+
+  @Test
+  public void keepsAWindowLargerThanCapacity() {
+    ScanBatchBuffer buffer = new ScanBatchBuffer();
+    buffer.reset(2);
+    append(buffer, 0, 1);
+    append(buffer, 100, 3);
+
+    assertEquals(window(3), buffer.drain().length);
+    assertEquals(1, buffer.getDroppedCount());
+  }
+
+  private void append(ScanBatchBuffer buffer, int firstId, int count) {
+    List<TagRead> reads = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      reads.add(new TagRead(String.format(Locale.US, "%08X", firstId + i), "", "-50.00"));
+    }
+    encoder.encodeReads(reads, 1000);
+    buffer.append(encoder);
+  }
+
+  /** Size of a window of count reads with 4 byte EPCs. */
+  private static int window(int count) {
+    return ScanBatchEncoder.HEADER_SIZE + count * (1 + 4 + 1 + 2);
+  }
+
+  private static int firstId(byte[] data, int window) {
+    int offset = window + ScanBatchEncoder.HEADER_SIZE + 1;
+    return (data[offset] & 0xFF) << 24 | (data[offset + 1] & 0xFF) << 16 | (data[offset + 2] & 0xFF) << 8 | (data[offset + 3] & 0xFF);
+  }
+}
@@ -0,0 +1,43 @@
+package vg.zeta.app.inventory.rfid;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+
+public class ScanBatchEncoderTest {
+
+  @Test
+  public void splitsLargeWindowsOverSeveralHeaders() {
+    List<TagRead> reads = new ArrayList<>();
+    for (int i = 0; i < ScanBatchEncoder.MAX_RECORDS + 10; i++) {
+      reads.add(new TagRead(String.format(Locale.US, "%08X", i), "", "-50.00"));
+    }
+    ScanBatchEncoder encoder = new ScanBatchEncoder();
+    int length = encoder.encodeReads(reads, 1000);
+
+    // 4 byte EPC with its header, no TID, RSSI
+    int recordSize = 1 + 4 + 1 + 2;
+    byte[] buffer = encoder.getBuffer();
+    int second = ScanBatchEncoder.HEADER_SIZE + ScanBatchEncoder.MAX_RECORDS * recordSize;
+    assertEquals(ScanBatchEncoder.MAX_RECORDS, readCount(buffer, 0));
+    assertEquals(10, readCount(buffer, second));
+    assertEquals(second + ScanBatchEncoder.HEADER_SIZE + 10 * recordSize, length);
+  }
+
+  @Test
+  public void encodesEmptyWindowsAsOneHeader() {
+    ScanBatchEncoder encoder = new ScanBatchEncoder();
+    assertEquals(ScanBatchEncoder.HEADER_SIZE, encoder.encodeReads(Collections.<TagRead>emptyList(), 1000));
+    assertEquals(0, readCount(encoder.getBuffer(), 0));
+    assertEquals(ScanBatchEncoder.HEADER_SIZE, encoder.encodeAggregated(new TagReadAggregator(), 1000));
+  }
+
+  private static int readCount(byte[] buffer, int header) {
+    return (buffer[header + 2] & 0xFF) | (buffer[header + 3] & 0xFF) << 8;
+  }
+}
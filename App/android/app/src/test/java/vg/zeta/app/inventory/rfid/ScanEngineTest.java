@@ -0,0 +1,316 @@
+package vg.zeta.app.inventory.rfid;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/** Runs the engine against the simulated readers, on a plain JVM. */
+public class ScanEngineTest {
+
+  private static final long TIMEOUT = 5000;
+
+  private final ScanEngine engine = new ScanEngine();
+
+  @After
+  public void tearDown() throws InterruptedException {
+    engine.stop();
+    engine.join(TIMEOUT);
+  }
+
+  @Test
+  public void readsEverySyntheticTag() throws Exception {
+    SyntheticReaderBackend.Options options = new SyntheticReaderBackend.Options();
+    options.tagCount = 200;
+    options.readsPerSecond = 20000;
+    SyntheticReaderBackend reader = new SyntheticReaderBackend(options);
+    RecordingListener listener = new RecordingListener();
+
+    engine.start(reader, fastConfig(), listener);
+    awaitScanned(200);
+    engine.stop();
+    engine.join(TIMEOUT);
+
+    assertFalse(engine.isRunning());
+    Set<String> epcs = listener.epcs();
+    assertEquals(200, epcs.size());
+    for (int i = 0; i < options.tagCount; i++) assertTrue(epcs.contains(reader.getEpc(i)));
+  }
+
+  @Test
+  public void aggregatesReplayedReadsPerEpc() throws Exception {
+    List<Long> offsets = new ArrayList<>();
+    List<TagRead> reads = new ArrayList<>();
+    for (int i = 0; i < 30; i++) {
+      offsets.add((long) i);
+      reads.add(new TagRead("E2000000000000000000000" + (i % 3), "", "-60.00"));
+    }
+    ReplayReaderBackend reader = new ReplayReaderBackend(offsets, reads, Double.POSITIVE_INFINITY, false);
+    ScanConfig config = fastConfig();
+    config.aggregate = true;
+    RecordingListener listener = new RecordingListener();
+
+    engine.start(reader, config, listener);
+    awaitFinished(reader);
+    engine.stop();
+    engine.join(TIMEOUT);
+
+    assertEquals(3, listener.epcs().size());
+    assertEquals(30, listener.aggregatedReadCount);
+    assertEquals(3, engine.getScannedTags().size());
+  }
+
+  @Test
+  public void scannedTagsCarryOverToTheNextScan() throws Exception {
+    ReplayReaderBackend reader = replayOf("E20000000000000000000001", "E20000000000000000000002");
+    ScanConfig config = fastConfig();
+    config.playSound = true;
+    RecordingListener first = new RecordingListener();
+    engine.start(reader, config, first);
+    awaitFinished(reader);
+
+    // Starting over stops the previous scan thread
+    RecordingListener second = new RecordingListener();
+    engine.start(replayOf("E20000000000000000000002", "E20000000000000000000003"), config, second);
+    awaitScanned(3);
+    engine.stop();
+    engine.join(TIMEOUT);
+
+    assertEquals(Arrays.asList(ScanEngine.SOUND_NEW_TAG, ScanEngine.SOUND_NEW_TAG), first.sounds);
+    assertEquals(Arrays.asList(ScanEngine.SOUND_SEEN_TAG, ScanEngine.SOUND_NEW_TAG), second.sounds);
+  }
+
+  @Test
+  public void onlySoundsForSoundOnlyForEpcs() {
+    ScanConfig config = new ScanConfig();
+    config.playSound = true;
+    config.soundOnlyForEpcs = Collections.singletonList("E20000000000000000000001");
+    engine.prepare(config);
+
+    assertEquals(ScanEngine.SOUND_NEW_TAG, engine.decideSound("E20000000000000000000001", config));
+    assertEquals(ScanEngine.SOUND_SEEN_TAG, engine.decideSound("e20000000000000000000001", config));
+    assertEquals(ScanEngine.SOUND_NONE, engine.decideSound("E20000000000000000000002", config));
+    assertEquals(2, engine.getScannedTags().size());
+  }
+
+  @Test
+  public void emitsFinalStatsOnStop() throws Exception {
+    ReplayReaderBackend reader = replayOf("E20000000000000000000001");
+    ScanConfig config = fastConfig();
+    config.statsInterval = 60000;
+    RecordingListener listener = new RecordingListener();
+
+    engine.start(reader, config, listener);
+    awaitFinished(reader);
+    engine.stop();
+    engine.join(TIMEOUT);
+
+    assertNotNull(listener.lastStats);
+    assertEquals(1, engine.getScannedTags().size());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsUnknownInventoryTarget() {
+    Map<String, Object> inventory = new HashMap<>();
+    inventory.put("target", "C");
+    Map<String, Object> options = new HashMap<>();
+    options.put("inventory", inventory);
+    new ScanConfig().applyOptions(options);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsCoalescingRawReads() {
+    Map<String, Object> options = new HashMap<>();
+    options.put("queuePolicy", "coalesce");
+    new ScanConfig().applyOptions(options);
+  }
+
+  @Test
+  public void coalescedReadsAddToTheAggregatedCount() throws Exception {
+    List<Long> offsets = new ArrayList<>();
+    List<TagRead> reads = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      offsets.add(0L);
+      reads.add(new TagRead(i % 2 == 0 ? "E20000000000000000000001" : "E20000000000000000000002", "", "-60.00"));
+    }
+    ReplayReaderBackend reader = new ReplayReaderBackend(offsets, reads, Double.POSITIVE_INFINITY, false);
+    Map<String, Object> options = new HashMap<>();
+    options.put("aggregate", true);
+    options.put("queuePolicy", "coalesce");
+    options.put("queueCapacity", 2);
+    ScanConfig config = fastConfig().applyOptions(options);
+    RecordingListener listener = new RecordingListener();
+
+    engine.start(reader, config, listener);
+    awaitFinished(reader);
+    engine.stop();
+    engine.join(TIMEOUT);
+
+    assertEquals(20, listener.aggregatedReadCount);
+    assertTrue(engine.getQueueStats().coalesced > 0);
+  }
+
+  @Test
+  public void flipsTheTargetThroughTheExecutor() throws Exception {
+    final AtomicInteger stops = new AtomicInteger();
+    SyntheticReaderBackend reader = new SyntheticReaderBackend(new SyntheticReaderBackend.Options()) {
+      @Override
+      public synchronized boolean stopInventory() {
+        stops.incrementAndGet();
+        return super.stopInventory();
+      }
+    };
+    ReaderCommandExecutor commands = new ReaderCommandExecutor("ScanEngineTest");
+    engine.setCommandExecutor(commands);
+    ScanConfig config = fastConfig().applyOptions(targetAB());
+
+    engine.start(reader, config, new RecordingListener());
+    long deadline = System.currentTimeMillis() + TIMEOUT;
+    while (commands.getStats().completed < 2) {
+      assertTrue("No target flips", System.currentTimeMillis() < deadline);
+      Thread.sleep(5);
+    }
+    engine.stop();
+    engine.join(TIMEOUT);
+    assertEquals(0, commands.getStats().failed);
+    // The simulated reader takes Gen2 settings while inventorying
+    assertEquals(0, stops.get());
+  }
+
+  @Test
+  public void doesNotRestartTheInventoryOnceStopped() throws Exception {
+    SyntheticReaderBackend reader = new SyntheticReaderBackend(new SyntheticReaderBackend.Options());
+    ReaderCommandExecutor commands = new ReaderCommandExecutor("ScanEngineTest");
+    engine.setCommandExecutor(commands);
+    final CountDownLatch release = new CountDownLatch(1);
+    commands.execute("busy", ReaderCommandExecutor.PRIORITY_NORMAL, () -> release.await(TIMEOUT, TimeUnit.MILLISECONDS));
+
+    engine.start(reader, fastConfig().applyOptions(targetAB()), new RecordingListener());
+    // A flip is now queued behind the busy command, stop() must not wait for it
+    Thread.sleep(200);
+    engine.stop();
+    engine.join(TIMEOUT);
+    assertFalse(engine.isRunning());
+    reader.stopInventory();
+    release.countDown();
+
+    final CountDownLatch drained = new CountDownLatch(1);
+    commands.execute("drained", ReaderCommandExecutor.PRIORITY_LOW, () -> {
+      drained.countDown();
+      return null;
+    });
+    assertTrue(drained.await(TIMEOUT, TimeUnit.MILLISECONDS));
+    assertFalse(reader.isWorking());
+  }
+
+  private static Map<String, Object> targetAB() {
+    Map<String, Object> inventory = new HashMap<>();
+    inventory.put("target", "AB");
+    inventory.put("targetSwitchInterval", 50);
+    Map<String, Object> options = new HashMap<>();
+    options.put("inventory", inventory);
+    return options;
+  }
+
+  private static ScanConfig fastConfig() {
+    ScanConfig config = new ScanConfig();
+    config.scanRate = 0;
+    config.eventRate = 10;
+    return config;
+  }
+
+  private static ReplayReaderBackend replayOf(String... epcs) {
+    List<Long> offsets = new ArrayList<>();
+    List<TagRead> reads = new ArrayList<>();
+    for (String epc : epcs) {
+      offsets.add(0L);
+      reads.add(new TagRead(epc, "", "-60.00"));
+    }
+    return new ReplayReaderBackend(offsets, reads, Double.POSITIVE_INFINITY, false);
+  }
+
+  private void awaitScanned(int count) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + TIMEOUT;
+    while (engine.getScannedTags().size() < count) {
+      assertTrue("Scanned " + engine.getScannedTags().size() + " of " + count, System.currentTimeMillis() < deadline);
+      Thread.sleep(5);
+    }
+  }
+
+  private static void awaitFinished(ReplayReaderBackend reader) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + TIMEOUT;
+    while (!reader.isFinished()) {
+      assertTrue("Replay did not finish", System.currentTimeMillis() < deadline);
+      Thread.sleep(5);
+    }
+  }
+
+  private static class RecordingListener implements ScanEngine.Listener {
+    final List<TagRead> reads = Collections.synchronizedList(new ArrayList<TagRead>());
+    final List<String> aggregatedEpcs = Collections.synchronizedList(new ArrayList<String>());
+    final List<Integer> sounds = Collections.synchronizedList(new ArrayList<Integer>());
+    volatile int aggregatedReadCount;
+    volatile ScanStats.Snapshot lastStats;
+
+    Set<String> epcs() {
+      Set<String> epcs = new HashSet<>();
+      synchronized (reads) {
+        for (TagRead read : reads) epcs.add(read.epc);
+      }
+      epcs.addAll(aggregatedEpcs);
+      return epcs;
+    }
+
+    @Override
+    public void onReads(List<TagRead> reads) {
+      this.reads.addAll(reads);
+    }
+
+    @Override
+    public void onAggregatedReads(TagReadAggregator aggregator) {
+      for (int i = 0; i < aggregator.size(); i++) aggregatedEpcs.add(aggregator.get(i).epc);
+      aggregatedReadCount += aggregator.getReadCount();
+    }
+
+    @Override
+    public void onFeedback(int sound) {
+      sounds.add(sound);
+    }
+
+    @Override
+    public void onCheckSessionDelta(CheckSession.Delta delta) {
+    }
+
+    @Override
+    public void onLocateUpdate(LocateTracker tracker) {
+    }
+
+    @Override
+    public void onLocateFeedback(float proximity) {
+    }
+
+    @Override
+    public void onStats(ScanStats.Snapshot stats) {
+      lastStats = stats;
+    }
+
+    @Override
+    public void onTrace(long firstReadAt, long lastReadAt, long emittedAt) {
+    }
+  }
+}
@@ -0,0 +1,79 @@
+package vg.zeta.app.inventory.rfid;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ScanJournalTest {
+
+  private File file;
+
+  @Before
+  public void setUp() throws IOException {
+    file = File.createTempFile("scan", ".journal");
+    assertTrue(file.delete());
+  }
+
+  @After
+  public void tearDown() {
+    file.delete();
+  }
+
+  @Test
+  public void keepsOneRecordPerEpc() throws IOException {
+    ScanJournal journal = ScanJournal.open(file);
+    for (int window = 0; window < 50; window++) {
+      journal.append(Arrays.asList(
+              new TagRead("E20000000000000000000001", "", "-60.00"),
+              new TagRead("E20000000000000000000002", "", "-50.00")), 1000 + window);
+    }
+    assertEquals(2, journal.getRecordCount());
+
+    ScanBatchEncoder encoder = new ScanBatchEncoder();
+    assertEquals(2, journal.read(0, 10, encoder));
+    // After the header: EPC header and 12 bytes, no TID, last RSSI, then the read count
+    byte[] buffer = encoder.getBuffer();
+    int countAt = ScanBatchEncoder.HEADER_SIZE + 1 + 12 + 1 + 2;
+    assertEquals(50, (buffer[countAt] & 0xFF) | (buffer[countAt + 1] & 0xFF) << 8);
+    journal.close();
+  }
+
+  @Test
+  public void resumesTheIndexOnReopen() throws IOException {
+    ScanJournal journal = ScanJournal.open(file);
+    journal.append(Arrays.asList(new TagRead("E20000000000000000000001", "", "-60.00")), 1000);
+    journal.close();
+
+    journal = ScanJournal.open(file);
+    journal.append(Arrays.asList(
+            new TagRead("E20000000000000000000001", "", "-40.00"),
+            new TagRead("E20000000000000000000003", "", "-70.00")), 2000);
+    assertEquals(2, journal.getRecordCount());
+    journal.close();
+  }
+
+  @Test
+  public void closesOnlyWhenEveryOpenerHasClosed() throws IOException {
+    ScanJournals journals = new ScanJournals(file.getParentFile());
+    String name = file.getName() + "-shared";
+    ScanJournal first = journals.open(name);
+    ScanJournal second = journals.open(name);
+    assertTrue(first == second);
+
+    journals.close(first);
+    second.append(Arrays.asList(new TagRead("E20000000000000000000001", "", "-60.00")), 1000);
+    assertEquals(1, journals.getInfo(name).recordCount);
+
+    journals.close(second);
+    assertTrue(journals.delete(name));
+    assertFalse(journals.list().contains(name));
+  }
+}
@@ -0,0 +1,99 @@
+package vg.zeta.app.inventory.rfid;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class ScanQueueTest {
+
+  @Test
+  public void mergesIntoTheNewestQueuedRead() {
+    ScanQueue queue = new ScanQueue(3, ScanQueue.POLICY_COALESCE);
+    queue.offer(read("A"), 1);
+    queue.offer(read("A"), 2);
+    queue.offer(read("B"), 3);
+    queue.offer(read("A"), 4);
+
+    List<long[]> drained = drain(queue);
+    assertEquals(3, drained.size());
+    assertEquals(1, drained.get(0)[1]);
+    assertEquals(4, drained.get(1)[0]);
+    assertEquals(2, drained.get(1)[1]);
+    assertEquals(1, queue.getCoalescedCount());
+    assertEquals(0, queue.getDroppedCount());
+  }
+
+  @Test
+  public void coalescesLikeAListWouldAcrossDropsAndDrains() {
+    Random random = new Random(42);
+    for (int capacity = 1; capacity <= 9; capacity++) {
+      ScanQueue queue = new ScanQueue(capacity, ScanQueue.POLICY_COALESCE);
+      List<Entry> expected = new ArrayList<>();
+      for (long at = 0; at < 5000; at++) {
+        if (random.nextInt(50) == 0) {
+          assertQueued(expected, queue);
+          expected.clear();
+        }
+        String epc = "E2000000000000000000000" + random.nextInt(capacity + 4);
+        queue.offer(read(epc), at);
+        offer(expected, capacity, epc, at);
+      }
+      assertQueued(expected, queue);
+    }
+  }
+
+  private static void offer(List<Entry> entries, int capacity, String epc, long at) {
+    if (entries.size() == capacity) {
+      for (int i = entries.size() - 1; i >= 0; i--) {
+        if (entries.get(i).epc.equals(epc)) {
+          entries.get(i).at = at;
+          entries.get(i).count++;
+          return;
+        }
+      }
+      entries.remove(0);
+    }
+    Entry entry = new Entry();
+    entry.epc = epc;
+    entry.at = at;
+    entry.count = 1;
+    entries.add(entry);
+  }
+
+  private static void assertQueued(final List<Entry> expected, ScanQueue queue) {
+    final List<Entry> actual = new ArrayList<>();
+    queue.drainTo((read, readAt, count) -> {
+      Entry entry = new Entry();
+      entry.epc = read.epc;
+      entry.at = readAt;
+      entry.count = count;
+      actual.add(entry);
+    });
+    assertEquals(expected.toString(), actual.toString());
+  }
+
+  private static List<long[]> drain(ScanQueue queue) {
+    final List<long[]> drained = new ArrayList<>();
+    queue.drainTo((read, readAt, count) -> drained.add(new long[]{readAt, count}));
+    return drained;
+  }
+
+  private static TagRead read(String epc) {
+    return new TagRead(epc, "", "-60.00");
+  }
+
+  private static class Entry {
+    String epc;
+    long at;
+    int count;
+
+    @Override
+    public String toString() {
+      return epc + "@" + at + "x" + count;
+    }
+  }
+}
@@ -0,0 +1,35 @@
+package vg.zeta.app.inventory.rfid;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TagReadAggregatorTest {
+
+  @Test
+  public void keepsOneRecordPerEpcAcrossWindows() {
+    TagReadAggregator aggregator = new TagReadAggregator();
+    for (int window = 0; window < 3; window++) {
+      // Enough EPCs to grow the index in the first window
+      int distinct = 500 - window * 200;
+      for (int pass = 0; pass < 2; pass++) {
+        for (int i = 0; i < distinct; i++) {
+          aggregator.add("E2" + i, "", "-60.00", 1000 + pass, 1 + pass);
+        }
+      }
+
+      assertEquals(distinct, aggregator.size());
+      assertEquals(distinct * 3, aggregator.getReadCount());
+      for (int i = 0; i < distinct; i++) {
+        TagReadAggregator.Record record = aggregator.get(i);
+        assertEquals("E2" + i, record.epc);
+        assertEquals(3, record.count);
+        assertEquals(1000, record.firstSeenAt);
+        assertEquals(1001, record.lastSeenAt);
+      }
+      aggregator.clear();
+      assertTrue(aggregator.isEmpty());
+    }
+  }
+}
@@ -0,0 +1,144 @@
+package vg.zeta.app.inventory.rfid;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * A reader whose buffer never runs dry: it cycles through a fixed array of
+ * pre-generated reads, so benchmarks measure the pipeline and not the source.
+ */
+public class ArrayReaderBackend implements UHFReaderBackend {
+
+  private final TagRead[] reads;
+  private int position;
+
+  public ArrayReaderBackend(TagRead[] reads) {
+    this.reads = reads;
+  }
+
+  /**
+   * Generates readCount reads spread over tagCount distinct 96-bit EPCs, with
+   * a handful of RSSI values per tag.
+   */
+  public static TagRead[] generateReads(int tagCount, int readCount, long seed) {
+    Random random = new Random(seed);
+    String[] epcs = generateEpcs(tagCount, "E280");
+    TagRead[][] perTag = new TagRead[tagCount][];
+    for (int i = 0; i < tagCount; i++) {
+      perTag[i] = new TagRead[4];
+      for (int j = 0; j < perTag[i].length; j++) {
+        String rssi = String.format(Locale.US, "%.2f", -40 - random.nextInt(400) / 10.0);
+        perTag[i][j] = new TagRead(epcs[i], "", rssi);
+      }
+    }
+
+    TagRead[] reads = new TagRead[readCount];
+    for (int i = 0; i < readCount; i++) {
+      TagRead[] tagReads = perTag[random.nextInt(tagCount)];
+      reads[i] = tagReads[random.nextInt(tagReads.length)];
+    }
+    return reads;
+  }
+
+  public static String[] generateEpcs(int count, String prefix) {
+    String[] epcs = new String[count];
+    for (int i = 0; i < count; i++) {
+      StringBuilder sb = new StringBuilder(prefix);
+      String suffix = Integer.toHexString(i).toUpperCase(Locale.US);
+      while (sb.length() + suffix.length() < 24) sb.append('0');
+      epcs[i] = sb.append(suffix).toString();
+    }
+    return epcs;
+  }
+
+  @Override
+  public boolean free() {
+    return true;
+  }
+
+  @Override
+  public boolean isWorking() {
+    return true;
+  }
+
+  @Override
+  public int getPower() {
+    return 30;
+  }
+
+  @Override
+  public boolean setPower(int power) {
+    return true;
+  }
+
+  @Override
+  public int getFrequencyMode() {
+    return 0;
+  }
+
+  @Override
+  public boolean setFrequencyMode(int mode) {
+    return true;
+  }
+
+  @Override
+  public boolean setFilter(int bank, int ptr, int len, String data) {
+    return true;
+  }
+
+  @Override
+  public boolean startInventoryTag() {
+    return true;
+  }
+
+  @Override
+  public boolean stopInventory() {
+    return true;
+  }
+
+  @Override
+  public TagRead readTagFromBuffer() {
+    TagRead read = reads[position];
+    if (++position == reads.length) position = 0;
+    return read;
+  }
+
+  @Override
+  public int readTagsFromBuffer(List<TagRead> out, int maxCount) {
+    for (int i = 0; i < maxCount; i++) {
+      out.add(readTagFromBuffer());
+    }
+    return maxCount;
+  }
+
+  @Override
+  public String readData(String accessPwd, int bank, int ptr, int cnt) {
+    return null;
+  }
+
+  @Override
+  public String readData(String accessPwd, int filterBank, int filterPtr, int filterCnt, String filterData, int bank, int ptr, int cnt) {
+    return null;
+  }
+
+  @Override
+  public boolean writeData(String accessPwd, int bank, int ptr, int cnt, String data) {
+    return false;
+  }
+
+  @Override
+  public boolean writeData(String accessPwd, int filterBank, int filterPtr, int filterCnt, String filterData, int bank, int ptr, int cnt, String data) {
+    return false;
+  }
+
+  @Override
+  public boolean lockMem(String accessPwd, String lockCode) {
+    return false;
+  }
+
+  @Override
+  public boolean lockMem(String accessPwd, int filterBank, int filterPtr, int filterCnt, String filterData, String lockCode) {
+    return false;
+  }
+}
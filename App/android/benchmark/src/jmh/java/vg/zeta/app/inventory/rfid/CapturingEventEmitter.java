@@ -0,0 +1,34 @@
+package vg.zeta.app.inventory.rfid;
+
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.modules.core.DeviceEventManagerModule;
+
+/** Keeps the last event so the benchmark can hand it to a Blackhole. */
+public class CapturingEventEmitter implements DeviceEventManagerModule.RCTDeviceEventEmitter {
+  public String lastEventName;
+  public Object lastData;
+  public long eventCount;
+  public int feedbackCount;
+
+  @Override
+  public void emit(String eventName, Object data) {
+    lastEventName = eventName;
+    lastData = data;
+    eventCount++;
+  }
+
+  /** The listener the modules use, minus the SoundPool. */
+  public ReactScanEventEmitter listener(boolean packed) {
+    return new ReactScanEventEmitter(new ReactApplicationContext(this), packed) {
+      @Override
+      public void onFeedback(int sound) {
+        feedbackCount++;
+      }
+
+      @Override
+      public void onLocateFeedback(float proximity) {
+        feedbackCount++;
+      }
+    };
+  }
+}
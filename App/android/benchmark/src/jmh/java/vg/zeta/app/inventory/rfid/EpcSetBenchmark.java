@@ -0,0 +1,74 @@
+package vg.zeta.app.inventory.rfid;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.HashSet;
+
+/**
+ * Lookups and inserts of the seen-EPC set, against the HashSet it replaced.
+ * Half of the queried EPCs are in the set.
+ */
+@State(Scope.Thread)
+public class EpcSetBenchmark {
+
+  @Param({"1000", "10000", "100000"})
+  public int size;
+
+  private String[] queries;
+  private int index;
+
+  private EpcSet epcSet;
+  private HashSet<String> hashSet;
+
+  @Setup
+  public void setUp() {
+    String[] present = ArrayReaderBackend.generateEpcs(size, "E280");
+    String[] absent = ArrayReaderBackend.generateEpcs(size, "E200");
+
+    epcSet = new EpcSet(size);
+    hashSet = new HashSet<>();
+    for (String epc : present) {
+      epcSet.add(epc);
+      hashSet.add(epc);
+    }
+
+    // Separate String instances from the ones in the sets, so equals() compares characters as it
+    // would for EPCs coming from the reader
+    queries = new String[size * 2];
+    for (int i = 0; i < size; i++) {
+      queries[i * 2] = new String(present[i].toCharArray());
+      queries[i * 2 + 1] = new String(absent[i].toCharArray());
+    }
+  }
+
+  private String nextQuery() {
+    String epc = queries[index];
+    if (++index == queries.length) index = 0;
+    return epc;
+  }
+
+  @Benchmark
+  public boolean epcSetContains() {
+    return epcSet.contains(nextQuery());
+  }
+
+  @Benchmark
+  public boolean hashSetContains() {
+    return hashSet.contains(nextQuery());
+  }
+
+  /** add() of EPCs that are already there, the steady state of a long scan. */
+  @Benchmark
+  public boolean epcSetAddSeen() {
+    return epcSet.add(queries[(index = (index + 2) % queries.length)]);
+  }
+
+  @Benchmark
+  public boolean hashSetAddSeen() {
+    return hashSet.add(queries[(index = (index + 2) % queries.length)]);
+  }
+}
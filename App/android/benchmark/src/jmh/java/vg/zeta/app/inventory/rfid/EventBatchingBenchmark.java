@@ -0,0 +1,57 @@
+package vg.zeta.app.inventory.rfid;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Building the "uhfScanData" payload for one event window, raw reads versus
+ * one record per EPC, as maps or packed. Scores are per event.
+ */
+@State(Scope.Thread)
+public class EventBatchingBenchmark {
+
+  /** Reads in the window. */
+  @Param({"10", "100", "1000"})
+  public int windowSize;
+
+  @Param({"100"})
+  public int tagCount;
+
+  @Param({"false", "true"})
+  public boolean packed;
+
+  private CapturingEventEmitter emitter;
+  private ReactScanEventEmitter listener;
+  private ArrayList<TagRead> reads;
+  private TagReadAggregator aggregator;
+
+  @Setup
+  public void setUp() {
+    emitter = new CapturingEventEmitter();
+    listener = emitter.listener(packed);
+    reads = new ArrayList<>(Arrays.asList(ArrayReaderBackend.generateReads(tagCount, windowSize, 3)));
+    aggregator = new TagReadAggregator();
+    for (int i = 0; i < reads.size(); i++) {
+      TagRead read = reads.get(i);
+      aggregator.add(read.epc, read.tid, read.rssi, i);
+    }
+  }
+
+  @Benchmark
+  public Object rawWindow() {
+    listener.onReads(reads);
+    return emitter.lastData;
+  }
+
+  @Benchmark
+  public Object aggregatedWindow() {
+    listener.onAggregatedReads(aggregator);
+    return emitter.lastData;
+  }
+}
@@ -0,0 +1,44 @@
+package vg.zeta.app.inventory.rfid;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * What the scan thread pays per sound with FeedbackScheduler#request, with a
+ * player that takes about as long as SoundPool#play.
+ */
+@State(Scope.Thread)
+public class FeedbackSchedulerBenchmark {
+
+  @Param({"0", "50"})
+  public int minimumDelay;
+
+  private FeedbackScheduler scheduler;
+  private int index;
+
+  @Setup
+  public void setUp() {
+    scheduler = new FeedbackScheduler((sound, rate) -> {
+      long until = System.nanoTime() + 50_000;
+      while (System.nanoTime() < until) {
+        // Busy, like the audio call would keep the thread
+      }
+    });
+    scheduler.setMinimumDelay(minimumDelay);
+  }
+
+  @TearDown
+  public void tearDown() {
+    scheduler.shutdown();
+  }
+
+  @Benchmark
+  public void request() {
+    // Mostly seen tags, with a new one now and then
+    scheduler.request((++index & 15) == 0 ? ScanEngine.SOUND_NEW_TAG : ScanEngine.SOUND_SEEN_TAG);
+  }
+}
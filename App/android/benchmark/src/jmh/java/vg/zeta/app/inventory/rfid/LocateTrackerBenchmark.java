@@ -0,0 +1,65 @@
+package vg.zeta.app.inventory.rfid;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Locating many targets from one unfiltered inventory of 1000 tags: the
+ * cost of feeding a read (most are of no target) and of one frame.
+ */
+@State(Scope.Thread)
+public class LocateTrackerBenchmark {
+
+  private static final int INVENTORY_SIZE = 1000;
+
+  @Param({"1", "15", "200"})
+  public int targets;
+
+  private String[] reads;
+  private String[] rssis;
+  private int index;
+  private long now;
+
+  private LocateTracker tracker;
+
+  @Setup
+  public void setUp() {
+    String[] inventory = ArrayReaderBackend.generateEpcs(INVENTORY_SIZE, "E280");
+    LocateConfig config = new LocateConfig();
+    config.ranked = true;
+    // Every 1000 / targets-th tag is a target
+    for (int i = 0; i < targets; i++) {
+      config.epcs.add(inventory[i * (INVENTORY_SIZE / targets)]);
+    }
+    tracker = new LocateTracker(config);
+
+    // Separate String instances, as they would come from the reader
+    reads = new String[INVENTORY_SIZE];
+    rssis = new String[INVENTORY_SIZE];
+    for (int i = 0; i < INVENTORY_SIZE; i++) {
+      reads[i] = new String(inventory[i].toCharArray());
+      rssis[i] = "-" + (40 + i % 40) + ".50";
+    }
+  }
+
+  @Benchmark
+  public boolean add() {
+    int i = index;
+    if (++index == reads.length) index = 0;
+    return tracker.add(reads[i], rssis[i], ++now);
+  }
+
+  /** One frame after a full round of the inventory. */
+  @Benchmark
+  public int tickAndRank() {
+    for (int i = 0; i < reads.length; i++) {
+      tracker.add(reads[i], rssis[i], now);
+    }
+    now += 33;
+    tracker.tick(now);
+    return tracker.rank();
+  }
+}
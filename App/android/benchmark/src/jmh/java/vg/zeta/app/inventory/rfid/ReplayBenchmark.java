@@ -0,0 +1,83 @@
+package vg.zeta.app.inventory.rfid;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The scan thread pass of ScanPipelineBenchmark, fed by a ReadRecording
+ * replayed as fast as it can be polled, so the same field session can be
+ * measured before and after a change.
+ *
+ * Pass a recording pulled off a device with -Dreplay.recording=path,
+ * otherwise one of generated reads is written to a temporary file.
+ */
+@State(Scope.Thread)
+public class ReplayBenchmark {
+
+  static final int WINDOW_SIZE = 100;
+
+  @Param({"false", "true"})
+  public boolean aggregate;
+
+  @Param({"false", "true"})
+  public boolean packed;
+
+  private File generated;
+  private CapturingEventEmitter emitter;
+  private ScanEngine.ScanTagThread scanTagThread;
+
+  @Setup
+  public void setUp() throws IOException {
+    String path = System.getProperty("replay.recording");
+    File recording;
+    if (path != null) {
+      recording = new File(path);
+    } else {
+      generated = File.createTempFile("replay", ReadRecording.SUFFIX);
+      ReadRecording.Writer writer = ReadRecording.Writer.create(generated);
+      TagRead[] reads = ArrayReaderBackend.generateReads(1000, 1 << 16, 42);
+      for (int i = 0; i < reads.length; i += WINDOW_SIZE) {
+        int count = Math.min(WINDOW_SIZE, reads.length - i);
+        writer.append(Arrays.asList(reads), i, count, ScanTracer.get().nanoTime());
+      }
+      writer.close();
+      recording = generated;
+    }
+
+    ScanConfig config = new ScanConfig();
+    config.aggregate = aggregate;
+    config.playSound = true;
+    config.maxBatchSize = WINDOW_SIZE;
+
+    ScanEngine engine = new ScanEngine();
+    engine.prepare(config);
+
+    ReplayReaderBackend reader = ReplayReaderBackend.fromFile(recording, Double.POSITIVE_INFINITY, true);
+    reader.startInventoryTag();
+    emitter = new CapturingEventEmitter();
+    scanTagThread = engine.createScanTagThread(reader, config, emitter.listener(packed));
+  }
+
+  @TearDown
+  public void tearDown() {
+    if (generated != null) generated.delete();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(WINDOW_SIZE)
+  public void replayWindow(Blackhole blackhole) {
+    blackhole.consume(scanTagThread.drainBatch());
+    scanTagThread.emit();
+    blackhole.consume(emitter.lastData);
+  }
+}
@@ -0,0 +1,60 @@
+package vg.zeta.app.inventory.rfid;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The whole scan thread pass, per tag read: drain the reader buffer, dedupe
+ * and decide on sound, then build and emit the "uhfScanData" event.
+ *
+ * Each invocation is one event window of WINDOW_SIZE reads, so the scores
+ * (and gc.alloc.rate.norm) are per read.
+ */
+@State(Scope.Thread)
+public class ScanPipelineBenchmark {
+
+  static final int WINDOW_SIZE = 100;
+
+  @Param({"false", "true"})
+  public boolean aggregate;
+
+  @Param({"100", "1000", "10000"})
+  public int tagCount;
+
+  @Param({"true"})
+  public boolean playSound;
+
+  @Param({"false", "true"})
+  public boolean packed;
+
+  private CapturingEventEmitter emitter;
+  private ScanEngine.ScanTagThread scanTagThread;
+
+  @Setup
+  public void setUp() {
+    ScanConfig config = new ScanConfig();
+    config.aggregate = aggregate;
+    config.playSound = playSound;
+    config.maxBatchSize = WINDOW_SIZE;
+
+    ScanEngine engine = new ScanEngine();
+    engine.prepare(config);
+
+    ArrayReaderBackend reader = new ArrayReaderBackend(ArrayReaderBackend.generateReads(tagCount, 1 << 16, 42));
+    emitter = new CapturingEventEmitter();
+    scanTagThread = engine.createScanTagThread(reader, config, emitter.listener(packed));
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(WINDOW_SIZE)
+  public void scanWindow(Blackhole blackhole) {
+    blackhole.consume(scanTagThread.drainBatch());
+    scanTagThread.emit();
+    blackhole.consume(emitter.lastData);
+  }
+}
@@ -0,0 +1,49 @@
+package vg.zeta.app.inventory.rfid;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+
+/** ScanEngine#decideSound per read, with and without a soundOnlyForEpcs list. */
+@State(Scope.Thread)
+public class SoundDecisionBenchmark {
+
+  @Param({"1000", "10000"})
+  public int tagCount;
+
+  /** Size of soundOnlyForEpcs, 0 to play sounds for every tag. */
+  @Param({"0", "100"})
+  public int soundOnlyForCount;
+
+  @Param({"false", "true"})
+  public boolean isLocate;
+
+  private ScanEngine engine;
+  private ScanConfig config;
+  private TagRead[] reads;
+  private int index;
+
+  @Setup
+  public void setUp() {
+    config = new ScanConfig();
+    config.playSound = true;
+    config.isLocate = isLocate;
+    String[] epcs = ArrayReaderBackend.generateEpcs(tagCount, "E280");
+    config.soundOnlyForEpcs = Arrays.asList(Arrays.copyOf(epcs, soundOnlyForCount));
+
+    engine = new ScanEngine();
+    engine.prepare(config);
+    reads = ArrayReaderBackend.generateReads(tagCount, 1 << 16, 7);
+  }
+
+  @Benchmark
+  public int decideSound() {
+    TagRead read = reads[index];
+    if (++index == reads.length) index = 0;
+    return engine.decideSound(read.epc, config);
+  }
+}
@@ -0,0 +1,16 @@
+package android.util;
+
+/** Stand-in for the Android class, backed by java.util.Base64. */
+public class Base64 {
+  public static final int DEFAULT = 0;
+  public static final int NO_WRAP = 2;
+
+  public static String encodeToString(byte[] input, int flags) {
+    return encodeToString(input, 0, input.length, flags);
+  }
+
+  public static String encodeToString(byte[] input, int offset, int len, int flags) {
+    java.nio.ByteBuffer buffer = java.nio.ByteBuffer.wrap(input, offset, len);
+    return new String(java.util.Base64.getEncoder().encode(buffer).array(), java.nio.charset.StandardCharsets.US_ASCII);
+  }
+}
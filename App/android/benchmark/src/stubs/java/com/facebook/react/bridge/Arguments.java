@@ -0,0 +1,13 @@
+package com.facebook.react.bridge;
+
+/** Stand-in for the React Native factory, hands out the Java-only collections. */
+public class Arguments {
+
+  public static WritableArray createArray() {
+    return new JavaOnlyArray();
+  }
+
+  public static WritableMap createMap() {
+    return new JavaOnlyMap();
+  }
+}
@@ -0,0 +1,53 @@
+package com.facebook.react.bridge;
+
+import java.util.ArrayList;
+
+/** ArrayList backed array. */
+public class JavaOnlyArray implements WritableArray {
+
+  private final ArrayList<Object> backingList = new ArrayList<>();
+
+  public Object get(int index) {
+    return backingList.get(index);
+  }
+
+  @Override
+  public int size() {
+    return backingList.size();
+  }
+
+  @Override
+  public void pushNull() {
+    backingList.add(null);
+  }
+
+  @Override
+  public void pushBoolean(boolean value) {
+    backingList.add(value);
+  }
+
+  @Override
+  public void pushDouble(double value) {
+    backingList.add(value);
+  }
+
+  @Override
+  public void pushInt(int value) {
+    backingList.add((double) value);
+  }
+
+  @Override
+  public void pushString(String value) {
+    backingList.add(value);
+  }
+
+  @Override
+  public void pushArray(WritableArray array) {
+    backingList.add(array);
+  }
+
+  @Override
+  public void pushMap(WritableMap map) {
+    backingList.add(map);
+  }
+}
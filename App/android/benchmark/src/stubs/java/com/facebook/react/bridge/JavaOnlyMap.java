@@ -0,0 +1,55 @@
+package com.facebook.react.bridge;
+
+import java.util.HashMap;
+
+/**
+ * HashMap backed map, allocates about as much per entry as the native map
+ * does on the Java side.
+ */
+public class JavaOnlyMap implements WritableMap {
+
+  private final HashMap<String, Object> backingMap = new HashMap<>();
+
+  public Object get(String key) {
+    return backingMap.get(key);
+  }
+
+  public int size() {
+    return backingMap.size();
+  }
+
+  @Override
+  public void putNull(String key) {
+    backingMap.put(key, null);
+  }
+
+  @Override
+  public void putBoolean(String key, boolean value) {
+    backingMap.put(key, value);
+  }
+
+  @Override
+  public void putDouble(String key, double value) {
+    backingMap.put(key, value);
+  }
+
+  @Override
+  public void putInt(String key, int value) {
+    backingMap.put(key, (double) value);
+  }
+
+  @Override
+  public void putString(String key, String value) {
+    backingMap.put(key, value);
+  }
+
+  @Override
+  public void putArray(String key, WritableArray value) {
+    backingMap.put(key, value);
+  }
+
+  @Override
+  public void putMap(String key, WritableMap value) {
+    backingMap.put(key, value);
+  }
+}
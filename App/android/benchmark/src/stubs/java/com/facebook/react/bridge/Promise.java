@@ -0,0 +1,8 @@
+package com.facebook.react.bridge;
+
+/** Stand-in for the React Native interface, only what the rfid package uses. */
+public interface Promise {
+  void resolve(Object value);
+
+  void reject(Throwable throwable);
+}
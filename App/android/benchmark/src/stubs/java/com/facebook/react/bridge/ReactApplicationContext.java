@@ -0,0 +1,23 @@
+package com.facebook.react.bridge;
+
+import com.facebook.react.modules.core.DeviceEventManagerModule;
+
+/**
+ * Stand-in for the React Native context. getJSModule only knows the device
+ * event emitter, which is whatever the benchmark passed in.
+ */
+public class ReactApplicationContext {
+
+  private final DeviceEventManagerModule.RCTDeviceEventEmitter eventEmitter;
+
+  public ReactApplicationContext(DeviceEventManagerModule.RCTDeviceEventEmitter eventEmitter) {
+    this.eventEmitter = eventEmitter;
+  }
+
+  public <T> T getJSModule(Class<T> jsInterface) {
+    if (jsInterface != DeviceEventManagerModule.RCTDeviceEventEmitter.class) {
+      throw new UnsupportedOperationException(jsInterface.getName());
+    }
+    return jsInterface.cast(eventEmitter);
+  }
+}
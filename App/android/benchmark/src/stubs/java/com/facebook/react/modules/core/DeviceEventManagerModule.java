@@ -0,0 +1,9 @@
+package com.facebook.react.modules.core;
+
+/** Stand-in for the React Native module, only the emitter interface. */
+public class DeviceEventManagerModule {
+
+  public interface RCTDeviceEventEmitter {
+    void emit(String eventName, Object data);
+  }
+}
@@ -81,16 +81,16 @@ export default function useCheckItems({
         .then(obj => (dedicatedIdsMapRef.current = obj));
     }
 
-    const epcs = [
-      ...new Set(
-        [
-          ...(items || []),
-          ...Array.from(checkContentsLoadedItemsMapRef.current?.values() || []),
-        ]
-          .map(it => it.actual_rfid_tag_epc_memory_bank_contents)
-          .filter((epcHex): epcHex is string => !!epcHex),
-      ),
-    ];
+    /** `{ [EPC]: item ID }`, matched natively during the scan */
+    const epcItemIdMap: Record<string, string> = {};
+    for (const it of [
+      ...(items || []),
+      ...Array.from(checkContentsLoadedItemsMapRef.current?.values() || []),
+    ]) {
+      const epcHex = it.actual_rfid_tag_epc_memory_bank_contents;
+      if (epcHex && it.__id) epcItemIdMap[epcHex] = it.__id;
+    }
+    const epcs = Object.keys(epcItemIdMap);
     // console.log('epcs', epcs.length, epcs);
     const filterData = sharedStart(epcs);
     const filterOption = filterData
@@ -108,7 +108,8 @@ export default function useCheckItems({
       resetData: checkContentsResultSaved.current,
       renderScannedItemsRef: renderCheckContentsScannedItemsRef,
       useDefaultFilter: false,
-      playSoundOnlyForEpcs: epcs,
+      checkSessionExpected: epcItemIdMap,
+      persistScan: true,
       filterOption,
       onDone: handleCheckContentsDone,
       onClose: () => {
@@ -8,6 +8,7 @@ import React, {
 import {
   ActivityIndicator,
   Alert,
+  InteractionManager,
   LayoutAnimation,
   ScrollView,
   StyleSheet,
@@ -41,7 +42,12 @@ import { useConfig, useData } from '@app/data';
 
 import commonStyles from '@app/utils/commonStyles';
 
-import { ScanData } from '@app/modules/RFIDWithUHFBaseModule';
+import {
+  CheckSessionDelta,
+  LocateRankEntry,
+  LocateUpdate,
+  ScanData,
+} from '@app/modules/RFIDWithUHFBaseModule';
 import RFIDWithUHFBLEModule, {
   DeviceConnectStatusPayload,
   ScanDevicesData,
@@ -95,6 +101,17 @@ export type RFIDSheetOptions = {
       resetData?: boolean;
       // ignoreScannedChildren?: boolean;
       playSoundOnlyForEpcs?: string[];
+      /**
+       * `{ [EPC]: item ID }` of the items an inventory check expects. Where
+       * supported, reads are then matched natively and only newly seen EPCs
+       * reach JS. Takes the place of `playSoundOnlyForEpcs`.
+       */
+      checkSessionExpected?: Readonly<Record<string, string>>;
+      /**
+       * Journal what is scanned natively under `scanName`, so that it is
+       * restored if the app is killed or restarted, where supported.
+       */
+      persistScan?: boolean;
       useDefaultFilter?: boolean;
       filterOption?: any; // TODO
       autoScroll?: boolean;
@@ -104,6 +121,13 @@ export type RFIDSheetOptions = {
   | {
       functionality: 'locate';
       epc?: string;
+      /**
+       * Locate all of these at once instead of `epc`, where supported. The
+       * sheet then lists them, closest first.
+       */
+      epcs?: ReadonlyArray<string>;
+      /** `{ [EPC]: name }` to list `epcs` with */
+      epcLabels?: Readonly<Record<string, string>>;
     }
   | {
       functionality: 'read';
@@ -131,6 +155,8 @@ const ACTION_BUTTON_PRESS_RETENTION_OFFSET = {
 
 const EMPTY_OBJ = {} as const;
 
+const LOCATE_TREND_ARROWS = { '-1': ' ↓', 0: '', 1: ' ↑' } as const;
+
 function RFIDSheet(
   { rfidSheetPassOptionsFnRef }: Props,
   ref: React.ForwardedRef<BottomSheetModal>,
@@ -279,10 +305,17 @@ function RFIDSheet(
     Record<string, ScanDevicesData>
   >({});
   const receiveScanDeviceData = useCallback((d: ScanDevicesData[]) => {
-    setScanBleDevicesData(data => ({
-      ...data,
-      ...Object.fromEntries(d.map(dd => [dd.address, dd])),
-    }));
+    setScanBleDevicesData(data => {
+      const newData = { ...data };
+      for (const dd of d) {
+        if (dd.expired) {
+          delete newData[dd.address];
+        } else {
+          newData[dd.address] = dd;
+        }
+      }
+      return newData;
+    });
   }, []);
   const scanBleDevices = useCallback(async () => {
     setScanBleDevicesData({});
@@ -347,6 +380,15 @@ function RFIDSheet(
   useEffect(() => {
     if (!sheetOpened || useBuiltinReader) return;
     if (bleDeviceConnectionStatus?.status === 'CONNECTED') return;
+    // The native module keeps the device connected once asked to
+    const supervised = RFIDWithUHFBLEModule.isAutoReconnectSupported();
+    if (
+      supervised &&
+      (bleDeviceConnectionStatus?.status === 'CONNECTING' ||
+        bleDeviceConnectionStatus?.reconnecting)
+    ) {
+      return;
+    }
 
     const tryToConnect = () => {
       if (!pairedBleDeviceAddress) {
@@ -356,16 +398,17 @@ function RFIDSheet(
       }
     };
     const timer = setTimeout(tryToConnect, 300);
-    const interval = setInterval(tryToConnect, 5000);
+    const interval = supervised ? null : setInterval(tryToConnect, 5000);
 
     return () => {
       clearTimeout(timer);
-      clearInterval(interval);
+      if (interval) clearInterval(interval);
     };
   }, [
     pairedBleDeviceAddress,
     useBuiltinReader,
     bleDeviceConnectionStatus?.status,
+    bleDeviceConnectionStatus?.reconnecting,
     sheetOpened,
   ]);
 
@@ -379,11 +422,14 @@ function RFIDSheet(
         setBleDeviceConnectionStatus(s => ({ ...s, status: connectionStatus }));
     };
     const timer = setTimeout(syncNativeBluetoothConnectionStatus, 100);
-    const interval = setInterval(syncNativeBluetoothConnectionStatus, 3000);
+    // Status changes are pushed by the native module, no need to poll
+    const interval = RFIDWithUHFBLEModule.isAutoReconnectSupported()
+      ? null
+      : setInterval(syncNativeBluetoothConnectionStatus, 3000);
 
     return () => {
       clearTimeout(timer);
-      clearInterval(interval);
+      if (interval) clearInterval(interval);
     };
   }, [
     pairedBleDeviceAddress,
@@ -553,6 +599,23 @@ function RFIDSheet(
 
   const scannedTags = scannedData[scanName] || EMPTY_OBJ;
 
+  const receiveCheckSessionDelta = useCallback(
+    (delta: CheckSessionDelta) => {
+      receiveScanData([...delta.found, ...delta.unexpected]);
+    },
+    [receiveScanData],
+  );
+  /** The module and expected set the current check session was loaded with */
+  const checkSessionRef = useRef<{
+    module: typeof RFIDModule;
+    expected: Readonly<Record<string, string>>;
+  } | null>(null);
+  const endCheckSession = useCallback(() => {
+    const checkSession = checkSessionRef.current;
+    checkSessionRef.current = null;
+    checkSession?.module.endCheckSession().catch(() => {});
+  }, []);
+
   const scanInProgress = useRef(false);
   const startScan = useCallback(async () => {
     if (options?.functionality !== 'scan') return;
@@ -585,15 +648,44 @@ function RFIDSheet(
       scanInProgress.current = true;
       const scannedEpcs = Object.keys(scannedData[scanName] || {});
       if (scannedEpcs.length <= 0) scannedEpcs.push('z'); // Must have at least 1 item to work
+      const expected = options.checkSessionExpected;
+      const useCheckSession =
+        !!expected && RFIDModule.isCheckSessionSupported();
+      if (
+        expected &&
+        useCheckSession &&
+        (checkSessionRef.current?.module !== RFIDModule ||
+          checkSessionRef.current?.expected !== expected)
+      ) {
+        endCheckSession();
+        await RFIDModule.startCheckSession({
+          expected,
+          callback: receiveCheckSessionDelta,
+        });
+        checkSessionRef.current = { module: RFIDModule, expected };
+      }
       await RFIDModule.startScan({
         power,
         soundEnabled: true,
         callback: receiveScanData,
         scanRate: 30,
         eventRate: 250,
+        aggregate: true,
+        eventFormat: 'packed',
+        queuePolicy: 'coalesce',
+        maxInFlight: 2,
         filter: filterOption,
-        playSoundOnlyForEpcs: options.playSoundOnlyForEpcs,
+        // The check session has its own sound rules natively
+        playSoundOnlyForEpcs: useCheckSession
+          ? undefined
+          : options.playSoundOnlyForEpcs ||
+            (expected ? Object.keys(expected) : undefined),
         scannedEpcs,
+        emitReads: !useCheckSession,
+        journal:
+          options.persistScan && RFIDModule.isScanJournalSupported()
+            ? scanName
+            : undefined,
       });
       if (scanInProgress.current) setScanStatus('Scanning...');
     } catch (e: any) {
@@ -613,6 +705,8 @@ function RFIDSheet(
     scanFilterData,
     power,
     receiveScanData,
+    receiveCheckSessionDelta,
+    endCheckSession,
   ]);
 
   const stopScan = useCallback(async () => {
@@ -627,7 +721,21 @@ function RFIDSheet(
     }
   }, [RFIDModule]);
 
+  /** Scan names whose journal has been read back, or that have been cleared */
+  const restoredScanNames = useRef(new Set<string>());
   const clearScannedData = useCallback(async () => {
+    restoredScanNames.current.add(scanName);
+    if (RFIDModule.isScanJournalSupported()) {
+      RFIDModule.deleteScanJournal(scanName).catch(() => {});
+    }
+    // Start over so that EPCs already reported get reported again
+    const checkSession = checkSessionRef.current;
+    checkSession?.module
+      .startCheckSession({
+        expected: checkSession.expected,
+        callback: receiveCheckSessionDelta,
+      })
+      .catch(() => {});
     setScannedData(d => ({ ...d, [scanName]: {} }));
     setClearScannedDataCounter(d => ({
       ...d,
@@ -635,7 +743,13 @@ function RFIDSheet(
     }));
     // setScannedDataCount(0);
     // await RFIDModule.clearScannedTags();
-  }, [scanName]);
+  }, [scanName, receiveCheckSessionDelta, RFIDModule]);
+  useEffect(() => {
+    if (options?.functionality !== 'scan') return;
+    if (!options.checkSessionExpected) return;
+
+    return () => endCheckSession();
+  }, [options, endCheckSession]);
   useEffect(() => {
     if (options?.functionality !== 'scan') return;
     if (!options?.resetData) return;
@@ -646,6 +760,41 @@ function RFIDSheet(
     setTimeout(() => clearScannedData(), 100);
     setTimeout(() => clearScannedData(), 500);
   }, [options, clearScannedData]);
+  // Pick up what was scanned before the app was killed or restarted
+  useEffect(() => {
+    if (options?.functionality !== 'scan') return;
+    if (options.resetData) return;
+    if (!options.persistScan) return;
+    if (!RFIDModule.isScanJournalSupported()) return;
+    if (restoredScanNames.current.has(scanName)) return;
+
+    // One page at a time once the sheet is done animating, so that a large
+    // journal does not hold up the UI. Stops if the sheet moves on or the
+    // data is cleared meanwhile.
+    let cancelled = false;
+    let offset = 0;
+    const pageSize = 500;
+    const readNextPage = async () => {
+      if (cancelled || restoredScanNames.current.has(scanName)) return;
+      const page = await RFIDModule.readScanJournal(scanName, offset, pageSize);
+      if (cancelled || restoredScanNames.current.has(scanName)) return;
+      if (page && page.length > 0) receiveScanData(page);
+      if (!page || page.length < pageSize) {
+        restoredScanNames.current.add(scanName);
+        return;
+      }
+      offset += page.length;
+      scheduleNextPage();
+    };
+    const scheduleNextPage = () =>
+      InteractionManager.runAfterInteractions(() => {
+        readNextPage().catch(() => {});
+      });
+    scheduleNextPage();
+    return () => {
+      cancelled = true;
+    };
+  }, [options, scanName, RFIDModule, receiveScanData]);
 
   const removeScannedItem = useCallback(
     (epc: string) => {
@@ -660,17 +809,30 @@ function RFIDSheet(
     usePersistedState('RFIDSheet-locateReaderSoundEnabled', true);
   const [locateStatus, setLocateStatus] = useState('');
   const [locateRssi, setLocateRssi] = useState<number | null>(null);
+  const [locateTrend, setLocateTrend] = useState<LocateUpdate['trend']>(0);
+  const [locateRanking, setLocateRanking] = useState<LocateRankEntry[]>([]);
+  const multiLocateEpcs =
+    options?.functionality === 'locate' &&
+    options.epcs &&
+    options.epcs.length > 0 &&
+    RFIDModule.isLocateStreamSupported()
+      ? options.epcs
+      : null;
   // Will be used if EPC is not set in options.
   const [locateFallbackEpc, setLocateFallbackEpc] = usePersistedState(
     'RFIDSheet-locateFallbackEpc',
     '',
   );
+  /** The single EPC to locate, when not locating several at once */
+  const locateEpc =
+    options?.functionality === 'locate'
+      ? options.epc || options.epcs?.[0] || locateFallbackEpc
+      : '';
 
   const clearLocateRssiTimer = useRef<NodeJS.Timeout | null>(null);
   const receiveLocateData = useCallback(
     (d: ScanData[]) => {
       if (options?.functionality !== 'locate') return;
-      const locateEpc = options?.epc || locateFallbackEpc;
 
       const filteredD = d.filter(({ epc }) => epc?.startsWith(locateEpc));
       const lastD = filteredD[filteredD.length - 1];
@@ -683,31 +845,67 @@ function RFIDSheet(
         setLocateRssi(null);
       }, 1000);
     },
-    [options, locateFallbackEpc],
+    [options, locateEpc],
   );
+  // Used with the native locate stream, which smooths the RSSI and tells
+  // when the tag is out of range by itself.
+  const receiveLocateUpdates = useCallback((updates: LocateUpdate[]) => {
+    const update = updates[updates.length - 1];
+    if (!update) return;
+    if (update.inRange && typeof update.rssi === 'number') {
+      setLocateRssi(Math.round(update.rssi));
+      setLocateTrend(update.trend);
+    } else {
+      setLocateRssi(null);
+      setLocateTrend(0);
+    }
+  }, []);
 
   const startLocate = useCallback(async () => {
     if (options?.functionality !== 'locate') return;
     try {
       setIsWorking(true);
       setLocateStatus('Starting...');
-      const epc = options?.epc || locateFallbackEpc;
-      await RFIDModule.startScan({
-        power,
-        soundEnabled: true,
-        callback: receiveLocateData,
-        scanRate: 12,
-        eventRate: 80,
-        filter: {
-          memoryBank: 'EPC',
-          bitOffset: 32,
-          bitCount: (epc.length || 0) * 4,
-          data: epc,
-        },
-        isLocate: true,
-        enableReaderSound: locateReaderSoundEnabled,
-        playSoundOnlyForEpcs: [epc],
-      });
+      if (multiLocateEpcs) {
+        setLocateRanking([]);
+        await RFIDModule.startMultiLocate({
+          power,
+          soundEnabled: true,
+          callback: setLocateRanking,
+          epcs: multiLocateEpcs,
+          enableReaderSound: locateReaderSoundEnabled,
+        });
+        setLocateStatus('Signals broadcasting, walk around to locate');
+        return;
+      }
+      const filter = {
+        memoryBank: 'EPC' as const,
+        bitOffset: 32,
+        bitCount: (locateEpc.length || 0) * 4,
+        data: locateEpc,
+      };
+      if (RFIDModule.isLocateStreamSupported()) {
+        await RFIDModule.startLocateStream({
+          power,
+          soundEnabled: true,
+          callback: receiveLocateUpdates,
+          epcs: [locateEpc],
+          filter,
+          enableReaderSound: locateReaderSoundEnabled,
+        });
+      } else {
+        await RFIDModule.startScan({
+          power,
+          soundEnabled: true,
+          callback: receiveLocateData,
+          scanRate: 12,
+          eventRate: 80,
+          filter,
+          isLocate: true,
+          enableReaderSound: locateReaderSoundEnabled,
+          playSoundOnlyForEpcs: [locateEpc],
+        });
+      }
       setLocateStatus('Signals broadcasting, move around to locate');
     } catch (e: any) {
       setLocateStatus(`Error: ${e?.message}`);
@@ -717,9 +915,11 @@ function RFIDSheet(
     RFIDModule,
     locateReaderSoundEnabled,
     options,
-    locateFallbackEpc,
+    locateEpc,
     power,
     receiveLocateData,
+    receiveLocateUpdates,
+    multiLocateEpcs,
   ]);
 
   const stopLocate = useCallback(async () => {
@@ -727,6 +927,8 @@ function RFIDSheet(
       setLocateStatus('Stopping...');
       await RFIDModule.stopScan();
       setLocateStatus('');
+      setLocateRssi(null);
+      setLocateTrend(0);
       setIsWorking(false);
     } catch (e: any) {
       setLocateStatus(`Error: ${e?.message}`);
@@ -1558,84 +1760,134 @@ function RFIDSheet(
                     ]}
                     onLayout={handleContentLayout}
                   >
-                    <InsetGroup
-                      style={{
-                        backgroundColor: insetGroupBackgroundColor,
-                      }}
-                    >
-                      {options?.epc ? (
-                        <InsetGroup.Item
-                          vertical2
-                          label="EPC"
-                          detailAsText
-                          detailTextStyle={commonStyles.monospaced}
-                          detail={
-                            <AutoSizeText
-                              fontSize={InsetGroup.FONT_SIZE}
-                              mode={ResizeTextMode.max_lines}
-                              numberOfLines={1}
-                            >
-                              {(() => {
-                                try {
-                                  const epc = EPCUtils.getGiaiUriFromEpcHex(
-                                    options.epc,
-                                  );
-                                  return epc;
-                                } catch (e) {
-                                  return options.epc;
+                    {multiLocateEpcs ? (
+                      <InsetGroup
+                        label={`Found ${
+                          locateRanking.filter(r => r.inRange).length
+                        } of ${multiLocateEpcs.length} in range`}
+                        footerLabel={
+                          'Press and hold the "Search" button and walk around, the closest tags are listed first.'
+                        }
+                        style={{
+                          backgroundColor: insetGroupBackgroundColor,
+                        }}
+                      >
+                        {locateRanking.length <= 0 ? (
+                          <InsetGroup.Item
+                            label="No Signal"
+                            labelTextStyle={commonStyles.opacity02}
+                          />
+                        ) : (
+                          locateRanking.map((r, i) => (
+                            <React.Fragment key={r.epc}>
+                              {i > 0 && <InsetGroup.ItemSeparator />}
+                              <InsetGroup.Item
+                                label={options?.epcLabels?.[r.epc] || r.epc}
+                                detailAsText
+                                detail={
+                                  <Text
+                                    style={
+                                      !r.inRange && commonStyles.opacity02
+                                    }
+                                  >
+                                    {typeof r.rssi === 'number'
+                                      ? Math.round(r.rssi) +
+                                        LOCATE_TREND_ARROWS[r.trend]
+                                      : 'No Signal'}
+                                  </Text>
                                 }
-                              })()}
-                            </AutoSizeText>
-                          }
-                        />
-                      ) : (
-                        <InsetGroup.Item
-                          vertical2
-                          label="EPC (Hex)"
-                          detail={
-                            <InsetGroup.TextInput
-                              autoFocus={!locateFallbackEpc}
-                              placeholder="Enter EPC Hex"
-                              autoCapitalize="characters"
-                              autoCorrect={false}
-                              clearButtonMode="while-editing"
-                              returnKeyType="done"
-                              value={locateFallbackEpc}
-                              style={commonStyles.monospaced}
-                              keyboardType="ascii-capable"
-                              onChangeText={t =>
-                                setLocateFallbackEpc(
-                                  t.replace(/[^0-9a-fA-F]/gm, '').toUpperCase(),
-                                )
+                              />
+                            </React.Fragment>
+                          ))
+                        )}
+                      </InsetGroup>
+                    ) : (
+                      <>
+                        <InsetGroup
+                          style={{
+                            backgroundColor: insetGroupBackgroundColor,
+                          }}
+                        >
+                          {options?.epc ? (
+                            <InsetGroup.Item
+                              vertical2
+                              label="EPC"
+                              detailAsText
+                              detailTextStyle={commonStyles.monospaced}
+                              detail={
+                                <AutoSizeText
+                                  fontSize={InsetGroup.FONT_SIZE}
+                                  mode={ResizeTextMode.max_lines}
+                                  numberOfLines={1}
+                                >
+                                  {(() => {
+                                    try {
+                                      const epc = EPCUtils.getGiaiUriFromEpcHex(
+                                        options.epc,
+                                      );
+                                      return epc;
+                                    } catch (e) {
+                                      return options.epc;
+                                    }
+                                  })()}
+                                </AutoSizeText>
+                              }
+                            />
+                          ) : (
+                            <InsetGroup.Item
+                              vertical2
+                              label="EPC (Hex)"
+                              detail={
+                                <InsetGroup.TextInput
+                                  autoFocus={!locateFallbackEpc}
+                                  placeholder="Enter EPC Hex"
+                                  autoCapitalize="characters"
+                                  autoCorrect={false}
+                                  clearButtonMode="while-editing"
+                                  returnKeyType="done"
+                                  value={locateFallbackEpc}
+                                  style={commonStyles.monospaced}
+                                  keyboardType="ascii-capable"
+                                  onChangeText={t =>
+                                    setLocateFallbackEpc(
+                                      t
+                                        .replace(/[^0-9a-fA-F]/gm, '')
+                                        .toUpperCase(),
+                                    )
+                                  }
+                                />
                               }
                             />
+                          )}
+                        </InsetGroup>
+                        <InsetGroup
+                          footerLabel={
+                            'Press and hold the "Search" button, move the RFID reader slowly and observe the change of RSSI to locate a tag.'
                           }
-                        />
-                      )}
-                    </InsetGroup>
-                    <InsetGroup
-                      footerLabel={
-                        'Press and hold the "Search" button, move the RFID reader slowly and observe the change of RSSI to locate a tag.'
-                      }
-                      style={{
-                        backgroundColor: insetGroupBackgroundColor,
-                      }}
-                    >
-                      <InsetGroup.Item
-                        vertical2
-                        label="RSSI"
-                        detailAsText
-                        detail={
-                          <Text
-                            style={
-                              locateRssi === null && commonStyles.opacity02
+                          style={{
+                            backgroundColor: insetGroupBackgroundColor,
+                          }}
+                        >
+                          <InsetGroup.Item
+                            vertical2
+                            label="RSSI"
+                            detailAsText
+                            detail={
+                              <Text
+                                style={
+                                  locateRssi === null && commonStyles.opacity02
+                                }
+                              >
+                                {locateRssi === null
+                                  ? 'No Signal'
+                                  : locateRssi +
+                                    LOCATE_TREND_ARROWS[locateTrend]}
+                              </Text>
                             }
-                          >
-                            {locateRssi || 'No Signal'}
-                          </Text>
-                        }
-                      />
-                    </InsetGroup>
+                          />
+                        </InsetGroup>
+                      </>
+                    )}
                   </View>
                 </BottomSheetScrollView>
               );
@@ -2,16 +2,19 @@ import {
   DeviceEventEmitter,
   EmitterSubscription,
   NativeEventEmitter,
-  NativeModules,
   Platform,
 } from 'react-native';
 
 import RFIDWithUHFBaseModule from './RFIDWithUHFBaseModule';
-const { RFIDWithUHFBLEModule: NativeRFIDWithUHFBLEModule } = NativeModules;
+import type { Spec } from './specs/NativeRFIDWithUHFBLEModule';
+import NativeRFIDWithUHFBLEModuleSpec from './specs/NativeRFIDWithUHFBLEModule';
+
+// Always there on the platforms that import this module
+const NativeRFIDWithUHFBLEModule = NativeRFIDWithUHFBLEModuleSpec as Spec;
 
 const eventEmitter =
   Platform.OS === 'ios'
-    ? new NativeEventEmitter(NativeRFIDWithUHFBLEModule)
+    ? new NativeEventEmitter(NativeRFIDWithUHFBLEModule as any)
     : DeviceEventEmitter;
 
 export type DeviceConnectStatus = 'CONNECTED' | 'CONNECTING' | 'DISCONNECTED';
@@ -19,19 +22,37 @@ export type DeviceConnectStatus = 'CONNECTED' | 'CONNECTING' | 'DISCONNECTED';
 export type ScanDevicesData = {
   address: string;
   name: string;
+  /** Smoothed on Android. */
   rssi: number;
+  /** RSSI of the last advertisement, Android only. */
+  rawRssi?: number;
+  /** Android only. */
+  lastSeenAt?: number;
+  /** Not seen for `expireAfter`, to be removed from the list. */
+  expired?: boolean;
 };
 
 type ScanDevicesOptions = {
+  /** Only gets added, changed and expired devices on Android. */
   callback: (data: ScanDevicesData[]) => void;
   eventRate?: number;
   stopAfter?: number;
+  /** Only report devices whose name starts with one of these. Android only. */
+  namePrefixes?: ReadonlyArray<string>;
+  /** Expire devices not seen for this long (ms). Android only. */
+  expireAfter?: number;
+  /** Smallest RSSI change (dB) that is reported. Android only. */
+  rssiDelta?: number;
 };
 
 export type DeviceConnectStatusPayload = {
   status: DeviceConnectStatus;
   deviceName?: string;
   deviceAddress?: string;
+  /** Set on DISCONNECTED when the device is being reconnected (Android). */
+  reconnecting?: boolean;
+  retryIn?: number;
+  attempt?: number;
 };
 
 const RFIDWithUHFBLEModule = {
@@ -47,6 +68,20 @@ const RFIDWithUHFBLEModule = {
         options.callback(d);
       },
     );
+    if (
+      typeof NativeRFIDWithUHFBLEModule.scanDevicesWithOptions === 'function'
+    ) {
+      // Stops by itself after scanPeriod
+      const { eventRate, stopAfter, namePrefixes, expireAfter, rssiDelta } =
+        options;
+      return NativeRFIDWithUHFBLEModule.scanDevicesWithOptions(enable, {
+        eventRate: eventRate || 500,
+        scanPeriod: stopAfter || 1000 * 5,
+        namePrefixes,
+        expireAfter,
+        rssiDelta,
+      });
+    }
     if (enable) {
       setTimeout(() => {
         NativeRFIDWithUHFBLEModule.scanDevices(false, options.eventRate || 500);
@@ -71,8 +106,17 @@ const RFIDWithUHFBLEModule = {
   disconnectDevice(): Promise<void> {
     return NativeRFIDWithUHFBLEModule.disconnectDevice();
   },
+  /** A connected device is kept connected by the native module. */
+  isAutoReconnectSupported(): boolean {
+    return typeof NativeRFIDWithUHFBLEModule.setAutoReconnect === 'function';
+  },
+  setAutoReconnect(enabled: boolean): Promise<void> {
+    return NativeRFIDWithUHFBLEModule.setAutoReconnect(enabled);
+  },
   getDeviceConnectStatus(): Promise<DeviceConnectStatus> {
-    return NativeRFIDWithUHFBLEModule.getDeviceConnectStatus();
+    return NativeRFIDWithUHFBLEModule.getDeviceConnectStatus() as Promise<
+      DeviceConnectStatus
+    >;
   },
   getDeviceBatteryLevel: async (): Promise<number> => {
     return await new Promise(async resolve => {
@@ -1,7 +1,36 @@
-import { DeviceEventEmitter } from 'react-native';
+import { DeviceEventEmitter, Platform } from 'react-native';
+import { toByteArray } from 'react-native-quick-base64';
 
 import crypto from 'crypto-browserify';
 
+import { decodePackedScanData } from './packedScanData';
+
+import type {
+  AutoTuneState,
+  CheckSessionState,
+  CommandStats,
+  EncodeSummary,
+  LatencyStats,
+  ScanJournalInfo,
+  ScanLatency,
+  ScanQueueStats,
+  ScanStats,
+} from './specs/NativeRFIDWithUHFUARTModule';
+
+export { decodePackedScanData };
+
+export type {
+  AutoTuneState,
+  CheckSessionState,
+  CommandStats,
+  EncodeSummary,
+  LatencyStats,
+  ScanJournalInfo,
+  ScanLatency,
+  ScanQueueStats,
+  ScanStats,
+};
+
 export type MemoryBank = 'RESERVED' | 'EPC' | 'TID' | 'USER';
 
 /**
@@ -28,16 +57,196 @@ export type ScanData = {
   epc: string;
   tid?: string;
   rssi: number;
+  /** Only available with `aggregate: true`, number of reads in the event window */
+  count?: number;
+  /** Only available with `aggregate: true`, epoch milliseconds */
+  firstSeenAt?: number;
+  /** Only available with `aggregate: true`, epoch milliseconds */
+  lastSeenAt?: number;
+  /** Only available with `aggregate: true` */
+  minRssi?: number;
+  /** Only available with `aggregate: true` */
+  maxRssi?: number;
+  /** Only available with `aggregate: true` */
+  meanRssi?: number;
 };
 
 export type ScanOptions = BasicOptions & {
   callback: (data: ScanData[]) => void;
   scanRate?: number;
   eventRate?: number;
+  /**
+   * Upper bound (ms) of how long the native scan loop may park while waiting
+   * for tags when the reader buffer is empty. Defaults to 10.
+   */
+  idleMaxBackoff?: number;
   isLocate?: boolean;
   enableReaderSound?: boolean;
   scannedEpcs?: ReadonlyArray<string>;
   playSoundOnlyForEpcs?: ReadonlyArray<string>;
+  /**
+   * Collapse reads into one record per EPC for each event window, instead of
+   * delivering every raw read.
+   */
+  aggregate?: boolean;
+  /**
+   * Maximum number of tags drained from the reader buffer before pausing for
+   * `scanRate` ms. Defaults to 100.
+   */
+  maxBatchSize?: number;
+  /**
+   * `'packed'` has the native side send each event window as a single binary
+   * payload instead of an array of maps, which is much cheaper to serialize
+   * at high read rates (Android only). `callback` receives the same
+   * `ScanData[]` either way, but EPC and TID hex comes back upper case.
+   */
+  eventFormat?: 'maps' | 'packed';
+  /**
+   * `'pull'` has the native side buffer packed event windows instead of
+   * emitting them, and JS pulls them every `eventRate` ms with a synchronous
+   * native call (Android only). At most `queueCapacity` records are buffered,
+   * the oldest windows are dropped if JS falls behind.
+   */
+  delivery?: 'events' | 'pull';
+  /**
+   * Maximum number of reads held natively between the reader and the next
+   * event window (Android only). Defaults to 10000.
+   */
+  queueCapacity?: number;
+  /**
+   * What to do with reads coming in while the queue is full (Android only):
+   * drop the oldest queued read (default), merge it into a queued read of the
+   * same EPC (`'coalesce'`, dropping the oldest if there is none), or stop
+   * draining the reader until there is room (`'block'`). Reads are only
+   * merged once the queue is full. `'coalesce'` requires `aggregate: true`,
+   * where the merged reads add to `count`.
+   */
+  queuePolicy?: 'drop-oldest' | 'coalesce' | 'block';
+  /**
+   * Maximum number of event windows delivered to `callback` that the native
+   * side waits on before sending more (Android only). Windows are
+   * acknowledged once `callback` returns. Unlimited by default.
+   */
+  maxInFlight?: number;
+  /**
+   * Set to `false` to not deliver reads to `callback` at all, for when a
+   * check session already tells JS what it needs (Android only).
+   */
+  emitReads?: boolean;
+  /**
+   * Name of a scan journal to record what is read to (Android only). The
+   * journal is a file that survives the app being killed, scanning again
+   * with the same name resumes it. It keeps one record per EPC, so it grows
+   * with the number of tags rather than the scan time. See `readScanJournal`.
+   */
+  journal?: string;
+  /**
+   * Called with the scan counters every `statsInterval` ms while scanning,
+   * and once more when the scan ends (Android only).
+   */
+  onStats?: (stats: ScanStats) => void;
+  statsInterval?: number;
+  /**
+   * Measure how long reads take to get to `callback`, see `getScanLatency`
+   * (Android only, not with `delivery: 'pull'`).
+   */
+  traceLatency?: boolean;
+  /**
+   * Name of a read recording to write every raw read to, with its timing
+   * (Android only). See `replay`.
+   */
+  record?: string;
+  /**
+   * Name of a read recording to scan from instead of the reader, through the
+   * same pipeline (Android only).
+   */
+  replay?: string;
+  /** Times the recorded pace, `0` for as fast as possible. Defaults to 1. */
+  replaySpeed?: number;
+  replayLoop?: boolean;
+  /**
+   * Let the reader pick its power, Gen2 Q and session while scanning, for
+   * the most tags per second, instead of using `power` as is (Android
+   * only). `true` for the default bounds. What it picks is in `onStats`.
+   */
+  autoTune?: boolean | AutoTuneOptions;
+  /**
+   * How the reader inventories, for rooms full of tags (Android only).
+   * Settings stay on the reader after the scan, like `power`.
+   */
+  inventory?: InventoryOptions;
+};
+
+export type InventoryOptions = {
+  /**
+   * Gen2 session. Past S0, tags keep quiet for a while once read, so the
+   * ones not found yet get a chance to answer.
+   */
+  session?: 0 | 1 | 2 | 3 | 'S0' | 'S1' | 'S2' | 'S3';
+  /** `'AB'` flips between A and B every `targetSwitchInterval` ms. */
+  target?: 'A' | 'B' | 'AB';
+  /**
+   * At least 50, 1000 by default. The reader pauses its inventory for each
+   * flip, so short intervals cost reads.
+   */
+  targetSwitchInterval?: number;
+  /** `'epcTid'` reads the TID of each tag along with its EPC. */
+  mode?: 'epc' | 'epcTid';
+  /** TID in the same reply as the EPC, on tags that support it. */
+  fastId?: boolean;
+  /** Read tags stay quiet for the whole inventory (Impinj TagFocus). */
+  tagFocus?: boolean;
+};
+
+/** Bounds of what `autoTune` may pick. */
+export type AutoTuneOptions = {
+  /** dBm, defaults to 15 to 30 in steps of 3. */
+  minPower?: number;
+  maxPower?: number;
+  powerStep?: number;
+  /** Starting Q, defaults to 0 to 15. */
+  minQ?: number;
+  maxQ?: number;
+  /** Gen2 sessions it may switch between, `[]` to leave it. Defaults to S0, S1. */
+  sessions?: number[];
+  /** Milliseconds each setting is tried for, defaults to 2000. */
+  interval?: number;
+  /** How much better a setting has to do to be kept, defaults to 0.05. */
+  minImprovement?: number;
+};
+
+/** An event window of a scan with `traceLatency`. */
+type TracedScanData = {
+  data: ScanData[] | string;
+  /**
+   * Native monotonic times (ms) of the first and last read and of the emit,
+   * then the epoch time of the emit.
+   */
+  trace: number[];
+};
+
+export type CheckSessionChange = {
+  epc: string;
+  /** Not set for unexpected EPCs */
+  itemId?: string;
+  rssi: number;
+};
+
+/** What changed in a check session since the previous delta. */
+export type CheckSessionDelta = {
+  /** Expected EPCs seen for the first time */
+  found: CheckSessionChange[];
+  /** Unexpected EPCs seen for the first time */
+  unexpected: CheckSessionChange[];
+  expectedCount: number;
+  foundCount: number;
+  unexpectedCount: number;
+};
+
+export type CheckSessionOptions = {
+  /** `{ [EPC]: item ID }` of everything the check expects to see */
+  expected: Readonly<Record<string, string>>;
+  callback: (delta: CheckSessionDelta) => void;
 };
 
 export type LocateOptions = BasicOptions & {
@@ -45,6 +254,110 @@ export type LocateOptions = BasicOptions & {
   epc: string;
 };
 
+/** How a located tag changed since the previous frame. */
+export type LocateUpdate = {
+  epc: string;
+  /** Whether the tag has been read within `lostAfter` ms */
+  inRange: boolean;
+  /** Smoothed RSSI, only set while in range */
+  rssi?: number;
+  /** RSSI of the last read, only set while in range */
+  rawRssi?: number;
+  /** 0 (`rssiFar` or weaker) to 1 (`rssiNear` or stronger) */
+  proximity: number;
+  /** -1 getting colder, 0 steady, 1 getting warmer */
+  trend: -1 | 0 | 1;
+  lastSeenAt: number;
+  readCount: number;
+};
+
+/** Where a target stands in a multi-target locate, see `startMultiLocate`. */
+export type LocateRankEntry = {
+  epc: string;
+  inRange: boolean;
+  /** Smoothed RSSI, only set while in range */
+  rssi?: number;
+  proximity: number;
+  trend: -1 | 0 | 1;
+  lastSeenAt: number;
+};
+
+type LocateTuningOptions = {
+  /** Defaults to `'kalman'` */
+  rssiFilter?: 'kalman' | 'ema';
+  /** Milliseconds between two updates. Defaults to 33. */
+  frameInterval?: number;
+  /** Milliseconds without reads before a tag is out of range, 1000 default */
+  lostAfter?: number;
+  /** RSSI mapped to proximity 1, defaults to -35 */
+  rssiNear?: number;
+  /** RSSI mapped to proximity 0, defaults to -75 */
+  rssiFar?: number;
+  enableReaderSound?: boolean;
+};
+
+export type LocateStreamOptions = BasicOptions &
+  LocateTuningOptions & {
+    /** EPCs (or EPC prefixes) to locate */
+    epcs: ReadonlyArray<string>;
+    /** Called at most once per frame, with the targets that changed */
+    callback: (updates: LocateUpdate[]) => void;
+  };
+
+export type MultiLocateOptions = Omit<BasicOptions, 'filter'> &
+  LocateTuningOptions & {
+    /** EPCs (or EPC prefixes) to locate */
+    epcs: ReadonlyArray<string>;
+    /**
+     * Called at most once per frame while anything changed, with every
+     * target read so far: in range first, closest first.
+     */
+    callback: (ranking: LocateRankEntry[]) => void;
+  };
+
+/** A tag to write with `encodeTags`. */
+export type EncodeJob = {
+  /** EPC hex to write */
+  epc: string;
+  /** Selects the tag to write to, for example by its current EPC */
+  filter?: FilterOptions;
+  /** Current access password, defaults to 00000000 */
+  accessPassword?: string;
+  /** Set as kill and access password after writing, if given */
+  newAccessPassword?: string;
+  /** Applied with the new (or current) access password, if given */
+  lockCode?: string;
+};
+
+export type EncodeProgress = {
+  /** Index of the job */
+  index: number;
+  /** `null` for the outcome of the job as a whole */
+  step: 'write' | 'verify' | 'password' | 'lock' | null;
+  status: 'started' | 'retrying' | 'succeeded' | 'failed' | 'cancelled';
+  attempt: number;
+  power: number;
+  error?: string;
+};
+
+export type EncodeTagsOptions = {
+  power: number;
+  /**
+   * Failed steps are retried with `powerStep` more power each time, up to
+   * this. Defaults to `power`, since more power may reach other tags.
+   */
+  maxPower?: number;
+  /** Defaults to 2 */
+  powerStep?: number;
+  /** Attempts per step, defaults to 3 */
+  maxAttempts?: number;
+  /** Read the EPC back after writing it, defaults to `true` */
+  verify?: boolean;
+  /** Sounds for each finished job */
+  soundEnabled: boolean;
+  onProgress?: (progress: EncodeProgress) => void;
+};
+
 export type ReadOptions = BasicOptions & {
   /** Memory bank from which data is to be read from */
   memoryBank: MemoryBank;
@@ -74,6 +387,38 @@ export type LockOptions = BasicOptions & {
   code: string;
 };
 
+/**
+ * A simulated reader to use instead of the hardware one (Android only), for
+ * testing the scan pipeline without a handheld.
+ */
+export type SimulatedReaderOptions =
+  | {
+      type: 'synthetic';
+      tagCount?: number;
+      readsPerSecond?: number;
+      rssiMean?: number;
+      rssiStdDev?: number;
+      rssiJitter?: number;
+      /** Probability of a read being of an already read tag */
+      duplicateRatio?: number;
+      bufferCapacity?: number;
+      epcPrefix?: string;
+      epcLength?: number;
+      withTid?: boolean;
+      operationFailureRate?: number;
+      seed?: number;
+    }
+  | {
+      type: 'replay';
+      /**
+       * Path of a recorded session on the device, text or a read recording
+       * (see the `record` scan option)
+       */
+      path: string;
+      speed?: number;
+      loop?: boolean;
+    };
+
 export const MEMORY_BANK_MAP = {
   RESERVED: 0,
   EPC: 1,
@@ -85,6 +430,20 @@ export function convertMemoryBank(bankStr: MemoryBank): number {
   return MEMORY_BANK_MAP[bankStr];
 }
 
+const ENCODE_STEP_STATUS = {
+  write: 'Writing data...',
+  verify: 'Verifying data...',
+  password: 'Setting password...',
+  lock: 'Locking tag...',
+} as const;
+
+const ENCODE_STEP_FAILED_STATUS = {
+  write: 'Failed on writing data',
+  verify: 'Failed on verifying data',
+  password: 'Failed on setting password',
+  lock: 'Failed on locking tag',
+} as const;
+
 export const EPC_SIZE_PC_VALUE_MAP = [
   '0000',
   '0800',
@@ -113,7 +472,13 @@ const RFIDWithUHFBaseModule = {
   NativeModule: {} as any,
   _initPromise: null as any,
   _scanListener: null as any,
+  _scanStatsListener: null as any,
+  _latencySamples: [] as number[],
+  _latencyFlushedAt: 0,
+  _scanPullTimer: null as any,
   _locateListener: null as any,
+  _checkSessionListener: null as any,
+  _encodeListener: null as any,
   init(): Promise<void> {
     const prevPromise = this._initPromise;
     if (prevPromise) return prevPromise;
@@ -130,6 +495,10 @@ const RFIDWithUHFBaseModule = {
   },
   free(): Promise<void> {
     this._scanListener?.remove();
+    this._scanStatsListener?.remove();
+    this._checkSessionListener?.remove();
+    this._locateListener?.remove();
+    clearInterval(this._scanPullTimer);
     return this.NativeModule.free();
   },
   isWorking(): Promise<boolean> {
@@ -144,13 +513,49 @@ const RFIDWithUHFBaseModule = {
   setPower(power: number): Promise<number> {
     return this.NativeModule.setPower(power);
   },
+  /** Pass `null` to go back to the hardware reader. */
+  setSimulatedReader(options: SimulatedReaderOptions | null): Promise<void> {
+    return this.NativeModule.setSimulatedReader(options);
+  },
   startScan(options: ScanOptions): Promise<void> {
     this.NativeModule.setFeedbackMinimumDelay(50);
     this._scanListener?.remove();
-    this._scanListener = DeviceEventEmitter.addListener(
-      'uhfScanData',
-      options.callback,
-    );
+    // Left in place by stopScan, for the stats of the end of the scan
+    this._scanStatsListener?.remove();
+    this._scanStatsListener = options.onStats
+      ? DeviceEventEmitter.addListener('uhfScanStats', options.onStats)
+      : null;
+    clearInterval(this._scanPullTimer);
+    if (options.delivery === 'pull') {
+      this._scanListener = null;
+      this._scanPullTimer = setInterval(
+        () => this._pullScanData(options.callback),
+        options.eventRate || 250,
+      );
+    } else {
+      this._scanListener = DeviceEventEmitter.addListener(
+        'uhfScanData',
+        (event: ScanData[] | string | TracedScanData) => {
+          let data: ScanData[] | string;
+          if (typeof event === 'object' && !Array.isArray(event)) {
+            this._recordScanLatency(event.trace);
+            data = event.data;
+          } else {
+            data = event;
+          }
+          try {
+            options.callback(
+              typeof data === 'string'
+                ? decodePackedScanData(toByteArray(data))
+                : data,
+            );
+          } finally {
+            // Not available on iOS, which ignores maxInFlight
+            if (options.maxInFlight) this.NativeModule.acknowledgeScanData?.(1);
+          }
+        },
+      );
+    }
     // if (Platform.OS === 'ios') {
     //   (this as any).startGetLabMessageTimer = setTimeout(() => {
     //     (this as any).getLabMessageTimer = setInterval(async () => {
@@ -176,12 +581,70 @@ const RFIDWithUHFBaseModule = {
       !!options.enableReaderSound,
       options.scannedEpcs || [],
       options.playSoundOnlyForEpcs || [],
+      {
+        aggregate: !!options.aggregate,
+        eventFormat: options.eventFormat || 'maps',
+        delivery: options.delivery || 'events',
+        ...(options.queueCapacity
+          ? { queueCapacity: options.queueCapacity }
+          : {}),
+        ...(options.queuePolicy ? { queuePolicy: options.queuePolicy } : {}),
+        ...(options.maxInFlight ? { maxInFlight: options.maxInFlight } : {}),
+        ...(options.emitReads === false ? { emitReads: false } : {}),
+        ...(options.journal ? { journal: options.journal } : {}),
+        ...(options.maxBatchSize ? { maxBatchSize: options.maxBatchSize } : {}),
+        ...(options.idleMaxBackoff
+          ? { idleMaxBackoff: options.idleMaxBackoff }
+          : {}),
+        ...(options.onStats
+          ? { statsInterval: options.statsInterval || 1000 }
+          : {}),
+        ...(options.traceLatency ? { traceLatency: true } : {}),
+        ...(options.record ? { record: options.record } : {}),
+        ...(options.replay
+          ? {
+              replay: options.replay,
+              replaySpeed: options.replaySpeed ?? 1,
+              replayLoop: !!options.replayLoop,
+            }
+          : {}),
+        ...(options.autoTune ? { autoTune: options.autoTune } : {}),
+        ...(options.inventory ? { inventory: options.inventory } : {}),
+      },
     );
   },
+  _recordScanLatency(trace: number[]) {
+    const [firstReadAt, , emittedAt, emittedAtEpoch] = trace;
+    // Native times are monotonic, only the bridge part needs the wall clock
+    const bridge = Math.max(0, Date.now() - emittedAtEpoch);
+    this._latencySamples.push(emittedAt - firstReadAt + bridge, bridge);
+    // Sent in bulk, a native call per window would add to what is measured
+    if (
+      this._latencySamples.length >= 64 ||
+      Date.now() - this._latencyFlushedAt >= 1000
+    ) {
+      this._flushScanLatency();
+    }
+  },
+  _flushScanLatency() {
+    this._latencyFlushedAt = Date.now();
+    if (this._latencySamples.length === 0) return;
+    this.NativeModule.recordScanLatency(this._latencySamples);
+    this._latencySamples = [];
+  },
+  _pullScanData(callback: (data: ScanData[]) => void) {
+    const payload: string = this.NativeModule.pullScanData();
+    if (payload) callback(decodePackedScanData(toByteArray(payload)));
+  },
   stopScan(): Promise<void> {
     const currentScanListener = this._scanListener;
+    const currentScanPullTimer = this._scanPullTimer;
+    const currentLocateListener = this._locateListener;
     setTimeout(() => {
       currentScanListener?.remove();
+      clearInterval(currentScanPullTimer);
+      currentLocateListener?.remove();
+      this._flushScanLatency();
     }, 1000);
 
     // if (Platform.OS === 'ios') {
@@ -191,6 +654,117 @@ const RFIDWithUHFBaseModule = {
 
     return this.NativeModule.stopScan();
   },
+  /** Counters of the native scan queue, `null` before the first scan. */
+  getScanQueueStats(): Promise<ScanQueueStats | null> {
+    return this.NativeModule.getScanQueueStats();
+  },
+  /** Not available on iOS. */
+  isScanStatsSupported(): boolean {
+    return typeof this.NativeModule.getScanStats === 'function';
+  },
+  /**
+   * Reads, polls, batches and sound times of the current or last scan,
+   * `null` before the first scan. Counted from zero for each scan.
+   */
+  getScanStats(): Promise<ScanStats | null> {
+    return this.NativeModule.getScanStats();
+  },
+  /**
+   * Latency percentiles of the scans since the last one started with
+   * `traceLatency`, with the histogram buckets if asked for.
+   */
+  getScanLatency(includeBuckets = false): Promise<ScanLatency> {
+    return this.NativeModule.getScanLatency(includeBuckets);
+  },
+  /** Not available on iOS. */
+  isCommandStatsSupported(): boolean {
+    return typeof this.NativeModule.getCommandStats === 'function';
+  },
+  /** Queue depth and latencies of the native reader commands. */
+  getCommandStats(): Promise<CommandStats> {
+    return this.NativeModule.getCommandStats();
+  },
+  /** Not available on iOS. */
+  isScanJournalSupported(): boolean {
+    return typeof this.NativeModule.readScanJournal === 'function';
+  },
+  /** `null` if there is no journal with that name. */
+  getScanJournalInfo(name: string): Promise<ScanJournalInfo | null> {
+    return this.NativeModule.getScanJournalInfo(name);
+  },
+  /**
+   * Reads a page of a scan journal. Each EPC has one record, with its read
+   * count and RSSI over the whole session.
+   */
+  async readScanJournal(
+    name: string,
+    offset: number,
+    limit: number,
+  ): Promise<ScanData[] | null> {
+    const payload: string | null = await this.NativeModule.readScanJournal(
+      name,
+      offset,
+      limit,
+    );
+    if (payload === null) return null;
+    return decodePackedScanData(toByteArray(payload));
+  },
+  listScanJournals(): Promise<string[]> {
+    return this.NativeModule.listScanJournals();
+  },
+  deleteScanJournal(name: string): Promise<boolean> {
+    return this.NativeModule.deleteScanJournal(name);
+  },
+  /** Not available on iOS. */
+  isReadRecordingSupported(): boolean {
+    return typeof this.NativeModule.listReadRecordings === 'function';
+  },
+  listReadRecordings(): Promise<string[]> {
+    return this.NativeModule.listReadRecordings();
+  },
+  deleteReadRecording(name: string): Promise<boolean> {
+    return this.NativeModule.deleteReadRecording(name);
+  },
+  /** Not available on iOS. */
+  isCheckSessionSupported(): boolean {
+    return typeof this.NativeModule.startCheckSession === 'function';
+  },
+  /**
+   * Loads the expected EPCs of an inventory check into the native module.
+   * Scans then match reads natively and `callback` only gets what changed:
+   * each EPC is reported once, as found or unexpected, until the session is
+   * started again.
+   */
+  startCheckSession(options: CheckSessionOptions): Promise<void> {
+    this._checkSessionListener?.remove();
+    this._checkSessionListener = DeviceEventEmitter.addListener(
+      'uhfCheckSessionDelta',
+      (delta: CheckSessionDelta) => {
+        const toNumber = (c: CheckSessionChange) => ({
+          ...c,
+          rssi: parseFloat(c.rssi as any),
+        });
+        options.callback({
+          ...delta,
+          found: delta.found.map(toNumber),
+          unexpected: delta.unexpected.map(toNumber),
+        });
+      },
+    );
+    const epcs = Object.keys(options.expected);
+    return this.NativeModule.startCheckSession(
+      epcs,
+      epcs.map(epc => options.expected[epc]),
+    );
+  },
+  endCheckSession(): Promise<void> {
+    this._checkSessionListener?.remove();
+    this._checkSessionListener = null;
+    return this.NativeModule.endCheckSession();
+  },
+  getCheckSessionState(): Promise<CheckSessionState | null> {
+    return this.NativeModule.getCheckSessionState();
+  },
   clearScannedTags(): Promise<void> {
     return this.NativeModule.clearScannedTags();
   },
@@ -210,6 +784,97 @@ const RFIDWithUHFBaseModule = {
     this._locateListener?.remove();
     return this.NativeModule.stopLocate();
   },
+  /** Not available on iOS. */
+  isLocateStreamSupported(): boolean {
+    return Platform.OS === 'android';
+  },
+  /**
+   * Locates tags by scanning: the native side smooths the RSSI of each EPC,
+   * works out the trend and paces the beeps, and `callback` gets at most one
+   * update per frame. Stop with `stopScan`.
+   */
+  startLocateStream(options: LocateStreamOptions): Promise<void> {
+    return this._startLocateScan(
+      options,
+      {},
+      'uhfLocateUpdate',
+      (updates: LocateUpdate[]) => options.callback(updates),
+    );
+  },
+  /**
+   * Locates any number of tags at once from one unfiltered inventory, so
+   * that walking past them finds all of them in one pass. Stop with
+   * `stopScan`. Not available on iOS, see `isLocateStreamSupported`.
+   */
+  startMultiLocate(options: MultiLocateOptions): Promise<void> {
+    const { epcs } = options;
+    return this._startLocateScan(
+      { ...options, filter: undefined },
+      { ranked: true },
+      'uhfLocateRanking',
+      // Five numbers per target, see ReactScanEventEmitter
+      (data: Array<number | null>) => {
+        const now = Date.now();
+        const ranking: LocateRankEntry[] = [];
+        for (let i = 0; i + 4 < data.length; i += 5) {
+          const rssi = data[i + 1];
+          ranking.push({
+            epc: epcs[data[i] as number],
+            inRange: rssi !== null,
+            ...(rssi !== null ? { rssi: rssi / 10 } : {}),
+            proximity: (data[i + 2] as number) / 100,
+            trend: data[i + 3] as LocateRankEntry['trend'],
+            lastSeenAt: now - (data[i + 4] as number),
+          });
+        }
+        options.callback(ranking);
+      },
+    );
+  },
+  _startLocateScan(
+    options: BasicOptions &
+      LocateTuningOptions & { epcs: ReadonlyArray<string> },
+    extraLocateOptions: Record<string, unknown>,
+    eventName: string,
+    listener: (data: any) => void,
+  ): Promise<void> {
+    this._scanListener?.remove();
+    this._scanListener = null;
+    clearInterval(this._scanPullTimer);
+    this._locateListener?.remove();
+    this._locateListener = DeviceEventEmitter.addListener(eventName, listener);
+    const locate: Record<string, unknown> = {
+      epcs: options.epcs,
+      ...extraLocateOptions,
+    };
+    const keys = [
+      'rssiFilter',
+      'frameInterval',
+      'lostAfter',
+      'rssiNear',
+      'rssiFar',
+    ] as const;
+    keys.forEach(key => {
+      if (options[key] !== undefined) locate[key] = options[key];
+    });
+    const { filter } = options;
+    return this.NativeModule.startScan(
+      options.power,
+      !!filter,
+      convertMemoryBank(filter?.memoryBank || 'EPC'),
+      filter?.bitOffset || 0,
+      filter?.bitCount || 0,
+      filter?.data || '',
+      0,
+      250,
+      true,
+      !!options.soundEnabled,
+      !!options.enableReaderSound,
+      [],
+      [],
+      { locate },
+    );
+  },
   read(options: ReadOptions): Promise<string> {
     return this.NativeModule.read(
       options.power,
@@ -254,6 +919,47 @@ const RFIDWithUHFBaseModule = {
       !!options.soundEnabled,
     );
   },
+  /** Not available on iOS. */
+  isEncodeTagsSupported(): boolean {
+    return typeof this.NativeModule.encodeTags === 'function';
+  },
+  /**
+   * Writes many tags in one native call: sets the power once, then writes,
+   * verifies, sets the password of and locks each tag in turn, retrying
+   * failed steps. Resolves once all jobs are done.
+   */
+  async encodeTags(
+    jobs: ReadonlyArray<EncodeJob>,
+    { onProgress, soundEnabled, ...options }: EncodeTagsOptions,
+  ): Promise<EncodeSummary> {
+    this._encodeListener?.remove();
+    this._encodeListener = onProgress
+      ? DeviceEventEmitter.addListener('uhfEncodeProgress', onProgress)
+      : null;
+    const listener = this._encodeListener;
+    try {
+      return await this.NativeModule.encodeTags(
+        jobs.map(({ filter, ...job }) => ({
+          ...job,
+          ...(filter
+            ? {
+                filterBank: convertMemoryBank(filter.memoryBank),
+                filterPtr: filter.bitOffset,
+                filterLen: filter.bitCount,
+                filterData: filter.data,
+              }
+            : {}),
+        })),
+        options,
+        !!soundEnabled,
+      );
+    } finally {
+      listener?.remove();
+    }
+  },
+  cancelEncodeTags(): Promise<boolean> {
+    return this.NativeModule.cancelEncodeTags();
+  },
   playSound(soundName: keyof typeof SOUND_MAP) {
     this.NativeModule.playSound(SOUND_MAP[soundName]);
   },
@@ -274,6 +980,44 @@ const RFIDWithUHFBaseModule = {
       soundEnabled: boolean;
     },
   ) {
+    if (this.isEncodeTagsSupported()) {
+      // One native call instead of a round-trip per step
+      let failed: EncodeProgress | null = null;
+      await this.encodeTags(
+        [
+          {
+            epc,
+            filter,
+            accessPassword: oldAccessPassword,
+            newAccessPassword,
+            lockCode: '0a82a0', // Locks kill, access and EPC
+          },
+        ],
+        {
+          power,
+          soundEnabled: false,
+          onProgress: progress => {
+            if (!progress.step) return;
+            if (progress.status === 'started') {
+              reportStatus && reportStatus(ENCODE_STEP_STATUS[progress.step]);
+            } else if (progress.status === 'failed') {
+              failed = progress;
+            }
+          },
+        },
+      );
+      if (failed) {
+        const { step, error } = failed as EncodeProgress;
+        reportStatus &&
+          reportStatus(ENCODE_STEP_FAILED_STATUS[step || 'write']);
+        if (soundEnabled) this.playSound('error');
+        throw new Error(error);
+      }
+      reportStatus && reportStatus('Done');
+      if (soundEnabled) this.playSound('success');
+      return;
+    }
+
     try {
       const epcSize = epc.length;
       const epcWordsCount = Math.ceil(epcSize / 4);
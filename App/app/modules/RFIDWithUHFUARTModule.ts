@@ -1,7 +1,10 @@
-import { NativeModules } from 'react-native';
+import { DeviceEventEmitter, EmitterSubscription } from 'react-native';
+
 import RFIDWithUHFBaseModule from './RFIDWithUHFBaseModule';
+import NativeRFIDWithUHFUARTModule from './specs/NativeRFIDWithUHFUARTModule';
+import type { WarmUpStatus } from './specs/NativeRFIDWithUHFUARTModule';
 
-const { RFIDWithUHFUARTModule: NativeRFIDWithUHFUARTModule } = NativeModules;
+export type { WarmUpStatus };
 
 const RFIDWithUHFUARTModule = {
   ...RFIDWithUHFBaseModule,
@@ -9,6 +12,24 @@ const RFIDWithUHFUARTModule = {
   isPowerOn(): Promise<boolean> {
     return this.NativeModule.isPowerOn();
   },
+  isWarmUpSupported(): boolean {
+    return typeof this.NativeModule.warmUp === 'function';
+  },
+  /** Starts powering up the reader without waiting for it. */
+  warmUp(): Promise<WarmUpStatus> {
+    return this.NativeModule.warmUp();
+  },
+  getWarmUpStatus(): Promise<WarmUpStatus> {
+    return this.NativeModule.getWarmUpStatus();
+  },
+  setWarmUpOnStart(enabled: boolean): Promise<void> {
+    return this.NativeModule.setWarmUpOnStart(enabled);
+  },
+  addWarmUpListener(
+    callback: (status: WarmUpStatus) => void,
+  ): EmitterSubscription {
+    return DeviceEventEmitter.addListener('uhfWarmUp', callback);
+  },
 };
 
 export default RFIDWithUHFUARTModule;
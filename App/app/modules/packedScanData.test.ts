@@ -0,0 +1,75 @@
+import { decodePackedScanData } from './packedScanData';
+
+// Encoded by ScanBatchEncoder.java, re-generate them if the format changes
+const RAW_WINDOW =
+  'AQACAAAAgFb+vHhCDOKAEXAAAAIPGis8TQAp7oV1cm46eAjigBFwqrvM3QCA';
+const AGGREGATED_WINDOW =
+  'AQECAABAhlb+vHhCDDA0+H5MAAAAAAAAAQAm6QIAAAAAAAAA+gAAAF7oJunC6INBQkMAAIABAAAAZAAAAGQAAAAAgACAAIA=';
+
+const RAW_DATA = [
+  { epc: 'E28011700000020F1A2B3C4D', tid: '', rssi: -45.67 },
+  { epc: 'urn:x', tid: 'E2801170AABBCCDD', rssi: NaN },
+];
+const AGGREGATED_DATA = [
+  {
+    epc: '3034F87E4C00000000000001',
+    tid: '',
+    rssi: -58.5,
+    count: 2,
+    firstSeenAt: 1700000000100,
+    lastSeenAt: 1700000000350,
+    minRssi: -60.5,
+    maxRssi: -58.5,
+    meanRssi: -59.5,
+  },
+  {
+    epc: 'ABC',
+    tid: '',
+    rssi: NaN,
+    count: 1,
+    firstSeenAt: 1700000000200,
+    lastSeenAt: 1700000000200,
+  },
+];
+
+function bytes(base64: string): Uint8Array {
+  return new Uint8Array(Buffer.from(base64, 'base64'));
+}
+
+describe('decodePackedScanData', () => {
+  it('decodes raw reads', () => {
+    expect(decodePackedScanData(bytes(RAW_WINDOW))).toStrictEqual(RAW_DATA);
+  });
+
+  it('decodes aggregated records', () => {
+    expect(decodePackedScanData(bytes(AGGREGATED_WINDOW))).toStrictEqual(
+      AGGREGATED_DATA,
+    );
+  });
+
+  it('decodes windows back to back', () => {
+    const pulled = new Uint8Array([
+      ...bytes(RAW_WINDOW),
+      ...bytes(AGGREGATED_WINDOW),
+    ]);
+    expect(decodePackedScanData(pulled)).toStrictEqual([
+      ...RAW_DATA,
+      ...AGGREGATED_DATA,
+    ]);
+  });
+
+  it('decodes a payload that is not at the start of its buffer', () => {
+    const raw = bytes(RAW_WINDOW);
+    const padded = new Uint8Array(raw.length + 3);
+    padded.set(raw, 3);
+    expect(decodePackedScanData(padded.subarray(3))).toStrictEqual(RAW_DATA);
+  });
+
+  it('rejects unknown versions', () => {
+    const payload = bytes(RAW_WINDOW);
+    payload[0] = 2;
+    expect(() => decodePackedScanData(payload)).toThrow(
+      'Unsupported packed scan data version: 2',
+    );
+  });
+});
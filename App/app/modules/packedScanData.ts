@@ -0,0 +1,76 @@
+import type { ScanData } from './RFIDWithUHFBaseModule';
+
+const PACKED_SCAN_DATA_VERSION = 1;
+const PACKED_SCAN_DATA_FLAG_AGGREGATED = 1;
+const PACKED_SCAN_DATA_HEADER_SIZE = 12;
+const PACKED_RSSI_UNKNOWN = -32768;
+
+const HEX_BYTES = Array.from({ length: 256 }, (_, i) =>
+  i.toString(16).toUpperCase().padStart(2, '0'),
+);
+
+/**
+ * Decodes a packed scan data payload, see ScanBatchEncoder.java for the
+ * format. Pulled payloads hold several windows back to back, and windows of
+ * more than 65535 records several headers, their records are returned in
+ * order.
+ */
+export function decodePackedScanData(bytes: Uint8Array): ScanData[] {
+  const view = new DataView(bytes.buffer, bytes.byteOffset, bytes.byteLength);
+  const data: ScanData[] = [];
+  let offset = 0;
+  const readId = (): string => {
+    const header = view.getUint8(offset++);
+    const length = header & 0x7f;
+    let id = '';
+    if (header & 0x80) {
+      for (let i = 0; i < length; i++) {
+        id += String.fromCharCode(bytes[offset + i]);
+      }
+    } else {
+      for (let i = 0; i < length; i++) {
+        id += HEX_BYTES[bytes[offset + i]];
+      }
+    }
+    offset += length;
+    return id;
+  };
+  const readRssi = (): number | undefined => {
+    const value = view.getInt16(offset, true);
+    offset += 2;
+    return value === PACKED_RSSI_UNKNOWN ? undefined : value / 100;
+  };
+
+  while (offset < bytes.byteLength) {
+    const version = view.getUint8(offset);
+    if (version !== PACKED_SCAN_DATA_VERSION) {
+      throw new Error(`Unsupported packed scan data version: ${version}`);
+    }
+    const aggregated =
+      (view.getUint8(offset + 1) & PACKED_SCAN_DATA_FLAG_AGGREGATED) !== 0;
+    const count = view.getUint16(offset + 2, true);
+    const baseTime = view.getFloat64(offset + 4, true);
+    offset += PACKED_SCAN_DATA_HEADER_SIZE;
+
+    for (let i = 0; i < count; i++) {
+      const epc = readId();
+      const tid = readId();
+      const rssi = readRssi();
+      const d: ScanData = { epc, tid, rssi: rssi ?? NaN };
+      if (aggregated) {
+        d.count = view.getUint32(offset, true);
+        d.firstSeenAt = baseTime + view.getUint32(offset + 4, true);
+        d.lastSeenAt = baseTime + view.getUint32(offset + 8, true);
+        offset += 12;
+        const minRssi = readRssi();
+        const maxRssi = readRssi();
+        const meanRssi = readRssi();
+        if (minRssi !== undefined) d.minRssi = minRssi;
+        if (maxRssi !== undefined) d.maxRssi = maxRssi;
+        if (meanRssi !== undefined) d.meanRssi = meanRssi;
+      }
+      data.push(d);
+    }
+  }
+  return data;
+}
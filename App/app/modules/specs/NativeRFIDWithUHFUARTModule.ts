@@ -0,0 +1,260 @@
+import type { TurboModule } from 'react-native';
+import { TurboModuleRegistry } from 'react-native';
+import type { Double, Int32 } from 'react-native/Libraries/Types/CodegenTypes';
+
+export type ScanQueueStats = {
+  capacity: Int32;
+  queued: Int32;
+  inFlight: Int32;
+  dropped: Double;
+  coalesced: Double;
+  blocked: Double;
+  /** Records dropped with `delivery: 'pull'` because JS did not pull them in time. */
+  pullDropped: Double;
+};
+
+export type ScanStats = {
+  running: boolean;
+  startedAt: Double;
+  /** Milliseconds, as are all times below. */
+  duration: Double;
+  /** Calls into the reader buffer, and those that returned nothing. */
+  polls: Double;
+  emptyPolls: Double;
+  reads: Double;
+  readsPerSecond: Double;
+  /** Reads of EPCs not seen before, until the scanned tags are cleared. */
+  newEpcs: Double;
+  duplicates: Double;
+  /** Event windows handed to JS, and their number of records. */
+  batches: Double;
+  meanBatchSize: Double;
+  p95BatchSize: Double;
+  maxBatchSize: Double;
+  /** Time taken to hand event windows over to JS. */
+  meanEmitTime: Double;
+  p95EmitTime: Double;
+  maxEmitTime: Double;
+  sounds: Double;
+  meanSoundTime: Double;
+  p95SoundTime: Double;
+  maxSoundTime: Double;
+  /** Only for scans with `autoTune`. */
+  autoTune?: AutoTuneState;
+};
+
+export type AutoTuneState = {
+  /** The settings in use, Q and session -1 if the reader cannot change them. */
+  power: Int32;
+  q: Int32;
+  session: Int32;
+  /** How many times a new setting was kept. */
+  changes: Double;
+  /** New EPCs per second (plus a tenth of the distinct ones) of the last window. */
+  score: Double;
+};
+
+export type LatencyStats = {
+  count: Double;
+  /** Milliseconds, as are the percentiles and buckets. */
+  min: Double;
+  mean: Double;
+  p50: Double;
+  p90: Double;
+  p99: Double;
+  max: Double;
+  /** Upper bound and count of each bucket that counted anything. */
+  buckets?: Array<Double>;
+};
+
+export type ScanLatency = {
+  /** From the first read of an event window to the native emit. */
+  window: LatencyStats;
+  /** From the native emit to the JS callback. */
+  bridge: LatencyStats;
+  /** From the first read of an event window to the JS callback. */
+  total: LatencyStats;
+};
+
+export type ScanJournalInfo = {
+  recordCount: Int32;
+  createdAt: Double;
+};
+
+export type CommandStats = {
+  /** Reader commands waiting to run. */
+  queued: Int32;
+  maxQueued: Int32;
+  completed: Double;
+  failed: Double;
+  timedOut: Double;
+  /** Name of the command running now. */
+  running: string | null;
+  /** Milliseconds, as are the waits and run times below. */
+  runningFor: Double;
+  meanWait: Double;
+  maxWait: Double;
+  meanRun: Double;
+  maxRun: Double;
+};
+
+export type WarmUpStatus = {
+  state: 'IDLE' | 'WARMING' | 'READY' | 'FAILED';
+  /** The step running now, 'sounds' then 'reader'. */
+  step: string | null;
+  stepsDone: Int32;
+  stepCount: Int32;
+  error: string | null;
+  /** Milliseconds. */
+  duration: Double;
+};
+
+export type EncodeSummary = {
+  succeeded: Int32;
+  failed: Int32;
+  cancelled: Int32;
+};
+
+export type CheckSessionState = {
+  expectedCount: Int32;
+  foundCount: Int32;
+  unexpectedCount: Int32;
+};
+
+/**
+ * Codegen spec of the native RFIDWithUHFUARTModule (Android only). Keep in
+ * sync with NativeRFIDWithUHFBLEModule.ts for the methods both have.
+ */
+export interface Spec extends TurboModule {
+  init(): Promise<void>;
+  free(): Promise<void>;
+  /**
+   * Powers up the reader in the background and resolves at once, the
+   * progress comes as uhfWarmUp events. init() then waits for it.
+   */
+  warmUp(): Promise<WarmUpStatus>;
+  getWarmUpStatus(): Promise<WarmUpStatus>;
+  /** Whether the app warms up the reader as soon as it starts. */
+  setWarmUpOnStart(enabled: boolean): Promise<void>;
+  isPowerOn(): Promise<boolean>;
+  isWorking(): Promise<boolean>;
+  getFrequencyMode(): Promise<number>;
+  setFrequencyMode(mode: Int32): Promise<void>;
+  setPower(power: Int32): Promise<number>;
+  setSimulatedReader(options: Object | null): Promise<void>;
+  startScan(
+    power: Int32,
+    enableFilter: boolean,
+    filterBank: Int32,
+    filterPtr: Int32,
+    filterLen: Int32,
+    filterData: string,
+    scanRate: Int32,
+    eventRate: Int32,
+    isLocate: boolean,
+    playSound: boolean,
+    enableReaderSound: boolean,
+    scannedEpcs: Array<string>,
+    soundOnlyForEpcs: Array<string>,
+    options: Object,
+  ): Promise<void>;
+  /**
+   * Synchronously takes what the scan thread has buffered since the last
+   * call, as a packed scan data payload (base64, empty if there is nothing).
+   * Only used with `delivery: 'pull'`.
+   */
+  pullScanData(): string;
+  /** Tells the scan thread JS is done with `count` event windows. */
+  acknowledgeScanData(count: Int32): void;
+  getScanQueueStats(): Promise<ScanQueueStats | null>;
+  /** Counters of the current or last scan session, null before the first. */
+  getScanStats(): Promise<ScanStats | null>;
+  /** Total and bridge milliseconds of traced event windows, in pairs. */
+  recordScanLatency(samples: Array<Double>): void;
+  getScanLatency(includeBuckets: boolean): Promise<ScanLatency>;
+  getCommandStats(): Promise<CommandStats>;
+  getScanJournalInfo(name: string): Promise<ScanJournalInfo | null>;
+  /**
+   * Up to `limit` records of the scan journal from `offset`, as a packed
+   * scan data payload (base64), null if there is no such journal.
+   */
+  readScanJournal(
+    name: string,
+    offset: Int32,
+    limit: Int32,
+  ): Promise<string | null>;
+  listScanJournals(): Promise<Array<string>>;
+  deleteScanJournal(name: string): Promise<boolean>;
+  /** Names of the recordings made with the record scan option. */
+  listReadRecordings(): Promise<Array<string>>;
+  deleteReadRecording(name: string): Promise<boolean>;
+  /**
+   * Loads the expected EPCs of an inventory check (with the item ID of each,
+   * same index), replacing any previous session. Reads are then matched on
+   * the scan thread and only changes are emitted, as uhfCheckSessionDelta.
+   */
+  startCheckSession(
+    epcs: Array<string>,
+    itemIds: Array<string>,
+  ): Promise<void>;
+  endCheckSession(): Promise<void>;
+  getCheckSessionState(): Promise<CheckSessionState | null>;
+  stopScan(): Promise<void>;
+  clearScannedTags(): Promise<void>;
+  startLocate(epc: string, power: Int32, playSound: boolean): Promise<void>;
+  stopLocate(): Promise<void>;
+  read(
+    power: Int32,
+    bank: Int32,
+    ptr: Int32,
+    cnt: Int32,
+    pwd: string,
+    enableFilter: boolean,
+    filterBank: Int32,
+    filterPtr: Int32,
+    filterLen: Int32,
+    filterData: string,
+    playSound: boolean,
+  ): Promise<string>;
+  write(
+    power: Int32,
+    bank: Int32,
+    ptr: Int32,
+    cnt: Int32,
+    pwd: string,
+    data: string,
+    enableFilter: boolean,
+    filterBank: Int32,
+    filterPtr: Int32,
+    filterLen: Int32,
+    filterData: string,
+    playSound: boolean,
+  ): Promise<void>;
+  lock(
+    power: Int32,
+    pwd: string,
+    code: string,
+    enableFilter: boolean,
+    filterBank: Int32,
+    filterPtr: Int32,
+    filterLen: Int32,
+    filterData: string,
+    playSound: boolean,
+  ): Promise<void>;
+  /**
+   * Writes the EPC of each job (and optionally sets its password and locks
+   * it) on a background thread. Each step is reported as uhfEncodeProgress.
+   */
+  encodeTags(
+    jobs: Array<Object>,
+    options: Object,
+    playSound: boolean,
+  ): Promise<EncodeSummary>;
+  /** Jobs not started yet are cancelled, the current one finishes. */
+  cancelEncodeTags(): Promise<boolean>;
+  /** Minimum time (ms) between two feedback sounds during scans. */
+  setFeedbackMinimumDelay(delay: Int32): void;
+  playSound(id: Int32): void;
+}
+
+export default TurboModuleRegistry.get<Spec>('RFIDWithUHFUARTModule');
@@ -106,10 +106,17 @@ function RFIDUHFModuleScreen({
     Record<string, ScanDevicesData>
   >({});
   const receiveScanDeviceData = useCallback((d: ScanDevicesData[]) => {
-    setScanDevicesData(data => ({
-      ...data,
-      ...Object.fromEntries(d.map(dd => [dd.address, dd])),
-    }));
+    setScanDevicesData(data => {
+      const newData = { ...data };
+      for (const dd of d) {
+        if (dd.expired) {
+          delete newData[dd.address];
+        } else {
+          newData[dd.address] = dd;
+        }
+      }
+      return newData;
+    });
   }, []);
   const scanDevices = useCallback(async () => {
     setScanDevicesData({});
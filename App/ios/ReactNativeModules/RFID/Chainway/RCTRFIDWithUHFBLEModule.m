@@ -195,6 +195,7 @@ RCT_EXPORT_METHOD(startScan
                   : (BOOL)enableReaderSound
                   : (NSArray *)scannedEpcsArr
                   : (NSArray *)playSoundOnlyForEpcsArr
+                  : (NSDictionary *)options // Android-only options, e.g. aggregate
                   : (RCTPromiseResolveBlock)resolve
                   : (RCTPromiseRejectBlock)reject) {
   @try {